@@ -0,0 +1,25 @@
+package com.abrik.risktech.benchmark;
+
+import com.abrik.risktech.RisktechApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Контекст приложения без веб-сервера: бенчмарки берут те же бины и те же настройки
+ * (application.properties), что и импорт через API. Подключение к БД – spring.datasource.*,
+ * Hikari открывает его только при первом запросе.
+ */
+final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(RisktechApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .properties("logging.level.root=WARN")
+                .run();
+    }
+}
@@ -0,0 +1,71 @@
+package com.abrik.risktech.benchmark;
+
+import com.abrik.risktech.benchmark.SyntheticData.Content;
+import com.abrik.risktech.benchmark.SyntheticData.Quality;
+import com.abrik.risktech.benchmark.SyntheticData.Shape;
+import com.abrik.risktech.model.ColumnarRows;
+import com.abrik.risktech.util.FileParserUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стадии после чтения по отдельности: вывод типов и конвертация уже прочитанных строк
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConversionBenchmark {
+
+    @Param({"NARROW", "WIDE"})
+    public Shape shape;
+
+    @Param({"NUMERIC", "TEXT"})
+    public Content content;
+
+    @Param({"CLEAN", "DIRTY"})
+    public Quality quality;
+
+    @Param("100000")
+    public int rows;
+
+    private final FileParserUtil fileParserUtil = new FileParserUtil();
+    private List<List<Object>> rawRows;
+    private List<Class<?>> columnTypes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        rawRows = SyntheticData.rows(shape, content, quality, rows);
+        columnTypes = fileParserUtil.inferColumnTypes(rawRows, shape.columns);
+    }
+
+    @Benchmark
+    public List<Class<?>> inferColumnTypes() {
+        return fileParserUtil.inferColumnTypes(rawRows, shape.columns);
+    }
+
+    @Benchmark
+    public List<List<Object>> convertRows() {
+        return fileParserUtil.convertRows(rawRows, columnTypes);
+    }
+
+    @Benchmark
+    public ColumnarRows convertColumns() {
+        return fileParserUtil.convertColumns(rawRows, columnTypes);
+    }
+}
@@ -0,0 +1,104 @@
+package com.abrik.risktech.benchmark;
+
+import com.abrik.risktech.benchmark.SyntheticData.Content;
+import com.abrik.risktech.benchmark.SyntheticData.Quality;
+import com.abrik.risktech.benchmark.SyntheticData.Shape;
+import com.abrik.risktech.dto.ImportResponseDto;
+import com.abrik.risktech.model.ImportOptions;
+import com.abrik.risktech.model.ImportProgress;
+import com.abrik.risktech.model.ImportSource;
+import com.abrik.risktech.service.FileImportService;
+import com.abrik.risktech.service.TableSchemaService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Импорт файла так же, как через POST /api/import: выбор парсера, вывод типов, CREATE TABLE и запись
+ * с настройками из application.properties. Созданная таблица удаляется после каждой итерации.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class EndToEndImportBenchmark {
+
+    public enum Format {
+        CSV, XLSX
+    }
+
+    @Param({"CSV", "XLSX"})
+    public Format format;
+
+    @Param({"NARROW", "WIDE"})
+    public Shape shape;
+
+    @Param({"NUMERIC", "TEXT"})
+    public Content content;
+
+    @Param({"CLEAN", "DIRTY"})
+    public Quality quality;
+
+    @Param("50000")
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private FileImportService fileImportService;
+    private TableSchemaService tableSchemaService;
+    private Path file;
+    private String importedTable;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = BenchmarkContext.start();
+        fileImportService = context.getBean(FileImportService.class);
+        tableSchemaService = context.getBean(TableSchemaService.class);
+
+        List<String> headers = SyntheticData.headers(shape);
+        List<List<Object>> data = SyntheticData.rows(shape, content, quality, rows);
+        file = format == Format.CSV ? SyntheticData.writeCsv(headers, data) : SyntheticData.writeXlsx(headers, data);
+    }
+
+    @TearDown(Level.Iteration)
+    public void dropTable() {
+        if (importedTable != null) {
+            tableSchemaService.dropTableQuietly(importedTable);
+            importedTable = null;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public ImportResponseDto importFile() {
+        String filename = "bench." + format.name().toLowerCase();
+        // каждый вызов грузит один и тот же файл: без forceReload со второго его отдал бы реестр импортов
+        ImportResponseDto response = fileImportService.importFile(ImportSource.of(file, filename),
+                ImportOptions.builder().forceReload(true).build(), new ImportProgress());
+        importedTable = response.getTableName();
+        return response;
+    }
+}
@@ -0,0 +1,95 @@
+package com.abrik.risktech.benchmark;
+
+import com.abrik.risktech.benchmark.SyntheticData.Content;
+import com.abrik.risktech.benchmark.SyntheticData.Quality;
+import com.abrik.risktech.benchmark.SyntheticData.Shape;
+import com.abrik.risktech.model.InsertResult;
+import com.abrik.risktech.model.TableData;
+import com.abrik.risktech.model.WriteMode;
+import com.abrik.risktech.service.DataInsertService;
+import com.abrik.risktech.service.TableSchemaService;
+import com.abrik.risktech.util.FileParserUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Только запись уже сконвертированной таблицы в PostgreSQL. Каждая итерация пишет в новую пустую таблицу.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InsertBenchmark {
+
+    @Param({"NARROW", "WIDE"})
+    public Shape shape;
+
+    @Param({"NUMERIC", "TEXT"})
+    public Content content;
+
+    @Param({"INSERT", "COPY"})
+    public WriteMode writeMode;
+
+    @Param("50000")
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private TableSchemaService tableSchemaService;
+    private DataInsertService dataInsertService;
+    private TableData tableData;
+    private int iteration;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        tableSchemaService = context.getBean(TableSchemaService.class);
+        dataInsertService = context.getBean(DataInsertService.class);
+
+        FileParserUtil fileParserUtil = context.getBean(FileParserUtil.class);
+        List<List<Object>> rawRows = SyntheticData.rows(shape, content, Quality.CLEAN, rows);
+        List<Class<?>> columnTypes = fileParserUtil.inferColumnTypes(rawRows, shape.columns);
+        tableData = TableData.builder()
+                .columns(fileParserUtil.buildColumns(SyntheticData.headers(shape), columnTypes))
+                .columnar(fileParserUtil.convertColumns(rawRows, columnTypes))
+                .build();
+    }
+
+    @Setup(Level.Iteration)
+    public void createTable() {
+        tableData.setTableName("bench_insert_" + iteration++);
+        tableSchemaService.dropTableQuietly(tableData.getTableName());
+        tableSchemaService.createTable(tableData);
+    }
+
+    @TearDown(Level.Iteration)
+    public void dropTable() {
+        tableSchemaService.dropTableQuietly(tableData.getTableName());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public InsertResult insertData() {
+        return dataInsertService.insertData(tableData, writeMode);
+    }
+}
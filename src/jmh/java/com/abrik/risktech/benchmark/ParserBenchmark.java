@@ -0,0 +1,107 @@
+package com.abrik.risktech.benchmark;
+
+import com.abrik.risktech.benchmark.SyntheticData.Content;
+import com.abrik.risktech.benchmark.SyntheticData.Quality;
+import com.abrik.risktech.benchmark.SyntheticData.Shape;
+import com.abrik.risktech.model.TableData;
+import com.abrik.risktech.parser.FileParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор файла целиком в память каждым парсером: чтение, вывод типов и конвертация в колонки
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ParserBenchmark {
+
+    @Param({"NARROW", "WIDE"})
+    public Shape shape;
+
+    @Param({"NUMERIC", "TEXT"})
+    public Content content;
+
+    @Param({"CLEAN", "DIRTY"})
+    public Quality quality;
+
+    @Param("50000")
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private FileParser csvFileParser;
+    private FileParser parallelCsvFileParser;
+    private FileParser xlsxStreamingFileParser;
+    private FileParser xlsxFileParser;
+    private Path csvFile;
+    private Path xlsxFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = BenchmarkContext.start();
+        csvFileParser = context.getBean("csvFileParser", FileParser.class);
+        parallelCsvFileParser = context.getBean("parallelCsvFileParser", FileParser.class);
+        xlsxStreamingFileParser = context.getBean("xlsxStreamingFileParser", FileParser.class);
+        xlsxFileParser = context.getBean("xlsxFileParser", FileParser.class);
+
+        List<String> headers = SyntheticData.headers(shape);
+        List<List<Object>> data = SyntheticData.rows(shape, content, quality, rows);
+        csvFile = SyntheticData.writeCsv(headers, data);
+        xlsxFile = SyntheticData.writeXlsx(headers, data);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        Files.deleteIfExists(csvFile);
+        Files.deleteIfExists(xlsxFile);
+    }
+
+    @Benchmark
+    public TableData csv() throws IOException {
+        return parse(csvFileParser, csvFile);
+    }
+
+    @Benchmark
+    public TableData parallelCsv() throws IOException {
+        return parse(parallelCsvFileParser, csvFile);
+    }
+
+    @Benchmark
+    public TableData xlsxStreaming() throws IOException {
+        return parse(xlsxStreamingFileParser, xlsxFile);
+    }
+
+    @Benchmark
+    public TableData xlsxUsermodel() throws IOException {
+        return parse(xlsxFileParser, xlsxFile);
+    }
+
+    private static TableData parse(FileParser parser, Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return parser.parseFile(in);
+        }
+    }
+}
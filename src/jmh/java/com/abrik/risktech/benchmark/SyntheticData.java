@@ -0,0 +1,180 @@
+package com.abrik.risktech.benchmark;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Синтетические таблицы для бенчмарков. Генерация детерминирована (фиксированный seed),
+ * поэтому прогоны в разные дни сравнивают одни и те же данные.
+ */
+public final class SyntheticData {
+    private static final String[] CODES = {"USD", "EUR", "RUB", "GBP", "JPY", "CNY", "CHF", "KZT", "AAA", "BBB+"};
+
+    private SyntheticData() {
+    }
+
+    public enum Shape {
+        NARROW(6), WIDE(60);
+
+        final int columns;
+
+        Shape(int columns) {
+            this.columns = columns;
+        }
+    }
+
+    /**
+     * NUMERIC – в основном целые, десятичные и даты; TEXT – в основном коды и свободный текст
+     */
+    public enum Content {
+        NUMERIC(Kind.LONG, Kind.DECIMAL, Kind.DECIMAL, Kind.LONG, Kind.DATE, Kind.CODE),
+        TEXT(Kind.CODE, Kind.TEXT, Kind.CODE, Kind.TEXT, Kind.LONG, Kind.BOOLEAN);
+
+        private final Kind[] kinds;
+
+        Content(Kind... kinds) {
+            this.kinds = kinds;
+        }
+    }
+
+    /**
+     * DIRTY: пустые значения, пробелы по краям, редкие значения не того типа (колонка расширяется),
+     * запятые, кавычки и переводы строк внутри текста
+     */
+    public enum Quality {
+        CLEAN, DIRTY
+    }
+
+    private enum Kind {
+        LONG, DECIMAL, DATE, BOOLEAN, CODE, TEXT
+    }
+
+    public static List<String> headers(Shape shape) {
+        List<String> headers = new ArrayList<>(shape.columns);
+        for (int col = 0; col < shape.columns; col++) {
+            headers.add("col_" + col);
+        }
+        return headers;
+    }
+
+    /**
+     * Строки так, как их отдаёт парсер: значения-строки, пустое значение – ""
+     */
+    public static List<List<Object>> rows(Shape shape, Content content, Quality quality, int rows) {
+        SplittableRandom random = new SplittableRandom(42);
+        List<List<Object>> result = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            List<Object> row = new ArrayList<>(shape.columns);
+            for (int col = 0; col < shape.columns; col++) {
+                Kind kind = content.kinds[col % content.kinds.length];
+                row.add(quality == Quality.DIRTY ? dirty(random, kind) : value(random, kind));
+            }
+            result.add(row);
+        }
+        return result;
+    }
+
+    private static String value(SplittableRandom random, Kind kind) {
+        return switch (kind) {
+            case LONG -> Long.toString(random.nextLong(-1_000_000_000L, 1_000_000_000L));
+            case DECIMAL -> {
+                long cents = random.nextLong(-100_000_000L, 100_000_000L);
+                yield (cents < 0 ? "-" : "") + Math.abs(cents / 100) + "." + String.format("%02d", Math.abs(cents % 100));
+            }
+            case DATE -> LocalDate.ofEpochDay(18_000 + random.nextInt(3_000)).toString();
+            case BOOLEAN -> random.nextBoolean() ? "true" : "false";
+            case CODE -> CODES[random.nextInt(CODES.length)];
+            case TEXT -> "client " + random.nextInt(1_000_000) + " desk " + random.nextInt(40);
+        };
+    }
+
+    private static String dirty(SplittableRandom random, Kind kind) {
+        int dice = random.nextInt(1_000);
+        if (dice < 50) {
+            return "";
+        }
+        if (dice < 52 && kind != Kind.CODE && kind != Kind.TEXT) {
+            return "n/a";
+        }
+        if (dice < 100 && kind == Kind.TEXT) {
+            return "\"quoted\", multi\nline " + random.nextInt(1_000);
+        }
+        String value = value(random, kind);
+        return dice < 200 ? "  " + value + " " : value;
+    }
+
+    public static Path writeCsv(List<String> headers, List<List<Object>> rows) throws IOException {
+        Path file = Files.createTempFile("risktech-bench-", ".csv");
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeCsvLine(writer, headers);
+            for (List<Object> row : rows) {
+                writeCsvLine(writer, row);
+            }
+        }
+        return file;
+    }
+
+    private static void writeCsvLine(Writer writer, List<?> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String value = String.valueOf(values.get(i));
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * Числа – числовыми ячейками, как их сохраняет Excel; остальное – текстом
+     */
+    public static Path writeXlsx(List<String> headers, List<List<Object>> rows) throws IOException {
+        Path file = Files.createTempFile("risktech-bench-", ".xlsx");
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(1_000);
+             OutputStream out = Files.newOutputStream(file)) {
+            Sheet sheet = workbook.createSheet("data");
+            Row header = sheet.createRow(0);
+            for (int col = 0; col < headers.size(); col++) {
+                header.createCell(col).setCellValue(headers.get(col));
+            }
+            for (int i = 0; i < rows.size(); i++) {
+                Row row = sheet.createRow(i + 1);
+                List<Object> values = rows.get(i);
+                for (int col = 0; col < values.size(); col++) {
+                    String value = (String) values.get(col);
+                    if (value.isEmpty()) {
+                        continue;
+                    }
+                    Cell cell = row.createCell(col);
+                    try {
+                        cell.setCellValue(Double.parseDouble(value));
+                    } catch (NumberFormatException e) {
+                        cell.setCellValue(value);
+                    }
+                }
+            }
+            workbook.write(out);
+            workbook.dispose();
+        }
+        return file;
+    }
+}
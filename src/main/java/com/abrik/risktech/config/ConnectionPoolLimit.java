@@ -0,0 +1,47 @@
+package com.abrik.risktech.config;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Размер пула соединений как ограничение параллельной записи: одно соединение всегда
+ * остаётся координатору импорта (staging-таблица, публикация) и остальным запросам.
+ *
+ * Разрешения на соединения writer-ов общие на процесс: листы книги, записи zip и фоновые задачи
+ * пишут одновременно, и вместе их writer-ы не должны выбрать весь пул.
+ */
+public final class ConnectionPoolLimit {
+    private final int maxPoolSize;
+    private final Semaphore writerPermits;
+
+    public ConnectionPoolLimit(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+        this.writerPermits = new Semaphore(maxParallelWriters());
+    }
+
+    public int maxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public int maxParallelWriters() {
+        return Math.max(1, maxPoolSize - 1);
+    }
+
+    /**
+     * Берёт до requested свободных разрешений, не дожидаясь занятых
+     *
+     * @return сколько взято – столько writer-ов и запускается; вернуть через {@link #releaseWriters(int)}
+     */
+    public int acquireWriters(int requested) {
+        int acquired = 0;
+        while (acquired < requested && writerPermits.tryAcquire()) {
+            acquired++;
+        }
+        return acquired;
+    }
+
+    public void releaseWriters(int count) {
+        if (count > 0) {
+            writerPermits.release(count);
+        }
+    }
+}
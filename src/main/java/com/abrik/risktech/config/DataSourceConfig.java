@@ -1,5 +1,6 @@
 package com.abrik.risktech.config;
 
+import com.zaxxer.hikari.HikariDataSource;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -13,4 +14,14 @@ public class DataSourceConfig {
     public JdbcTemplate jdbcTemplate(DataSource ds) {
         return new JdbcTemplate(ds);
     }
+
+    /**
+     * Размер пула Hikari (spring.datasource.hikari.maximum-pool-size) – потолок для
+     * числа writer-ов всех таблиц сразу, чтобы параллельные импорты не ждали соединений друг за другом
+     */
+    @Bean
+    public ConnectionPoolLimit connectionPoolLimit(DataSource ds) {
+        int poolSize = ds instanceof HikariDataSource hikari ? hikari.getMaximumPoolSize() : 1;
+        return new ConnectionPoolLimit(poolSize);
+    }
 }
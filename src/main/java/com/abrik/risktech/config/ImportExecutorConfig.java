@@ -0,0 +1,52 @@
+package com.abrik.risktech.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+@Configuration
+public class ImportExecutorConfig {
+
+    /**
+     * Пул для параллельного импорта листов XLSX. Размер ограничен, чтобы книга
+     * из 20 листов не забрала все соединения Hikari.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService sheetImportExecutor(ImportProperties importProperties) {
+        int threads = Math.max(1, importProperties.getSheetParallelism());
+        return Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("sheet-import-", 1).factory());
+    }
+
+    /**
+     * Пул для разбора и конвертации кусков CSV. Отдельный от commonPool, чтобы
+     * parallelStream в других местах не конкурировал с импортом.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool csvParserPool(ImportProperties importProperties) {
+        int parallelism = importProperties.getCsvParallelism() > 0
+                ? importProperties.getCsvParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        return new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Фоновые импорты: поток почти всё время ждёт БД или диск, поэтому виртуальные потоки.
+     * Число одновременных задач ограничивает ImportJobService.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService importJobExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("import-job-", 1).factory());
+    }
+
+    /**
+     * Потоки параллельной записи в одну таблицу (write-parallelism). Поток занят ожиданием
+     * ответа БД, число одновременных writer-ов ограничено размером пула соединений.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService tableWriterExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("table-writer-", 1).factory());
+    }
+}
@@ -0,0 +1,182 @@
+package com.abrik.risktech.config;
+
+import com.abrik.risktech.model.InferenceMode;
+import com.abrik.risktech.model.LoadMode;
+import com.abrik.risktech.model.WriteMode;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Настройки импорта (префикс {@code risktech.import} в application.properties)
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "risktech.import")
+public class ImportProperties {
+
+    /**
+     * Сколько строк отправляется в БД одним JDBC batch
+     */
+    private int batchSize = 1000;
+
+    /**
+     * Граница транзакции при вставке
+     */
+    private TransactionMode transactionMode = TransactionMode.PER_BATCH;
+
+    /**
+     * Способ записи по умолчанию, если в запросе он не указан
+     */
+    private WriteMode writeMode = WriteMode.AUTO;
+
+    /**
+     * В режиме AUTO с этого количества строк используется COPY вместо INSERT
+     */
+    private int copyThresholdRows = 50_000;
+
+    /**
+     * Сколько строк уходит в одну команду COPY
+     */
+    private int copyBatchSize = 50_000;
+
+    /**
+     * Потоковый импорт: строки идут из файла в БД пачками, не накапливаясь в TableData.
+     * false – старый режим, когда файл целиком разбирается в память.
+     */
+    private boolean streaming = true;
+
+    /**
+     * Вывод типов при потоковом импорте
+     */
+    private InferenceMode inferenceMode = InferenceMode.FULL;
+
+    /**
+     * Сколько первых строк используется для вывода типов в режиме SAMPLE
+     */
+    private int sampleRows = 1000;
+
+    /**
+     * Типы колонок регулярных выгрузок берутся из кэша по имени источника и заголовкам: потоковый импорт
+     * идёт одним проходом без вывода типов, колонка расширяется, только если значение в неё не поместилось
+     */
+    private boolean schemaCache = true;
+
+    /**
+     * Сколько схем кэша держится в памяти (остальные – в таблице import_schema_cache)
+     */
+    private int schemaCacheSize = 256;
+
+    /**
+     * Парсер для .xlsx
+     */
+    private XlsxParser xlsxParser = XlsxParser.STREAMING;
+
+    /**
+     * Значения XLSX берутся по типу ячейки (число, дата, булево), а не через
+     * форматированный текст с повторным разбором. false – как раньше, всё как текст.
+     */
+    private boolean xlsxNativeTypes = true;
+
+    /**
+     * Сколько листов XLSX импортируется одновременно (allSheets / sheets в запросе).
+     * Каждый лист занимает своё соединение из пула, поэтому значение должно быть меньше размера пула.
+     */
+    private int sheetParallelism = 4;
+
+    /**
+     * Параллельный разбор CSV: файл режется на куски по границам записей,
+     * куски разбираются и конвертируются на отдельном ForkJoinPool
+     */
+    private boolean csvParallel = true;
+
+    /**
+     * С какого размера файла (в байтах) CSV разбирается параллельно
+     */
+    private long csvParallelThresholdBytes = 64L * 1024 * 1024;
+
+    /**
+     * Размер куска CSV в байтах
+     */
+    private int csvChunkBytes = 8 * 1024 * 1024;
+
+    /**
+     * Потоков для разбора CSV, 0 – по числу ядер
+     */
+    private int csvParallelism = 0;
+
+    /**
+     * false – куски отдаются по мере готовности, порядок строк в таблице не сохраняется.
+     * Импорт с чекпоинтами (фоновая задача) всё равно читает куски по порядку.
+     */
+    private boolean csvParallelOrdered = true;
+
+    /**
+     * Потоковая запись FULL идёт конвейером: разбор, конвертация и запись в БД одновременно
+     */
+    private boolean pipeline = true;
+
+    /**
+     * Строк в блоке, который передаётся между стадиями конвейера
+     */
+    private int pipelineBlockRows = 1000;
+
+    /**
+     * Ёмкость очереди между разбором и записью в блоках – столько блоков может быть в памяти
+     */
+    private int pipelineQueueBlocks = 8;
+
+    /**
+     * Соединений для записи одной таблицы. Больше 1 – строки пишутся параллельно в staging-таблицу
+     * и публикуются в конце; не больше размера пула минус одно
+     */
+    private int writeParallelism = 1;
+
+    /**
+     * DIRECT – строки пишутся в целевую таблицу, STAGED – в UNLOGGED staging с публикацией в конце
+     */
+    private LoadMode loadMode = LoadMode.DIRECT;
+
+    /**
+     * true – POST /api/import без параметра async сразу возвращает id фоновой задачи
+     */
+    private boolean asyncDefault = false;
+
+    /**
+     * Фоновый импорт сохраняет чекпоинт после каждой закоммиченной пачки; повтор упавшей задачи
+     * продолжает с него (потоковый FULL, DIRECT, одно соединение)
+     */
+    private boolean checkpoints = true;
+
+    /**
+     * Повторная загрузка файла с тем же содержимым (SHA-256) возвращает ответ прошлого импорта
+     * из import_registry, ничего не разбирая и не записывая (если не передан force=true)
+     */
+    private boolean deduplicate = true;
+
+    /**
+     * Сколько фоновых импортов выполняется одновременно, остальные ждут в состоянии QUEUED
+     */
+    private int maxConcurrentJobs = 4;
+
+    /**
+     * Сколько хранится статус завершённой задачи
+     */
+    private Duration jobRetention = Duration.ofHours(1);
+
+    public enum XlsxParser {
+        /** XSSFReader + построчное чтение XML листа, память не зависит от размера файла */
+        STREAMING,
+        /** WorkbookFactory / usermodel – весь workbook в памяти */
+        USERMODEL
+    }
+
+    public enum TransactionMode {
+        /** каждый batch коммитится отдельно */
+        PER_BATCH,
+        /** весь импорт – одна транзакция, при ошибке откатывается целиком */
+        PER_IMPORT
+    }
+}
@@ -1,33 +1,165 @@
 package com.abrik.risktech.controller;
 
+import com.abrik.risktech.config.ImportProperties;
+import com.abrik.risktech.dto.ImportJobDto;
 import com.abrik.risktech.dto.ImportResponseDto;
 import com.abrik.risktech.exception.BadRequestException;
+import com.abrik.risktech.model.ImportOptions;
+import com.abrik.risktech.model.ImportProgress;
+import com.abrik.risktech.model.ImportSource;
+import com.abrik.risktech.model.InferenceMode;
+import com.abrik.risktech.model.LoadMode;
+import com.abrik.risktech.model.WriteMode;
 import com.abrik.risktech.service.FileImportService;
+import com.abrik.risktech.service.ImportJobService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
 @RestController
 @RequestMapping("/api/import")
 @RequiredArgsConstructor
 public class FileImportController {
     private final FileImportService fileImportService;
+    private final ImportJobService importJobService;
+    private final ImportProperties importProperties;
 
     @PostMapping(
             consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
             produces = MediaType.APPLICATION_JSON_VALUE
     )
-    public ResponseEntity<ImportResponseDto> importFile(@RequestParam MultipartFile file) {
+    public ResponseEntity<?> importFile(@RequestParam MultipartFile file,
+                                        @RequestParam(required = false) WriteMode writeMode,
+                                        @RequestParam(required = false) InferenceMode inferenceMode,
+                                        @RequestParam(required = false) Integer writeParallelism,
+                                        @RequestParam(required = false) LoadMode loadMode,
+                                        @RequestParam(defaultValue = "false") boolean allSheets,
+                                        @RequestParam(required = false) List<String> sheets,
+                                        @RequestParam(defaultValue = "false") boolean force,
+                                        @RequestParam(required = false) String targetTable,
+                                        @RequestParam(required = false) List<String> key,
+                                        @RequestParam(required = false) Boolean async) {
         if (file == null || file.isEmpty()) {
             throw new BadRequestException("File is empty");
         }
+        if (writeParallelism != null && writeParallelism < 1) {
+            throw new BadRequestException("writeParallelism must be at least 1");
+        }
+        checkTarget(targetTable, key);
 
-        ImportResponseDto response = fileImportService.importFile(file);
+        ImportOptions options = ImportOptions.builder()
+                .writeMode(writeMode)
+                .inferenceMode(inferenceMode)
+                .writeParallelism(writeParallelism)
+                .loadMode(loadMode)
+                .allSheets(allSheets)
+                .sheets(sheets)
+                .forceReload(force)
+                .targetTable(targetTable)
+                .keyColumns(key)
+                .build();
+
+        // Фоновый режим: 202 и id задачи, статус – GET /api/import/{id}
+        if (async != null ? async : importProperties.isAsyncDefault()) {
+            ImportJobDto job = importJobService.submit(file, options);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/import/" + job.getId()))
+                    .body(job);
+        }
+
+        ImportResponseDto response = fileImportService.importFile(file, options);
         return ResponseEntity.ok(response);
     }
+
+    /**
+     * Файл – само тело запроса (text/csv или application/octet-stream с format=csv|xlsx|zip), без multipart:
+     * CSV разбирается и пишется в БД по мере прихода байтов, без копии на диске и без лимита multipart.
+     * Тело читается один раз, поэтому типы выводятся по первым sample-rows строкам (SAMPLE).
+     */
+    @PostMapping(
+            consumes = {"text/csv", MediaType.APPLICATION_OCTET_STREAM_VALUE},
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<ImportResponseDto> importStream(HttpServletRequest request,
+                                                          @RequestParam(required = false) String format,
+                                                          @RequestParam(required = false) String filename,
+                                                          @RequestParam(required = false) WriteMode writeMode,
+                                                          @RequestParam(required = false) LoadMode loadMode,
+                                                          @RequestParam(defaultValue = "false") boolean allSheets,
+                                                          @RequestParam(required = false) List<String> sheets,
+                                                          @RequestParam(defaultValue = "false") boolean force,
+                                                          @RequestParam(required = false) String targetTable,
+                                                          @RequestParam(required = false) List<String> key)
+            throws IOException {
+        checkTarget(targetTable, key);
+        String resolvedFormat = resolveFormat(format, filename, request.getContentType());
+        String name = filename != null && !filename.isBlank() ? filename : "upload";
+        if (!name.toLowerCase(Locale.ROOT).endsWith("." + resolvedFormat)) {
+            name = name + "." + resolvedFormat;
+        }
+
+        ImportOptions options = ImportOptions.builder()
+                .writeMode(writeMode)
+                .loadMode(loadMode)
+                .allSheets(allSheets)
+                .sheets(sheets)
+                .forceReload(force)
+                .targetTable(targetTable)
+                .keyColumns(key)
+                .build();
+
+        ImportSource body = ImportSource.of(request.getInputStream(), name, request.getContentLengthLong());
+        return ResponseEntity.ok(fileImportService.importFile(body, options, new ImportProgress()));
+    }
+
+    private void checkTarget(String targetTable, List<String> key) {
+        if (targetTable != null && targetTable.isBlank()) {
+            throw new BadRequestException("targetTable is empty");
+        }
+        if (key != null && !key.isEmpty() && targetTable == null) {
+            throw new BadRequestException("key requires targetTable");
+        }
+    }
+
+    private String resolveFormat(String format, String filename, String contentType) {
+        if (format != null && !format.isBlank()) {
+            return format.toLowerCase(Locale.ROOT);
+        }
+        if (contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith("text/csv")) {
+            return "csv";
+        }
+        int dotIdx = filename != null ? filename.lastIndexOf('.') : -1;
+        if (dotIdx != -1 && dotIdx < filename.length() - 1) {
+            return filename.substring(dotIdx + 1).toLowerCase(Locale.ROOT);
+        }
+        throw new BadRequestException("format (csv, xlsx or zip) is required for " + MediaType.APPLICATION_OCTET_STREAM_VALUE);
+    }
+
+    @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ImportJobDto> getJob(@PathVariable UUID id) {
+        return ResponseEntity.ok(importJobService.get(id));
+    }
+
+    // Повтор упавшей фоновой задачи: продолжает с чекпоинтов, без повторной загрузки файла
+    @PostMapping(value = "/{id}/retry", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ImportJobDto> retryJob(@PathVariable UUID id) {
+        ImportJobDto job = importJobService.retry(id);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/import/" + job.getId()))
+                .body(job);
+    }
 }
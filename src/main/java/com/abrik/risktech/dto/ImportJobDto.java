@@ -0,0 +1,43 @@
+package com.abrik.risktech.dto;
+
+import com.abrik.risktech.model.ImportJobState;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportJobDto {
+    private UUID id;
+
+    private ImportJobState state;
+
+    private String filename;
+
+    private int attempts; // 1 + число повторов через POST /api/import/{id}/retry
+
+    private Instant submittedAt;
+
+    private Instant startedAt;
+
+    private Instant finishedAt;
+
+    private long rowsParsed;
+
+    private long rowsInserted;
+
+    private long rowsPerSecond; // записанных строк в секунду с начала выполнения
+
+    private List<ImportResponseDto.StageInfo> pipeline; // загрузка стадий конвейера по ходу импорта
+
+    private String error;
+
+    private ImportResponseDto result; // только для COMPLETED
+}
@@ -1,5 +1,6 @@
 package com.abrik.risktech.dto;
 
+import com.abrik.risktech.model.WriteMode;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -18,6 +19,28 @@ public class ImportResponseDto {
 
     private int rowsInserted;
 
+    private int rowsMerged; // строк вставлено или обновлено в targetTable (0 – импорт в новую таблицу)
+
+    private long resumedFromRow; // строк, записанных прошлыми попытками задачи до чекпоинта (не входят в rowsInserted)
+
+    private WriteMode writeMode;
+
+    private long insertDurationMs;
+
+    private int writers; // соединений, писавших параллельно через staging-таблицу (0 – одно соединение)
+
+    private List<BatchInfo> batches;
+
+    private List<SheetInfo> sheets; // по листу на таблицу, если импортировалось несколько листов XLSX
+
+    private List<SheetInfo> entries; // по записи zip-архива на таблицу, sheetName – путь записи в архиве
+
+    private List<StageInfo> pipeline; // загрузка стадий конвейера, если импорт шёл через него
+
+    private String contentHash; // SHA-256 загруженного файла (null – дедупликация выключена)
+
+    private boolean duplicate; // файл уже импортировался: ответ прошлого импорта, ничего не разобрано и не записано
+
     @Data
     @Builder
     @NoArgsConstructor
@@ -26,4 +49,49 @@ public class ImportResponseDto {
         private String name;    // имя колонки в БД
         private String sqlType; // тип в БД
     }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class SheetInfo {
+        private String sheetName;
+        private String tableName;
+        private List<ColumnInfo> columns;
+        private int rowsInserted;
+        private int rowsMerged;
+        private long resumedFromRow;
+        private WriteMode writeMode;
+        private long insertDurationMs;
+        private int writers;
+        private List<BatchInfo> batches;
+        private List<StageInfo> pipeline;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BatchInfo {
+        private int index;       // номер batch
+        private int rows;        // строк в batch
+        private long durationMs; // время вставки batch в мс
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class StageInfo {
+        private String stage;         // parse / convert / write
+        private int workers;          // потоков на стадии
+        private long rows;            // обработано строк
+        private long busyMs;          // время работы (сумма по потокам)
+        private long waitMs;          // время ожидания очереди
+        private double utilisation;   // доля времени, когда стадия была занята, 0..1
+        private int queueDepth;       // блоков во входной очереди
+        private double avgQueueDepth;
+        private int maxQueueDepth;
+        private int queueCapacity;
+    }
 }
@@ -15,4 +15,9 @@ public class ColumnMeta {
     private Class<?> javaType;
 
     private String sqlType;
+
+    /**
+     * Статистика значений, если файл просмотрен целиком (null – типы из выборки или кэша схем)
+     */
+    private ColumnStats stats;
 }
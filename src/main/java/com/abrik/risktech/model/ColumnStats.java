@@ -0,0 +1,13 @@
+package com.abrik.risktech.model;
+
+/**
+ * Что известно о значениях колонки после прохода по всему файлу – по этому выбирается самый узкий SQL-тип.
+ * UNKNOWN – не известно: число с экспонентой, нативные ячейки XLSX в текстовой колонке.
+ *
+ * @param maxLength     самое длинное значение, символов
+ * @param integerDigits цифр в целой части самого большого по модулю числа (без ведущих нулей)
+ * @param scale         самая длинная дробная часть
+ */
+public record ColumnStats(int maxLength, int integerDigits, int scale) {
+    public static final int UNKNOWN = -1;
+}
@@ -0,0 +1,619 @@
+package com.abrik.risktech.model;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Типизированные строки таблицы по колонкам в примитивных массивах – для импорта целиком в памяти.
+ * Long – long[], BigDecimal – unscaled long + scale (не поместившиеся – отдельным BigDecimal),
+ * LocalDate – int дней от 1970-01-01, Boolean – биты, null – BitSet на колонку.
+ * String – int-коды в словарь колонки, пока различных значений немного, иначе массив строк.
+ * Остальные типы (LocalDateTime) хранятся как объекты.
+ *
+ * Значение не того типа (convertRow в таком случае возвращает String) переводит колонку
+ * в объектную, так что содержимое всегда совпадает с тем, что дал бы convertRow.
+ */
+public final class ColumnarRows {
+    private final Column[] columns;
+    private int capacity;
+    private int size;
+
+    public ColumnarRows(List<Class<?>> columnTypes, int capacity) {
+        this.capacity = Math.max(16, capacity);
+        this.columns = new Column[columnTypes.size()];
+        for (int col = 0; col < columns.length; col++) {
+            columns[col] = Column.of(columnTypes.get(col), this.capacity);
+        }
+    }
+
+    /**
+     * Новая строка в конце, все значения null
+     *
+     * @return её индекс
+     */
+    public int addRow() {
+        if (size == capacity) {
+            capacity = capacity + (capacity >> 1);
+            for (Column column : columns) {
+                column.grow(capacity);
+            }
+        }
+        // бит present у новой строки не выставлен – все значения null
+        return size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int columnCount() {
+        return columns.length;
+    }
+
+    public Column column(int col) {
+        return columns[col];
+    }
+
+    /**
+     * Типизированное значение (как из convertRow); не подходящее колонке переводит её в объектную
+     */
+    public void set(int row, int col, Object value) {
+        if (value == null) {
+            columns[col].setNull(row);
+            return;
+        }
+        if (!columns[col].accepts(value)) {
+            columns[col] = columns[col].toObjects(capacity, size);
+        }
+        columns[col].setValue(row, value);
+    }
+
+    public Object get(int row, int col) {
+        return columns[col].get(row);
+    }
+
+    /**
+     * Строка в виде списка значений – с упаковкой, для кода, работающего со строками
+     */
+    public List<Object> row(int row) {
+        List<Object> values = new ArrayList<>(columns.length);
+        for (Column column : columns) {
+            values.add(column.get(row));
+        }
+        return values;
+    }
+
+    /**
+     * Представление построчно, строки собираются при обращении
+     */
+    public List<List<Object>> asRows() {
+        return new AbstractList<>() {
+            @Override
+            public List<Object> get(int index) {
+                return row(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Склеивает части одной таблицы (например, куски параллельного разбора) по порядку
+     */
+    public static ColumnarRows concat(List<Class<?>> columnTypes, List<ColumnarRows> parts) {
+        int total = parts.stream().mapToInt(ColumnarRows::size).sum();
+        ColumnarRows result = new ColumnarRows(columnTypes, total);
+        for (ColumnarRows part : parts) {
+            int offset = result.size;
+            for (int i = 0; i < part.size; i++) {
+                result.addRow();
+            }
+            for (int col = 0; col < result.columns.length; col++) {
+                Column target = result.columns[col];
+                Column source = part.columns[col];
+                if (target.getClass() == source.getClass()) {
+                    target.copyFrom(source, part.size, offset);
+                } else {
+                    for (int row = 0; row < part.size; row++) {
+                        result.set(offset + row, col, source.get(row));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Одна колонка. Бит в present не выставлен – значение строки null, примитив в этой позиции не используется.
+     * Хранятся именно заполненные строки: значение только выставляет бит, а BitSet.clear для последнего
+     * слова пересчитывает длину набора с конца, и на колонке без null запись каждого значения стала бы O(n).
+     */
+    public abstract static sealed class Column permits LongColumn, DecimalColumn, DateColumn, BooleanColumn,
+            StringColumn, ObjectColumn {
+        protected final BitSet present = new BitSet();
+
+        static Column of(Class<?> type, int capacity) {
+            if (Long.class.equals(type)) {
+                return new LongColumn(capacity);
+            }
+            if (BigDecimal.class.equals(type)) {
+                return new DecimalColumn(capacity);
+            }
+            if (LocalDate.class.equals(type)) {
+                return new DateColumn(capacity);
+            }
+            if (Boolean.class.equals(type)) {
+                return new BooleanColumn();
+            }
+            if (String.class.equals(type)) {
+                return new StringColumn(capacity);
+            }
+            return new ObjectColumn(capacity);
+        }
+
+        public final boolean isNull(int row) {
+            return !present.get(row);
+        }
+
+        /**
+         * Значение с упаковкой, null для пустого
+         */
+        public final Object get(int row) {
+            return isNull(row) ? null : value(row);
+        }
+
+        public final void setNull(int row) {
+            if (present.get(row)) {
+                present.clear(row);
+            }
+        }
+
+        protected abstract Object value(int row);
+
+        protected abstract boolean accepts(Object value);
+
+        protected abstract void setValue(int row, Object value);
+
+        protected abstract void grow(int capacity);
+
+        protected abstract void copyFrom(Column source, int rows, int offset);
+
+        private ObjectColumn toObjects(int capacity, int rows) {
+            ObjectColumn objects = new ObjectColumn(capacity);
+            for (int row = 0; row < rows; row++) {
+                objects.values[row] = get(row);
+            }
+            objects.present.or(present);
+            return objects;
+        }
+
+        protected final void copyPresence(Column source, int rows, int offset) {
+            // строки назначения только что добавлены и пусты
+            for (int row = source.present.nextSetBit(0); row >= 0 && row < rows; row = source.present.nextSetBit(row + 1)) {
+                present.set(offset + row);
+            }
+        }
+    }
+
+    public static final class LongColumn extends Column {
+        private long[] values;
+
+        LongColumn(int capacity) {
+            values = new long[capacity];
+        }
+
+        public long getLong(int row) {
+            return values[row];
+        }
+
+        public void setLong(int row, long value) {
+            values[row] = value;
+            present.set(row);
+        }
+
+        @Override
+        protected Object value(int row) {
+            return values[row];
+        }
+
+        @Override
+        protected boolean accepts(Object value) {
+            return value instanceof Long;
+        }
+
+        @Override
+        protected void setValue(int row, Object value) {
+            setLong(row, (Long) value);
+        }
+
+        @Override
+        protected void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        protected void copyFrom(Column source, int rows, int offset) {
+            System.arraycopy(((LongColumn) source).values, 0, values, offset, rows);
+            copyPresence(source, rows, offset);
+        }
+    }
+
+    /**
+     * Число = unscaled * 10^-scale. Не поместившиеся в long / byte – в wide (создаётся при первом таком)
+     */
+    public static final class DecimalColumn extends Column {
+        private static final long[] POWERS_OF_TEN = {
+                1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L,
+                1_000_000_000L, 10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L,
+                100_000_000_000_000L, 1_000_000_000_000_000L, 10_000_000_000_000_000L,
+                100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+        };
+
+        private long[] unscaled;
+        private byte[] scales;
+        private BigDecimal[] wide;
+
+        DecimalColumn(int capacity) {
+            unscaled = new long[capacity];
+            scales = new byte[capacity];
+        }
+
+        /**
+         * @return BigDecimal, если значение не помещается в unscaled long, иначе null
+         */
+        public BigDecimal getWide(int row) {
+            return wide != null ? wide[row] : null;
+        }
+
+        public long getUnscaled(int row) {
+            return unscaled[row];
+        }
+
+        public int getScale(int row) {
+            return scales[row];
+        }
+
+        public void setDecimal(int row, long unscaledValue, int scale) {
+            if (scale < Byte.MIN_VALUE || scale > Byte.MAX_VALUE) {
+                setDecimal(row, BigDecimal.valueOf(unscaledValue, scale));
+                return;
+            }
+            unscaled[row] = unscaledValue;
+            scales[row] = (byte) scale;
+            if (wide != null) {
+                wide[row] = null;
+            }
+            present.set(row);
+        }
+
+        public void setDecimal(int row, BigDecimal value) {
+            BigInteger unscaledValue = value.unscaledValue();
+            int scale = value.scale();
+            if (unscaledValue.bitLength() < Long.SIZE && scale >= Byte.MIN_VALUE && scale <= Byte.MAX_VALUE) {
+                setDecimal(row, unscaledValue.longValue(), scale);
+                return;
+            }
+            if (wide == null) {
+                wide = new BigDecimal[unscaled.length];
+            }
+            wide[row] = value;
+            present.set(row);
+        }
+
+        public BigDecimal getDecimal(int row) {
+            BigDecimal big = getWide(row);
+            return big != null ? big : BigDecimal.valueOf(unscaled[row], scales[row]);
+        }
+
+        /**
+         * Текст как у BigDecimal.toPlainString, для обычных значений без создания BigDecimal
+         */
+        public void appendPlain(StringBuilder sb, int row) {
+            long value = unscaled[row];
+            int scale = scales[row];
+            if (getWide(row) != null || scale < 0 || scale >= POWERS_OF_TEN.length || value == Long.MIN_VALUE) {
+                sb.append(getDecimal(row).toPlainString());
+                return;
+            }
+            if (scale == 0) {
+                sb.append(value);
+                return;
+            }
+
+            if (value < 0) {
+                sb.append('-');
+                value = -value;
+            }
+            long fraction = value % POWERS_OF_TEN[scale];
+            sb.append(value / POWERS_OF_TEN[scale]).append('.');
+            for (int digits = digitCount(fraction); digits < scale; digits++) {
+                sb.append('0');
+            }
+            sb.append(fraction);
+        }
+
+        private static int digitCount(long value) {
+            int digits = 1;
+            while (digits < POWERS_OF_TEN.length && value >= POWERS_OF_TEN[digits]) {
+                digits++;
+            }
+            return digits;
+        }
+
+        @Override
+        protected Object value(int row) {
+            return getDecimal(row);
+        }
+
+        @Override
+        protected boolean accepts(Object value) {
+            return value instanceof BigDecimal;
+        }
+
+        @Override
+        protected void setValue(int row, Object value) {
+            setDecimal(row, (BigDecimal) value);
+        }
+
+        @Override
+        protected void grow(int capacity) {
+            unscaled = Arrays.copyOf(unscaled, capacity);
+            scales = Arrays.copyOf(scales, capacity);
+            if (wide != null) {
+                wide = Arrays.copyOf(wide, capacity);
+            }
+        }
+
+        @Override
+        protected void copyFrom(Column source, int rows, int offset) {
+            DecimalColumn decimals = (DecimalColumn) source;
+            System.arraycopy(decimals.unscaled, 0, unscaled, offset, rows);
+            System.arraycopy(decimals.scales, 0, scales, offset, rows);
+            if (decimals.wide != null) {
+                if (wide == null) {
+                    wide = new BigDecimal[unscaled.length];
+                }
+                System.arraycopy(decimals.wide, 0, wide, offset, rows);
+            }
+            copyPresence(source, rows, offset);
+        }
+    }
+
+    public static final class DateColumn extends Column {
+        private int[] epochDays;
+
+        DateColumn(int capacity) {
+            epochDays = new int[capacity];
+        }
+
+        public int getEpochDay(int row) {
+            return epochDays[row];
+        }
+
+        public void setEpochDay(int row, int epochDay) {
+            epochDays[row] = epochDay;
+            present.set(row);
+        }
+
+        @Override
+        protected Object value(int row) {
+            return LocalDate.ofEpochDay(epochDays[row]);
+        }
+
+        @Override
+        protected boolean accepts(Object value) {
+            return value instanceof LocalDate;
+        }
+
+        @Override
+        protected void setValue(int row, Object value) {
+            setEpochDay(row, (int) ((LocalDate) value).toEpochDay());
+        }
+
+        @Override
+        protected void grow(int capacity) {
+            epochDays = Arrays.copyOf(epochDays, capacity);
+        }
+
+        @Override
+        protected void copyFrom(Column source, int rows, int offset) {
+            System.arraycopy(((DateColumn) source).epochDays, 0, epochDays, offset, rows);
+            copyPresence(source, rows, offset);
+        }
+    }
+
+    public static final class BooleanColumn extends Column {
+        private final BitSet values = new BitSet();
+
+        public boolean getBoolean(int row) {
+            return values.get(row);
+        }
+
+        public void setBoolean(int row, boolean value) {
+            if (value) {
+                values.set(row);
+            } else if (values.get(row)) {
+                values.clear(row);
+            }
+            present.set(row);
+        }
+
+        @Override
+        protected Object value(int row) {
+            return values.get(row);
+        }
+
+        @Override
+        protected boolean accepts(Object value) {
+            return value instanceof Boolean;
+        }
+
+        @Override
+        protected void setValue(int row, Object value) {
+            setBoolean(row, (Boolean) value);
+        }
+
+        @Override
+        protected void grow(int capacity) {
+            // BitSet растёт сам
+        }
+
+        @Override
+        protected void copyFrom(Column source, int rows, int offset) {
+            BitSet sourceValues = ((BooleanColumn) source).values;
+            for (int row = sourceValues.nextSetBit(0); row >= 0 && row < rows; row = sourceValues.nextSetBit(row + 1)) {
+                values.set(offset + row);
+            }
+            copyPresence(source, rows, offset);
+        }
+    }
+
+    /**
+     * Текст со словарём: коды валют, стран, деск-ов и рейтингов повторяются миллионы раз, а хранятся
+     * по одному экземпляру. Словарь растёт вместе с прочитанными строками: до MIN_DICTIONARY_LIMIT значений
+     * всегда, дальше – пока новых значений не больше половины строк (в среднем каждое встречается хотя бы
+     * дважды, иначе словарь дороже массива строк). Если новое значение не помещается, колонка переходит
+     * на обычный массив строк и дальше словарь не ведёт.
+     */
+    public static final class StringColumn extends Column {
+        public static final int MIN_DICTIONARY_LIMIT = 4096;
+
+        private int[] codes;
+        private List<String> dictionary = new ArrayList<>();
+        private Map<String, Integer> codeByValue = new HashMap<>();
+        private String[] plain;
+        // строк, в которые что-то записывали: их переносит переход на массив строк
+        private int used;
+
+        StringColumn(int capacity) {
+            codes = new int[capacity];
+        }
+
+        public boolean isDictionaryEncoded() {
+            return plain == null;
+        }
+
+        public int dictionarySize() {
+            return dictionary != null ? dictionary.size() : 0;
+        }
+
+        public String getString(int row) {
+            return plain != null ? plain[row] : dictionary.get(codes[row]);
+        }
+
+        public void setString(int row, String value) {
+            if (plain == null) {
+                Integer code = codeByValue.get(value);
+                if (code == null && dictionary.size() < Math.max(MIN_DICTIONARY_LIMIT, used / 2)) {
+                    code = dictionary.size();
+                    dictionary.add(value);
+                    codeByValue.put(value, code);
+                }
+                if (code != null) {
+                    codes[row] = code;
+                } else {
+                    toPlain();
+                }
+            }
+            if (plain != null) {
+                plain[row] = value;
+            }
+            used = Math.max(used, row + 1);
+            present.set(row);
+        }
+
+        private void toPlain() {
+            plain = new String[codes.length];
+            for (int row = 0; row < used; row++) {
+                if (present.get(row)) {
+                    plain[row] = dictionary.get(codes[row]);
+                }
+            }
+            codes = null;
+            dictionary = null;
+            codeByValue = null;
+        }
+
+        @Override
+        protected Object value(int row) {
+            return getString(row);
+        }
+
+        @Override
+        protected boolean accepts(Object value) {
+            return value instanceof String;
+        }
+
+        @Override
+        protected void setValue(int row, Object value) {
+            setString(row, (String) value);
+        }
+
+        @Override
+        protected void grow(int capacity) {
+            if (plain != null) {
+                plain = Arrays.copyOf(plain, capacity);
+            } else {
+                codes = Arrays.copyOf(codes, capacity);
+            }
+        }
+
+        @Override
+        protected void copyFrom(Column source, int rows, int offset) {
+            // у частей свои словари – коды перекладываются через значения
+            StringColumn strings = (StringColumn) source;
+            for (int row = 0; row < rows; row++) {
+                if (!strings.isNull(row)) {
+                    setString(offset + row, strings.getString(row));
+                }
+            }
+            copyPresence(source, rows, offset);
+        }
+    }
+
+    public static final class ObjectColumn extends Column {
+        private Object[] values;
+
+        ObjectColumn(int capacity) {
+            values = new Object[capacity];
+        }
+
+        @Override
+        protected Object value(int row) {
+            return values[row];
+        }
+
+        @Override
+        protected boolean accepts(Object value) {
+            return true;
+        }
+
+        @Override
+        protected void setValue(int row, Object value) {
+            values[row] = value;
+            present.set(row);
+        }
+
+        @Override
+        protected void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        protected void copyFrom(Column source, int rows, int offset) {
+            System.arraycopy(((ObjectColumn) source).values, 0, values, offset, rows);
+            copyPresence(source, rows, offset);
+        }
+    }
+}
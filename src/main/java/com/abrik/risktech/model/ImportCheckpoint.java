@@ -0,0 +1,40 @@
+package com.abrik.risktech.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Докуда дошла запись одной таблицы фоновой задачи. Повтор задачи продолжает с rowsCommitted-й строки
+ * файла в ту же таблицу и с теми же колонками, без повторного вывода типов.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportCheckpoint {
+    private UUID jobId;
+
+    /**
+     * Что импортируется внутри задачи: файл целиком или лист книги
+     */
+    private String source;
+
+    private String tableName;
+
+    private List<ColumnMeta> columns;
+
+    /**
+     * Строк файла (без заголовка), закоммиченных в таблицу
+     */
+    private long rowsCommitted;
+
+    /**
+     * Таблица дописана до конца – при повторе её не трогаем
+     */
+    private boolean completed;
+}
@@ -0,0 +1,87 @@
+package com.abrik.risktech.model;
+
+import com.abrik.risktech.dto.ImportResponseDto;
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Фоновый импорт. Состояние меняет поток задачи, читают запросы статуса – поля volatile.
+ * Упавшую задачу можно повторить: копия файла хранится, пока задача не завершится или не забудется.
+ */
+@Getter
+public class ImportJob {
+    private final UUID id = UUID.randomUUID();
+    private final String filename;
+    private final Path spooledFile;
+    private final String contentHash; // SHA-256, посчитанный при сохранении копии
+    private final ImportOptions options;
+    private final Instant submittedAt = Instant.now();
+
+    private volatile ImportProgress progress = new ImportProgress();
+    private volatile int attempts = 1;
+    private volatile ImportJobState state = ImportJobState.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile ImportResponseDto result;
+    private volatile String error;
+    private boolean expired;
+
+    public ImportJob(String filename, Path spooledFile, String contentHash, ImportOptions options) {
+        this.filename = filename;
+        this.spooledFile = spooledFile;
+        this.contentHash = contentHash;
+        this.options = options;
+    }
+
+    public void start() {
+        startedAt = Instant.now();
+        state = ImportJobState.RUNNING;
+    }
+
+    public void complete(ImportResponseDto result) {
+        this.result = result;
+        finishedAt = Instant.now();
+        state = ImportJobState.COMPLETED;
+    }
+
+    public void fail(String error) {
+        this.error = error;
+        finishedAt = Instant.now();
+        state = ImportJobState.FAILED;
+    }
+
+    /**
+     * Новая попытка упавшей задачи: счётчики с нуля, задача снова в очереди
+     *
+     * @return false, если задача не в состоянии FAILED (уже повторяется, завершилась или забыта)
+     */
+    public synchronized boolean retry() {
+        if (state != ImportJobState.FAILED || expired) {
+            return false;
+        }
+        progress = new ImportProgress();
+        attempts++;
+        startedAt = null;
+        finishedAt = null;
+        error = null;
+        state = ImportJobState.QUEUED;
+        return true;
+    }
+
+    /**
+     * Задача завершилась раньше threshold – её забывают, повторить её уже нельзя
+     */
+    public synchronized boolean expire(Instant threshold) {
+        if (isFinished() && finishedAt.isBefore(threshold)) {
+            expired = true;
+        }
+        return expired;
+    }
+
+    public boolean isFinished() {
+        return state == ImportJobState.COMPLETED || state == ImportJobState.FAILED;
+    }
+}
@@ -0,0 +1,9 @@
+package com.abrik.risktech.model;
+
+public enum ImportJobState {
+    /** файл сохранён, ждёт свободного слота */
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,59 @@
+package com.abrik.risktech.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Параметры одного импорта из запроса. null в любом поле – значение из ImportProperties.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportOptions {
+    private WriteMode writeMode;
+
+    private InferenceMode inferenceMode;
+
+    /**
+     * Соединений для записи одной таблицы (с staging-таблицей, если больше 1)
+     */
+    private Integer writeParallelism;
+
+    private LoadMode loadMode;
+
+    /**
+     * Импортировать все листы XLSX, каждый в свою таблицу
+     */
+    private boolean allSheets;
+
+    /**
+     * Импортировать только эти листы XLSX (по имени), каждый в свою таблицу
+     */
+    private List<String> sheets;
+
+    /**
+     * Импортировать заново, даже если файл с тем же содержимым уже импортирован
+     */
+    private boolean forceReload;
+
+    /**
+     * Дописывать строки в эту существующую таблицу вместо создания новой (null – новая таблица на файл)
+     */
+    private String targetTable;
+
+    /**
+     * Ключ строки в targetTable: строки с тем же ключом обновляются (upsert). Пусто – строки только добавляются.
+     */
+    private List<String> keyColumns;
+
+    /**
+     * Фоновая задача, по которой сохраняются чекпоинты (null – синхронный импорт, без чекпоинтов)
+     */
+    private UUID jobId;
+}
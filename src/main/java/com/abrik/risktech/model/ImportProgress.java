@@ -0,0 +1,48 @@
+package com.abrik.risktech.model;
+
+import com.abrik.risktech.model.InsertResult.StageStats;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Счётчики одного импорта. Обновляются из потоков импорта (в том числе параллельных листов),
+ * читаются из API статуса задачи.
+ */
+public class ImportProgress {
+    private final LongAdder rowsParsed = new LongAdder();
+    private final LongAdder rowsInserted = new LongAdder();
+    private volatile Supplier<List<StageStats>> pipelineStages = List::of;
+
+    public void rowParsed() {
+        rowsParsed.increment();
+    }
+
+    public void rowsParsed(long rows) {
+        rowsParsed.add(rows);
+    }
+
+    public void rowsInserted(long rows) {
+        rowsInserted.add(rows);
+    }
+
+    public long getRowsParsed() {
+        return rowsParsed.sum();
+    }
+
+    public long getRowsInserted() {
+        return rowsInserted.sum();
+    }
+
+    /**
+     * Источник загрузки стадий конвейера; при нескольких листах – последний запущенный
+     */
+    public void setPipelineStages(Supplier<List<StageStats>> pipelineStages) {
+        this.pipelineStages = pipelineStages;
+    }
+
+    public List<StageStats> getPipelineStages() {
+        return pipelineStages.get();
+    }
+}
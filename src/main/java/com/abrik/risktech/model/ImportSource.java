@@ -0,0 +1,209 @@
+package com.abrik.risktech.model;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Загруженный файл для импорта: имя, размер и поток, который можно открыть повторно
+ * (потоковый FULL читает файл дважды). Тело запроса открывается только один раз – см. isRepeatable.
+ */
+public interface ImportSource {
+
+    String getFilename();
+
+    /**
+     * Размер в байтах; -1 – заранее неизвестен (тело без Content-Length, распаковка gzip)
+     */
+    long getSize();
+
+    InputStream openStream() throws IOException;
+
+    /**
+     * false – поток читается один раз, импорт должен уложиться в один проход
+     */
+    default boolean isRepeatable() {
+        return true;
+    }
+
+    /**
+     * SHA-256 содержимого, если он уже посчитан при сохранении загрузки на диск (null – не считался)
+     */
+    default String getContentHash() {
+        return null;
+    }
+
+    /**
+     * Файл на диске с этим содержимым (null – только поток). Парсеры, которым нужен файл целиком,
+     * читают его напрямую, а не копируют поток при каждом открытии. Файл принадлежит источнику.
+     */
+    default Path getPath() {
+        return null;
+    }
+
+    static ImportSource of(MultipartFile file) {
+        return new ImportSource() {
+            @Override
+            public String getFilename() {
+                return file.getOriginalFilename();
+            }
+
+            @Override
+            public long getSize() {
+                return file.getSize();
+            }
+
+            @Override
+            public InputStream openStream() throws IOException {
+                return file.getInputStream();
+            }
+        };
+    }
+
+    /**
+     * Тело запроса: байты разбираются по мере прихода, повторно поток не открыть
+     *
+     * @param size длина из Content-Length, -1 – неизвестна (chunked)
+     */
+    static ImportSource of(InputStream body, String filename, long size) {
+        AtomicBoolean opened = new AtomicBoolean();
+        return new ImportSource() {
+            @Override
+            public String getFilename() {
+                return filename;
+            }
+
+            @Override
+            public long getSize() {
+                return size;
+            }
+
+            @Override
+            public InputStream openStream() {
+                if (!opened.compareAndSet(false, true)) {
+                    throw new IllegalStateException("Request body of " + filename + " can be read only once");
+                }
+                return body;
+            }
+
+            @Override
+            public boolean isRepeatable() {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Файл, уже сохранённый на диск (например, для фонового импорта)
+     */
+    static ImportSource of(Path path, String filename) {
+        return of(path, filename, null);
+    }
+
+    /**
+     * @param contentHash SHA-256, посчитанный при сохранении файла
+     */
+    static ImportSource of(Path path, String filename, String contentHash) {
+        return new ImportSource() {
+            @Override
+            public String getFilename() {
+                return filename;
+            }
+
+            @Override
+            public long getSize() {
+                try {
+                    return Files.size(path);
+                } catch (IOException e) {
+                    // файл пропал или не читается – импорт всё равно упадёт, пусть с настоящей причиной
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public InputStream openStream() throws IOException {
+                return Files.newInputStream(path);
+            }
+
+            @Override
+            public String getContentHash() {
+                return contentHash;
+            }
+
+            @Override
+            public Path getPath() {
+                return path;
+            }
+        };
+    }
+
+    /**
+     * Запись zip-архива: каждое открытие распаковывает её на лету, записи читаются независимо
+     * и параллельно. Размер – сжатый, столько байт реально читается из архива.
+     */
+    static ImportSource of(ZipFile zip, ZipEntry entry) {
+        String name = entry.getName();
+        String filename = name.substring(name.lastIndexOf('/') + 1);
+        return new ImportSource() {
+            @Override
+            public String getFilename() {
+                return filename;
+            }
+
+            @Override
+            public long getSize() {
+                return entry.getCompressedSize();
+            }
+
+            @Override
+            public InputStream openStream() throws IOException {
+                return zip.getInputStream(entry);
+            }
+        };
+    }
+
+    /**
+     * gzip поверх источника: trades.csv.gz читается как trades.csv, распаковка идёт при чтении,
+     * распакованный файл нигде не сохраняется. Размер распакованных данных заранее неизвестен (-1).
+     */
+    static ImportSource gunzip(ImportSource compressed) {
+        String name = compressed.getFilename();
+        String filename = name.toLowerCase(Locale.ROOT).endsWith(".gz") ? name.substring(0, name.length() - 3) : name;
+        return new ImportSource() {
+            @Override
+            public String getFilename() {
+                return filename;
+            }
+
+            @Override
+            public long getSize() {
+                return -1;
+            }
+
+            @Override
+            public InputStream openStream() throws IOException {
+                InputStream in = compressed.openStream();
+                try {
+                    return new GZIPInputStream(in, 64 * 1024);
+                } catch (IOException | RuntimeException e) {
+                    in.close();
+                    throw e;
+                }
+            }
+
+            @Override
+            public boolean isRepeatable() {
+                return compressed.isRepeatable();
+            }
+        };
+    }
+}
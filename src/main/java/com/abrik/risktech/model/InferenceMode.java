@@ -0,0 +1,14 @@
+package com.abrik.risktech.model;
+
+/**
+ * Как выводятся типы колонок при потоковом импорте
+ */
+public enum InferenceMode {
+    /** отдельный проход по всему файлу до создания таблицы */
+    FULL,
+    /**
+     * типы по первым risktech.import.sample-rows строкам, запись начинается сразу;
+     * если дальше встречается значение, не подходящее под тип, колонка расширяется через ALTER TABLE
+     */
+    SAMPLE
+}
@@ -0,0 +1,54 @@
+package com.abrik.risktech.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InsertResult {
+    private WriteMode writeMode;
+
+    private int rowsInserted;
+
+    private long durationMs;
+
+    private List<BatchStats> batches;
+
+    private int writers; // соединений, писавших параллельно (0 или 1 – обычная запись)
+
+    private List<StageStats> stages; // только для конвейерного импорта (parse → convert → write)
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BatchStats {
+        private int index;        // порядковый номер batch, с 0
+        private int rows;         // строк в batch
+        private long durationMs;  // время выполнения batch в мс
+        private long durationNanos; // то же в нс – для метрик: пачка COPY бывает короче миллисекунды
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class StageStats {
+        private String stage;          // parse / convert / write
+        private int workers;           // потоков на стадии
+        private long rows;             // обработано строк
+        private long busyMs;           // время работы (сумма по потокам)
+        private long waitMs;           // время ожидания очереди: свободного места или следующего блока
+        private double utilisation;    // busyMs / (время конвейера * workers)
+        private int queueDepth;        // блоков во входной очереди стадии сейчас
+        private double avgQueueDepth;  // средняя глубина входной очереди
+        private int maxQueueDepth;
+        private int queueCapacity;
+    }
+}
@@ -0,0 +1,11 @@
+package com.abrik.risktech.model;
+
+/**
+ * Куда загружаются строки
+ */
+public enum LoadMode {
+    /** сразу в целевую таблицу: она видна с момента CREATE TABLE, при ошибке остаётся заполненной частично */
+    DIRECT,
+    /** в UNLOGGED staging-таблицу, которая после загрузки становится LOGGED и переименовывается в целевую */
+    STAGED
+}
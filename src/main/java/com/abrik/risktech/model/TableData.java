@@ -16,4 +16,36 @@ public class TableData {
     private List<ColumnMeta> columns;
 
     private List<List<Object>> rows;
-}
\ No newline at end of file
+
+    /**
+     * Строки по колонкам в примитивных массивах (импорт целиком в памяти) – вместо rows
+     */
+    private ColumnarRows columnar;
+
+    /**
+     * Таблица – UNLOGGED staging, в целевую её публикует вызывающий код после полной загрузки
+     */
+    private boolean staging;
+
+    /**
+     * Таблицу создал этот импорт (createTable), а не нашёл уже существующей: только такую можно подменить целиком
+     */
+    private boolean created;
+
+    /**
+     * Строки; если данные хранятся по колонкам – представление columnar, значения упаковываются при обращении
+     */
+    public List<List<Object>> getRows() {
+        if (rows == null && columnar != null) {
+            return columnar.asRows();
+        }
+        return rows;
+    }
+
+    public int getRowCount() {
+        if (columnar != null) {
+            return columnar.size();
+        }
+        return rows != null ? rows.size() : 0;
+    }
+}
@@ -0,0 +1,13 @@
+package com.abrik.risktech.model;
+
+/**
+ * Способ записи строк в БД
+ */
+public enum WriteMode {
+    /** COPY, если строк больше порога risktech.import.copy-threshold-rows, иначе INSERT */
+    AUTO,
+    /** INSERT через JDBC batch */
+    INSERT,
+    /** COPY ... FROM STDIN через CopyManager */
+    COPY
+}
@@ -0,0 +1,138 @@
+package com.abrik.risktech.parser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Разбиение CSV-файла на куски по границам записей.
+ *
+ * Файл сначала режется на диапазоны равного размера. Каждый диапазон сканируется параллельно
+ * и независимо: считается чётность числа кавычек и запоминаются первые переводы строки при
+ * чётном и нечётном числе кавычек от начала диапазона. Затем последовательный проход по
+ * диапазонам (O(число диапазонов)) узнаёт, в кавычках ли начинается каждый диапазон,
+ * и выбирает тот перевод строки, который действительно закрывает запись.
+ * Перевод строки внутри "..." границей не считается.
+ *
+ * Предполагается RFC 4180: кавычка встречается только вокруг поля или удвоенной внутри него.
+ */
+final class CsvChunker {
+    private static final byte QUOTE = '"';
+    private static final byte LF = '\n';
+    private static final int WINDOW_BYTES = 1024 * 1024;
+
+    private CsvChunker() {
+    }
+
+    /**
+     * Кусок файла [start, end), начинается с начала записи и заканчивается после её перевода строки
+     */
+    record Chunk(int index, long start, long end) {
+        long length() {
+            return end - start;
+        }
+    }
+
+    /**
+     * Результат сканирования одного диапазона. Позиции абсолютные, -1 – нет такого перевода строки.
+     */
+    private record RangeScan(long firstNewlineEven, long firstNewlineOdd, boolean oddQuotes) {
+    }
+
+    /**
+     * Конец первой записи (заголовка) – позиция после её перевода строки или конец файла
+     */
+    static long recordEnd(FileChannel channel, long from, long size) throws IOException {
+        boolean quoted = false;
+        long pos = from;
+        while (pos < size) {
+            int len = (int) Math.min(WINDOW_BYTES, size - pos);
+            ByteBuffer buf = map(channel, pos, len);
+            for (int i = 0; i < len; i++) {
+                byte b = buf.get(i);
+                if (b == QUOTE) {
+                    quoted = !quoted;
+                } else if (b == LF && !quoted) {
+                    return pos + i + 1;
+                }
+            }
+            pos += len;
+        }
+        return size;
+    }
+
+    static List<Chunk> split(FileChannel channel, long start, long end, int chunkBytes, ForkJoinPool pool) {
+        int chunkSize = Math.max(1, chunkBytes);
+        int rangeCount = (int) Math.max(1, (end - start + chunkSize - 1) / chunkSize);
+
+        List<ForkJoinTask<RangeScan>> scans = new ArrayList<>(rangeCount);
+        for (int r = 0; r < rangeCount; r++) {
+            long rangeStart = start + (long) r * chunkSize;
+            long rangeEnd = Math.min(end, rangeStart + chunkSize);
+            scans.add(pool.submit(() -> scan(channel, rangeStart, rangeEnd)));
+        }
+
+        List<Chunk> chunks = new ArrayList<>(rangeCount);
+        long chunkStart = start;
+        boolean quoted = false;
+        for (int r = 0; r < rangeCount; r++) {
+            RangeScan scan = scans.get(r).join();
+            if (r > 0) {
+                long newline = quoted ? scan.firstNewlineOdd() : scan.firstNewlineEven();
+                if (newline >= 0) {
+                    chunks.add(new Chunk(chunks.size(), chunkStart, newline + 1));
+                    chunkStart = newline + 1;
+                }
+                // иначе весь диапазон внутри одной записи – он достаётся предыдущему куску
+            }
+            quoted ^= scan.oddQuotes();
+        }
+        if (chunkStart < end) {
+            chunks.add(new Chunk(chunks.size(), chunkStart, end));
+        }
+        return chunks;
+    }
+
+    private static RangeScan scan(FileChannel channel, long start, long end) {
+        int length = (int) (end - start);
+        ByteBuffer buf;
+        try {
+            buf = map(channel, start, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        boolean odd = false;
+        long even = -1;
+        long oddNewline = -1;
+        for (int i = 0; i < length; i++) {
+            byte b = buf.get(i);
+            if (b == QUOTE) {
+                odd = !odd;
+            } else if (b == LF) {
+                if (!odd && even < 0) {
+                    even = start + i;
+                } else if (odd && oddNewline < 0) {
+                    oddNewline = start + i;
+                }
+            }
+        }
+        return new RangeScan(even, oddNewline, odd);
+    }
+
+    /**
+     * Отображение диапазона файла в память: страницы читаются ядром по мере обращения,
+     * без копирования в кучу. Безопасно из нескольких потоков на одном канале.
+     */
+    static ByteBuffer map(FileChannel channel, long position, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("CSV record is too large: " + length + " bytes");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+    }
+}
@@ -2,7 +2,9 @@ package com.abrik.risktech.parser;
 
 import com.abrik.risktech.exception.BadRequestException;
 import com.abrik.risktech.model.ColumnMeta;
+import com.abrik.risktech.model.ColumnarRows;
 import com.abrik.risktech.model.TableData;
+import com.abrik.risktech.util.ColumnTypeInferrer;
 import com.abrik.risktech.util.FileParserUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -17,79 +19,106 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 @Component("csvFileParser")
 @RequiredArgsConstructor
 @Slf4j
 public class CsvFileParser implements FileParser {
+    private static final CSVFormat FORMAT = CSVFormat.DEFAULT.builder()
+            .setHeader()
+            .setSkipHeaderRecord(true)
+            .setIgnoreEmptyLines(true)
+            .setTrim(true)
+            .build();
+
     private final FileParserUtil fileParserUtil;
 
     @Override
     public TableData parseFile(InputStream inputStream) throws IOException {
-        if (inputStream == null) {
-            throw new BadRequestException("Input stream is null");
-        }
-
-        CSVFormat format = CSVFormat.DEFAULT.builder()
-                .setHeader()
-                .setSkipHeaderRecord(true)
-                .setIgnoreEmptyLines(true)
-                .setTrim(true)
-                .build();
+        try (RowCursor cursor = openCursor(inputStream)) {
+            List<String> headers = cursor.getHeaders();
 
-        try (Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
-            CSVParser parser = new CSVParser(reader, format);
-
-            List<String> headers = parser.getHeaderNames();
-            if (headers == null || headers.isEmpty()) {
-                throw new BadRequestException("CSV file does not contain header row");
-            }
-
-            List<List<String>> rawRows = new ArrayList<>();
-            for (CSVRecord record : parser) {
-                List<String> row = new ArrayList<>();
-                for (String header : headers) {
-                    String value = record.isMapped(header) ? record.get(header) : null;
-                    row.add(value);
-                }
-                rawRows.add(row);
-            }
+            // Строки сразу в колонки со словарём, вывод типов Java для каждого столбца – на том же проходе
+            ColumnTypeInferrer inferrer = fileParserUtil.newTypeInferrer(headers.size());
+            ColumnarRows rawColumns = fileParserUtil.readColumns(cursor, inferrer, headers.size());
 
-            if (rawRows.isEmpty()) {
+            if (rawColumns.size() == 0) {
                 throw new BadRequestException("CSV file does not contain any data rows");
             }
 
-            log.info("Parsed CSV file: {} columns, {} rows", headers.size(), rawRows.size());
+            log.info("Parsed CSV file: {} columns, {} rows", headers.size(), rawColumns.size());
 
-            // Вывод типов Java для каждого столбца
-            List<Class<?>> columnTypes = fileParserUtil.inferColumnTypes(rawRows, headers.size());
+            List<Class<?>> columnTypes = inferrer.getColumnTypes();
 
             // Строю список ColumnMeta
-            List<ColumnMeta> columnMetas = new ArrayList<>();
+            List<ColumnMeta> columnMetas = fileParserUtil.buildColumns(headers, inferrer);
 
-            for (int i = 0; i < headers.size(); i++) {
-                String columnName = headers.get(i);
-                Class<?> javaType = columnTypes.get(i);
-
-                ColumnMeta meta = ColumnMeta.builder()
-                        .name(columnName)
-                        .javaType(javaType)
-                        .sqlType(null) // будет заполнен в TableSchemaService
-                        .build();
-
-                columnMetas.add(meta);
-            }
-
-            // Преобразую необработанные строковые строки в типизированные
-            List<List<Object>> typedRows = fileParserUtil.convertRows(rawRows, columnTypes);
+            // Преобразую необработанные строковые колонки в типизированные
+            ColumnarRows typedRows = fileParserUtil.convertColumns(rawColumns, columnTypes);
 
             return TableData.builder()
                     .tableName(null) // будет задан в FileImportService
                     .columns(columnMetas)
-                    .rows(typedRows)
+                    .columnar(typedRows)
                     .build();
+        }
+    }
+
+    @Override
+    public RowCursor openCursor(InputStream inputStream) throws IOException {
+        if (inputStream == null) {
+            throw new BadRequestException("Input stream is null");
+        }
+
+        Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
+        CSVParser parser = new CSVParser(reader, FORMAT);
+
+        List<String> headers = parser.getHeaderNames();
+        if (headers == null || headers.isEmpty()) {
+            parser.close();
+            throw new BadRequestException("CSV file does not contain header row");
+        }
+
+        return new CsvRowCursor(parser, headers);
+    }
+
+    private static class CsvRowCursor implements RowCursor {
+        private final CSVParser parser;
+        private final List<String> headers;
+        private final Iterator<CSVRecord> records;
+
+        CsvRowCursor(CSVParser parser, List<String> headers) {
+            this.parser = parser;
+            this.headers = headers;
+            this.records = parser.iterator();
+        }
+
+        @Override
+        public List<String> getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return records.hasNext();
+        }
+
+        @Override
+        public List<Object> next() {
+            CSVRecord record = records.next();
+            List<Object> row = new ArrayList<>(headers.size());
+            for (String header : headers) {
+                String value = record.isMapped(header) ? record.get(header) : null;
+                row.add(value);
+            }
+            return row;
+        }
 
+        @Override
+        public void close() throws IOException {
+            parser.close();
         }
     }
 }
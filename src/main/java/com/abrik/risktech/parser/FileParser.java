@@ -4,7 +4,33 @@ import com.abrik.risktech.model.TableData;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 public interface FileParser {
+    /**
+     * Читает файл целиком: все строки, выведенные типы, типизированные значения
+     */
     TableData parseFile(InputStream inputStream) throws IOException;
+
+    /**
+     * Открывает файл для построчного чтения. Курсор нужно закрыть – он владеет потоком.
+     */
+    RowCursor openCursor(InputStream inputStream) throws IOException;
+
+    /**
+     * Файл уже лежит на диске и принадлежит вызывающему коду (парсер его не удаляет).
+     * По умолчанию читается потоком; парсеры, которым нужен файл целиком, читают его напрямую,
+     * без своей копии на каждый проход.
+     */
+    default TableData parseFile(Path file) throws IOException {
+        return parseFile(Files.newInputStream(file));
+    }
+
+    /**
+     * То же для построчного чтения, см. {@link #parseFile(Path)}
+     */
+    default RowCursor openCursor(Path file) throws IOException {
+        return openCursor(Files.newInputStream(file));
+    }
 }
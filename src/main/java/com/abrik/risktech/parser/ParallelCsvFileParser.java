@@ -0,0 +1,496 @@
+package com.abrik.risktech.parser;
+
+import com.abrik.risktech.config.ImportProperties;
+import com.abrik.risktech.exception.BadRequestException;
+import com.abrik.risktech.model.ColumnMeta;
+import com.abrik.risktech.model.ColumnarRows;
+import com.abrik.risktech.model.TableData;
+import com.abrik.risktech.parser.CsvChunker.Chunk;
+import com.abrik.risktech.util.ColumnTypeInferrer;
+import com.abrik.risktech.util.FileParserUtil;
+import com.abrik.risktech.util.ValueScanner;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+
+/**
+ * CSV для больших файлов: файл на диске (если загрузка пришла потоком – её копия) делится на куски по границам записей
+ * ({@link CsvChunker}), куски отображаются в память (FileChannel.map) и разбираются прямо по байтам
+ * UTF-8 ({@link Utf8CsvTokenizer}) на csvParserPool. Вывод типов и конвертация в известные типы
+ * идут по срезам буфера – String создаётся только для текстовых колонок.
+ * Результат тот же, что у {@link CsvFileParser}; порядок строк сохраняется, если не выключен
+ * risktech.import.csv-parallel-ordered.
+ */
+@Component("parallelCsvFileParser")
+@Slf4j
+public class ParallelCsvFileParser implements FileParser {
+    private final FileParserUtil fileParserUtil;
+    private final ImportProperties importProperties;
+    private final ForkJoinPool csvParserPool;
+
+    public ParallelCsvFileParser(FileParserUtil fileParserUtil, ImportProperties importProperties,
+                                 @Qualifier("csvParserPool") ForkJoinPool csvParserPool) {
+        this.fileParserUtil = fileParserUtil;
+        this.importProperties = importProperties;
+        this.csvParserPool = csvParserPool;
+    }
+
+    @Override
+    public TableData parseFile(InputStream inputStream) throws IOException {
+        return parse(openChunked(inputStream));
+    }
+
+    @Override
+    public TableData parseFile(Path file) throws IOException {
+        return parse(openChunked(file, false));
+    }
+
+    @Override
+    public RowCursor openCursor(InputStream inputStream) throws IOException {
+        return cursor(openChunked(inputStream));
+    }
+
+    /**
+     * Файл отображается в память как есть – без временной копии
+     */
+    @Override
+    public RowCursor openCursor(Path file) throws IOException {
+        return cursor(openChunked(file, false));
+    }
+
+    private TableData parse(ChunkedFile chunkedFile) throws IOException {
+        try (ChunkedFile file = chunkedFile) {
+            List<String> headers = file.headers();
+            int columnCount = headers.size();
+
+            // Разбор и вывод типов по кускам параллельно, затем слияние масок типов
+            List<ForkJoinTask<ParsedChunk>> parsing = new ArrayList<>(file.chunks().size());
+            for (Chunk chunk : file.chunks()) {
+                parsing.add(csvParserPool.submit(() -> {
+                    ColumnTypeInferrer inferrer = fileParserUtil.newTypeInferrer(columnCount);
+                    ColumnarRows raw = readRawChunk(file.channel(), chunk, columnCount, inferrer);
+                    return new ParsedChunk(raw, inferrer);
+                }));
+            }
+
+            ColumnTypeInferrer inferrer = fileParserUtil.newTypeInferrer(columnCount);
+            List<ParsedChunk> parsed = new ArrayList<>(parsing.size());
+            for (ForkJoinTask<ParsedChunk> task : parsing) {
+                ParsedChunk chunk = task.join();
+                inferrer.merge(chunk.inferrer());
+                parsed.add(chunk);
+            }
+
+            if (inferrer.getRowCount() == 0) {
+                throw new BadRequestException("CSV file does not contain any data rows");
+            }
+
+            log.info("Parsed CSV file in {} chunks: {} columns, {} rows", parsed.size(), columnCount, inferrer.getRowCount());
+
+            List<Class<?>> columnTypes = inferrer.getColumnTypes();
+            List<ColumnMeta> columnMetas = fileParserUtil.buildColumns(headers, inferrer);
+
+            // Конвертация тоже по кускам – каждый в свои колонки, потом они склеиваются по порядку
+            List<ForkJoinTask<ColumnarRows>> converting = new ArrayList<>(parsed.size());
+            for (ParsedChunk chunk : parsed) {
+                converting.add(csvParserPool.submit(() -> fileParserUtil.convertColumns(chunk.raw(), columnTypes)));
+            }
+            List<ColumnarRows> parts = new ArrayList<>(converting.size());
+            for (int i = 0; i < converting.size(); i++) {
+                parts.add(converting.get(i).join());
+                parsed.set(i, null); // сырые колонки куска больше не нужны
+            }
+
+            return TableData.builder()
+                    .tableName(null) // будет задан в FileImportService
+                    .columns(columnMetas)
+                    .columnar(ColumnarRows.concat(columnTypes, parts))
+                    .build();
+        }
+    }
+
+    private RowCursor cursor(ChunkedFile file) {
+        int window = Math.max(2, csvParserPool.getParallelism() * 2);
+        return new ChunkCursor(file, window, importProperties.isCsvParallelOrdered());
+    }
+
+    /**
+     * Поток сохраняется во временный файл, который удаляется вместе с курсором
+     */
+    private ChunkedFile openChunked(InputStream inputStream) throws IOException {
+        if (inputStream == null) {
+            throw new BadRequestException("Input stream is null");
+        }
+
+        Path spooled = Files.createTempFile("risktech-", ".csv");
+        try (inputStream) {
+            Files.copy(inputStream, spooled, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spooled);
+            throw e;
+        }
+        return openChunked(spooled, true);
+    }
+
+    /**
+     * Читает заголовок и режет остаток файла на куски
+     *
+     * @param owned файл временный: удаляется при закрытии (и при ошибке здесь)
+     */
+    private ChunkedFile openChunked(Path path, boolean owned) throws IOException {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            long size = channel.size();
+
+            // пустые строки перед заголовком пропускаются, как в CsvFileParser
+            long headerEnd = 0;
+            List<String> headers;
+            do {
+                long headerStart = headerEnd;
+                headerEnd = CsvChunker.recordEnd(channel, headerStart, size);
+                headers = readHeaders(channel, headerStart, headerEnd);
+            } while (headers.isEmpty() && headerEnd < size);
+
+            if (headers.isEmpty()) {
+                throw new BadRequestException("CSV file does not contain header row");
+            }
+            if (headers.stream().anyMatch(String::isEmpty)) {
+                throw new BadRequestException("CSV header contains an empty column name");
+            }
+
+            List<Chunk> chunks = CsvChunker.split(channel, headerEnd, size,
+                    importProperties.getCsvChunkBytes(), csvParserPool);
+            log.info("Split CSV file of {} bytes into {} chunks", size, chunks.size());
+
+            return new ChunkedFile(path, owned, channel, headers, chunks);
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            if (owned) {
+                Files.deleteIfExists(path);
+            }
+            throw e;
+        }
+    }
+
+    private List<String> readHeaders(FileChannel channel, long start, long end) throws IOException {
+        Utf8CsvTokenizer tokenizer = new Utf8CsvTokenizer(CsvChunker.map(channel, start, end - start));
+
+        List<String> headers = new ArrayList<>();
+        if (tokenizer.nextRecord()) {
+            for (int i = 0; i < tokenizer.fieldCount(); i++) {
+                headers.add(tokenizer.text(i));
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * Разбор одного куска: значения по позиции, лишние отбрасываются, недостающие – null.
+     * Если типы колонок известны, поля разбираются в них прямо из байтов, String создаётся
+     * только для текстовых колонок.
+     */
+    private List<List<Object>> readChunk(FileChannel channel, Chunk chunk, int columnCount,
+                                         List<Class<?>> columnTypes) {
+        Utf8CsvTokenizer tokenizer = tokenizer(channel, chunk);
+        List<List<Object>> rows = new ArrayList<>();
+
+        while (tokenizer.nextRecord()) {
+            int fields = Math.min(columnCount, tokenizer.fieldCount());
+            List<Object> row = new ArrayList<>(columnCount);
+            for (int col = 0; col < fields; col++) {
+                row.add(columnTypes == null ? tokenizer.text(col) : convertField(tokenizer, col, columnTypes.get(col)));
+            }
+            for (int col = fields; col < columnCount; col++) {
+                row.add(null);
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Сырые значения куска сразу в колонки со словарём (см. FileParserUtil.readColumns),
+     * без списка строк на весь кусок
+     */
+    private ColumnarRows readRawChunk(FileChannel channel, Chunk chunk, int columnCount, ColumnTypeInferrer inferrer) {
+        Utf8CsvTokenizer tokenizer = tokenizer(channel, chunk);
+        ColumnarRows raw = fileParserUtil.newRawColumns(columnCount);
+        List<Object> row = new ArrayList<>(columnCount);
+
+        while (tokenizer.nextRecord()) {
+            row.clear();
+            int fields = Math.min(columnCount, tokenizer.fieldCount());
+            for (int col = 0; col < fields; col++) {
+                row.add(tokenizer.text(col));
+            }
+            for (int col = fields; col < columnCount; col++) {
+                row.add(null);
+            }
+            inferrer.accept(row);
+            fileParserUtil.appendRaw(raw, row);
+        }
+        return raw;
+    }
+
+    private Object convertField(Utf8CsvTokenizer tokenizer, int col, Class<?> type) {
+        if (tokenizer.isEmpty(col)) {
+            return null;
+        }
+        if (type != String.class) {
+            CharSequence ascii = tokenizer.ascii(col);
+            if (ascii != null) {
+                return fileParserUtil.convertText(ascii, type);
+            }
+        }
+        return fileParserUtil.convertText(tokenizer.text(col), type);
+    }
+
+    /**
+     * Вывод типов по куску без создания строк: значения классифицируются прямо в буфере
+     */
+    private ColumnTypeInferrer inferChunk(FileChannel channel, Chunk chunk, int columnCount) {
+        Utf8CsvTokenizer tokenizer = tokenizer(channel, chunk);
+        ColumnTypeInferrer inferrer = fileParserUtil.newTypeInferrer(columnCount);
+
+        while (tokenizer.nextRecord()) {
+            int fields = Math.min(columnCount, tokenizer.fieldCount());
+            for (int col = 0; col < fields; col++) {
+                if (tokenizer.isEmpty(col)) {
+                    continue;
+                }
+                inferrer.acceptText(col, tokenizer.charLength(col));
+                if (!inferrer.needsClassification(col)) {
+                    continue;
+                }
+                CharSequence ascii = tokenizer.ascii(col);
+                if (ascii != null) {
+                    inferrer.acceptClassified(col, ascii, ValueScanner.classify(ascii));
+                } else {
+                    // не-ASCII значение не может быть ни числом, ни датой, ни булевым
+                    String text = tokenizer.text(col);
+                    inferrer.acceptClassified(col, text, kindsOfText(text));
+                }
+            }
+            inferrer.endRow();
+        }
+        return inferrer;
+    }
+
+    private static long countRecords(FileChannel channel, Chunk chunk) {
+        Utf8CsvTokenizer tokenizer = tokenizer(channel, chunk);
+        long records = 0;
+        while (tokenizer.nextRecord()) {
+            records++;
+        }
+        return records;
+    }
+
+    /**
+     * Поле с "" внутри кавычек или не-ASCII: классифицируется как строка (в отличие от ascii,
+     * экранированные кавычки в числе/дате не встречаются, так что это почти всегда 0)
+     */
+    private static int kindsOfText(String text) {
+        return text.isEmpty() ? 0 : ValueScanner.classify(text);
+    }
+
+    private static Utf8CsvTokenizer tokenizer(FileChannel channel, Chunk chunk) {
+        try {
+            return new Utf8CsvTokenizer(CsvChunker.map(channel, chunk.start(), chunk.length()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record ParsedChunk(ColumnarRows raw, ColumnTypeInferrer inferrer) {
+    }
+
+    /**
+     * @param owned файл – временная копия парсера, удаляется в close()
+     */
+    private record ChunkedFile(Path path, boolean owned, FileChannel channel, List<String> headers,
+                               List<Chunk> chunks) implements AutoCloseable {
+        @Override
+        public void close() throws IOException {
+            try {
+                channel.close();
+            } finally {
+                if (owned) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Куски разбираются впереди чтения, но не больше window одновременно – память ограничена
+     * window * csv-chunk-bytes. В упорядоченном режиме куски отдаются по номеру,
+     * иначе – по мере готовности.
+     */
+    private class ChunkCursor implements RowCursor {
+        private final ChunkedFile file;
+        private final int window;
+
+        private final Deque<Future<List<List<Object>>>> pending = new ArrayDeque<>();
+        private boolean ordered;
+        private CompletionService<List<List<Object>>> completion; // создаётся при первом куске, если !ordered
+
+        private List<Class<?>> columnTypes;
+        private int nextChunk;
+        private Iterator<List<Object>> current = Collections.emptyIterator();
+
+        ChunkCursor(ChunkedFile file, int window, boolean ordered) {
+            this.file = file;
+            this.window = window;
+            this.ordered = ordered;
+        }
+
+        @Override
+        public List<String> getHeaders() {
+            return file.headers();
+        }
+
+        @Override
+        public void convertTo(List<Class<?>> columnTypes) {
+            this.columnTypes = List.copyOf(columnTypes);
+        }
+
+        /**
+         * csv-parallel-ordered=false отдаёт куски по готовности – для чекпоинта и merge по ключу нужен порядок файла
+         */
+        @Override
+        public void keepFileOrder() {
+            if (completion != null) {
+                throw new IllegalStateException("Cursor order can be changed only before reading rows");
+            }
+            ordered = true;
+        }
+
+        /**
+         * Все оставшиеся куски классифицируются параллельно прямо в отображённом файле,
+         * результаты сливаются в inferrer
+         */
+        @Override
+        public void inferTypes(ColumnTypeInferrer inferrer) {
+            int columnCount = file.headers().size();
+            List<ForkJoinTask<ColumnTypeInferrer>> tasks = new ArrayList<>();
+            while (nextChunk < file.chunks().size()) {
+                Chunk chunk = file.chunks().get(nextChunk++);
+                tasks.add(csvParserPool.submit(() -> inferChunk(file.channel(), chunk, columnCount)));
+            }
+            tasks.forEach(task -> inferrer.merge(task.join()));
+
+            // уже разобранные в строки куски (если курсор успели начать читать)
+            forEachRemaining(inferrer::accept);
+        }
+
+        /**
+         * Целые куски до чекпоинта только пересчитываются по записям, без полей и конвертации;
+         * разбирается лишь кусок, на который приходится чекпоинт
+         */
+        @Override
+        public long skip(long rows) {
+            long skipped = 0;
+            while (pending.isEmpty() && nextChunk < file.chunks().size()) {
+                long records = countRecords(file.channel(), file.chunks().get(nextChunk));
+                if (skipped + records > rows) {
+                    break;
+                }
+                skipped += records;
+                nextChunk++;
+            }
+            while (skipped < rows && hasNext()) {
+                next();
+                skipped++;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                submitUpToWindow();
+                if (pending.isEmpty()) {
+                    return false;
+                }
+                current = nextCompleted().iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public List<Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        @Override
+        public void close() throws IOException {
+            pending.forEach(future -> future.cancel(true));
+            pending.clear();
+            file.close();
+        }
+
+        private void submitUpToWindow() {
+            List<Class<?>> types = columnTypes;
+            int columnCount = file.headers().size();
+            if (!ordered && completion == null) {
+                completion = new ExecutorCompletionService<>(csvParserPool);
+            }
+
+            while (pending.size() < window && nextChunk < file.chunks().size()) {
+                Chunk chunk = file.chunks().get(nextChunk++);
+                Callable<List<List<Object>>> task = () -> {
+                    return readChunk(file.channel(), chunk, columnCount, types);
+                };
+                pending.addLast(ordered ? csvParserPool.submit(task) : completion.submit(task));
+            }
+        }
+
+        private List<List<Object>> nextCompleted() {
+            try {
+                if (ordered) {
+                    return pending.pollFirst().get();
+                }
+                Future<List<List<Object>>> done = completion.take();
+                pending.remove(done);
+                return done.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("CSV parsing was interrupted", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                throw new IllegalStateException("CSV chunk parsing failed", e.getCause());
+            }
+        }
+    }
+}
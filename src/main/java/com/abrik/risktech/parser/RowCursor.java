@@ -0,0 +1,57 @@
+package com.abrik.risktech.parser;
+
+import com.abrik.risktech.util.ColumnTypeInferrer;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Потоковое чтение файла: заголовки доступны сразу после открытия,
+ * строки отдаются по одной и нигде не накапливаются.
+ * Каждая строка – сырые значения ячеек, по одному на заголовок (пустые – null).
+ * Для текстовых форматов значения – String; если тип ячейки известен из самого файла
+ * (числа, даты, булевы в XLSX), значение уже типизировано: Long / BigDecimal / Boolean / LocalDate / LocalDateTime.
+ */
+public interface RowCursor extends Iterator<List<Object>>, Closeable {
+    List<String> getHeaders();
+
+    /**
+     * Типы колонок уже известны (второй проход FULL) – курсор может отдавать строки
+     * сконвертированными, если умеет делать это дешевле вызывающего кода (например, параллельно).
+     * По умолчанию ничего не делает. Вызывать до первого hasNext().
+     */
+    default void convertTo(List<Class<?>> columnTypes) {
+    }
+
+    /**
+     * Проход только для вывода типов: дочитывает курсор, передавая строки в inferrer.
+     * Курсор может переопределить, чтобы классифицировать значения без создания строк.
+     */
+    default void inferTypes(ColumnTypeInferrer inferrer) {
+        forEachRemaining(inferrer::accept);
+    }
+
+    /**
+     * Строки нужны строго в порядке файла: чекпоинт считает закоммиченными первые N строк.
+     * Курсор, который отдаёт строки по мере готовности, переключается на порядок файла.
+     * По умолчанию курсор и так читает по порядку. Вызывать до первого hasNext() и skip().
+     */
+    default void keepFileOrder() {
+    }
+
+    /**
+     * Пропустить первые rows строк (повтор импорта с чекпоинта). Курсор может переопределить,
+     * чтобы не разбирать пропущенные строки в значения. Вызывать до первого hasNext().
+     *
+     * @return сколько строк пропущено – меньше rows, если файл короче
+     */
+    default long skip(long rows) {
+        long skipped = 0;
+        while (skipped < rows && hasNext()) {
+            next();
+            skipped++;
+        }
+        return skipped;
+    }
+}
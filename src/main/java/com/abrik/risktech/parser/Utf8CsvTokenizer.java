@@ -0,0 +1,271 @@
+package com.abrik.risktech.parser;
+
+import com.abrik.risktech.exception.BadRequestException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Разбор CSV прямо по байтам UTF-8 (обычно – отображённого в память куска файла).
+ * Запись разбивается на поля как смещения в буфере; String создаётся только по запросу,
+ * а числа, даты и булевы можно разобрать через {@link #ascii(int)} без декодирования.
+ *
+ * Правила те же, что у CSVFormat.DEFAULT с trim и ignoreEmptyLines в {@link CsvFileParser}:
+ * разделитель ',', кавычка '"' в начале поля, "" внутри кавычек, конец строки LF / CR / CRLF,
+ * пробелы по краям значения обрезаются.
+ */
+final class Utf8CsvTokenizer {
+    private static final byte QUOTE = '"';
+    private static final byte COMMA = ',';
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+
+    private static final byte ESCAPED_QUOTES = 1;
+    private static final byte NON_ASCII = 1 << 1;
+
+    private final ByteBuffer buf;
+    private final int limit;
+    private int pos;
+
+    private int fieldCount;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private byte[] flags = new byte[16];
+
+    private final AsciiSlice slice = new AsciiSlice();
+    private byte[] scratch = new byte[256];
+
+    Utf8CsvTokenizer(ByteBuffer buf) {
+        this.buf = buf;
+        this.pos = buf.position();
+        this.limit = buf.limit();
+    }
+
+    /**
+     * @return false, если записей больше нет
+     */
+    boolean nextRecord() {
+        // пустые строки пропускаются
+        while (pos < limit) {
+            byte b = buf.get(pos);
+            if (b != LF && b != CR) {
+                break;
+            }
+            pos++;
+        }
+        if (pos >= limit) {
+            return false;
+        }
+
+        fieldCount = 0;
+        while (true) {
+            if (buf.get(pos) == QUOTE) {
+                readQuoted();
+            } else {
+                readPlain();
+            }
+
+            if (pos >= limit) {
+                return true;
+            }
+            byte b = buf.get(pos++);
+            if (b == COMMA) {
+                if (pos >= limit) {
+                    // "a," в конце файла – последнее поле пустое
+                    addField(pos, pos, (byte) 0);
+                    return true;
+                }
+                continue;
+            }
+            // конец строки
+            if (b == CR && pos < limit && buf.get(pos) == LF) {
+                pos++;
+            }
+            return true;
+        }
+    }
+
+    private void readPlain() {
+        int start = pos;
+        byte fieldFlags = 0;
+        while (pos < limit) {
+            byte b = buf.get(pos);
+            if (b == COMMA || b == LF || b == CR) {
+                break;
+            }
+            if (b < 0) {
+                fieldFlags |= NON_ASCII;
+            }
+            pos++;
+        }
+        addField(start, pos, fieldFlags);
+    }
+
+    private void readQuoted() {
+        int start = ++pos;
+        byte fieldFlags = 0;
+        while (true) {
+            if (pos >= limit) {
+                throw new BadRequestException("Invalid CSV: unterminated quoted field");
+            }
+            byte b = buf.get(pos);
+            if (b == QUOTE) {
+                if (pos + 1 < limit && buf.get(pos + 1) == QUOTE) {
+                    fieldFlags |= ESCAPED_QUOTES;
+                    pos += 2;
+                    continue;
+                }
+                break;
+            }
+            if (b < 0) {
+                fieldFlags |= NON_ASCII;
+            }
+            pos++;
+        }
+        int end = pos++;
+
+        // после закрывающей кавычки до разделителя допускаются только пробелы – остальное пропускается
+        while (pos < limit) {
+            byte b = buf.get(pos);
+            if (b == COMMA || b == LF || b == CR) {
+                break;
+            }
+            pos++;
+        }
+        addField(start, end, fieldFlags);
+    }
+
+    private void addField(int start, int end, byte fieldFlags) {
+        // trim: как String.trim – всё, что <= ' '; байты многобайтных символов UTF-8 отрицательны и не задеваются
+        while (start < end && isTrimmed(buf.get(start))) {
+            start++;
+        }
+        while (end > start && isTrimmed(buf.get(end - 1))) {
+            end--;
+        }
+
+        if (fieldCount == starts.length) {
+            int size = fieldCount * 2;
+            starts = Arrays.copyOf(starts, size);
+            ends = Arrays.copyOf(ends, size);
+            flags = Arrays.copyOf(flags, size);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        flags[fieldCount] = fieldFlags;
+        fieldCount++;
+    }
+
+    private static boolean isTrimmed(byte b) {
+        return b >= 0 && b <= ' ';
+    }
+
+    int fieldCount() {
+        return fieldCount;
+    }
+
+    boolean isEmpty(int field) {
+        return starts[field] == ends[field];
+    }
+
+    /**
+     * Длина значения в символах без декодирования: байты-продолжения UTF-8 (10xxxxxx) и вторая кавычка пары ""
+     * не считаются. Для VARCHAR(n) – то же, что длина обрезанной строки в {@link CsvFileParser}.
+     */
+    int charLength(int field) {
+        int start = starts[field];
+        int end = ends[field];
+        byte fieldFlags = flags[field];
+        if (fieldFlags == 0) {
+            return end - start;
+        }
+
+        boolean escapedQuotes = (fieldFlags & ESCAPED_QUOTES) != 0;
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buf.get(i);
+            if ((b & 0xC0) != 0x80) {
+                length++;
+            }
+            if (escapedQuotes && b == QUOTE) {
+                i++; // вторая кавычка пары
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Поле как ASCII-последовательность без копирования, или null, если в нём есть не-ASCII
+     * символы или экранированные кавычки. Объект переиспользуется – действителен до следующего вызова.
+     */
+    CharSequence ascii(int field) {
+        if (flags[field] != 0) {
+            return null;
+        }
+        slice.start = starts[field];
+        slice.end = ends[field];
+        return slice;
+    }
+
+    /**
+     * Значение поля строкой: UTF-8 декодируется, "" внутри кавычек схлопывается
+     */
+    String text(int field) {
+        int start = starts[field];
+        int length = ends[field] - start;
+        byte fieldFlags = flags[field];
+
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+
+        if ((fieldFlags & ESCAPED_QUOTES) == 0) {
+            buf.get(start, scratch, 0, length);
+        } else {
+            int n = 0;
+            for (int i = start; i < start + length; i++) {
+                byte b = buf.get(i);
+                scratch[n++] = b;
+                if (b == QUOTE) {
+                    i++; // вторая кавычка пары
+                }
+            }
+            length = n;
+        }
+
+        // для ASCII Latin-1 декодирует быстрее и даёт тот же результат
+        return new String(scratch, 0, length,
+                (fieldFlags & NON_ASCII) == 0 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Окно в буфер для ValueScanner: charAt читает байт напрямую
+     */
+    private final class AsciiSlice implements CharSequence {
+        private int start;
+        private int end;
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) buf.get(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return toString().substring(from, to);
+        }
+
+        @Override
+        public String toString() {
+            byte[] bytes = new byte[end - start];
+            buf.get(start, bytes);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
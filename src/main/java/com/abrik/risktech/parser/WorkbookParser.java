@@ -0,0 +1,28 @@
+package com.abrik.risktech.parser;
+
+import com.abrik.risktech.model.TableData;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Парсер формата с несколькими листами. Файл уже лежит на диске и принадлежит вызывающему коду:
+ * листы можно открывать параллельно, каждый курсор читает файл независимо и не удаляет его.
+ */
+public interface WorkbookParser extends FileParser {
+    /**
+     * Имена листов в порядке следования в книге
+     */
+    List<String> getSheetNames(Path file) throws IOException;
+
+    /**
+     * Читает лист целиком, как {@link #parseFile(java.io.InputStream)} для первого листа
+     */
+    TableData parseSheet(Path file, String sheetName) throws IOException;
+
+    /**
+     * Открывает лист для построчного чтения
+     */
+    RowCursor openCursor(Path file, String sheetName) throws IOException;
+}
@@ -0,0 +1,64 @@
+package com.abrik.risktech.parser;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Перевод нативных значений ячеек XLSX в типы импорта без форматирования в текст.
+ * Общий для потокового и usermodel-парсера, чтобы оба давали одинаковые значения.
+ */
+final class XlsxCellValues {
+
+    /** Excel хранит double, но показывает и считает с точностью 15 значащих цифр */
+    private static final MathContext EXCEL_PRECISION = new MathContext(15);
+
+    private XlsxCellValues() {
+    }
+
+    /**
+     * Число из ячейки: целое -> Long, иначе BigDecimal (0.1 + 0.2 -> 0.3, как в Excel)
+     */
+    static Object number(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return null;
+        }
+        return number(new BigDecimal(Double.toString(value)));
+    }
+
+    /**
+     * @param raw содержимое элемента v, например "42", "0.30000000000000004", "1.5E-3"
+     */
+    static Object number(String raw) {
+        return number(Double.parseDouble(raw));
+    }
+
+    private static Object number(BigDecimal value) {
+        BigDecimal rounded = value.round(EXCEL_PRECISION).stripTrailingZeros();
+        if (rounded.scale() <= 0) {
+            if (rounded.precision() - rounded.scale() <= 18) {
+                return rounded.longValueExact();
+            }
+            return rounded.setScale(0);
+        }
+        return rounded;
+    }
+
+    /**
+     * Дата без времени -> LocalDate, иначе LocalDateTime
+     */
+    static Object dateTime(LocalDateTime value) {
+        if (value == null) {
+            return null;
+        }
+        return value.toLocalTime().equals(LocalTime.MIDNIGHT) ? value.toLocalDate() : value;
+    }
+
+    /**
+     * Текстовая ячейка: пробелы по краям обрезаются, пустая -> null
+     */
+    static String text(String value) {
+        return value != null && !value.isBlank() ? value.trim() : null;
+    }
+}
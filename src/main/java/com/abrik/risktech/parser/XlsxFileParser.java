@@ -1,8 +1,11 @@
 package com.abrik.risktech.parser;
 
+import com.abrik.risktech.config.ImportProperties;
 import com.abrik.risktech.exception.BadRequestException;
 import com.abrik.risktech.model.ColumnMeta;
+import com.abrik.risktech.model.ColumnarRows;
 import com.abrik.risktech.model.TableData;
+import com.abrik.risktech.util.ColumnTypeInferrer;
 import com.abrik.risktech.util.FileParserUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -11,22 +14,70 @@ import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 @Component("xlsxFileParser")
 @RequiredArgsConstructor
 @Slf4j
-public class XlsxFileParser implements FileParser {
+public class XlsxFileParser implements WorkbookParser {
     private final FileParserUtil fileParserUtil;
+    private final ImportProperties importProperties;
 
     @Override
     public TableData parseFile(InputStream inputStream) throws IOException {
+        return readTable(openCursor(inputStream), "XLSX file");
+    }
+
+    @Override
+    public TableData parseFile(Path file) throws IOException {
+        return readTable(openCursor(file), "XLSX file");
+    }
+
+    @Override
+    public TableData parseSheet(Path file, String sheetName) throws IOException {
+        return readTable(openCursor(file, sheetName), "Sheet '" + sheetName + "'");
+    }
+
+    private TableData readTable(RowCursor openedCursor, String label) throws IOException {
+        try (RowCursor cursor = openedCursor) {
+            List<String> headers = cursor.getHeaders();
+
+            // Строки сразу в колонки со словарём, вывод типов Java для каждого столбца – на том же проходе
+            ColumnTypeInferrer inferrer = fileParserUtil.newTypeInferrer(headers.size());
+            ColumnarRows rawColumns = fileParserUtil.readColumns(cursor, inferrer, headers.size());
+
+            if (rawColumns.size() == 0) {
+                throw new BadRequestException(label + " does not contain any data rows");
+            }
+
+            log.info("Parsed {}: {} columns, {} rows", label, headers.size(), rawColumns.size());
+
+            List<Class<?>> columnTypes = inferrer.getColumnTypes();
+
+            // Строю список ColumnMeta
+            List<ColumnMeta> columns = fileParserUtil.buildColumns(headers, inferrer);
+
+            ColumnarRows typedRows = fileParserUtil.convertColumns(rawColumns, columnTypes);
+
+            return TableData.builder()
+                    .tableName(null) // будет задан в FileImportService
+                    .columns(columns)
+                    .columnar(typedRows)
+                    .build();
+        }
+    }
+
+    @Override
+    public RowCursor openCursor(InputStream inputStream) throws IOException {
         if (inputStream == null) {
             throw new BadRequestException("Input stream is null");
         }
 
-        try (Workbook workbook = WorkbookFactory.create(inputStream)) {
+        Workbook workbook = WorkbookFactory.create(inputStream);
+        try {
             if (workbook.getNumberOfSheets() == 0) {
                 throw new BadRequestException("XLSX file does not contain any sheets");
             }
@@ -36,51 +87,74 @@ public class XlsxFileParser implements FileParser {
                 throw new BadRequestException("First sheet is null");
             }
 
-            // Find header row (assume it's the first non-empty row)
-            Row headerRow = findHeaderRow(sheet);
-            if (headerRow == null) {
-                throw new BadRequestException("XLSX file does not contain a header row");
-            }
+            return openSheet(workbook, sheet);
+        } catch (RuntimeException e) {
+            workbook.close();
+            throw e;
+        }
+    }
 
-            List<String> headers = extractHeaders(headerRow);
-            if (headers.isEmpty()) {
-                throw new BadRequestException("Header row does not contain any columns");
+    /**
+     * Первый лист файла, который уже на диске: POI читает его с диска, а не из копии потока в памяти
+     */
+    @Override
+    public RowCursor openCursor(Path file) throws IOException {
+        Workbook workbook = WorkbookFactory.create(file.toFile(), null, true);
+        try {
+            if (workbook.getNumberOfSheets() == 0) {
+                throw new BadRequestException("XLSX file does not contain any sheets");
             }
+            return openSheet(workbook, workbook.getSheetAt(0));
+        } catch (RuntimeException e) {
+            workbook.close();
+            throw e;
+        }
+    }
 
-            List<List<String>> rawRows = extractDataRows(sheet, headerRow.getRowNum(), headers.size());
-
-            if (rawRows.isEmpty()) {
-                throw new BadRequestException("XLSX file does not contain any data rows");
+    /**
+     * Каждый курсор строит свой workbook – листы можно читать параллельно,
+     * но память на курсор та же, что и на весь файл
+     */
+    @Override
+    public RowCursor openCursor(Path file, String sheetName) throws IOException {
+        Workbook workbook = WorkbookFactory.create(file.toFile(), null, true);
+        try {
+            Sheet sheet = workbook.getSheet(sheetName);
+            if (sheet == null) {
+                throw new BadRequestException("Sheet '" + sheetName + "' not found in XLSX file");
             }
 
-            log.info("Parsed XLSX file: {} columns, {} rows", headers.size(), rawRows.size());
-
-            // Вывод типов Java для каждого столбца
-            List<Class<?>> columnTypes = fileParserUtil.inferColumnTypes(rawRows, headers.size());
+            return openSheet(workbook, sheet);
+        } catch (RuntimeException e) {
+            workbook.close();
+            throw e;
+        }
+    }
 
-            // Строю список ColumnMeta
-            List<ColumnMeta> columns = new ArrayList<>();
-            for (int i = 0; i < headers.size(); i++) {
-                String columnName = headers.get(i);
-                Class<?> javaType = columnTypes.get(i);
-
-                ColumnMeta meta = ColumnMeta.builder()
-                        .name(columnName)
-                        .javaType(javaType)
-                        .sqlType(null) // будет заполнен в TableSchemaService
-                        .build();
-
-                columns.add(meta);
+    @Override
+    public List<String> getSheetNames(Path file) throws IOException {
+        try (Workbook workbook = WorkbookFactory.create(file.toFile(), null, true)) {
+            List<String> names = new ArrayList<>(workbook.getNumberOfSheets());
+            for (Sheet sheet : workbook) {
+                names.add(sheet.getSheetName());
             }
+            return names;
+        }
+    }
 
-            List<List<Object>> typedRows = fileParserUtil.convertRows(rawRows, columnTypes);
+    private RowCursor openSheet(Workbook workbook, Sheet sheet) {
+        // Find header row (assume it's the first non-empty row)
+        Row headerRow = findHeaderRow(sheet);
+        if (headerRow == null) {
+            throw new BadRequestException("XLSX file does not contain a header row");
+        }
 
-            return TableData.builder()
-                    .tableName(null) // будет задан в FileImportService
-                    .columns(columns)
-                    .rows(typedRows)
-                    .build();
+        List<String> headers = extractHeaders(headerRow);
+        if (headers.isEmpty()) {
+            throw new BadRequestException("Header row does not contain any columns");
         }
+
+        return new SheetRowCursor(workbook, sheet, headerRow.getRowNum(), headers);
     }
 
     private Row findHeaderRow(Sheet sheet) {
@@ -134,30 +208,105 @@ public class XlsxFileParser implements FileParser {
         return headers;
     }
 
-    private List<List<String>> extractDataRows(Sheet sheet, int headerRowIndex, int columnCount) {
-        List<List<String>> rawRows = new ArrayList<>();
-        DataFormatter formatter = new DataFormatter();
+    private List<Object> extractDataRow(Row row, int columnCount, DataFormatter formatter) {
+        boolean nativeTypes = importProperties.isXlsxNativeTypes();
 
-        for (int r = headerRowIndex + 1; r <= sheet.getLastRowNum(); r++) {
-            Row row = sheet.getRow(r);
-            if (row == null || isRowEmpty(row)) {
-                continue;
+        List<Object> values = new ArrayList<>(columnCount);
+        for (int c = 0; c < columnCount; c++) {
+            Cell cell = row.getCell(c, Row.MissingCellPolicy.RETURN_BLANK_AS_NULL);
+            if (cell == null) {
+                values.add(null);
+            } else if (nativeTypes) {
+                values.add(extractTypedValue(cell, formatter));
+            } else {
+                values.add(XlsxCellValues.text(formatter.formatCellValue(cell)));
             }
+        }
+        return values;
+    }
 
-            List<String> values = new ArrayList<>();
-            for (int c = 0; c < columnCount; c++) {
-                Cell cell = row.getCell(c, Row.MissingCellPolicy.RETURN_BLANK_AS_NULL);
-                if (cell == null) {
-                    values.add(null);
-                } else {
-                    String text = formatter.formatCellValue(cell);
-                    values.add(text != null && !text.isBlank() ? text.trim() : null);
+    /**
+     * Значение по типу ячейки (для формул – по типу сохранённого результата),
+     * без форматирования в текст и повторного разбора
+     */
+    private Object extractTypedValue(Cell cell, DataFormatter formatter) {
+        CellType type = cell.getCellType();
+        if (type == CellType.FORMULA) {
+            type = cell.getCachedFormulaResultType();
+        }
+
+        switch (type) {
+            case NUMERIC:
+                if (DateUtil.isCellDateFormatted(cell)) {
+                    return XlsxCellValues.dateTime(cell.getLocalDateTimeCellValue());
                 }
+                return XlsxCellValues.number(cell.getNumericCellValue());
+            case BOOLEAN:
+                return cell.getBooleanCellValue();
+            case STRING:
+                return XlsxCellValues.text(cell.getStringCellValue());
+            case BLANK:
+                return null;
+            default:
+                // ERROR – как текст (#N/A, #DIV/0!)
+                return XlsxCellValues.text(formatter.formatCellValue(cell));
+        }
+    }
+
+    /**
+     * Строки листа после заголовка, пустые пропускаются
+     */
+    private class SheetRowCursor implements RowCursor {
+        private final Workbook workbook;
+        private final Sheet sheet;
+        private final List<String> headers;
+        private final DataFormatter formatter = new DataFormatter();
+
+        private int nextRowIndex;
+        private Row nextRow;
+
+        SheetRowCursor(Workbook workbook, Sheet sheet, int headerRowIndex, List<String> headers) {
+            this.workbook = workbook;
+            this.sheet = sheet;
+            this.headers = headers;
+            this.nextRowIndex = headerRowIndex + 1;
+            advance();
+        }
+
+        @Override
+        public List<String> getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextRow != null;
+        }
+
+        @Override
+        public List<Object> next() {
+            if (nextRow == null) {
+                throw new NoSuchElementException();
             }
+            List<Object> values = extractDataRow(nextRow, headers.size(), formatter);
+            advance();
+            return values;
+        }
 
-            rawRows.add(values);
+        @Override
+        public void close() throws IOException {
+            workbook.close();
         }
 
-        return rawRows;
+        private void advance() {
+            nextRow = null;
+            while (nextRowIndex <= sheet.getLastRowNum()) {
+                Row row = sheet.getRow(nextRowIndex++);
+                if (row != null && !isRowEmpty(row)) {
+                    nextRow = row;
+                    return;
+                }
+            }
+        }
     }
 }
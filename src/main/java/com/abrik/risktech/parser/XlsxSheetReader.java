@@ -0,0 +1,320 @@
+package com.abrik.risktech.parser;
+
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pull-чтение XML одного листа (xl/worksheets/sheetN.xml) по строкам через StAX.
+ * В памяти только текущая строка; общие строки и стили берутся из XSSFReader.
+ * Значения форматируются так же, как DataFormatter.formatCellValue в usermodel,
+ * либо (nativeTypes) отдаются по типу ячейки – см. {@link #typedValue}.
+ */
+class XlsxSheetReader implements Closeable {
+    private final InputStream sheetData;
+    private final XMLStreamReader xml;
+    private final SharedStrings sharedStrings;
+    private final StylesTable styles;
+    private final DataFormatter formatter;
+    private final Map<Integer, Boolean> dateStyles = new HashMap<>();
+
+    private boolean nativeTypes;
+
+    XlsxSheetReader(InputStream sheetData, SharedStrings sharedStrings, StylesTable styles,
+                    DataFormatter formatter) throws IOException {
+        this.sheetData = sheetData;
+        this.sharedStrings = sharedStrings;
+        this.styles = styles;
+        this.formatter = formatter;
+        try {
+            this.xml = XMLHelper.newXMLInputFactory().createXMLStreamReader(sheetData);
+        } catch (XMLStreamException e) {
+            sheetData.close();
+            throw new IOException("Invalid XLSX sheet: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Переключает чтение следующих строк на нативные типы ячеек.
+     * Заголовок читается текстом, данные – уже типизированными.
+     */
+    void setNativeTypes(boolean nativeTypes) {
+        this.nativeTypes = nativeTypes;
+    }
+
+    /**
+     * Читает следующий элемент row в переданный буфер
+     *
+     * @return false, если строки листа закончились
+     */
+    boolean nextRow(SheetRow row) throws IOException {
+        try {
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT && "row".equals(xml.getLocalName())) {
+                    row.reset();
+                    readCells(row);
+                    return true;
+                }
+                if (event == XMLStreamConstants.END_ELEMENT && "sheetData".equals(xml.getLocalName())) {
+                    return false;
+                }
+            }
+            return false;
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid XLSX sheet: " + e.getMessage(), e);
+        }
+    }
+
+    private void readCells(SheetRow row) throws XMLStreamException {
+        int column = -1;
+
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.END_ELEMENT && "row".equals(xml.getLocalName())) {
+                return;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT || !"c".equals(xml.getLocalName())) {
+                continue;
+            }
+
+            String ref = xml.getAttributeValue(null, "r");
+            column = ref != null ? columnIndex(ref) : column + 1;
+            String type = xml.getAttributeValue(null, "t");
+            String style = xml.getAttributeValue(null, "s");
+
+            String raw = null;
+            while (xml.hasNext()) {
+                event = xml.next();
+                if (event == XMLStreamConstants.END_ELEMENT && "c".equals(xml.getLocalName())) {
+                    break;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                switch (xml.getLocalName()) {
+                    case "v" -> raw = xml.getElementText();
+                    case "is" -> raw = readInlineString();
+                    // формула не нужна – берётся сохранённый результат из v
+                    case "f" -> xml.getElementText();
+                    default -> {
+                        // прочие элементы (extLst и т.п.) пропускаются
+                    }
+                }
+            }
+
+            Object value = null;
+            if (raw != null) {
+                value = nativeTypes ? typedValue(type, style, raw) : formatValue(type, style, raw);
+            }
+            row.put(column, value);
+        }
+    }
+
+    /**
+     * is содержит t напрямую или набор r/t (rich text) – текст склеивается, фонетика rPh пропускается
+     */
+    private String readInlineString() throws XMLStreamException {
+        StringBuilder sb = new StringBuilder();
+        int depth = 1;
+        boolean phonetic = false;
+
+        while (depth > 0 && xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = xml.getLocalName();
+                if ("rPh".equals(name)) {
+                    phonetic = true;
+                }
+                if ("t".equals(name) && !phonetic) {
+                    sb.append(xml.getElementText());
+                } else {
+                    depth++;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if ("rPh".equals(xml.getLocalName())) {
+                    phonetic = false;
+                }
+                depth--;
+            }
+        }
+        return sb.toString();
+    }
+
+    private String formatValue(String type, String style, String raw) {
+        if (type == null) {
+            type = "n";
+        }
+        switch (type) {
+            case "s":
+                return sharedStrings.getItemAt(Integer.parseInt(raw)).getString();
+            case "inlineStr":
+            case "str":
+            case "e":
+            case "d":
+                return raw;
+            case "b":
+                return "0".equals(raw) ? "FALSE" : "TRUE";
+            default:
+                return formatNumber(style, raw);
+        }
+    }
+
+    /**
+     * Значение по типу ячейки, без формата отображения: текст -> String, b -> Boolean,
+     * число в формате даты -> LocalDate/LocalDateTime, прочие числа -> Long/BigDecimal.
+     * Ошибки (#N/A и т.п.) и t="d" (ISO-дата текстом) остаются строками.
+     */
+    private Object typedValue(String type, String style, String raw) {
+        if (type == null) {
+            type = "n";
+        }
+        switch (type) {
+            case "s":
+                return sharedStrings.getItemAt(Integer.parseInt(raw)).getString();
+            case "inlineStr":
+            case "str":
+            case "e":
+            case "d":
+                return raw;
+            case "b":
+                return !"0".equals(raw);
+            default:
+                if (raw.isEmpty()) {
+                    return null;
+                }
+                double value = Double.parseDouble(raw);
+                if (isDateStyle(style) && DateUtil.isValidExcelDate(value)) {
+                    // 1904-система дат (date1904 в workbook.xml) не учитывается
+                    return XlsxCellValues.dateTime(DateUtil.getLocalDateTime(value));
+                }
+                return XlsxCellValues.number(value);
+        }
+    }
+
+    private boolean isDateStyle(String style) {
+        if (style == null || styles == null) {
+            return false;
+        }
+        return dateStyles.computeIfAbsent(Integer.parseInt(style), index -> {
+            XSSFCellStyle cellStyle = styles.getStyleAt(index);
+            return cellStyle != null
+                    && DateUtil.isADateFormat(cellStyle.getDataFormat(), cellStyle.getDataFormatString());
+        });
+    }
+
+    private String formatNumber(String style, String raw) {
+        if (raw.isEmpty()) {
+            return raw;
+        }
+        double value = Double.parseDouble(raw);
+
+        if (style == null || styles == null) {
+            return formatter.formatRawCellContents(value, 0, "General");
+        }
+
+        XSSFCellStyle cellStyle = styles.getStyleAt(Integer.parseInt(style));
+        if (cellStyle == null) {
+            return formatter.formatRawCellContents(value, 0, "General");
+        }
+
+        String formatString = cellStyle.getDataFormatString();
+        return formatter.formatRawCellContents(value, cellStyle.getDataFormat(),
+                formatString != null ? formatString : "General");
+    }
+
+    /**
+     * "AB12" -> 27 (индекс колонки с 0)
+     */
+    static int columnIndex(String ref) {
+        int column = 0;
+        for (int i = 0; i < ref.length(); i++) {
+            char c = ref.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            column = column * 26 + (c - 'A' + 1);
+        }
+        return column - 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            xml.close();
+        } catch (XMLStreamException e) {
+            // поток всё равно закрывается ниже
+        } finally {
+            sheetData.close();
+        }
+    }
+
+    /**
+     * Буфер одной строки листа: значения по индексу колонки, переиспользуется между строками
+     */
+    static class SheetRow {
+        private Object[] values = new Object[16];
+        private int firstColumn = -1;
+        private int lastColumn = -1;
+        private boolean empty = true;
+
+        void reset() {
+            if (lastColumn >= 0) {
+                Arrays.fill(values, 0, lastColumn + 1, null);
+            }
+            firstColumn = -1;
+            lastColumn = -1;
+            empty = true;
+        }
+
+        void put(int column, Object value) {
+            if (column >= values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, column + 1));
+            }
+            values[column] = value;
+
+            // как getFirstCellNum/getLastCellNum в usermodel – учитываются и ячейки без значения
+            if (firstColumn < 0 || column < firstColumn) {
+                firstColumn = column;
+            }
+            if (column > lastColumn) {
+                lastColumn = column;
+            }
+            if (value != null) {
+                empty = false;
+            }
+        }
+
+        /**
+         * Пустая строка – нет ни одной ячейки со значением (только стили или ничего)
+         */
+        boolean isEmpty() {
+            return empty;
+        }
+
+        int getFirstColumn() {
+            return firstColumn;
+        }
+
+        int getLastColumn() {
+            return lastColumn;
+        }
+
+        Object get(int column) {
+            return column >= 0 && column < values.length ? values[column] : null;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.abrik.risktech.parser;
+
+import com.abrik.risktech.config.ImportProperties;
+import com.abrik.risktech.exception.BadRequestException;
+import com.abrik.risktech.model.ColumnMeta;
+import com.abrik.risktech.model.ColumnarRows;
+import com.abrik.risktech.model.TableData;
+import com.abrik.risktech.parser.XlsxSheetReader.SheetRow;
+import com.abrik.risktech.util.ColumnTypeInferrer;
+import com.abrik.risktech.util.FileParserUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.springframework.stereotype.Component;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Потоковый парсер XLSX на XSSFReader: лист читается по строкам из XML, без построения
+ * usermodel (XSSFWorkbook) в памяти. Загрузка сначала сохраняется во временный файл –
+ * OPCPackage открывает zip с произвольным доступом и не распаковывает части в память.
+ * Поиск заголовка, пропуск пустых строк и типы значений – как в {@link XlsxFileParser}.
+ */
+@Component("xlsxStreamingFileParser")
+@RequiredArgsConstructor
+@Slf4j
+public class XlsxStreamingFileParser implements WorkbookParser {
+    private final FileParserUtil fileParserUtil;
+    private final ImportProperties importProperties;
+
+    @Override
+    public TableData parseFile(InputStream inputStream) throws IOException {
+        return readTable(openCursor(inputStream), "XLSX file");
+    }
+
+    @Override
+    public TableData parseFile(Path file) throws IOException {
+        return readTable(openCursor(file), "XLSX file");
+    }
+
+    @Override
+    public TableData parseSheet(Path file, String sheetName) throws IOException {
+        return readTable(openCursor(file, sheetName), "Sheet '" + sheetName + "'");
+    }
+
+    private TableData readTable(RowCursor openedCursor, String label) throws IOException {
+        try (RowCursor cursor = openedCursor) {
+            List<String> headers = cursor.getHeaders();
+
+            // Строки сразу в колонки со словарём, вывод типов Java для каждого столбца – на том же проходе
+            ColumnTypeInferrer inferrer = fileParserUtil.newTypeInferrer(headers.size());
+            ColumnarRows rawColumns = fileParserUtil.readColumns(cursor, inferrer, headers.size());
+
+            if (rawColumns.size() == 0) {
+                throw new BadRequestException(label + " does not contain any data rows");
+            }
+
+            log.info("Parsed {}: {} columns, {} rows", label, headers.size(), rawColumns.size());
+
+            List<Class<?>> columnTypes = inferrer.getColumnTypes();
+
+            // Строю список ColumnMeta
+            List<ColumnMeta> columns = fileParserUtil.buildColumns(headers, inferrer);
+
+            ColumnarRows typedRows = fileParserUtil.convertColumns(rawColumns, columnTypes);
+
+            return TableData.builder()
+                    .tableName(null) // будет задан в FileImportService
+                    .columns(columns)
+                    .columnar(typedRows)
+                    .build();
+        }
+    }
+
+    @Override
+    public RowCursor openCursor(InputStream inputStream) throws IOException {
+        if (inputStream == null) {
+            throw new BadRequestException("Input stream is null");
+        }
+
+        Path spooled = Files.createTempFile("risktech-", ".xlsx");
+        try (inputStream) {
+            Files.copy(inputStream, spooled, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spooled);
+            throw e;
+        }
+
+        // первый лист, временный файл удаляется вместе с курсором
+        return openSheet(spooled, null, true);
+    }
+
+    /**
+     * Первый лист файла, который уже на диске, – без временной копии
+     */
+    @Override
+    public RowCursor openCursor(Path file) throws IOException {
+        return openSheet(file, null, false);
+    }
+
+    @Override
+    public RowCursor openCursor(Path file, String sheetName) throws IOException {
+        return openSheet(file, sheetName, false);
+    }
+
+    @Override
+    public List<String> getSheetNames(Path file) throws IOException {
+        OPCPackage pkg = null;
+        try {
+            pkg = OPCPackage.open(file.toFile(), PackageAccess.READ);
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) new XSSFReader(pkg).getSheetsData();
+
+            List<String> names = new ArrayList<>();
+            while (sheets.hasNext()) {
+                try (InputStream ignored = sheets.next()) {
+                    names.add(sheets.getSheetName());
+                }
+            }
+            return names;
+        } catch (OpenXML4JException e) {
+            throw new BadRequestException("Invalid XLSX file: " + e.getMessage());
+        } finally {
+            if (pkg != null) {
+                pkg.revert();
+            }
+        }
+    }
+
+    /**
+     * @param sheetName     null – первый лист
+     * @param deleteOnClose файл временный и принадлежит курсору
+     */
+    private RowCursor openSheet(Path file, String sheetName, boolean deleteOnClose) throws IOException {
+        Path owned = deleteOnClose ? file : null;
+        OPCPackage pkg = null;
+        XlsxSheetReader sheetReader = null;
+        try {
+            pkg = OPCPackage.open(file.toFile(), PackageAccess.READ);
+            XSSFReader reader = new XSSFReader(pkg);
+
+            sheetReader = new XlsxSheetReader(findSheet(reader, sheetName), new ReadOnlySharedStringsTable(pkg),
+                    reader.getStylesTable(), new DataFormatter());
+
+            // Find header row (assume it's the first non-empty row)
+            SheetRow row = new SheetRow();
+            boolean found = false;
+            while (sheetReader.nextRow(row)) {
+                if (!row.isEmpty()) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                throw new BadRequestException("XLSX file does not contain a header row");
+            }
+
+            List<String> headers = extractHeaders(row);
+            if (headers.isEmpty()) {
+                throw new BadRequestException("Header row does not contain any columns");
+            }
+
+            sheetReader.setNativeTypes(importProperties.isXlsxNativeTypes());
+            return new StreamingSheetCursor(pkg, owned, sheetReader, headers);
+        } catch (OpenXML4JException | SAXException e) {
+            cleanup(pkg, owned, sheetReader);
+            throw new BadRequestException("Invalid XLSX file: " + e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            cleanup(pkg, owned, sheetReader);
+            throw e;
+        }
+    }
+
+    private InputStream findSheet(XSSFReader reader, String sheetName) throws IOException, OpenXML4JException {
+        XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+        while (sheets.hasNext()) {
+            InputStream sheetData = sheets.next();
+            if (sheetName == null || sheetName.equals(sheets.getSheetName())) {
+                return sheetData;
+            }
+            sheetData.close();
+        }
+
+        throw new BadRequestException(sheetName == null
+                ? "XLSX file does not contain any sheets"
+                : "Sheet '" + sheetName + "' not found in XLSX file");
+    }
+
+    private List<String> extractHeaders(SheetRow headerRow) {
+        List<String> headers = new ArrayList<>();
+
+        int firstCell = headerRow.getFirstColumn();
+        int lastCell = headerRow.getLastColumn();
+
+        for (int c = firstCell; c <= lastCell; c++) {
+            String value = (String) headerRow.get(c);
+            if (value == null || value.isBlank()) {
+                // Allow empty header -> generate column name
+                headers.add("column_" + (c - firstCell + 1));
+            } else {
+                headers.add(value.trim());
+            }
+        }
+
+        return headers;
+    }
+
+    private static void cleanup(OPCPackage pkg, Path spooled, XlsxSheetReader sheetReader) {
+        try {
+            if (sheetReader != null) {
+                sheetReader.close();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to close XLSX sheet stream: {}", e.getMessage());
+        }
+        if (pkg != null) {
+            // открыт только на чтение – revert закрывает без попытки сохранить
+            pkg.revert();
+        }
+        if (spooled == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(spooled);
+        } catch (IOException e) {
+            log.warn("Failed to delete spooled XLSX file {}: {}", spooled, e.getMessage());
+        }
+    }
+
+    /**
+     * Строки листа после заголовка, пустые пропускаются. spooled – временный файл курсора или null.
+     * Значения берутся по колонкам 0..headers.size()-1, как в XlsxFileParser.
+     */
+    private static class StreamingSheetCursor implements RowCursor {
+        private final OPCPackage pkg;
+        private final Path spooled;
+        private final XlsxSheetReader sheetReader;
+        private final List<String> headers;
+        private final SheetRow row = new SheetRow();
+
+        private boolean hasRow;
+
+        StreamingSheetCursor(OPCPackage pkg, Path spooled, XlsxSheetReader sheetReader, List<String> headers) {
+            this.pkg = pkg;
+            this.spooled = spooled;
+            this.sheetReader = sheetReader;
+            this.headers = headers;
+            advance();
+        }
+
+        @Override
+        public List<String> getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasRow;
+        }
+
+        @Override
+        public List<Object> next() {
+            if (!hasRow) {
+                throw new NoSuchElementException();
+            }
+
+            List<Object> values = new ArrayList<>(headers.size());
+            for (int c = 0; c < headers.size(); c++) {
+                Object value = row.get(c);
+                values.add(value instanceof String text ? XlsxCellValues.text(text) : value);
+            }
+
+            advance();
+            return values;
+        }
+
+        @Override
+        public void close() {
+            cleanup(pkg, spooled, sheetReader);
+        }
+
+        private void advance() {
+            try {
+                do {
+                    hasRow = sheetReader.nextRow(row);
+                } while (hasRow && row.isEmpty());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.abrik.risktech.service;
+
+import com.abrik.risktech.exception.BadRequestException;
+import com.abrik.risktech.model.ColumnarRows;
+import com.abrik.risktech.model.InsertResult;
+import com.abrik.risktech.model.InsertResult.BatchStats;
+import com.abrik.risktech.model.WriteMode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Общая часть writer-ов: проверка строк, нарезка на пачки, статистика и транзакция на весь импорт.
+ */
+@Slf4j
+abstract class AbstractTableWriter implements CheckpointTableWriter {
+    protected final String tableName;
+
+    private final int columnCount;
+    private final int batchSize;
+    private final PlatformTransactionManager transactionManager;
+    private final TransactionStatus importTransaction; // null – транзакции по пачкам
+    private final List<BatchStats> batches = new ArrayList<>();
+    private final long start = System.nanoTime();
+
+    private long rowIndex;
+    private int pendingRows;
+    private long rowsWritten;
+    private boolean finished;
+    private IntConsumer batchListener = rows -> {
+    };
+    private LongConsumer checkpoint;
+    private TransactionTemplate checkpointTransaction;
+
+    AbstractTableWriter(String tableName, int columnCount, int batchSize,
+                        PlatformTransactionManager transactionManager, boolean transactionPerImport) {
+        this.tableName = tableName;
+        this.columnCount = columnCount;
+        this.batchSize = Math.max(1, batchSize);
+        this.transactionManager = transactionManager;
+        this.importTransaction = transactionPerImport
+                ? transactionManager.getTransaction(new DefaultTransactionDefinition())
+                : null;
+    }
+
+    @Override
+    public final void write(List<Object> row) {
+        if (row.size() != columnCount) {
+            throw new BadRequestException(
+                    "Row " + rowIndex + " has " + row.size() + " values, but " + columnCount + " columns expected"
+            );
+        }
+
+        append(row);
+        appended();
+    }
+
+    @Override
+    public final void write(ColumnarRows rows, int row) {
+        if (rows.columnCount() != columnCount) {
+            throw new BadRequestException(
+                    "Row " + rowIndex + " has " + rows.columnCount() + " values, but " + columnCount + " columns expected"
+            );
+        }
+
+        append(rows, row);
+        appended();
+    }
+
+    private void appended() {
+        rowIndex++;
+        pendingRows++;
+
+        if (pendingRows >= batchSize) {
+            flush();
+        }
+    }
+
+    @Override
+    public final void flush() {
+        if (pendingRows == 0) {
+            return;
+        }
+
+        long batchStart = System.nanoTime();
+        try {
+            if (checkpoint != null && importTransaction == null) {
+                // пачка и чекпоинт – в одной транзакции, иначе после сбоя между ними пачка запишется дважды
+                long committed = rowsWritten + pendingRows;
+                checkpointTransaction.executeWithoutResult(status -> {
+                    executeBatch(false);
+                    checkpoint.accept(committed);
+                });
+            } else {
+                executeBatch(importTransaction == null);
+                if (checkpoint != null) {
+                    // транзакция на импорт: чекпоинт откатится вместе со строками
+                    checkpoint.accept(rowsWritten + pendingRows);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to write batch {} (rows {}..{}) into table {}",
+                    batches.size(), rowIndex - pendingRows, rowIndex - 1, tableName, e);
+            throw e;
+        }
+        long batchNanos = System.nanoTime() - batchStart;
+        long batchMs = batchNanos / 1_000_000;
+
+        batches.add(BatchStats.builder()
+                .index(batches.size())
+                .rows(pendingRows)
+                .durationMs(batchMs)
+                .durationNanos(batchNanos)
+                .build());
+
+        log.debug("Batch {} into table {}: {} rows, {} ms", batches.size() - 1, tableName, pendingRows, batchMs);
+
+        rowsWritten += pendingRows;
+        batchListener.accept(pendingRows);
+        pendingRows = 0;
+    }
+
+    @Override
+    public final InsertResult finish() {
+        flush();
+        if (importTransaction != null) {
+            transactionManager.commit(importTransaction);
+        }
+        finished = true;
+
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+        log.info("Wrote {} rows into table {} with {} in {} batches, {} ms",
+                rowsWritten, tableName, getWriteMode(), batches.size(), durationMs);
+
+        return InsertResult.builder()
+                .writeMode(getWriteMode())
+                .rowsInserted((int) rowsWritten)
+                .durationMs(durationMs)
+                .batches(batches)
+                .build();
+    }
+
+    @Override
+    public void close() {
+        if (!finished && importTransaction != null && !importTransaction.isCompleted()) {
+            log.warn("Import into table {} did not finish, rolling back", tableName);
+            transactionManager.rollback(importTransaction);
+        }
+    }
+
+    @Override
+    public void setBatchListener(IntConsumer listener) {
+        this.batchListener = listener;
+    }
+
+    @Override
+    public void setCheckpoint(LongConsumer checkpoint) {
+        this.checkpoint = checkpoint;
+        this.checkpointTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /**
+     * Добавить проверенную строку в текущую пачку
+     */
+    protected abstract void append(List<Object> row);
+
+    /**
+     * То же для строки из колонок – без упаковки значений
+     */
+    protected abstract void append(ColumnarRows rows, int row);
+
+    /**
+     * Отправить текущую пачку в БД
+     *
+     * @param ownTransaction true – пачка должна закоммититься сама (транзакции по пачкам)
+     */
+    protected abstract void executeBatch(boolean ownTransaction);
+
+    protected abstract WriteMode getWriteMode();
+}
@@ -0,0 +1,133 @@
+package com.abrik.risktech.service;
+
+import com.abrik.risktech.model.ColumnarRows;
+import com.abrik.risktech.model.ColumnarRows.BooleanColumn;
+import com.abrik.risktech.model.ColumnarRows.Column;
+import com.abrik.risktech.model.ColumnarRows.DateColumn;
+import com.abrik.risktech.model.ColumnarRows.DecimalColumn;
+import com.abrik.risktech.model.ColumnarRows.LongColumn;
+import com.abrik.risktech.model.ColumnarRows.ObjectColumn;
+import com.abrik.risktech.model.ColumnarRows.StringColumn;
+import com.abrik.risktech.model.WriteMode;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * INSERT INTO ... VALUES (?, ...) через JdbcTemplate.batchUpdate, одна пачка – один batch.
+ * Строки из ColumnarRows не копируются в Object[]: в пачке запоминаются их номера,
+ * значения ставятся в PreparedStatement прямо из колонок (setLong, setBoolean, ...).
+ */
+class BatchInsertTableWriter extends AbstractTableWriter {
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate batchTransaction;
+    private final String sql;
+
+    private List<Object[]> batchArgs = new ArrayList<>();
+    private ColumnarRows columnarSource;
+    private int[] columnarRows = new int[0];
+    private int columnarCount;
+
+    BatchInsertTableWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                           String tableName, String sql, int columnCount, int batchSize,
+                           boolean transactionPerImport) {
+        super(tableName, columnCount, batchSize, transactionManager, transactionPerImport);
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.sql = sql;
+    }
+
+    @Override
+    protected void append(List<Object> row) {
+        batchArgs.add(row.toArray(new Object[0]));
+    }
+
+    @Override
+    protected void append(ColumnarRows rows, int row) {
+        if (columnarSource != rows && columnarCount > 0) {
+            throw new IllegalStateException("One batch cannot mix rows of different ColumnarRows");
+        }
+        columnarSource = rows;
+        if (columnarCount == columnarRows.length) {
+            columnarRows = Arrays.copyOf(columnarRows, Math.max(16, columnarCount * 2));
+        }
+        columnarRows[columnarCount++] = row;
+    }
+
+    @Override
+    protected void executeBatch(boolean ownTransaction) {
+        List<Object[]> args = batchArgs;
+        batchArgs = new ArrayList<>(args.size());
+        BatchPreparedStatementSetter columnar = columnarCount > 0
+                ? columnarSetter(columnarSource, Arrays.copyOf(columnarRows, columnarCount))
+                : null;
+        columnarCount = 0;
+
+        if (ownTransaction) {
+            batchTransaction.executeWithoutResult(status -> execute(args, columnar));
+        } else {
+            execute(args, columnar);
+        }
+    }
+
+    private void execute(List<Object[]> args, BatchPreparedStatementSetter columnar) {
+        if (!args.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, args);
+        }
+        if (columnar != null) {
+            jdbcTemplate.batchUpdate(sql, columnar);
+        }
+    }
+
+    private static BatchPreparedStatementSetter columnarSetter(ColumnarRows rows, int[] rowIndexes) {
+        return new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                int row = rowIndexes[i];
+                for (int col = 0; col < rows.columnCount(); col++) {
+                    bind(ps, col + 1, rows.column(col), row);
+                }
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rowIndexes.length;
+            }
+        };
+    }
+
+    private static void bind(PreparedStatement ps, int index, Column column, int row) throws SQLException {
+        switch (column) {
+            case LongColumn longs when !longs.isNull(row) -> ps.setLong(index, longs.getLong(row));
+            case LongColumn longs -> ps.setNull(index, Types.BIGINT);
+            case DecimalColumn decimals when !decimals.isNull(row) -> ps.setBigDecimal(index, decimals.getDecimal(row));
+            case DecimalColumn decimals -> ps.setNull(index, Types.NUMERIC);
+            case DateColumn dates when !dates.isNull(row) ->
+                    ps.setObject(index, LocalDate.ofEpochDay(dates.getEpochDay(row)));
+            case DateColumn dates -> ps.setNull(index, Types.DATE);
+            case BooleanColumn booleans when !booleans.isNull(row) -> ps.setBoolean(index, booleans.getBoolean(row));
+            case BooleanColumn booleans -> ps.setNull(index, Types.BOOLEAN);
+            case StringColumn strings when !strings.isNull(row) -> ps.setString(index, strings.getString(row));
+            case StringColumn strings -> ps.setNull(index, Types.VARCHAR);
+            // как batchUpdate(sql, List<Object[]>) для строк
+            case ObjectColumn objects ->
+                    StatementCreatorUtils.setParameterValue(ps, index, SqlTypeValue.TYPE_UNKNOWN, objects.get(row));
+        }
+    }
+
+    @Override
+    protected WriteMode getWriteMode() {
+        return WriteMode.INSERT;
+    }
+}
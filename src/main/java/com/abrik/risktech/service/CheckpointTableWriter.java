@@ -0,0 +1,17 @@
+package com.abrik.risktech.service;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Writer на одном соединении, который умеет писать чекпоинт возобновляемого импорта.
+ * Параллельная запись чекпоинтов не поддерживает: её потоки откатываются целиком.
+ */
+public interface CheckpointTableWriter extends TableWriter {
+
+    /**
+     * Чекпоинт возобновляемого импорта: вызывается в транзакции каждой пачки с числом строк,
+     * записанных с учётом этой пачки. Пачка и чекпоинт коммитятся вместе, поэтому после сбоя
+     * чекпоинт указывает ровно на конец последней закоммиченной пачки.
+     */
+    void setCheckpoint(LongConsumer checkpoint);
+}
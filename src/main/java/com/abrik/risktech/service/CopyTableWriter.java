@@ -0,0 +1,146 @@
+package com.abrik.risktech.service;
+
+import com.abrik.risktech.model.ColumnarRows;
+import com.abrik.risktech.model.ColumnarRows.BooleanColumn;
+import com.abrik.risktech.model.ColumnarRows.Column;
+import com.abrik.risktech.model.ColumnarRows.DateColumn;
+import com.abrik.risktech.model.ColumnarRows.DecimalColumn;
+import com.abrik.risktech.model.ColumnarRows.LongColumn;
+import com.abrik.risktech.model.ColumnarRows.ObjectColumn;
+import com.abrik.risktech.model.ColumnarRows.StringColumn;
+import com.abrik.risktech.model.WriteMode;
+import com.abrik.risktech.util.FileParserUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * COPY table (cols) FROM STDIN (FORMAT csv): строки сразу кодируются в CSV,
+ * каждая пачка уходит в БД одной командой COPY (атомарной сама по себе).
+ */
+@Slf4j
+class CopyTableWriter extends AbstractTableWriter {
+    private final JdbcTemplate jdbcTemplate;
+    private final FileParserUtil fileParserUtil;
+    private final String sql;
+
+    private final StringBuilder buffer = new StringBuilder();
+
+    CopyTableWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                    FileParserUtil fileParserUtil, String tableName, String sql, int columnCount,
+                    int batchSize, boolean transactionPerImport) {
+        super(tableName, columnCount, batchSize, transactionManager, transactionPerImport);
+        this.jdbcTemplate = jdbcTemplate;
+        this.fileParserUtil = fileParserUtil;
+        this.sql = sql;
+    }
+
+    /**
+     * Одна строка в CSV-формате COPY: NULL – пустое поле без кавычек,
+     * пустая строка – "" (так COPY их различает).
+     */
+    @Override
+    protected void append(List<Object> row) {
+        for (int col = 0; col < row.size(); col++) {
+            if (col > 0) {
+                buffer.append(',');
+            }
+            appendText(fileParserUtil.formatValue(row.get(col)));
+        }
+        buffer.append('\n');
+    }
+
+    /**
+     * Числа, даты и булевы дописываются в буфер прямо из колонок, в кавычках они не нуждаются
+     */
+    @Override
+    protected void append(ColumnarRows rows, int row) {
+        for (int col = 0; col < rows.columnCount(); col++) {
+            if (col > 0) {
+                buffer.append(',');
+            }
+            Column column = rows.column(col);
+            if (column.isNull(row)) {
+                continue;
+            }
+            switch (column) {
+                case LongColumn longs -> buffer.append(longs.getLong(row));
+                case DecimalColumn decimals -> decimals.appendPlain(buffer, row);
+                case DateColumn dates -> buffer.append(LocalDate.ofEpochDay(dates.getEpochDay(row)));
+                case BooleanColumn booleans -> buffer.append(booleans.getBoolean(row));
+                case StringColumn strings -> appendText(strings.getString(row));
+                case ObjectColumn objects -> appendText(fileParserUtil.formatValue(objects.get(row)));
+            }
+        }
+        buffer.append('\n');
+    }
+
+    private void appendText(String text) {
+        if (text == null) {
+            return;
+        }
+        if (needsCsvQuoting(text)) {
+            buffer.append('"').append(text.replace("\"", "\"\"")).append('"');
+        } else {
+            buffer.append(text);
+        }
+    }
+
+    @Override
+    protected void executeBatch(boolean ownTransaction) {
+        // COPY – одна команда: вне транзакции импорта она коммитится сама
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        buffer.setLength(0);
+
+        jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+            try {
+                copyIn.writeToCopy(bytes, 0, bytes.length);
+                return copyIn.endCopy();
+            } catch (RuntimeException | SQLException e) {
+                cancelQuietly(copyIn);
+                throw e;
+            }
+        });
+    }
+
+    @Override
+    protected WriteMode getWriteMode() {
+        return WriteMode.COPY;
+    }
+
+    private boolean needsCsvQuoting(String text) {
+        if (text.isEmpty()) {
+            return true;
+        }
+        // \. в начале строки COPY может принять за маркер конца данных
+        if (text.charAt(0) == '\\') {
+            return true;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void cancelQuietly(CopyIn copyIn) {
+        try {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        } catch (SQLException e) {
+            log.warn("Failed to cancel COPY: {}", e.getMessage());
+        }
+    }
+}
@@ -1,76 +1,251 @@
 package com.abrik.risktech.service;
 
+import com.abrik.risktech.config.ConnectionPoolLimit;
+import com.abrik.risktech.config.ImportProperties;
+import com.abrik.risktech.config.ImportProperties.TransactionMode;
 import com.abrik.risktech.exception.BadRequestException;
 import com.abrik.risktech.model.ColumnMeta;
+import com.abrik.risktech.model.ColumnarRows;
+import com.abrik.risktech.model.InsertResult;
 import com.abrik.risktech.model.TableData;
-import lombok.RequiredArgsConstructor;
+import com.abrik.risktech.model.WriteMode;
+import com.abrik.risktech.util.FileParserUtil;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class DataInsertService {
 
+    /** количество строк неизвестно заранее (потоковый импорт без предварительного прохода) */
+    public static final long UNKNOWN_ROW_COUNT = -1;
+
     private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ImportProperties importProperties;
+    private final FileParserUtil fileParserUtil;
+    private final ConnectionPoolLimit connectionPoolLimit;
+    @Qualifier("tableWriterExecutor")
+    private final ExecutorService tableWriterExecutor;
+
+    public DataInsertService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                             ImportProperties importProperties, FileParserUtil fileParserUtil,
+                             ConnectionPoolLimit connectionPoolLimit,
+                             @Qualifier("tableWriterExecutor") ExecutorService tableWriterExecutor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionManager = transactionManager;
+        this.importProperties = importProperties;
+        this.fileParserUtil = fileParserUtil;
+        this.connectionPoolLimit = connectionPoolLimit;
+        this.tableWriterExecutor = tableWriterExecutor;
+    }
+
+    /**
+     * Вставка всех строк из TableData способом по умолчанию (risktech.import.write-mode)
+     */
+    public InsertResult insertData(TableData tableData) {
+        return insertData(tableData, null);
+    }
 
     /**
-     * Вставка всех строк из TableData в уже созданную таблицу в бд
+     * Вставка всех строк из TableData в уже созданную таблицу в бд.
+     * INSERT: строки отправляются пачками через JDBC batch, размер пачки и граница транзакции
+     * берутся из {@link ImportProperties}.
+     * COPY: строки стримятся в COPY ... FROM STDIN (CSV) пачками по copy-batch-size.
      *
      * @param tableData
-     * @return количество вставленных строк
+     * @param writeMode способ записи, null – значение из настроек
+     * @return количество вставленных строк и время выполнения каждого batch
      */
-    public int insertData(TableData tableData) {
-        if (tableData == null) {
-            throw new BadRequestException("TableData is null");
+    public InsertResult insertData(TableData tableData, WriteMode writeMode) {
+        return insertData(tableData, writeMode, null);
+    }
+
+    /**
+     * @param writeParallelism число соединений для записи, null – из настроек
+     */
+    public InsertResult insertData(TableData tableData, WriteMode writeMode, Integer writeParallelism) {
+        validate(tableData);
+
+        int rowCount = tableData.getRowCount();
+        if (rowCount == 0) {
+            log.info("No rows to insert into table {}", tableData.getTableName());
+            return InsertResult.builder()
+                    .rowsInserted(0)
+                    .batches(List.of())
+                    .build();
         }
-        if (tableData.getTableName() == null || tableData.getTableName().isBlank()) {
-            throw new BadRequestException("Table name is empty");
+
+        try (TableWriter writer = openWriter(tableData, writeMode, rowCount, writeParallelism)) {
+            ColumnarRows columnar = tableData.getColumnar();
+            if (columnar != null) {
+                for (int row = 0; row < rowCount; row++) {
+                    writer.write(columnar, row);
+                }
+            } else {
+                for (List<Object> row : tableData.getRows()) {
+                    writer.write(row);
+                }
+            }
+            return writer.finish();
         }
+    }
 
+    /**
+     * Открываю writer для потоковой записи строк в уже созданную таблицу.
+     * В памяти держится не больше одной пачки, строки можно подавать прямо из RowCursor.
+     *
+     * @param tableData    имя таблицы и колонки (rows не используются)
+     * @param writeMode    способ записи, null – значение из настроек
+     * @param expectedRows ожидаемое число строк для режима AUTO или {@link #UNKNOWN_ROW_COUNT}
+     * Всегда одно соединение – целевую таблицу можно менять (ALTER) между пачками.
+     */
+    public TableWriter openWriter(TableData tableData, WriteMode writeMode, long expectedRows) {
+        return openWriter(tableData, writeMode, expectedRows, 1);
+    }
+
+    /**
+     * Writer на одном соединении с чекпоинтами возобновляемого импорта (фоновая задача)
+     */
+    public CheckpointTableWriter openCheckpointWriter(TableData tableData, WriteMode writeMode, long expectedRows) {
+        validate(tableData);
+        boolean transactionPerImport = importProperties.getTransactionMode() == TransactionMode.PER_IMPORT;
+        return createWriter(tableData.getTableName(), tableData.getColumns(), resolveWriteMode(writeMode, expectedRows),
+                transactionPerImport);
+    }
+
+    /**
+     * То же, но строки могут писаться на нескольких соединениях сразу ({@link ParallelTableWriter}):
+     * каждый writer в своей транзакции пишет в staging-таблицу, в целевую она публикуется в finish().
+     * Число соединений ограничено размером пула (DataSourceConfig) на все таблицы процесса сразу:
+     * если свободных меньше, writer-ов будет меньше, если меньше двух – таблица пишется одним соединением.
+     *
+     * @param writeParallelism число соединений, null – risktech.import.write-parallelism
+     */
+    public TableWriter openWriter(TableData tableData, WriteMode writeMode, long expectedRows,
+                                  Integer writeParallelism) {
+        validate(tableData);
+
+        String tableName = tableData.getTableName();
         List<ColumnMeta> columns = tableData.getColumns();
-        if (columns == null || columns.isEmpty()) {
-            throw new BadRequestException("Column list is empty");
+        WriteMode mode = resolveWriteMode(writeMode, expectedRows);
+
+        int writers = acquireWriters(resolveParallelism(writeParallelism), tableName);
+        if (writers <= 1) {
+            boolean transactionPerImport = importProperties.getTransactionMode() == TransactionMode.PER_IMPORT;
+            return createWriter(tableName, columns, mode, transactionPerImport);
         }
 
-        List<List<Object>> rows = tableData.getRows();
-        if (rows == null || rows.isEmpty()) {
-            log.info("No rows to insert into table {}", tableData.getTableName());
-            return 0;
+        // у каждого writer-а одна транзакция на всю его часть: откатить нужно всё, если упал хоть один.
+        // Таблица уже staging (load-mode STAGED) – вторая не нужна, её опубликует FileImportService.
+        int blockRows = mode == WriteMode.COPY ? importProperties.getCopyBatchSize() : importProperties.getBatchSize();
+        String stagingTable = tableData.isStaging() ? null : TableSchemaService.stagingTableName(tableName);
+        try {
+            return new ParallelTableWriter(jdbcTemplate, transactionManager, tableWriterExecutor,
+                    table -> createWriter(table, columns, mode, true),
+                    tableName, stagingTable, tableData.isCreated(), writers, blockRows,
+                    () -> connectionPoolLimit.releaseWriters(writers));
+        } catch (RuntimeException e) {
+            // staging не создалась – writer-ы не запускались
+            connectionPoolLimit.releaseWriters(writers);
+            throw e;
+        }
+    }
+
+    private AbstractTableWriter createWriter(String tableName, List<ColumnMeta> columns, WriteMode mode,
+                                     boolean transactionPerImport) {
+        if (mode == WriteMode.COPY) {
+            String sql = buildCopySql(tableName, columns);
+            log.info("Copying rows into table {} using SQL: {} (batch size {}, transaction {})",
+                    tableName, sql, importProperties.getCopyBatchSize(), transactionMode(transactionPerImport));
+
+            return new CopyTableWriter(jdbcTemplate, transactionManager, fileParserUtil, tableName, sql,
+                    columns.size(), importProperties.getCopyBatchSize(), transactionPerImport);
         }
 
-        String tableName = tableData.getTableName();
         String sql = buildInsertSql(tableName, columns);
+        log.info("Inserting rows into table {} using SQL: {} (batch size {}, transaction {})",
+                tableName, sql, importProperties.getBatchSize(), transactionMode(transactionPerImport));
+
+        return new BatchInsertTableWriter(jdbcTemplate, transactionManager, tableName, sql,
+                columns.size(), importProperties.getBatchSize(), transactionPerImport);
+    }
 
-        log.info("Inserting {} rows into table {} using SQL: {}", rows.size(), tableName, sql);
+    private TransactionMode transactionMode(boolean transactionPerImport) {
+        return transactionPerImport ? TransactionMode.PER_IMPORT : TransactionMode.PER_BATCH;
+    }
 
-        int totalInserted = 0;
+    private int resolveParallelism(Integer requested) {
+        int parallelism = requested != null ? requested : importProperties.getWriteParallelism();
+        if (parallelism < 1) {
+            throw new BadRequestException("writeParallelism must be at least 1");
+        }
+        if (parallelism == 1) {
+            return 1;
+        }
 
-        for (int i = 0; i < rows.size(); i++) {
-            List<Object> row = rows.get(i);
+        int max = connectionPoolLimit.maxParallelWriters();
+        if (parallelism > max) {
+            log.info("Write parallelism {} capped to {} by connection pool size {}",
+                    parallelism, max, connectionPoolLimit.maxPoolSize());
+            return max;
+        }
+        return parallelism;
+    }
 
-            if (row.size() != columns.size()) {
-                throw new BadRequestException(
-                        "Row " + i + " has " + row.size() + " values, but " + columns.size() + " columns expected"
-                );
-            }
+    /**
+     * Разрешения на соединения writer-ов общие для всех таблиц процесса: сколько свободно, столько и берётся
+     *
+     * @return число writer-ов; 1 – разрешения не взяты, таблица пишется одним соединением
+     */
+    private int acquireWriters(int parallelism, String tableName) {
+        if (parallelism <= 1) {
+            return 1;
+        }
+        int writers = connectionPoolLimit.acquireWriters(parallelism);
+        if (writers < 2) {
+            connectionPoolLimit.releaseWriters(writers);
+            log.info("Connection pool is taken by other writers, table {} is written on one connection", tableName);
+            return 1;
+        }
+        if (writers < parallelism) {
+            log.info("Only {} of {} writer connections are free for table {}", writers, parallelism, tableName);
+        }
+        return writers;
+    }
 
-            Object[] params = row.toArray(new Object[0]);
+    private void validate(TableData tableData) {
+        if (tableData == null) {
+            throw new BadRequestException("TableData is null");
+        }
+        if (tableData.getTableName() == null || tableData.getTableName().isBlank()) {
+            throw new BadRequestException("Table name is empty");
+        }
 
-            try {
-                jdbcTemplate.update(sql, params);
-                totalInserted++;
-            } catch (Exception e) {
-                log.error("Failed to insert row {} into table {}. Row values: {}", i, tableName, row, e);
-                throw e; // или можно завернуть в BadRequestException с message, если хочешь
-            }
+        List<ColumnMeta> columns = tableData.getColumns();
+        if (columns == null || columns.isEmpty()) {
+            throw new BadRequestException("Column list is empty");
         }
+    }
 
-        log.info("Inserted {} rows into table {}", totalInserted, tableName);
-        return totalInserted;
+    /**
+     * AUTO: COPY от порога copy-threshold-rows; если число строк неизвестно – тоже COPY,
+     * потоковый импорт без предварительного подсчёта нужен как раз для больших файлов
+     */
+    private WriteMode resolveWriteMode(WriteMode requested, long expectedRows) {
+        WriteMode mode = requested != null ? requested : importProperties.getWriteMode();
+        if (mode == null || mode == WriteMode.AUTO) {
+            return expectedRows == UNKNOWN_ROW_COUNT || expectedRows >= importProperties.getCopyThresholdRows()
+                    ? WriteMode.COPY
+                    : WriteMode.INSERT;
+        }
+        return mode;
     }
 
     /**
@@ -79,24 +254,37 @@ public class DataInsertService {
     private String buildInsertSql(String tableName, List<ColumnMeta> columns) {
         StringBuilder sb = new StringBuilder();
         sb.append("INSERT INTO ").append(tableName).append(" (");
+        appendColumnList(sb, columns);
+        sb.append(") VALUES (");
 
         for (int i = 0; i < columns.size(); i++) {
             if (i > 0) {
                 sb.append(", ");
             }
-            sb.append(columns.get(i).getName());
+            sb.append("?");
         }
 
-        sb.append(") VALUES (");
+        sb.append(")");
+        return sb.toString();
+    }
 
+    /**
+     * COPY table_name (col1, col2, ...) FROM STDIN (FORMAT csv)
+     */
+    private String buildCopySql(String tableName, List<ColumnMeta> columns) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("COPY ").append(tableName).append(" (");
+        appendColumnList(sb, columns);
+        sb.append(") FROM STDIN (FORMAT csv)");
+        return sb.toString();
+    }
+
+    private void appendColumnList(StringBuilder sb, List<ColumnMeta> columns) {
         for (int i = 0; i < columns.size(); i++) {
             if (i > 0) {
                 sb.append(", ");
             }
-            sb.append("?");
+            sb.append(columns.get(i).getName());
         }
-
-        sb.append(")");
-        return sb.toString();
     }
-}
\ No newline at end of file
+}
@@ -1,73 +1,713 @@
 package com.abrik.risktech.service;
 
+import com.abrik.risktech.config.ImportProperties;
 import com.abrik.risktech.dto.ImportResponseDto;
+import com.abrik.risktech.dto.ImportResponseDto.BatchInfo;
 import com.abrik.risktech.dto.ImportResponseDto.ColumnInfo;
+import com.abrik.risktech.dto.ImportResponseDto.SheetInfo;
+import com.abrik.risktech.dto.ImportResponseDto.StageInfo;
 import com.abrik.risktech.exception.BadRequestException;
 import com.abrik.risktech.model.ColumnMeta;
+import com.abrik.risktech.model.ImportCheckpoint;
+import com.abrik.risktech.model.ImportOptions;
+import com.abrik.risktech.model.ImportProgress;
+import com.abrik.risktech.model.ImportSource;
+import com.abrik.risktech.model.InferenceMode;
+import com.abrik.risktech.model.InsertResult;
+import com.abrik.risktech.model.InsertResult.StageStats;
+import com.abrik.risktech.model.LoadMode;
 import com.abrik.risktech.model.TableData;
+import com.abrik.risktech.model.WriteMode;
 import com.abrik.risktech.parser.FileParser;
-import lombok.RequiredArgsConstructor;
+import com.abrik.risktech.parser.RowCursor;
+import com.abrik.risktech.parser.WorkbookParser;
+import com.abrik.risktech.service.ImportMetrics.Stage;
+import com.abrik.risktech.util.ColumnTypeInferrer;
+import com.abrik.risktech.util.ContentHasher;
+import com.abrik.risktech.util.FileParserUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 @Service
 @Slf4j
 public class FileImportService {
     @Qualifier("csvFileParser")
     private final FileParser csvFileParser;
+    @Qualifier("parallelCsvFileParser")
+    private final FileParser parallelCsvFileParser;
     @Qualifier("xlsxFileParser")
 
     private final FileParser xlsxFileParser;
+    @Qualifier("xlsxStreamingFileParser")
+    private final FileParser xlsxStreamingFileParser;
     private final TableSchemaService tableSchemaService;
     private final DataInsertService dataInsertService;
+    private final ImportCheckpointService importCheckpointService;
+    private final ImportRegistryService importRegistryService;
+    private final SchemaCacheService schemaCacheService;
+    private final FileParserUtil fileParserUtil;
+    private final ImportProperties importProperties;
+    private final ImportMetrics importMetrics;
+    @Qualifier("sheetImportExecutor")
+    private final ExecutorService sheetImportExecutor;
+    @Qualifier("csvParserPool")
+    private final ForkJoinPool converterPool;
 
-    public FileImportService(FileParser csvFileParser, FileParser xlsxFileParser, TableSchemaService tableSchemaService, DataInsertService dataInsertService) {
+    public FileImportService(FileParser csvFileParser, FileParser parallelCsvFileParser, FileParser xlsxFileParser,
+                             FileParser xlsxStreamingFileParser, TableSchemaService tableSchemaService,
+                             DataInsertService dataInsertService, ImportCheckpointService importCheckpointService,
+                             ImportRegistryService importRegistryService, SchemaCacheService schemaCacheService,
+                             FileParserUtil fileParserUtil,
+                             ImportProperties importProperties, ImportMetrics importMetrics,
+                             @Qualifier("sheetImportExecutor") ExecutorService sheetImportExecutor,
+                             @Qualifier("csvParserPool") ForkJoinPool converterPool) {
         this.csvFileParser = csvFileParser;
+        this.parallelCsvFileParser = parallelCsvFileParser;
         this.xlsxFileParser = xlsxFileParser;
+        this.xlsxStreamingFileParser = xlsxStreamingFileParser;
         this.tableSchemaService = tableSchemaService;
         this.dataInsertService = dataInsertService;
+        this.importCheckpointService = importCheckpointService;
+        this.importRegistryService = importRegistryService;
+        this.schemaCacheService = schemaCacheService;
+        this.fileParserUtil = fileParserUtil;
+        this.importProperties = importProperties;
+        this.importMetrics = importMetrics;
+        this.sheetImportExecutor = sheetImportExecutor;
+        this.converterPool = converterPool;
     }
 
     public ImportResponseDto importFile(MultipartFile file) {
-        String originalFilename = file.getOriginalFilename();
+        return importFile(file, ImportOptions.builder().build());
+    }
+
+    /**
+     * @param options параметры из запроса (способ записи, вывод типов), null-поля берутся из настроек
+     */
+    public ImportResponseDto importFile(MultipartFile file, ImportOptions options) {
+        return importFile(ImportSource.of(file), options, new ImportProgress());
+    }
+
+    /**
+     * @param progress счётчики прочитанных и записанных строк, обновляются по ходу импорта
+     */
+    public ImportResponseDto importFile(ImportSource file, ImportOptions options, ImportProgress progress) {
+        String originalFilename = file.getFilename();
         if (originalFilename == null) {
             throw new BadRequestException("Unavailable define name of file");
         }
 
+        if (!importProperties.isDeduplicate()) {
+            return importContent(file, originalFilename, options, progress);
+        }
+        if (!file.isRepeatable()) {
+            return importHashedOnce(file, originalFilename, options, progress);
+        }
+        if (file.getContentHash() == null && file.getPath() == null) {
+            // multipart: SHA-256 считается, пока загрузка сохраняется на диск, повтор проверяется
+            // по нему до записи, а проходы импорта читают уже копию – отдельного чтения ради хэша нет
+            return importSpooled(file, true, options, progress);
+        }
+
+        // файл на диске без хэша – читается локально, без повторной загрузки
+        String contentHash = file.getContentHash() != null ? file.getContentHash() : hashContent(file);
+        if (!options.isForceReload()) {
+            Optional<ImportResponseDto> previous = importRegistryService.find(contentHash, options);
+            if (previous.isPresent()) {
+                log.info("{} was already imported (SHA-256 {}), returning the previous result",
+                        originalFilename, contentHash);
+                importMetrics.duplicate(originalFilename);
+                return previous.get();
+            }
+        }
+
+        ImportResponseDto response = importContent(file, originalFilename, options, progress);
+        response.setContentHash(contentHash);
+        importRegistryService.register(contentHash, options, originalFilename, response);
+        return response;
+    }
+
+    /**
+     * Тело запроса читается один раз: хэш считается по ходу разбора, проверить повтор до импорта нельзя –
+     * импорт только регистрируется. XLSX сначала сохраняется на диск, и повтор проверяется уже по копии.
+     */
+    private ImportResponseDto importHashedOnce(ImportSource body, String originalFilename, ImportOptions options,
+                                               ImportProgress progress) {
+        AtomicReference<ContentHasher> hasher = new AtomicReference<>();
+        ImportSource hashed = new ImportSource() {
+            @Override
+            public String getFilename() {
+                return body.getFilename();
+            }
+
+            @Override
+            public long getSize() {
+                return body.getSize();
+            }
+
+            @Override
+            public InputStream openStream() throws IOException {
+                ContentHasher stream = new ContentHasher(body.openStream());
+                hasher.set(stream);
+                return stream;
+            }
+
+            @Override
+            public boolean isRepeatable() {
+                return false;
+            }
+        };
+
+        ImportResponseDto response = importContent(hashed, originalFilename, options, progress);
+        ContentHasher stream = hasher.get();
+        // парсер мог остановиться до конца тела – хэш части файла регистрировать нельзя
+        if (response.getContentHash() == null && stream != null && stream.isComplete()) {
+            String contentHash = stream.hex();
+            response.setContentHash(contentHash);
+            importRegistryService.register(contentHash, options, originalFilename, response);
+        }
+        return response;
+    }
+
+    private String hashContent(ImportSource file) {
+        try {
+            return ContentHasher.hash(file.openStream());
+        } catch (IOException e) {
+            log.error("Error reading the file: ", e);
+            throw new BadRequestException("Error reading the file: " + e.getMessage());
+        }
+    }
+
+    private ImportResponseDto importContent(ImportSource file, String originalFilename, ImportOptions options,
+                                            ImportProgress progress) {
         String extension = getExtension(originalFilename);
         log.info("File name: {}, extension: {}", originalFilename, extension);
 
-        FileParser parser = chooseParser(extension);
-        TableData tableData = parseFile(file, parser);
+        if (extension.equals("zip")) {
+            return importArchive(file, originalFilename, options, progress);
+        }
 
-        // Тут генерация имени таблицы (на основе имени файла + timestamp)
-        String tableName = generateTableName(originalFilename);
-        tableData.setTableName(tableName);
+        String format = extension;
+        long bytes = file.getSize();
+        if (extension.equals("gz")) {
+            // Распаковка – потоком перед парсером; размер в метриках – сжатый, столько байт и читается
+            file = ImportSource.gunzip(file);
+            extension = getExtension(file.getFilename());
+            format = extension + ".gz";
+        }
+
+        FileParser parser = chooseParser(extension, file);
+        if (file.getPath() == null && (extension.equals("xlsx") || parser == parallelCsvFileParser)) {
+            // XLSX – zip с оглавлением в конце, параллельный CSV режет файл на куски: обоим нужен файл на диске.
+            // Копия делается один раз на импорт, все проходы (вывод типов, запись) читают её
+            boolean checkRegistry = importProperties.isDeduplicate() && !file.isRepeatable();
+            return importSpooled(file, checkRegistry, options, progress);
+        }
+
+        ImportMetrics.Recorder metrics = importMetrics.start(format, parser.getClass().getSimpleName(), bytes);
+        try {
+            ImportResponseDto response = importFile(file, extension, parser, options, progress, metrics);
+            metrics.success(response.getRowsInserted());
+            return response;
+        } catch (RuntimeException e) {
+            metrics.failure(e);
+            throw e;
+        }
+    }
 
-        // Создаю таблицу в бд
-        tableSchemaService.createTable(tableData);
+    private ImportResponseDto importFile(ImportSource file, String extension, FileParser parser,
+                                         ImportOptions options, ImportProgress progress,
+                                         ImportMetrics.Recorder metrics) {
+        String originalFilename = file.getFilename();
+        boolean sheetsSelected = options.getSheets() != null && !options.getSheets().isEmpty();
+        if (options.isAllSheets() || sheetsSelected) {
+            if (!(parser instanceof WorkbookParser workbookParser)) {
+                throw new BadRequestException("Sheet selection is supported only for .xlsx files");
+            }
+            return importSheets(file, workbookParser, originalFilename, options, progress, metrics);
+        }
 
-        // Вставляю наши строки из таблицы
-        int rowsInserted = dataInsertService.insertData(tableData);
+        // Тут генерация имени таблицы (на основе имени файла + timestamp)
+        String tableName = generateTableName(getBaseName(originalFilename));
 
-        List<ColumnInfo> columnInfos = buildColumnInfoList(tableData);
+        Path path = file.getPath();
+        TableSource source = new TableSource(
+                extension.toUpperCase(Locale.ROOT) + " file",
+                getBaseName(originalFilename),
+                () -> path != null ? parser.openCursor(path) : parser.openCursor(file.openStream()),
+                () -> path != null ? parser.parseFile(path) : parser.parseFile(file.openStream()),
+                file.isRepeatable(),
+                metrics
+        );
+        ImportedTable imported = importTable(tableName, source, options, progress);
 
+        InsertResult insertResult = imported.insertResult();
         return ImportResponseDto.builder()
-                .tableName(tableName)
-                .columns(columnInfos)
-                .rowsInserted(rowsInserted)
+                .tableName(imported.tableData().getTableName())
+                .columns(buildColumnInfoList(imported.tableData()))
+                .rowsInserted(insertResult.getRowsInserted())
+                .rowsMerged(imported.rowsMerged())
+                .resumedFromRow(imported.resumedFromRow())
+                .writeMode(insertResult.getWriteMode())
+                .insertDurationMs(insertResult.getDurationMs())
+                .batches(buildBatchInfoList(insertResult))
+                .writers(insertResult.getWriters())
+                .pipeline(buildStageInfoList(insertResult.getStages()))
                 .build();
     }
 
+    /**
+     * Создание таблицы и запись строк одним из трёх способов (потоково FULL / SAMPLE или целиком в памяти).
+     * STAGED: всё это делается с UNLOGGED staging-таблицей, которая в конце публикуется под tableName,
+     * а при ошибке удаляется – недогруженная таблица никому не видна.
+     */
+    private ImportedTable importTable(String tableName, TableSource source, ImportOptions options,
+                                      ImportProgress progress) {
+        if (options.getTargetTable() != null) {
+            return mergeTable(tableName, source, options, progress);
+        }
+
+        LoadMode loadMode = options.getLoadMode() != null ? options.getLoadMode() : importProperties.getLoadMode();
+        if (loadMode != LoadMode.STAGED) {
+            ImportedTable imported = loadTable(tableName, false, source, options, progress);
+            source.metrics().written(imported.insertResult());
+            return imported;
+        }
+
+        String stagingTable = TableSchemaService.stagingTableName(tableName);
+        try {
+            ImportedTable imported = loadTable(stagingTable, true, source, options, progress);
+            source.metrics().written(imported.insertResult());
+            source.metrics().time(Stage.DDL, () -> tableSchemaService.publishTable(imported.tableData(), tableName));
+            return imported;
+        } catch (RuntimeException e) {
+            log.warn("Import into {} failed, dropping staging table {}", tableName, stagingTable);
+            tableSchemaService.dropTableQuietly(stagingTable);
+            throw e;
+        }
+    }
+
+    /**
+     * Дозапись в существующую targetTable: файл грузится в staging-таблицу (UNLOGGED, а не TEMP – её пишут
+     * несколько соединений), затем переносится одним запросом INSERT ... SELECT / ON CONFLICT / MERGE.
+     * Цель меняется одной командой – недогруженный файл в ней не виден. staging удаляется в любом случае.
+     */
+    private ImportedTable mergeTable(String tableName, TableSource source, ImportOptions options,
+                                     ImportProgress progress) {
+        ImportOptions loadOptions = options;
+        if (options.getKeyColumns() != null && !options.getKeyColumns().isEmpty()) {
+            // из повторов ключа побеждает последняя строка по ctid – staging пишется одним соединением
+            // и в порядке файла, иначе выбранная строка зависела бы от того, какой writer успел раньше
+            int writeParallelism = options.getWriteParallelism() != null
+                    ? options.getWriteParallelism()
+                    : importProperties.getWriteParallelism();
+            if (writeParallelism > 1) {
+                log.info("Merge by key keeps the last row of each key, {} is written on one connection",
+                        source.label());
+            }
+            loadOptions = options.toBuilder().writeParallelism(1).build();
+            source = source.inFileOrder();
+        }
+
+        String stagingTable = TableSchemaService.stagingTableName(tableName);
+        try {
+            ImportedTable imported = loadTable(stagingTable, true, source, loadOptions, progress);
+            source.metrics().written(imported.insertResult());
+            int rowsMerged = source.metrics().time(Stage.MERGE, () -> tableSchemaService.mergeInto(
+                    imported.tableData(), options.getTargetTable(), options.getKeyColumns()));
+            log.info("{}: {} rows merged into {}", source.label(), rowsMerged, imported.tableData().getTableName());
+            return new ImportedTable(imported.tableData(), imported.insertResult(), 0, rowsMerged);
+        } finally {
+            tableSchemaService.dropTableQuietly(stagingTable);
+        }
+    }
+
+    private ImportedTable loadTable(String tableName, boolean staging, TableSource source, ImportOptions options,
+                                    ImportProgress progress) {
+        WriteMode writeMode = options.getWriteMode();
+        Integer writeParallelism = options.getWriteParallelism();
+        InferenceMode inferenceMode = options.getInferenceMode() != null
+                ? options.getInferenceMode()
+                : importProperties.getInferenceMode();
+        if (!source.repeatable() && importProperties.isStreaming() && inferenceMode == InferenceMode.FULL) {
+            // тело запроса читается один раз – второго прохода для FULL нет
+            log.info("{} is read once, column types are inferred from the first {} rows",
+                    source.label(), importProperties.getSampleRows());
+            inferenceMode = InferenceMode.SAMPLE;
+        }
+
+        TableData tableData;
+        InsertResult insertResult;
+
+        if (importProperties.isStreaming() && inferenceMode == InferenceMode.SAMPLE) {
+            // Один проход: типы по первым строкам, таблица создаётся сразу, при несовпадении колонка расширяется
+            tableData = TableData.builder()
+                    .tableName(tableName)
+                    .staging(staging)
+                    .build();
+            if (writeParallelism != null && writeParallelism > 1) {
+                log.info("SAMPLE inference alters columns while writing, {} is written on one connection", source.label());
+            }
+            insertResult = streamSampled(source, tableData, writeMode, progress);
+        } else if (importProperties.isStreaming() && checkpointJob(options, staging) != null) {
+            return loadResumable(options.getJobId(), tableName, source, writeMode, progress);
+        } else if (importProperties.isStreaming()) {
+            tableData = TableData.builder()
+                    .tableName(tableName)
+                    .staging(staging)
+                    .build();
+            insertResult = streamFull(source, tableData, writeMode, writeParallelism, progress);
+        } else {
+            tableData = parseFile(source);
+            tableData.setTableName(tableName);
+            tableData.setStaging(staging);
+            progress.rowsParsed(tableData.getRowCount());
+
+            // Создаю таблицу в бд
+            createTable(source, tableData);
+
+            // Вставляю наши строки из таблицы
+            insertResult = dataInsertService.insertData(tableData, writeMode, writeParallelism);
+            progress.rowsInserted(insertResult.getRowsInserted());
+        }
+
+        return new ImportedTable(tableData, insertResult, 0);
+    }
+
+    /**
+     * Чекпоинты пишутся только там, где закоммиченные пачки переживают сбой: фоновая задача,
+     * DIRECT и одно соединение (staging и параллельная запись откатываются целиком)
+     */
+    private UUID checkpointJob(ImportOptions options, boolean staging) {
+        if (options.getJobId() == null || !importProperties.isCheckpoints() || staging) {
+            return null;
+        }
+        int writeParallelism = options.getWriteParallelism() != null
+                ? options.getWriteParallelism()
+                : importProperties.getWriteParallelism();
+        return writeParallelism <= 1 ? options.getJobId() : null;
+    }
+
+    /**
+     * Потоковый FULL фоновой задачи с чекпоинтом после каждой пачки. При повторе задачи запись
+     * продолжается в ту же таблицу с закоммиченной строки: типы берутся из чекпоинта,
+     * строки до него не конвертируются и не пишутся заново, уже дописанная таблица пропускается.
+     */
+    private ImportedTable loadResumable(UUID jobId, String tableName, TableSource source, WriteMode writeMode,
+                                        ImportProgress progress) {
+        String label = source.label();
+        ImportCheckpoint checkpoint = importCheckpointService.find(jobId, label).orElse(null);
+
+        if (checkpoint != null && checkpoint.isCompleted()) {
+            log.info("{} of job {} is already loaded into {}", label, jobId, checkpoint.getTableName());
+            TableData tableData = TableData.builder()
+                    .tableName(checkpoint.getTableName())
+                    .columns(checkpoint.getColumns())
+                    .build();
+            InsertResult nothingLeft = InsertResult.builder().batches(List.of()).build();
+            return new ImportedTable(tableData, nothingLeft, checkpoint.getRowsCommitted());
+        }
+
+        TableData tableData;
+        StreamedSchema schema;
+        long resumeFrom;
+        if (checkpoint != null) {
+            tableData = TableData.builder()
+                    .tableName(checkpoint.getTableName())
+                    .columns(checkpoint.getColumns())
+                    .build();
+            List<Class<?>> columnTypes = checkpoint.getColumns().stream()
+                    .<Class<?>>map(ColumnMeta::getJavaType)
+                    .toList();
+            List<String> headers = checkpoint.getColumns().stream().map(ColumnMeta::getName).toList();
+            schema = new StreamedSchema(headers, checkpoint.getColumns(), columnTypes,
+                    DataInsertService.UNKNOWN_ROW_COUNT);
+            resumeFrom = checkpoint.getRowsCommitted();
+            log.info("Resuming {} of job {} into {} from row {}", label, jobId, tableData.getTableName(), resumeFrom);
+        } else {
+            schema = inferSchema(source);
+            tableData = TableData.builder()
+                    .tableName(tableName)
+                    .columns(schema.columns())
+                    .build();
+            createTable(source, tableData);
+            importCheckpointService.start(jobId, label, tableData);
+            resumeFrom = 0;
+        }
+
+        InsertResult insertResult = streamRows(source, tableData, schema, writeMode, 1, progress, resumeFrom,
+                rows -> importCheckpointService.commit(jobId, label, resumeFrom + rows));
+        importCheckpointService.complete(jobId, label, resumeFrom + insertResult.getRowsInserted());
+        return new ImportedTable(tableData, insertResult, resumeFrom);
+    }
+
+    /**
+     * Каждый лист – отдельная таблица. Листы импортируются параллельно на sheetImportExecutor,
+     * поэтому общее время близко ко времени самого большого листа, а не к сумме.
+     * Курсоры листов читают один файл на диске независимо; поток сохраняется на диск один раз.
+     */
+    private ImportResponseDto importSheets(ImportSource file, WorkbookParser parser, String originalFilename,
+                                           ImportOptions options, ImportProgress progress,
+                                           ImportMetrics.Recorder metrics) {
+        long start = System.nanoTime();
+        Path spooled = null;
+        try {
+            Path workbook = file.getPath();
+            if (workbook == null) {
+                spooled = Files.createTempFile("risktech-", ".xlsx");
+                try (InputStream in = file.openStream()) {
+                    Files.copy(in, spooled, StandardCopyOption.REPLACE_EXISTING);
+                }
+                metrics.record(Stage.SPOOL, System.nanoTime() - start);
+                workbook = spooled;
+            }
+
+            List<String> sheetNames = selectSheets(parser.getSheetNames(workbook), options);
+            log.info("Importing {} sheets of {} with parallelism {}", sheetNames.size(), originalFilename,
+                    importProperties.getSheetParallelism());
+
+            String baseName = getBaseName(originalFilename);
+            Set<String> usedTableNames = new HashSet<>();
+            List<Future<SheetInfo>> futures = new ArrayList<>(sheetNames.size());
+
+            Path workbookFile = workbook;
+            for (String sheetName : sheetNames) {
+                String tableName = uniqueTableName(generateTableName(baseName + "_" + sheetName), usedTableNames);
+                TableSource source = new TableSource(
+                        "Sheet '" + sheetName + "'",
+                        baseName + "/" + sheetName,
+                        () -> parser.openCursor(workbookFile, sheetName),
+                        () -> parser.parseSheet(workbookFile, sheetName),
+                        true,
+                        metrics
+                );
+                futures.add(sheetImportExecutor.submit(() ->
+                        buildSheetInfo(sheetName, importTable(tableName, source, options, progress))));
+            }
+
+            List<SheetInfo> sheets = awaitAll(futures);
+
+            return ImportResponseDto.builder()
+                    .rowsInserted(sheets.stream().mapToInt(SheetInfo::getRowsInserted).sum())
+                    .insertDurationMs((System.nanoTime() - start) / 1_000_000)
+                    .sheets(sheets)
+                    .build();
+        } catch (IOException e) {
+            log.error("Error reading the file: ", e);
+            throw new BadRequestException("Error reading the file: " + e.getMessage());
+        } finally {
+            if (spooled != null) {
+                try {
+                    Files.deleteIfExists(spooled);
+                } catch (IOException e) {
+                    log.warn("Failed to delete spooled XLSX file {}: {}", spooled, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Каждый CSV / XLSX внутри zip – отдельная таблица, записи импортируются параллельно на sheetImportExecutor.
+     * Архив читается с диска как есть, сжатым (поток сначала сохраняется): ZipFile открывает записи независимо друг от друга,
+     * каждая распаковывается на лету, распакованные данные на диск не пишутся.
+     */
+    private ImportResponseDto importArchive(ImportSource file, String originalFilename, ImportOptions options,
+                                            ImportProgress progress) {
+        if (options.isAllSheets() || (options.getSheets() != null && !options.getSheets().isEmpty())) {
+            throw new BadRequestException("Sheet selection is not supported for .zip archives");
+        }
+
+        long start = System.nanoTime();
+        Path spooled = null;
+        try {
+            Path archive = file.getPath();
+            if (archive == null) {
+                spooled = Files.createTempFile("risktech-", ".zip");
+                try (InputStream in = file.openStream()) {
+                    Files.copy(in, spooled, StandardCopyOption.REPLACE_EXISTING);
+                }
+                importMetrics.spooled(originalFilename, System.nanoTime() - start);
+                archive = spooled;
+            }
+
+            try (ZipFile zip = new ZipFile(archive.toFile())) {
+                List<? extends ZipEntry> entries = zip.stream()
+                        .filter(entry -> !entry.isDirectory() && isImportableEntry(entry.getName()))
+                        .toList();
+                if (entries.isEmpty()) {
+                    throw new BadRequestException("ZIP archive does not contain .csv or .xlsx files");
+                }
+                log.info("Importing {} entries of {} with parallelism {}", entries.size(), originalFilename,
+                        importProperties.getSheetParallelism());
+
+                String baseName = getBaseName(originalFilename);
+                Set<String> usedTableNames = new HashSet<>();
+                List<Future<SheetInfo>> futures = new ArrayList<>(entries.size());
+
+                for (ZipEntry entry : entries) {
+                    ImportSource entrySource = ImportSource.of(zip, entry);
+                    String tableName = uniqueTableName(
+                            generateTableName(baseName + "_" + getBaseName(entrySource.getFilename())), usedTableNames);
+                    String feed = baseName + "/" + getBaseName(entrySource.getFilename());
+                    futures.add(sheetImportExecutor.submit(() -> buildSheetInfo(entry.getName(),
+                            importEntry(tableName, feed, entrySource, options, progress))));
+                }
+
+                List<SheetInfo> imported = awaitAll(futures);
+
+                return ImportResponseDto.builder()
+                        .rowsInserted(imported.stream().mapToInt(SheetInfo::getRowsInserted).sum())
+                        .insertDurationMs((System.nanoTime() - start) / 1_000_000)
+                        .entries(imported)
+                        .build();
+            }
+        } catch (IOException e) {
+            log.error("Error reading the file: ", e);
+            throw new BadRequestException("Error reading the file: " + e.getMessage());
+        } finally {
+            if (spooled != null) {
+                try {
+                    Files.deleteIfExists(spooled);
+                } catch (IOException e) {
+                    log.warn("Failed to delete spooled ZIP file {}: {}", spooled, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Одна запись архива – как отдельный файл, со своими метриками.
+     * CSV всегда читает последовательный парсер: параллельный сначала распаковал бы запись на диск.
+     * XLSX без файла на диске не прочитать – запись распаковывается один раз, все проходы читают копию.
+     */
+    private ImportedTable importEntry(String tableName, String feed, ImportSource entry, ImportOptions options,
+                                      ImportProgress progress) {
+        String extension = getExtension(entry.getFilename());
+        FileParser parser = extension.equals("csv") ? csvFileParser : chooseParser(extension, entry);
+        ImportMetrics.Recorder metrics = importMetrics.start(extension, parser.getClass().getSimpleName(),
+                entry.getSize());
+        Path spooled = null;
+        try {
+            if (extension.equals("xlsx")) {
+                long start = System.nanoTime();
+                spooled = Files.createTempFile("risktech-", ".xlsx");
+                try (InputStream in = entry.openStream()) {
+                    Files.copy(in, spooled, StandardCopyOption.REPLACE_EXISTING);
+                }
+                metrics.record(Stage.SPOOL, System.nanoTime() - start);
+            }
+            Path path = spooled;
+            TableSource source = new TableSource(
+                    "Entry '" + entry.getFilename() + "'",
+                    feed,
+                    () -> path != null ? parser.openCursor(path) : parser.openCursor(entry.openStream()),
+                    () -> path != null ? parser.parseFile(path) : parser.parseFile(entry.openStream()),
+                    true,
+                    metrics
+            );
+            ImportedTable imported = importTable(tableName, source, options, progress);
+            metrics.success(imported.insertResult().getRowsInserted());
+            return imported;
+        } catch (IOException e) {
+            metrics.failure(e);
+            log.error("Error reading the file: ", e);
+            throw new BadRequestException("Error reading the file: " + e.getMessage());
+        } catch (RuntimeException e) {
+            metrics.failure(e);
+            throw e;
+        } finally {
+            if (spooled != null) {
+                try {
+                    Files.deleteIfExists(spooled);
+                } catch (IOException e) {
+                    log.warn("Failed to delete spooled XLSX entry {}: {}", spooled, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private boolean isImportableEntry(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        // __MACOSX/ – служебные копии, которые добавляет архиватор macOS
+        return !lower.startsWith("__macosx/") && (lower.endsWith(".csv") || lower.endsWith(".xlsx"));
+    }
+
+    private List<String> selectSheets(List<String> available, ImportOptions options) {
+        if (options.getSheets() == null || options.getSheets().isEmpty()) {
+            if (available.isEmpty()) {
+                throw new BadRequestException("XLSX file does not contain any sheets");
+            }
+            return available;
+        }
+
+        List<String> selected = new ArrayList<>();
+        for (String sheetName : options.getSheets()) {
+            if (!available.contains(sheetName)) {
+                throw new BadRequestException("Sheet '" + sheetName + "' not found in XLSX file");
+            }
+            if (!selected.contains(sheetName)) {
+                selected.add(sheetName);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Ждёт все листы, даже если какой-то упал: временный файл удаляется только после того,
+     * как его перестали читать. Первая ошибка пробрасывается дальше.
+     */
+    private List<SheetInfo> awaitAll(List<Future<SheetInfo>> futures) {
+        List<SheetInfo> results = new ArrayList<>(futures.size());
+        RuntimeException failure = null;
+
+        for (Future<SheetInfo> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException runtime
+                            ? runtime
+                            : new IllegalStateException("Sheet import failed", e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                throw new IllegalStateException("Sheet import was interrupted", e);
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
     private String getExtension(String filename) {
         int dotIdx = filename.lastIndexOf('.');
         if (dotIdx == -1 || dotIdx == filename.length() - 1) {
@@ -76,31 +716,385 @@ public class FileImportService {
         return filename.substring(dotIdx + 1).toLowerCase(Locale.ROOT);
     }
 
-    private FileParser chooseParser(String extension) {
+    /**
+     * Параллельный CSV-парсер режет сохранённый на диск файл на куски – тело запроса он сначала
+     * сохранил бы целиком, поэтому такой поток читает последовательный парсер.
+     * Размер неизвестен (-1, распаковка gzip) – тоже последовательный: порог сравнить не с чем.
+     */
+    private FileParser chooseParser(String extension, ImportSource file) {
         switch (extension) {
             case "csv":
-                return csvFileParser;
+                long size = file.getSize();
+                boolean knownSize = size >= 0;
+                return importProperties.isCsvParallel() && file.isRepeatable() && knownSize
+                        && size >= importProperties.getCsvParallelThresholdBytes()
+                        ? parallelCsvFileParser
+                        : csvFileParser;
             case "xlsx":
-                return xlsxFileParser;
+                return importProperties.getXlsxParser() == ImportProperties.XlsxParser.USERMODEL
+                        ? xlsxFileParser
+                        : xlsxStreamingFileParser;
             default:
-                throw new BadRequestException("Only .csv and .xlsx files are supported.");
+                throw new BadRequestException("Only .csv and .xlsx files (also as .gz or inside .zip) are supported.");
+        }
+    }
+
+    /**
+     * Поток сохраняется во временный файл и импортируется как файл на диске.
+     *
+     * @param checkRegistry SHA-256 считается при копировании и повтор проверяется по нему без второго чтения
+     */
+    private ImportResponseDto importSpooled(ImportSource file, boolean checkRegistry, ImportOptions options,
+                                            ImportProgress progress) {
+        Path spooled = null;
+        try {
+            long start = System.nanoTime();
+            spooled = Files.createTempFile("risktech-", ".upload");
+            String contentHash = null;
+            try (InputStream in = checkRegistry ? new ContentHasher(file.openStream()) : file.openStream()) {
+                Files.copy(in, spooled, StandardCopyOption.REPLACE_EXISTING);
+                if (in instanceof ContentHasher hasher) {
+                    contentHash = hasher.hex();
+                }
+            }
+            importMetrics.spooled(file.getFilename(), System.nanoTime() - start);
+            ImportSource copy = ImportSource.of(spooled, file.getFilename(), contentHash);
+            return checkRegistry
+                    ? importFile(copy, options, progress)
+                    : importContent(copy, copy.getFilename(), options, progress);
+        } catch (IOException e) {
+            log.error("Error reading the file: ", e);
+            throw new BadRequestException("Error reading the file: " + e.getMessage());
+        } finally {
+            if (spooled != null) {
+                try {
+                    Files.deleteIfExists(spooled);
+                } catch (IOException e) {
+                    log.warn("Failed to delete spooled file {}: {}", spooled, e.getMessage());
+                }
+            }
         }
     }
 
-    private TableData parseFile(MultipartFile file, FileParser parser) {
+    private TableData parseFile(TableSource source) {
         try {
-            return parser.parseFile(file.getInputStream());
+            long start = System.nanoTime();
+            TableData tableData = source.table().open();
+            source.metrics().record(Stage.PARSE, System.nanoTime() - start);
+            return tableData;
+        } catch (IOException e) {
+            log.error("Error reading the file: ", e);
+            throw new BadRequestException("Error reading the file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Потоковый FULL. По заголовкам курсора первого прохода ищется кэш схем: если типы этой выгрузки
+     * известны по прошлым импортам, тот же курсор сразу пишется – один проход без вывода типов.
+     * Иначе по нему же выводятся типы, а второй проход – конвертация и запись пачками.
+     */
+    private InsertResult streamFull(TableSource source, TableData tableData, WriteMode writeMode,
+                                    Integer writeParallelism, ImportProgress progress) {
+        StreamedSchema schema;
+        try (RowCursor cursor = source.cursor().open()) {
+            List<Class<?>> cachedTypes = cachedColumnTypes(source, cursor.getHeaders()).orElse(null);
+            if (cachedTypes != null) {
+                if (writeParallelism != null && writeParallelism > 1) {
+                    log.info("Cached column types may be widened while writing, {} is written on one connection",
+                            source.label());
+                }
+                return streamSampled(source, cursor, cachedTypes, tableData, writeMode, progress);
+            }
+            schema = inferSchema(source, cursor);
+        } catch (IOException e) {
+            log.error("Error reading the file: ", e);
+            throw new BadRequestException("Error reading the file: " + e.getMessage());
+        }
+
+        tableData.setColumns(schema.columns());
+        createTable(source, tableData);
+        InsertResult insertResult = streamRows(source, tableData, schema, writeMode, writeParallelism, progress,
+                0, null);
+        rememberColumnTypes(source, schema.headers(), schema.columnTypes());
+        return insertResult;
+    }
+
+    private StreamedSchema inferSchema(TableSource source) {
+        try (RowCursor cursor = source.cursor().open()) {
+            return inferSchema(source, cursor);
         } catch (IOException e) {
             log.error("Error reading the file: ", e);
             throw new BadRequestException("Error reading the file: " + e.getMessage());
         }
     }
 
-    private String generateTableName(String originalFilename) {
+    /**
+     * Проход по файлу через RowCursor: типы колонок и число строк, сами строки не сохраняются
+     */
+    private StreamedSchema inferSchema(TableSource source, RowCursor cursor) throws IOException {
+        long start = System.nanoTime();
+        List<String> headers = cursor.getHeaders();
+        ColumnTypeInferrer inferrer = fileParserUtil.newTypeInferrer(headers.size());
+        cursor.inferTypes(inferrer);
+
+        if (inferrer.getRowCount() == 0) {
+            throw new BadRequestException(source.label() + " does not contain any data rows");
+        }
+
+        log.info("Scanned {}: {} columns, {} rows", source.label(), headers.size(), inferrer.getRowCount());
+        source.metrics().record(Stage.INFER, System.nanoTime() - start);
+
+        List<Class<?>> columnTypes = inferrer.getColumnTypes();
+        return new StreamedSchema(headers, fileParserUtil.buildColumns(headers, inferrer), columnTypes,
+                inferrer.getRowCount());
+    }
+
+    /**
+     * Второй проход: строка читается, конвертируется и сразу уходит в writer
+     *
+     * @param skipRows   строк файла, уже записанных до чекпоинта
+     * @param checkpoint получает число записанных строк в транзакции каждой пачки, null – без чекпоинтов
+     */
+    private InsertResult streamRows(TableSource source, TableData tableData, StreamedSchema schema,
+                                    WriteMode writeMode, Integer writeParallelism, ImportProgress progress,
+                                    long skipRows, LongConsumer checkpoint) {
+        try (RowCursor cursor = source.cursor().open();
+             TableWriter writer = openStreamWriter(tableData, writeMode, schema.rowCount(), writeParallelism,
+                     checkpoint)) {
+            writer.setBatchListener(progress::rowsInserted);
+            // параллельный курсор конвертирует сам, convertRow для готовых значений почти бесплатен
+            cursor.convertTo(schema.columnTypes());
+            if (checkpoint != null || source.fileOrder()) {
+                // чекпоинт – число первых строк файла, merge по ключу берёт последнюю строку:
+                // куски не должны приходить по готовности
+                cursor.keepFileOrder();
+            }
+            if (skipRows > 0) {
+                long skipped = cursor.skip(skipRows);
+                log.info("Skipped {} rows of {} committed before the checkpoint", skipped, source.label());
+            }
+            if (importProperties.isPipeline()) {
+                // разбор на своём потоке, конвертация на converterPool, запись здесь
+                ImportPipeline pipeline = new ImportPipeline(fileParserUtil, converterPool,
+                        converterPool.getParallelism(), importProperties.getPipelineBlockRows(),
+                        importProperties.getPipelineQueueBlocks());
+                return pipeline.run(cursor, schema.columnTypes(), writer, progress);
+            }
+            long loopStart = System.nanoTime();
+            long convertNanos = 0;
+            while (cursor.hasNext()) {
+                List<Object> row = cursor.next();
+                long convertStart = System.nanoTime();
+                List<Object> typedRow = fileParserUtil.convertRow(row, schema.columnTypes());
+                convertNanos += System.nanoTime() - convertStart;
+                writer.write(typedRow);
+                progress.rowParsed();
+            }
+            InsertResult result = writer.finish();
+            source.metrics().interleaved(System.nanoTime() - loopStart, convertNanos, result);
+            return result;
+        } catch (IOException e) {
+            log.error("Error reading the file: ", e);
+            throw new BadRequestException("Error reading the file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * С чекпоинтом – всегда одно соединение (checkpointJob не выбирает параллельную запись)
+     */
+    private TableWriter openStreamWriter(TableData tableData, WriteMode writeMode, long expectedRows,
+                                         Integer writeParallelism, LongConsumer checkpoint) {
+        if (checkpoint == null) {
+            return dataInsertService.openWriter(tableData, writeMode, expectedRows, writeParallelism);
+        }
+        CheckpointTableWriter writer = dataInsertService.openCheckpointWriter(tableData, writeMode, expectedRows);
+        writer.setCheckpoint(checkpoint);
+        return writer;
+    }
+
+    /**
+     * Один проход: типы берутся из кэша схем или выводятся по первым sample-rows строкам, после чего таблица
+     * создаётся и запись начинается до того, как файл дочитан. Если позже значение не помещается в тип колонки,
+     * накопленная пачка сбрасывается в БД, а колонка расширяется через ALTER TABLE.
+     */
+    private InsertResult streamSampled(TableSource source, TableData tableData, WriteMode writeMode,
+                                       ImportProgress progress) {
+        try (RowCursor cursor = source.cursor().open()) {
+            List<Class<?>> cachedTypes = cachedColumnTypes(source, cursor.getHeaders()).orElse(null);
+            return streamSampled(source, cursor, cachedTypes, tableData, writeMode, progress);
+        } catch (IOException e) {
+            log.error("Error reading the file: ", e);
+            throw new BadRequestException("Error reading the file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param cursor      открыт вызывающим кодом, заголовки уже прочитаны
+     * @param cachedTypes типы из кэша схем, null – вывести по выборке
+     */
+    private InsertResult streamSampled(TableSource source, RowCursor cursor, List<Class<?>> cachedTypes,
+                                       TableData tableData, WriteMode writeMode, ImportProgress progress)
+            throws IOException {
+        int sampleSize = Math.max(1, importProperties.getSampleRows());
+        List<String> headers = cursor.getHeaders();
+        if (source.fileOrder()) {
+            cursor.keepFileOrder();
+        }
+
+        List<List<Object>> sample = new ArrayList<>(Math.min(sampleSize, 1024));
+        while (cachedTypes == null && sample.size() < sampleSize && cursor.hasNext()) {
+            sample.add(cursor.next());
+            progress.rowParsed();
+        }
+        if (sample.isEmpty() && !cursor.hasNext()) {
+            throw new BadRequestException(source.label() + " does not contain any data rows");
+        }
+
+        List<Class<?>> columnTypes;
+        if (cachedTypes != null) {
+            columnTypes = new ArrayList<>(cachedTypes);
+            log.info("Column types of {} are taken from the schema cache", source.label());
+        } else {
+            columnTypes = new ArrayList<>(fileParserUtil.inferColumnTypes(sample, headers.size()));
+            log.info("Inferred {} column types from the first {} rows of {}", headers.size(), sample.size(),
+                    source.label());
+        }
+        tableData.setColumns(fileParserUtil.buildColumns(headers, columnTypes));
+        createTable(source, tableData);
+
+        // файл уместился в выборку – число строк известно точно
+        long expectedRows = cursor.hasNext() ? DataInsertService.UNKNOWN_ROW_COUNT : sample.size();
+
+        try (TableWriter writer = dataInsertService.openWriter(tableData, writeMode, expectedRows)) {
+            writer.setBatchListener(progress::rowsInserted);
+            for (List<Object> row : sample) {
+                writer.write(fileParserUtil.convertRow(row, columnTypes));
+            }
+            sample.clear();
+
+            long loopStart = System.nanoTime();
+            long convertNanos = 0;
+            while (cursor.hasNext()) {
+                List<Object> row = cursor.next();
+                progress.rowParsed();
+                long convertStart = System.nanoTime();
+                List<Object> typedRow = fileParserUtil.convertRow(row, columnTypes);
+                convertNanos += System.nanoTime() - convertStart;
+                if (widenColumnsIfNeeded(row, typedRow, columnTypes, tableData, writer, source.metrics())) {
+                    typedRow = fileParserUtil.convertRow(row, columnTypes);
+                }
+                writer.write(typedRow);
+            }
+            InsertResult result = writer.finish();
+            source.metrics().interleaved(System.nanoTime() - loopStart, convertNanos, result);
+            rememberColumnTypes(source, headers, columnTypes);
+            return result;
+        }
+    }
+
+    /**
+     * convertValue возвращает String, если значение не разобралось в тип колонки, –
+     * только для таких ячеек выбирается более широкий тип, остальные повторно не разбираются.
+     *
+     * @return true, если хотя бы одна колонка была расширена и строку нужно сконвертировать заново
+     */
+    private boolean widenColumnsIfNeeded(List<Object> row, List<Object> typedRow, List<Class<?>> columnTypes,
+                                         TableData tableData, TableWriter writer,
+                                         ImportMetrics.Recorder metrics) {
+        boolean widenedAny = false;
+
+        for (int col = 0; col < columnTypes.size(); col++) {
+            Class<?> current = columnTypes.get(col);
+            if (current == String.class || !(typedRow.get(col) instanceof String)) {
+                continue;
+            }
+
+            Class<?> widened = fileParserUtil.widenType(current, row.get(col));
+
+            // строки, сконвертированные под старый тип, должны попасть в БД до ALTER
+            writer.flush();
+            ColumnMeta column = tableData.getColumns().get(col);
+            metrics.time(Stage.DDL, () -> tableSchemaService.alterColumnType(tableData.getTableName(), column, widened));
+            columnTypes.set(col, widened);
+            widenedAny = true;
+        }
+
+        return widenedAny;
+    }
+
+    private Optional<List<Class<?>>> cachedColumnTypes(TableSource source, List<String> headers) {
+        return importProperties.isSchemaCache()
+                ? schemaCacheService.find(source.feed(), headers)
+                : Optional.empty();
+    }
+
+    private void rememberColumnTypes(TableSource source, List<String> headers, List<Class<?>> columnTypes) {
+        if (importProperties.isSchemaCache()) {
+            schemaCacheService.put(source.feed(), headers, columnTypes);
+        }
+    }
+
+    private void createTable(TableSource source, TableData tableData) {
+        source.metrics().time(Stage.DDL, () -> tableSchemaService.createTable(tableData));
+    }
+
+    private record StreamedSchema(List<String> headers, List<ColumnMeta> columns, List<Class<?>> columnTypes,
+                                  long rowCount) {
+    }
+
+    /**
+     * Откуда читается одна таблица: файл целиком или лист книги.
+     * Курсор открывается заново на каждый проход (repeatable = false – только один раз),
+     * стадии пишутся в метрики импорта файла. feed – имя выгрузки для кэша схем (файл, файл/лист).
+     * fileOrder – строки должны прийти в БД в порядке файла (последняя строка с ключом побеждает при merge).
+     */
+    private record TableSource(String label, String feed, IoSupplier<RowCursor> cursor, IoSupplier<TableData> table,
+                               boolean repeatable, ImportMetrics.Recorder metrics, boolean fileOrder) {
+
+        TableSource(String label, String feed, IoSupplier<RowCursor> cursor, IoSupplier<TableData> table,
+                    boolean repeatable, ImportMetrics.Recorder metrics) {
+            this(label, feed, cursor, table, repeatable, metrics, false);
+        }
+
+        TableSource inFileOrder() {
+            return new TableSource(label, feed, cursor, table, repeatable, metrics, true);
+        }
+    }
+
+    @FunctionalInterface
+    private interface IoSupplier<T> {
+        T open() throws IOException;
+    }
+
+    /**
+     * @param resumedFromRow строк, записанных прошлыми попытками задачи (0 – таблица пишется с начала)
+     * @param rowsMerged     строк вставлено или обновлено в targetTable (0 – импорт в новую таблицу)
+     */
+    private record ImportedTable(TableData tableData, InsertResult insertResult, long resumedFromRow,
+                                 int rowsMerged) {
+        ImportedTable(TableData tableData, InsertResult insertResult, long resumedFromRow) {
+            this(tableData, insertResult, resumedFromRow, 0);
+        }
+    }
+
+    private String getBaseName(String originalFilename) {
         // Беру имя файла без расширения
         int dotIdx = originalFilename.lastIndexOf('.');
-        String baseName = (dotIdx == -1) ? originalFilename : originalFilename.substring(0, dotIdx);
+        return (dotIdx == -1) ? originalFilename : originalFilename.substring(0, dotIdx);
+    }
 
+    /**
+     * "Sheet 1" и "sheet_1" дают одно имя – ко второму добавляется номер
+     */
+    private String uniqueTableName(String tableName, Set<String> used) {
+        String candidate = tableName;
+        for (int i = 2; !used.add(candidate); i++) {
+            candidate = tableName + "_" + i;
+        }
+        return candidate;
+    }
+
+    private String generateTableName(String baseName) {
         // Привожу к безопасному формату - латиница, цифры, _
         String normalized = baseName
                 .toLowerCase(Locale.ROOT)
@@ -129,4 +1123,56 @@ public class FileImportService {
                         .build())
                 .collect(Collectors.toList());
     }
+
+    private SheetInfo buildSheetInfo(String sheetName, ImportedTable imported) {
+        InsertResult insertResult = imported.insertResult();
+        return SheetInfo.builder()
+                .sheetName(sheetName)
+                .tableName(imported.tableData().getTableName())
+                .columns(buildColumnInfoList(imported.tableData()))
+                .rowsInserted(insertResult.getRowsInserted())
+                .rowsMerged(imported.rowsMerged())
+                .resumedFromRow(imported.resumedFromRow())
+                .writeMode(insertResult.getWriteMode())
+                .insertDurationMs(insertResult.getDurationMs())
+                .batches(buildBatchInfoList(insertResult))
+                .writers(insertResult.getWriters())
+                .pipeline(buildStageInfoList(insertResult.getStages()))
+                .build();
+    }
+
+    private List<BatchInfo> buildBatchInfoList(InsertResult insertResult) {
+        if (insertResult.getBatches() == null) {
+            return List.of();
+        }
+
+        return insertResult.getBatches().stream()
+                .map(batch -> BatchInfo.builder()
+                        .index(batch.getIndex())
+                        .rows(batch.getRows())
+                        .durationMs(batch.getDurationMs())
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    static List<StageInfo> buildStageInfoList(List<StageStats> stages) {
+        if (stages == null) {
+            return List.of();
+        }
+
+        return stages.stream()
+                .map(stage -> StageInfo.builder()
+                        .stage(stage.getStage())
+                        .workers(stage.getWorkers())
+                        .rows(stage.getRows())
+                        .busyMs(stage.getBusyMs())
+                        .waitMs(stage.getWaitMs())
+                        .utilisation(stage.getUtilisation())
+                        .queueDepth(stage.getQueueDepth())
+                        .avgQueueDepth(stage.getAvgQueueDepth())
+                        .maxQueueDepth(stage.getMaxQueueDepth())
+                        .queueCapacity(stage.getQueueCapacity())
+                        .build())
+                .collect(Collectors.toList());
+    }
 }
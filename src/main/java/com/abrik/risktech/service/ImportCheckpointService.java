@@ -0,0 +1,141 @@
+package com.abrik.risktech.service;
+
+import com.abrik.risktech.model.ColumnMeta;
+import com.abrik.risktech.model.ImportCheckpoint;
+import com.abrik.risktech.model.TableData;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Чекпоинты фоновых импортов в таблице import_checkpoint: по строке на таблицу задачи.
+ * commit() вызывается writer-ом в транзакции пачки, поэтому чекпоинт и строки коммитятся вместе.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImportCheckpointService {
+    static final String TABLE = "import_checkpoint";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // таблица создаётся при первом использовании – приложение стартует и без доступной БД
+    private volatile boolean tableReady;
+
+    public Optional<ImportCheckpoint> find(UUID jobId, String source) {
+        ensureTable();
+        List<ImportCheckpoint> found = jdbcTemplate.query(
+                "SELECT table_name, columns, rows_committed, completed FROM " + TABLE
+                        + " WHERE job_id = ? AND source = ?",
+                (rs, rowNum) -> ImportCheckpoint.builder()
+                        .jobId(jobId)
+                        .source(source)
+                        .tableName(rs.getString("table_name"))
+                        .columns(decodeColumns(rs.getString("columns")))
+                        .rowsCommitted(rs.getLong("rows_committed"))
+                        .completed(rs.getBoolean("completed"))
+                        .build(),
+                jobId.toString(), source);
+        return found.stream().findFirst();
+    }
+
+    /**
+     * Таблица создана, строк ещё нет. Колонки сохраняются, чтобы повтор не выводил типы заново.
+     */
+    public void start(UUID jobId, String source, TableData tableData) {
+        ensureTable();
+        jdbcTemplate.update(
+                "INSERT INTO " + TABLE + " (job_id, source, table_name, columns, rows_committed, completed, updated_at)"
+                        + " VALUES (?, ?, ?, ?, 0, FALSE, now())"
+                        + " ON CONFLICT (job_id, source) DO UPDATE SET table_name = EXCLUDED.table_name,"
+                        + " columns = EXCLUDED.columns, rows_committed = 0, completed = FALSE, updated_at = now()",
+                jobId.toString(), source, tableData.getTableName(), encodeColumns(tableData.getColumns()));
+    }
+
+    /**
+     * @param rowsCommitted строк файла, записанных с учётом текущей пачки
+     */
+    public void commit(UUID jobId, String source, long rowsCommitted) {
+        jdbcTemplate.update(
+                "UPDATE " + TABLE + " SET rows_committed = ?, updated_at = now() WHERE job_id = ? AND source = ?",
+                rowsCommitted, jobId.toString(), source);
+    }
+
+    public void complete(UUID jobId, String source, long rowsCommitted) {
+        jdbcTemplate.update(
+                "UPDATE " + TABLE + " SET rows_committed = ?, completed = TRUE, updated_at = now()"
+                        + " WHERE job_id = ? AND source = ?",
+                rowsCommitted, jobId.toString(), source);
+    }
+
+    /**
+     * Задача завершена или забыта – повторять её больше не будут
+     */
+    public void delete(UUID jobId) {
+        try {
+            ensureTable();
+            jdbcTemplate.update("DELETE FROM " + TABLE + " WHERE job_id = ?", jobId.toString());
+        } catch (RuntimeException e) {
+            log.warn("Failed to delete checkpoints of import job {}: {}", jobId, e.getMessage());
+        }
+    }
+
+    private void ensureTable() {
+        if (tableReady) {
+            return;
+        }
+        synchronized (this) {
+            if (!tableReady) {
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " ("
+                        + "job_id VARCHAR(36) NOT NULL, "
+                        + "source VARCHAR(300) NOT NULL, "
+                        + "table_name VARCHAR(63) NOT NULL, "
+                        + "columns TEXT NOT NULL, "
+                        + "rows_committed BIGINT NOT NULL, "
+                        + "completed BOOLEAN NOT NULL, "
+                        + "updated_at TIMESTAMP NOT NULL, "
+                        + "PRIMARY KEY (job_id, source))");
+                tableReady = true;
+            }
+        }
+    }
+
+    /**
+     * Колонка на строку: имя, Java-тип и SQL-тип через табуляцию (в нормализованных именах их нет)
+     */
+    static String encodeColumns(List<ColumnMeta> columns) {
+        StringBuilder sb = new StringBuilder();
+        for (ColumnMeta column : columns) {
+            sb.append(column.getName()).append('\t')
+                    .append(column.getJavaType().getName()).append('\t')
+                    .append(column.getSqlType()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    static List<ColumnMeta> decodeColumns(String encoded) {
+        List<ColumnMeta> columns = new ArrayList<>();
+        for (String line : encoded.split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] parts = line.split("\t", 3);
+            try {
+                columns.add(ColumnMeta.builder()
+                        .name(parts[0])
+                        .javaType(Class.forName(parts[1]))
+                        .sqlType(parts[2])
+                        .build());
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("Unknown column type in checkpoint: " + parts[1], e);
+            }
+        }
+        return columns;
+    }
+}
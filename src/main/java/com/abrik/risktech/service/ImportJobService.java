@@ -0,0 +1,208 @@
+package com.abrik.risktech.service;
+
+import com.abrik.risktech.config.ImportProperties;
+import com.abrik.risktech.dto.ImportJobDto;
+import com.abrik.risktech.dto.ImportResponseDto;
+import com.abrik.risktech.exception.BadRequestException;
+import com.abrik.risktech.exception.NotFoundException;
+import com.abrik.risktech.model.ImportJob;
+import com.abrik.risktech.model.ImportJobState;
+import com.abrik.risktech.model.ImportOptions;
+import com.abrik.risktech.model.ImportSource;
+import com.abrik.risktech.util.ContentHasher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Фоновый импорт: файл сохраняется во временный файл на запросе (multipart удаляется после ответа),
+ * сам импорт идёт на importJobExecutor. Статусы хранятся в памяти и забываются через job-retention.
+ * Копия упавшей задачи хранится до повтора или до того, как задачу забудут; повтор продолжает
+ * с чекпоинтов, записанных FileImportService.
+ */
+@Service
+@Slf4j
+public class ImportJobService {
+    private final FileImportService fileImportService;
+    private final ImportCheckpointService importCheckpointService;
+    private final ImportProperties importProperties;
+    private final ImportMetrics importMetrics;
+    private final ExecutorService importJobExecutor;
+    private final Semaphore runningJobs;
+
+    private final Map<UUID, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    public ImportJobService(FileImportService fileImportService, ImportCheckpointService importCheckpointService,
+                            ImportProperties importProperties, ImportMetrics importMetrics,
+                            @Qualifier("importJobExecutor") ExecutorService importJobExecutor) {
+        this.fileImportService = fileImportService;
+        this.importCheckpointService = importCheckpointService;
+        this.importProperties = importProperties;
+        this.importMetrics = importMetrics;
+        this.importJobExecutor = importJobExecutor;
+        this.runningJobs = new Semaphore(Math.max(1, importProperties.getMaxConcurrentJobs()), true);
+    }
+
+    public ImportJobDto submit(MultipartFile file, ImportOptions options) {
+        purgeFinished();
+
+        String filename = file.getOriginalFilename();
+        if (filename == null) {
+            throw new BadRequestException("Unavailable define name of file");
+        }
+
+        long spoolStart = System.nanoTime();
+        Spooled spooled = spool(file);
+        importMetrics.spooled(filename, System.nanoTime() - spoolStart);
+        ImportJob job = new ImportJob(filename, spooled.path(), spooled.contentHash(), options);
+        jobs.put(job.getId(), job);
+
+        importJobExecutor.execute(() -> run(job));
+        log.info("Import job {} queued for file {}", job.getId(), filename);
+        return toDto(job);
+    }
+
+    public ImportJobDto get(UUID id) {
+        return toDto(find(id));
+    }
+
+    /**
+     * Повтор упавшей задачи с той же копией файла и теми же параметрами.
+     * Таблицы с чекпоинтом дописываются с последней закоммиченной пачки, остальные грузятся заново.
+     */
+    public ImportJobDto retry(UUID id) {
+        ImportJob job = find(id);
+        if (!Files.exists(job.getSpooledFile()) || !job.retry()) {
+            throw new BadRequestException("Import job " + id + " is " + job.getState() + " and cannot be retried");
+        }
+
+        importJobExecutor.execute(() -> run(job));
+        log.info("Import job {} queued for attempt {}", id, job.getAttempts());
+        return toDto(job);
+    }
+
+    private ImportJob find(UUID id) {
+        ImportJob job = jobs.get(id);
+        if (job == null) {
+            throw new NotFoundException("Import job " + id + " not found");
+        }
+        return job;
+    }
+
+    private void run(ImportJob job) {
+        // по id задачи FileImportService пишет и находит чекпоинты
+        ImportOptions options = job.getOptions().toBuilder().jobId(job.getId()).build();
+        try {
+            runningJobs.acquire();
+            try {
+                job.start();
+                ImportResponseDto result = fileImportService.importFile(
+                        ImportSource.of(job.getSpooledFile(), job.getFilename(), job.getContentHash()), options,
+                        job.getProgress());
+                job.complete(result);
+                log.info("Import job {} completed: {} rows", job.getId(), result.getRowsInserted());
+                discard(job);
+            } finally {
+                runningJobs.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.fail("Import was interrupted");
+        } catch (Exception e) {
+            log.error("Import job {} failed on attempt {}, it can be retried: ", job.getId(), job.getAttempts(), e);
+            job.fail(e.getMessage());
+        }
+    }
+
+    /**
+     * Копия файла и чекпоинты больше не нужны: задача завершилась или её забыли
+     */
+    private void discard(ImportJob job) {
+        try {
+            Files.deleteIfExists(job.getSpooledFile());
+        } catch (IOException e) {
+            log.warn("Failed to delete spooled file {}: {}", job.getSpooledFile(), e.getMessage());
+        }
+        if (importProperties.isCheckpoints()) {
+            importCheckpointService.delete(job.getId());
+        }
+    }
+
+    /**
+     * SHA-256 для дедупликации считается по ходу копирования – задаче не нужно читать файл ещё раз
+     */
+    private Spooled spool(MultipartFile file) {
+        Path spooled = null;
+        try {
+            spooled = Files.createTempFile("risktech-job-", ".upload");
+            try (ContentHasher in = new ContentHasher(file.getInputStream())) {
+                Files.copy(in, spooled, StandardCopyOption.REPLACE_EXISTING);
+                return new Spooled(spooled, in.hex());
+            }
+        } catch (IOException e) {
+            if (spooled != null) {
+                spooled.toFile().delete();
+            }
+            log.error("Error reading the file: ", e);
+            throw new BadRequestException("Error reading the file: " + e.getMessage());
+        }
+    }
+
+    private record Spooled(Path path, String contentHash) {
+    }
+
+    private void purgeFinished() {
+        Instant threshold = Instant.now().minus(importProperties.getJobRetention());
+        jobs.values().removeIf(job -> {
+            if (!job.expire(threshold)) {
+                return false;
+            }
+            if (job.getState() == ImportJobState.FAILED) {
+                discard(job);
+            }
+            return true;
+        });
+    }
+
+    private ImportJobDto toDto(ImportJob job) {
+        long rowsInserted = job.getProgress().getRowsInserted();
+        return ImportJobDto.builder()
+                .id(job.getId())
+                .state(job.getState())
+                .filename(job.getFilename())
+                .attempts(job.getAttempts())
+                .submittedAt(job.getSubmittedAt())
+                .startedAt(job.getStartedAt())
+                .finishedAt(job.getFinishedAt())
+                .rowsParsed(job.getProgress().getRowsParsed())
+                .rowsInserted(rowsInserted)
+                .rowsPerSecond(rowsPerSecond(job, rowsInserted))
+                .pipeline(FileImportService.buildStageInfoList(job.getProgress().getPipelineStages()))
+                .error(job.getError())
+                .result(job.getResult())
+                .build();
+    }
+
+    private long rowsPerSecond(ImportJob job, long rows) {
+        Instant startedAt = job.getStartedAt();
+        if (startedAt == null) {
+            return 0;
+        }
+        Instant end = job.getFinishedAt() != null ? job.getFinishedAt() : Instant.now();
+        long millis = Duration.between(startedAt, end).toMillis();
+        return millis > 0 ? rows * 1000 / millis : rows;
+    }
+}
@@ -0,0 +1,234 @@
+package com.abrik.risktech.service;
+
+import com.abrik.risktech.model.InsertResult;
+import com.abrik.risktech.model.InsertResult.BatchStats;
+import com.abrik.risktech.model.InsertResult.StageStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Метрики импорта в Micrometer, наружу – через /actuator/prometheus.
+ * Все метрики с тегами format (csv, xlsx, csv.gz, xlsx.gz) и parser (класс парсера): просадку скорости видно
+ * по конкретному пути разбора, а не только в среднем.
+ */
+@Component
+public class ImportMetrics {
+    static final String STAGE = "risktech.import.stage";
+    static final String DURATION = "risktech.import.duration";
+    static final String ROWS = "risktech.import.rows";
+    static final String BYTES = "risktech.import.bytes";
+    static final String FAILURES = "risktech.import.failures";
+    static final String IN_FLIGHT = "risktech.import.in.flight";
+    static final String ROWS_PER_SECOND = "risktech.import.rows.per.second";
+    static final String BYTES_PER_SECOND = "risktech.import.bytes.per.second";
+    static final String DUPLICATES = "risktech.import.duplicates";
+
+    // до выбора парсера (копия загрузки фоновой задачи)
+    static final String NO_PARSER = "none";
+
+    private final MeterRegistry registry;
+    private final Map<Tags, Gauges> gauges = new ConcurrentHashMap<>();
+
+    public ImportMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Стадии импорта. В режиме целиком в памяти PARSE включает конвертацию – парсеры конвертируют
+     * строки сами внутри parseFile.
+     */
+    public enum Stage {
+        SPOOL, PARSE, INFER, CONVERT, DDL, INSERT_BATCH, MERGE;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Импорт файла начался: он считается в in-flight, пока не вызван success или failure
+     */
+    public Recorder start(String format, String parser, long bytes) {
+        Tags tags = tags(format, parser);
+        Gauges importGauges = gauges(tags);
+        importGauges.inFlight.incrementAndGet();
+        return new Recorder(tags, importGauges, bytes);
+    }
+
+    /**
+     * Сохранение загрузки во временный файл фоновой задачи – парсер ещё не выбран
+     */
+    public void spooled(String filename, long nanos) {
+        timer(Stage.SPOOL, tags(formatOf(filename), NO_PARSER)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Повторная загрузка уже импортированного файла: ответ взят из реестра, импорта не было
+     */
+    public void duplicate(String filename) {
+        Counter.builder(DUPLICATES)
+                .description("Uploads answered from the import registry without importing")
+                .tags(tags(formatOf(filename), NO_PARSER))
+                .register(registry)
+                .increment();
+    }
+
+    static String formatOf(String filename) {
+        int dotIdx = filename != null ? filename.lastIndexOf('.') : -1;
+        if (dotIdx == -1) {
+            return "unknown";
+        }
+        String extension = filename.substring(dotIdx + 1).toLowerCase(Locale.ROOT);
+        // расширение из запроса – не даю ему плодить серии
+        return switch (extension) {
+            case "csv", "xlsx", "gz", "zip" -> extension;
+            default -> "other";
+        };
+    }
+
+    private static Tags tags(String format, String parser) {
+        return Tags.of("format", format, "parser", parser);
+    }
+
+    private Timer timer(Stage stage, Tags tags) {
+        return Timer.builder(STAGE)
+                .description("Time spent in one import stage")
+                .tags(tags)
+                .tag("stage", stage.tag())
+                .register(registry);
+    }
+
+    private Gauges gauges(Tags tags) {
+        return gauges.computeIfAbsent(tags, key -> {
+            Gauges created = new Gauges();
+            Gauge.builder(IN_FLIGHT, created.inFlight, AtomicInteger::get)
+                    .description("Imports running now")
+                    .tags(key)
+                    .register(registry);
+            Gauge.builder(ROWS_PER_SECOND, created.rowsPerSecond, AtomicLong::get)
+                    .description("Rows per second of the last completed import")
+                    .tags(key)
+                    .register(registry);
+            Gauge.builder(BYTES_PER_SECOND, created.bytesPerSecond, AtomicLong::get)
+                    .description("File bytes per second of the last completed import")
+                    .tags(key)
+                    .register(registry);
+            return created;
+        });
+    }
+
+    private static final class Gauges {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong rowsPerSecond = new AtomicLong();
+        private final AtomicLong bytesPerSecond = new AtomicLong();
+    }
+
+    /**
+     * Метрики одного импорта файла; стадии можно записывать из потоков параллельных листов
+     */
+    public final class Recorder {
+        private final Tags tags;
+        private final Gauges gauges;
+        private final long bytes;
+        private final long startNanos = System.nanoTime();
+
+        private Recorder(Tags tags, Gauges gauges, long bytes) {
+            this.tags = tags;
+            this.gauges = gauges;
+            this.bytes = bytes;
+        }
+
+        public void record(Stage stage, long nanos) {
+            timer(stage, tags).record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void time(Stage stage, Runnable action) {
+            timer(stage, tags).record(action);
+        }
+
+        public <T> T time(Stage stage, Supplier<T> action) {
+            return timer(stage, tags).record(action);
+        }
+
+        /**
+         * Пачки записи и, для конвейера, время работы стадий разбора и конвертации
+         */
+        public void written(InsertResult result) {
+            if (result.getBatches() != null) {
+                Timer batches = timer(Stage.INSERT_BATCH, tags);
+                for (BatchStats batch : result.getBatches()) {
+                    batches.record(batch.getDurationNanos(), TimeUnit.NANOSECONDS);
+                }
+            }
+            if (result.getStages() != null) {
+                for (StageStats stage : result.getStages()) {
+                    switch (stage.getStage()) {
+                        case "parse" -> timer(Stage.PARSE, tags).record(stage.getBusyMs(), TimeUnit.MILLISECONDS);
+                        case "convert" -> timer(Stage.CONVERT, tags).record(stage.getBusyMs(), TimeUnit.MILLISECONDS);
+                        default -> {
+                            // write – это пачки, они уже записаны выше
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Потоковый проход без конвейера: разбор, конвертация и запись идут в одном цикле.
+         * Конвертация замерена отдельно, на разбор приходится остальное время цикла без пачек записи.
+         */
+        public void interleaved(long loopNanos, long convertNanos, InsertResult result) {
+            long batchNanos = 0;
+            if (result.getBatches() != null) {
+                for (BatchStats batch : result.getBatches()) {
+                    batchNanos += batch.getDurationNanos();
+                }
+            }
+            record(Stage.CONVERT, convertNanos);
+            record(Stage.PARSE, Math.max(0, loopNanos - convertNanos - batchNanos));
+        }
+
+        public void success(long rows) {
+            long nanos = finish("success");
+            Counter.builder(ROWS).description("Rows written by imports").tags(tags).register(registry)
+                    .increment(rows);
+            if (bytes > 0) { // -1 – тело запроса без Content-Length
+                Counter.builder(BYTES).description("File bytes imported").tags(tags).register(registry)
+                        .increment(bytes);
+            }
+
+            double seconds = Math.max(1, nanos) / 1e9;
+            gauges.rowsPerSecond.set((long) (rows / seconds));
+            gauges.bytesPerSecond.set((long) (Math.max(0, bytes) / seconds));
+        }
+
+        public void failure(Throwable error) {
+            finish("failure");
+            Counter.builder(FAILURES).description("Failed imports").tags(tags)
+                    .tag("exception", error.getClass().getSimpleName())
+                    .register(registry)
+                    .increment();
+        }
+
+        private long finish(String outcome) {
+            long nanos = System.nanoTime() - startNanos;
+            gauges.inFlight.decrementAndGet();
+            Timer.builder(DURATION).description("Whole file import").tags(tags).tag("outcome", outcome)
+                    .register(registry)
+                    .record(nanos, TimeUnit.NANOSECONDS);
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.abrik.risktech.service;
+
+import com.abrik.risktech.model.ImportProgress;
+import com.abrik.risktech.model.InsertResult;
+import com.abrik.risktech.model.InsertResult.StageStats;
+import com.abrik.risktech.parser.RowCursor;
+import com.abrik.risktech.util.FileParserUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Конвейер потоковой записи: разбор → конвертация → запись, стадии работают одновременно.
+ *
+ * Поток разбора читает RowCursor и режет строки на блоки по blockRows. Блок сразу уходит
+ * на конвертацию в пул, а его Future ставится в ограниченную очередь. Писатель (вызывающий поток)
+ * забирает Future по порядку и передаёт строки в TableWriter. Полная очередь останавливает разбор,
+ * пустая – писателя; порядок строк сохраняется, в памяти не больше queueBlocks блоков.
+ *
+ * По загрузке стадий ({@link #stats()}) видно узкое место: у него utilisation близка к 1,
+ * у стадий перед ним растёт waitMs на полной очереди, после него – на пустой.
+ */
+@Slf4j
+final class ImportPipeline {
+    private static final long OFFER_TIMEOUT_MS = 100;
+    private static final Future<List<List<Object>>> END = CompletableFuture.completedFuture(List.of());
+
+    private final FileParserUtil fileParserUtil;
+    private final ExecutorService converterPool;
+    private final int converters;
+    private final int blockRows;
+    private final int queueBlocks;
+    private final BlockingQueue<Future<List<List<Object>>>> queue;
+
+    private final StageCounters parse = new StageCounters();
+    private final StageCounters convert = new StageCounters();
+    private final StageCounters write = new StageCounters();
+    // блоки, отданные в пул, но ещё не взятые конвертером: до queueBlocks в очереди + один, ждущий места
+    private final AtomicInteger convertBacklog = new AtomicInteger();
+
+    private volatile long startNanos;
+    private volatile long endNanos;
+    private volatile boolean cancelled;
+
+    ImportPipeline(FileParserUtil fileParserUtil, ExecutorService converterPool, int converters,
+                   int blockRows, int queueBlocks) {
+        this.fileParserUtil = fileParserUtil;
+        this.converterPool = converterPool;
+        this.converters = Math.max(1, converters);
+        this.blockRows = Math.max(1, blockRows);
+        this.queueBlocks = Math.max(1, queueBlocks);
+        this.queue = new ArrayBlockingQueue<>(this.queueBlocks);
+    }
+
+    /**
+     * Читает курсор до конца и пишет все строки в writer. Курсор и writer закрывает вызывающий код.
+     */
+    InsertResult run(RowCursor cursor, List<Class<?>> columnTypes, TableWriter writer, ImportProgress progress) {
+        startNanos = System.nanoTime();
+        progress.setPipelineStages(this::stats);
+
+        Thread parser = Thread.ofPlatform()
+                .name("import-parse-" + Thread.currentThread().getName())
+                .start(() -> produce(cursor, List.copyOf(columnTypes), progress));
+        try {
+            consume(writer);
+
+            long finishStart = System.nanoTime();
+            InsertResult result = writer.finish();
+            write.busyNanos.add(System.nanoTime() - finishStart);
+
+            endNanos = System.nanoTime();
+            result.setStages(stats());
+            log.info("Pipeline stages: {}", result.getStages());
+            return result;
+        } finally {
+            stop(parser);
+        }
+    }
+
+    /**
+     * Снимок загрузки стадий; можно вызывать из других потоков во время импорта
+     */
+    List<StageStats> stats() {
+        long end = endNanos != 0 ? endNanos : System.nanoTime();
+        long wallNanos = Math.max(1, end - startNanos);
+        return List.of(
+                parse.toStats("parse", 1, wallNanos, 0, 0),
+                convert.toStats("convert", converters, wallNanos, convertBacklog.get(), queueBlocks + 1),
+                write.toStats("write", 1, wallNanos, queue.size(), queueBlocks)
+        );
+    }
+
+    private void produce(RowCursor cursor, List<Class<?>> columnTypes, ImportProgress progress) {
+        try {
+            while (!cancelled) {
+                long start = System.nanoTime();
+                List<List<Object>> block = new ArrayList<>(blockRows);
+                while (block.size() < blockRows && !cancelled && cursor.hasNext()) {
+                    block.add(cursor.next());
+                }
+                parse.busyNanos.add(System.nanoTime() - start);
+                if (block.isEmpty()) {
+                    break;
+                }
+                parse.rows.add(block.size());
+                progress.rowsParsed(block.size());
+
+                convertBacklog.incrementAndGet();
+                enqueue(converterPool.submit(() -> convertBlock(block, columnTypes)));
+            }
+            enqueue(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            // ошибка разбора доходит до писателя в порядке очереди
+            try {
+                enqueue(CompletableFuture.failedFuture(e));
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private List<List<Object>> convertBlock(List<List<Object>> block, List<Class<?>> columnTypes) {
+        convertBacklog.decrementAndGet();
+        long start = System.nanoTime();
+        List<List<Object>> typed = fileParserUtil.convertRows(block, columnTypes);
+        convert.busyNanos.add(System.nanoTime() - start);
+        convert.rows.add(block.size());
+        return typed;
+    }
+
+    private void enqueue(Future<List<List<Object>>> block) throws InterruptedException {
+        long start = System.nanoTime();
+        boolean offered = false;
+        while (!cancelled && !offered) {
+            offered = queue.offer(block, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+        parse.waitNanos.add(System.nanoTime() - start);
+
+        if (!offered) {
+            block.cancel(true);
+            return;
+        }
+        convert.sampleDepth(convertBacklog.get());
+        write.sampleDepth(queue.size());
+    }
+
+    private void consume(TableWriter writer) {
+        while (true) {
+            long waitStart = System.nanoTime();
+            Future<List<List<Object>>> next = take();
+            if (next == END) {
+                write.waitNanos.add(System.nanoTime() - waitStart);
+                return;
+            }
+            List<List<Object>> rows = await(next);
+            long writeStart = System.nanoTime();
+            write.waitNanos.add(writeStart - waitStart);
+
+            for (List<Object> row : rows) {
+                writer.write(row);
+            }
+            write.busyNanos.add(System.nanoTime() - writeStart);
+            write.rows.add(rows.size());
+        }
+    }
+
+    private Future<List<List<Object>>> take() {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import was interrupted", e);
+        }
+    }
+
+    private List<List<Object>> await(Future<List<List<Object>>> block) {
+        try {
+            return block.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Import pipeline failed", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import was interrupted", e);
+        }
+    }
+
+    /**
+     * Поток разбора должен остановиться до того, как вызывающий код закроет курсор
+     */
+    private void stop(Thread parser) {
+        cancelled = true;
+        Future<List<List<Object>>> block;
+        while ((block = queue.poll()) != null) {
+            block.cancel(true);
+        }
+        if (endNanos == 0) {
+            endNanos = System.nanoTime();
+        }
+
+        boolean interrupted = false;
+        while (parser.isAlive()) {
+            try {
+                parser.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class StageCounters {
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final LongAdder depthSum = new LongAdder();
+        private final LongAdder depthSamples = new LongAdder();
+        private final AtomicInteger maxDepth = new AtomicInteger();
+
+        void sampleDepth(int depth) {
+            depthSum.add(depth);
+            depthSamples.increment();
+            maxDepth.accumulateAndGet(depth, Math::max);
+        }
+
+        StageStats toStats(String stage, int workers, long wallNanos, int depth, int capacity) {
+            long samples = depthSamples.sum();
+            long busy = busyNanos.sum();
+            return StageStats.builder()
+                    .stage(stage)
+                    .workers(workers)
+                    .rows(rows.sum())
+                    .busyMs(busy / 1_000_000)
+                    .waitMs(waitNanos.sum() / 1_000_000)
+                    .utilisation(Math.min(1.0, (double) busy / ((double) wallNanos * workers)))
+                    .queueDepth(depth)
+                    .avgQueueDepth(samples == 0 ? 0 : (double) depthSum.sum() / samples)
+                    .maxQueueDepth(maxDepth.get())
+                    .queueCapacity(capacity)
+                    .build();
+        }
+    }
+}
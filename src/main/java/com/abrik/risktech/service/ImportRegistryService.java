@@ -0,0 +1,136 @@
+package com.abrik.risktech.service;
+
+import com.abrik.risktech.dto.ImportResponseDto;
+import com.abrik.risktech.dto.ImportResponseDto.SheetInfo;
+import com.abrik.risktech.model.ImportOptions;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Реестр импортированных файлов в таблице import_registry: SHA-256 содержимого → ответ импорта
+ * (таблицы, колонки, число строк). Повторная загрузка того же файла отдаёт сохранённый ответ
+ * без разбора и записи.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImportRegistryService {
+    static final String TABLE = "import_registry";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JsonMapper jsonMapper;
+
+    // таблица создаётся при первом использовании – приложение стартует и без доступной БД
+    private volatile boolean tableReady;
+
+    /**
+     * Ответ прошлого импорта того же содержимого. Если какую-то из его таблиц с тех пор удалили,
+     * запись реестра устарела – она удаляется, и файл импортируется заново.
+     */
+    public Optional<ImportResponseDto> find(String contentHash, ImportOptions options) {
+        ensureTable();
+        String variant = variantOf(options);
+        List<String> found = jdbcTemplate.query(
+                "SELECT response FROM " + TABLE + " WHERE content_hash = ? AND variant = ?",
+                (rs, rowNum) -> rs.getString("response"),
+                contentHash, variant);
+        if (found.isEmpty()) {
+            return Optional.empty();
+        }
+
+        ImportResponseDto response = jsonMapper.readValue(found.getFirst(), ImportResponseDto.class);
+        for (String tableName : tablesOf(response)) {
+            Boolean exists = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, tableName);
+            if (!Boolean.TRUE.equals(exists)) {
+                log.info("Table {} of import {} no longer exists, the file is imported again", tableName, contentHash);
+                jdbcTemplate.update("DELETE FROM " + TABLE + " WHERE content_hash = ? AND variant = ?",
+                        contentHash, variant);
+                return Optional.empty();
+            }
+        }
+        response.setContentHash(contentHash);
+        response.setDuplicate(true);
+        return Optional.of(response);
+    }
+
+    /**
+     * Ошибка записи в реестр не роняет импорт – данные уже в БД, потеряется только дедупликация
+     */
+    public void register(String contentHash, ImportOptions options, String filename, ImportResponseDto response) {
+        try {
+            ensureTable();
+            jdbcTemplate.update(
+                    "INSERT INTO " + TABLE + " (content_hash, variant, filename, table_name, rows_inserted, response,"
+                            + " imported_at) VALUES (?, ?, ?, ?, ?, ?, now())"
+                            + " ON CONFLICT (content_hash, variant) DO UPDATE SET filename = EXCLUDED.filename,"
+                            + " table_name = EXCLUDED.table_name, rows_inserted = EXCLUDED.rows_inserted,"
+                            + " response = EXCLUDED.response, imported_at = now()",
+                    contentHash, variantOf(options), filename, String.join(",", tablesOf(response)),
+                    response.getRowsInserted(), jsonMapper.writeValueAsString(response));
+        } catch (RuntimeException e) {
+            log.warn("Failed to register import of {} ({}): {}", filename, contentHash, e.getMessage());
+        }
+    }
+
+    /**
+     * Выбор листов и целевая таблица меняют результат – для одного содержимого это разные записи реестра.
+     * Способ записи и режим загрузки на результат не влияют.
+     */
+    static String variantOf(ImportOptions options) {
+        String variant = "";
+        if (options.isAllSheets()) {
+            variant = "allSheets";
+        } else if (options.getSheets() != null && !options.getSheets().isEmpty()) {
+            variant = "sheets=" + String.join("\t", options.getSheets());
+        }
+        if (options.getTargetTable() != null) {
+            variant += "\ttarget=" + options.getTargetTable().toLowerCase(Locale.ROOT);
+            if (options.getKeyColumns() != null && !options.getKeyColumns().isEmpty()) {
+                variant += "\tkey=" + String.join(",", options.getKeyColumns()).toLowerCase(Locale.ROOT);
+            }
+        }
+        return variant;
+    }
+
+    static List<String> tablesOf(ImportResponseDto response) {
+        List<String> tables = new ArrayList<>();
+        if (response.getTableName() != null) {
+            tables.add(response.getTableName());
+        }
+        for (List<SheetInfo> parts : Arrays.asList(response.getSheets(), response.getEntries())) {
+            if (parts != null) {
+                parts.forEach(part -> tables.add(part.getTableName()));
+            }
+        }
+        return tables;
+    }
+
+    private void ensureTable() {
+        if (tableReady) {
+            return;
+        }
+        synchronized (this) {
+            if (!tableReady) {
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " ("
+                        + "content_hash VARCHAR(64) NOT NULL, "
+                        + "variant VARCHAR(1000) NOT NULL, "
+                        + "filename VARCHAR(300) NOT NULL, "
+                        + "table_name TEXT NOT NULL, "
+                        + "rows_inserted BIGINT NOT NULL, "
+                        + "response TEXT NOT NULL, "
+                        + "imported_at TIMESTAMP NOT NULL, "
+                        + "PRIMARY KEY (content_hash, variant))");
+                tableReady = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.abrik.risktech.service;
+
+import com.abrik.risktech.model.InsertResult;
+import com.abrik.risktech.model.InsertResult.BatchStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+/**
+ * Запись в одну таблицу на нескольких соединениях.
+ *
+ * Строки собираются в блоки по blockRows и раздаются writer-потокам через ограниченную очередь.
+ * Каждый поток открывает свой обычный writer (INSERT или COPY) со своим соединением из пула
+ * и своей транзакцией. Все пишут в UNLOGGED staging-таблицу. finish() дожидается коммита всех потоков
+ * и одной транзакцией публикует staging в целевую. Если хоть один поток упал, остальные
+ * откатываются, staging удаляется, а целевая таблица остаётся пустой.
+ *
+ * Если целевая таблица сама staging (load-mode STAGED), stagingTable = null: потоки пишут прямо в неё,
+ * а целиком её публикует или удаляет вызывающий код.
+ *
+ * Порядок строк между потоками не сохраняется.
+ *
+ * releaseWriters вызывается один раз, когда все потоки закончили и вернули соединения в пул.
+ */
+@Slf4j
+class ParallelTableWriter implements TableWriter {
+    private static final long POLL_TIMEOUT_MS = 100;
+    private static final List<List<Object>> END = List.of();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate publishTransaction;
+    private final String tableName;
+    private final String stagingTable; // null – пишем прямо в tableName
+    private final boolean swapTarget;
+    private final String loadTable;
+    private final int blockRows;
+    private final BlockingQueue<List<List<Object>>> queue;
+    private final List<Future<InsertResult>> writers;
+    private final Runnable releaseWriters;
+    private final long start = System.nanoTime();
+    // первая настоящая ошибка writer-а – её и нужно показать, а не "aborted" остальных
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+    private List<List<Object>> block;
+    private volatile IntConsumer batchListener = rows -> {
+    };
+    private volatile boolean aborted;
+    private boolean finished;
+    private boolean released;
+
+    /**
+     * @param writerFactory создаёт writer для переданной таблицы; вызывается в потоке writer-а,
+     *                      поэтому соединение и транзакция у каждого свои
+     * @param swapTarget     целевую таблицу создал этот импорт – staging встаёт на её место, иначе дописывается
+     * @param releaseWriters возвращает разрешения на соединения writer-ов (ConnectionPoolLimit)
+     */
+    ParallelTableWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                        ExecutorService executor, Function<String, TableWriter> writerFactory,
+                        String tableName, String stagingTable, boolean swapTarget, int parallelism,
+                        int blockRows, Runnable releaseWriters) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.releaseWriters = releaseWriters;
+        this.publishTransaction = new TransactionTemplate(transactionManager);
+        this.tableName = tableName;
+        this.stagingTable = stagingTable;
+        this.swapTarget = swapTarget;
+        this.loadTable = stagingTable != null ? stagingTable : tableName;
+        this.blockRows = Math.max(1, blockRows);
+        this.queue = new ArrayBlockingQueue<>(parallelism * 2);
+        this.block = new ArrayList<>(this.blockRows);
+
+        if (stagingTable != null) {
+            // staging всё равно удаляется при ошибке – журнал (WAL) для неё не нужен
+            String ddl = "CREATE UNLOGGED TABLE " + stagingTable + " (LIKE " + tableName + " INCLUDING DEFAULTS)";
+            log.info("Creating staging table for {} writers: {}", parallelism, ddl);
+            jdbcTemplate.execute(ddl);
+        }
+
+        this.writers = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            writers.add(executor.submit(() -> drain(writerFactory)));
+        }
+    }
+
+    @Override
+    public void write(List<Object> row) {
+        block.add(row);
+        if (block.size() >= blockRows) {
+            flush();
+        }
+    }
+
+    /**
+     * Отдаёт накопленный блок writer-ам; в БД он попадёт, когда его заберёт свободный поток
+     */
+    @Override
+    public void flush() {
+        if (block.isEmpty()) {
+            return;
+        }
+        enqueue(block);
+        block = new ArrayList<>(blockRows);
+    }
+
+    @Override
+    public InsertResult finish() {
+        flush();
+        for (int i = 0; i < writers.size(); i++) {
+            enqueue(END);
+        }
+
+        List<InsertResult> results = new ArrayList<>(writers.size());
+        for (Future<InsertResult> writer : writers) {
+            results.add(await(writer));
+        }
+        release();
+
+        long publishStart = System.nanoTime();
+        if (stagingTable != null) {
+            publishTransaction.executeWithoutResult(status -> publish());
+        }
+        finished = true;
+
+        InsertResult result = merge(results);
+        log.info("Loaded {} rows into {} from {} writers in {} ms (publish {} ms)",
+                result.getRowsInserted(), loadTable, writers.size(), result.getDurationMs(),
+                (System.nanoTime() - publishStart) / 1_000_000);
+        return result;
+    }
+
+    /**
+     * Как TableSchemaService.publishTable: SET LOGGED переписывает staging в WAL, DROP + RENAME ставят её
+     * на место целевой таблицы – строки второй раз не копируются. Таблица, созданная не этим импортом, не удаляется
+     * даже пустая (её индексы, ограничения, права и зависимые представления остаются): staging дописывается
+     * в неё INSERT ... SELECT.
+     */
+    private void publish() {
+        // пока транзакция не закончилась, в целевую таблицу никто не пишет и не читает её наполовину
+        jdbcTemplate.execute("LOCK TABLE " + tableName + " IN ACCESS EXCLUSIVE MODE");
+        if (swapTarget) {
+            jdbcTemplate.execute("ALTER TABLE " + stagingTable + " SET LOGGED");
+            jdbcTemplate.execute("DROP TABLE " + tableName);
+            // RENAME TO принимает имя без схемы, staging лежит в той же схеме
+            jdbcTemplate.execute("ALTER TABLE " + stagingTable + " RENAME TO "
+                    + tableName.substring(tableName.lastIndexOf('.') + 1));
+        } else {
+            log.info("Table {} was not created by this import, appending staging {} with INSERT ... SELECT",
+                    tableName, stagingTable);
+            jdbcTemplate.execute("INSERT INTO " + tableName + " SELECT * FROM " + stagingTable);
+            jdbcTemplate.execute("DROP TABLE " + stagingTable);
+        }
+    }
+
+    @Override
+    public void setBatchListener(IntConsumer listener) {
+        this.batchListener = listener;
+    }
+
+    @Override
+    public void close() {
+        if (finished) {
+            return;
+        }
+        log.warn("Parallel import into table {} did not finish, rolling back writers", loadTable);
+        aborted = true;
+        queue.clear();
+
+        // writer-ы должны откатиться и вернуть соединения до удаления staging
+        for (Future<InsertResult> writer : writers) {
+            try {
+                writer.get();
+            } catch (ExecutionException e) {
+                // ошибка уже залогирована или проброшена из finish()
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        release();
+        if (stagingTable == null) {
+            return;
+        }
+        try {
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + stagingTable);
+        } catch (RuntimeException e) {
+            log.warn("Failed to drop staging table {}: {}", stagingTable, e.getMessage());
+        }
+    }
+
+    private void release() {
+        if (!released) {
+            released = true;
+            releaseWriters.run();
+        }
+    }
+
+    private InsertResult drain(Function<String, TableWriter> writerFactory) throws InterruptedException {
+        try (TableWriter writer = writerFactory.apply(loadTable)) {
+            writer.setBatchListener(rows -> batchListener.accept(rows));
+            while (true) {
+                List<List<Object>> rows = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (aborted) {
+                    throw new IllegalStateException("Parallel import into " + tableName + " was aborted");
+                }
+                if (rows == null) {
+                    continue;
+                }
+                if (rows == END) {
+                    return writer.finish();
+                }
+                for (List<Object> row : rows) {
+                    writer.write(row);
+                }
+            }
+        } catch (RuntimeException e) {
+            // остальные writer-ы тоже откатываются: таблица публикуется целиком или никак
+            failure.compareAndSet(null, e);
+            aborted = true;
+            throw e;
+        }
+    }
+
+    private void enqueue(List<List<Object>> rows) {
+        if (aborted) {
+            throw firstFailure();
+        }
+        try {
+            while (!queue.offer(rows, POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                if (aborted) {
+                    throw firstFailure();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import was interrupted", e);
+        }
+    }
+
+    private RuntimeException firstFailure() {
+        RuntimeException first = failure.get();
+        return first != null ? first : new IllegalStateException("Parallel import into " + tableName + " was aborted");
+    }
+
+    private InsertResult await(Future<InsertResult> writer) {
+        try {
+            return writer.get();
+        } catch (ExecutionException e) {
+            throw aborted ? firstFailure() : unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import was interrupted", e);
+        }
+    }
+
+    private RuntimeException unwrap(ExecutionException e) {
+        return e.getCause() instanceof RuntimeException runtime
+                ? runtime
+                : new IllegalStateException("Parallel import into " + tableName + " failed", e.getCause());
+    }
+
+    private InsertResult merge(List<InsertResult> results) {
+        List<BatchStats> batches = new ArrayList<>();
+        int rows = 0;
+        for (InsertResult result : results) {
+            rows += result.getRowsInserted();
+            for (BatchStats batch : result.getBatches()) {
+                batches.add(BatchStats.builder()
+                        .index(batches.size())
+                        .rows(batch.getRows())
+                        .durationMs(batch.getDurationMs())
+                        .durationNanos(batch.getDurationNanos())
+                        .build());
+            }
+        }
+
+        return InsertResult.builder()
+                .writeMode(results.getFirst().getWriteMode())
+                .rowsInserted(rows)
+                .durationMs((System.nanoTime() - start) / 1_000_000)
+                .batches(batches)
+                .writers(results.size())
+                .build();
+    }
+}
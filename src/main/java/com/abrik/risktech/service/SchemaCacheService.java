@@ -0,0 +1,163 @@
+package com.abrik.risktech.service;
+
+import com.abrik.risktech.config.ImportProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Кэш типов колонок регулярных выгрузок: ключ – имя источника и заголовки, значение – Java-типы колонок
+ * с прошлого импорта. Хранится в таблице import_schema_cache, последние schema-cache-size схем – в памяти (LRU).
+ * Ошибка кэша не роняет импорт: типы просто выводятся заново.
+ */
+@Service
+@Slf4j
+public class SchemaCacheService {
+    static final String TABLE = "import_schema_cache";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<String, List<Class<?>>> recent;
+
+    // таблица создаётся при первом использовании – приложение стартует и без доступной БД
+    private volatile boolean tableReady;
+
+    public SchemaCacheService(JdbcTemplate jdbcTemplate, ImportProperties importProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        int capacity = Math.max(1, importProperties.getSchemaCacheSize());
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<Class<?>>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public Optional<List<Class<?>>> find(String source, List<String> headers) {
+        String key = key(source, headers);
+        synchronized (recent) {
+            List<Class<?>> cached = recent.get(key);
+            if (cached != null) {
+                return Optional.of(cached);
+            }
+        }
+
+        try {
+            ensureTable();
+            List<String> found = jdbcTemplate.query("SELECT columns FROM " + TABLE + " WHERE cache_key = ?",
+                    (rs, rowNum) -> rs.getString("columns"), key);
+            if (found.isEmpty()) {
+                return Optional.empty();
+            }
+            List<Class<?>> columnTypes = decodeTypes(found.getFirst());
+            if (columnTypes.size() != headers.size()) {
+                return Optional.empty();
+            }
+            remember(key, columnTypes);
+            return Optional.of(columnTypes);
+        } catch (RuntimeException e) {
+            log.warn("Schema cache lookup for {} failed, inferring column types: {}", source, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Типы после импорта – с учётом колонок, расширенных по ходу записи
+     */
+    public void put(String source, List<String> headers, List<Class<?>> columnTypes) {
+        String key = key(source, headers);
+        List<Class<?>> types = List.copyOf(columnTypes);
+        remember(key, types);
+        try {
+            ensureTable();
+            jdbcTemplate.update(
+                    "INSERT INTO " + TABLE + " (cache_key, source, columns, updated_at) VALUES (?, ?, ?, now())"
+                            + " ON CONFLICT (cache_key) DO UPDATE SET columns = EXCLUDED.columns, updated_at = now()",
+                    key, normalizeSource(source), encodeTypes(headers, types));
+        } catch (RuntimeException e) {
+            log.warn("Failed to store column types of {} in the schema cache: {}", source, e.getMessage());
+        }
+    }
+
+    private void remember(String key, List<Class<?>> columnTypes) {
+        synchronized (recent) {
+            recent.put(key, columnTypes);
+        }
+    }
+
+    /**
+     * Цифры в имени источника не различаются: trades_20261018 и trades_20261019 – одна выгрузка.
+     * Заголовки сравниваются без регистра и пробелов по краям.
+     */
+    static String key(String source, List<String> headers) {
+        StringBuilder signature = new StringBuilder(normalizeSource(source));
+        for (String header : headers) {
+            signature.append('\u0001').append(header == null ? "" : header.strip().toLowerCase(Locale.ROOT));
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(signature.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    static String normalizeSource(String source) {
+        return source.toLowerCase(Locale.ROOT).replaceAll("[0-9]+", "#");
+    }
+
+    /**
+     * Колонка на строку: заголовок и Java-тип через табуляцию (заголовок – только для чтения человеком)
+     */
+    static String encodeTypes(List<String> headers, List<Class<?>> columnTypes) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < columnTypes.size(); i++) {
+            String header = headers.get(i) == null ? "" : headers.get(i).replace('\t', ' ').replace('\n', ' ');
+            sb.append(header).append('\t').append(columnTypes.get(i).getName()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    static List<Class<?>> decodeTypes(String encoded) {
+        List<Class<?>> columnTypes = new ArrayList<>();
+        for (String line : encoded.split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            String typeName = line.substring(line.lastIndexOf('\t') + 1);
+            try {
+                columnTypes.add(Class.forName(typeName));
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("Unknown column type in schema cache: " + typeName, e);
+            }
+        }
+        return columnTypes;
+    }
+
+    private void ensureTable() {
+        if (tableReady) {
+            return;
+        }
+        synchronized (this) {
+            if (!tableReady) {
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " ("
+                        + "cache_key VARCHAR(64) NOT NULL PRIMARY KEY, "
+                        + "source VARCHAR(300) NOT NULL, "
+                        + "columns TEXT NOT NULL, "
+                        + "updated_at TIMESTAMP NOT NULL)");
+                tableReady = true;
+            }
+        }
+    }
+}
@@ -8,9 +8,22 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
@@ -20,9 +33,20 @@ public class TableSchemaService {
 
     private final JdbcTemplate jdbcTemplate;
     private final SqlTypeMapper sqlTypeMapper;
+    private final PlatformTransactionManager transactionManager;
+
+    // [schema.]table из запроса – подставляется в SQL как есть, поэтому только простые идентификаторы
+    private static final Pattern TABLE_NAME = Pattern.compile("[a-z_][a-z0-9_]*(\\.[a-z_][a-z0-9_]*)?");
+
+    /**
+     * Колонки и уникальные ключи таблиц, в которые дописываются импорты: каталог читается один раз на таблицу
+     */
+    private final Map<String, TargetTable> targetTables = new ConcurrentHashMap<>();
 
     /**
-     * Создаю таблицу в БД на основе структуры TableData
+     * Создаю таблицу в БД на основе структуры TableData.
+     * Для staging-таблицы – UNLOGGED: строки не пишутся в WAL, при ошибке таблицу просто удаляют.
+     * Уже существующая таблица не пересоздаётся, TableData.created остаётся false.
      */
     public void createTable(TableData tableData) {
 
@@ -43,19 +67,21 @@ public class TableSchemaService {
         String tableName = normalizeIdentifier(tableData.getTableName());
         tableData.setTableName(tableName);
 
-        // Подготовка колонок: нормализация имён и заполнение sqlType
+        // Подготовка колонок: нормализация имён и заполнение sqlType (по статистике значений – самый узкий тип)
         for (ColumnMeta column : columns) {
             String normalizedName = normalizeIdentifier(column.getName());
             column.setName(normalizedName);
 
             if (column.getSqlType() == null || column.getSqlType().isBlank()) {
-                String sqlType = sqlTypeMapper.mapJavaTypeToSql(column.getJavaType());
+                String sqlType = sqlTypeMapper.mapJavaTypeToSql(column.getJavaType(), column.getStats());
                 column.setSqlType(sqlType);
             }
         }
 
-        String ddl = buildCreateTableSql(tableName, columns);
+        String ddl = buildCreateTableSql(tableName, columns, tableData.isStaging());
         log.info("Creating table: {}", ddl);
+        Boolean exists = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, tableName);
+        tableData.setCreated(Boolean.FALSE.equals(exists));
 
         try {
             log.info("Executing DDL: {}", ddl);
@@ -67,12 +93,257 @@ public class TableSchemaService {
         }
     }
 
-    private String buildCreateTableSql(String tableName, List<ColumnMeta> columns) {
+    /**
+     * Расширяю тип колонки уже созданной таблицы (например BIGINT -> NUMERIC или DATE -> VARCHAR)
+     * и обновляю ColumnMeta. Строки, уже записанные в таблицу, приводятся через USING.
+     */
+    public void alterColumnType(String tableName, ColumnMeta column, Class<?> newJavaType) {
+        String sqlType = sqlTypeMapper.mapJavaTypeToSql(newJavaType);
+        String ddl = "ALTER TABLE " + tableName
+                + " ALTER COLUMN " + column.getName()
+                + " TYPE " + sqlType
+                + " USING " + column.getName() + "::" + sqlType;
+
+        log.info("Widening column {}.{} from {} to {}: {}", tableName, column.getName(), column.getSqlType(), sqlType, ddl);
+
+        try {
+            jdbcTemplate.execute(ddl);
+        } catch (Exception e) {
+            log.error("DDL execution FAILED: {}", e.getMessage(), e);
+            throw e;
+        }
+
+        column.setJavaType(newJavaType);
+        column.setSqlType(sqlType);
+    }
+
+    /**
+     * Публикация загруженной staging-таблицы под целевым именем одной транзакцией:
+     * SET LOGGED переписывает таблицу в WAL (её пока никто не видит), RENAME делает её видимой.
+     * Читатели видят либо полную таблицу, либо никакой. Если имя уже занято, транзакция откатывается.
+     */
+    public void publishTable(TableData tableData, String tableName) {
+        String stagingTable = tableData.getTableName();
+        log.info("Publishing staging table {} as {}", stagingTable, tableName);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.execute("ALTER TABLE " + stagingTable + " SET LOGGED");
+            jdbcTemplate.execute("ALTER TABLE " + stagingTable + " RENAME TO " + tableName);
+        });
+
+        tableData.setTableName(tableName);
+        tableData.setStaging(false);
+    }
+
+    /**
+     * Перенос загруженной staging-таблицы в существующую таблицу одним запросом.
+     * Без ключа – INSERT ... SELECT. С ключом – upsert: INSERT ... ON CONFLICT, если по ключу есть уникальный
+     * индекс, иначе MERGE. Строки с повторным ключом в файле схлопываются в одну (при записи в одно
+     * соединение – последнюю). Значения приводятся к типам колонок targetTable.
+     *
+     * @return строк вставлено или обновлено
+     */
+    public int mergeInto(TableData staged, String targetTable, List<String> keyColumns) {
+        String target = targetTable.trim().toLowerCase(Locale.ROOT);
+        if (!TABLE_NAME.matcher(target).matches()) {
+            throw new BadRequestException("Invalid target table name: " + targetTable);
+        }
+        List<String> keys = keyColumns == null ? List.of() : keyColumns.stream()
+                .map(this::normalizeIdentifier)
+                .toList();
+
+        TargetTable table = targetTables.computeIfAbsent(target, this::describeTable);
+        List<ColumnMeta> columns = staged.getColumns();
+        try {
+            checkCompatible(target, table, columns, keys);
+        } catch (BadRequestException e) {
+            // каталог в кэше мог устареть (колонку добавили или расширили) – перед отказом он читается заново
+            log.info("{} does not fit cached columns of {}, re-reading the catalog", staged.getTableName(), target);
+            targetTables.remove(target);
+            table = targetTables.computeIfAbsent(target, this::describeTable);
+            checkCompatible(target, table, columns, keys);
+        }
+
+        String sql = buildMergeSql(staged.getTableName(), target, table, columns, keys);
+        log.info("Merging {} into {}: {}", staged.getTableName(), target, sql);
+
+        int rows;
+        try {
+            rows = jdbcTemplate.update(sql);
+        } catch (RuntimeException e) {
+            // таблицу могли изменить после чтения каталога – в следующий раз он будет прочитан заново
+            targetTables.remove(target);
+            log.error("Merge into {} FAILED: {}", target, e.getMessage(), e);
+            throw e;
+        }
+
+        for (ColumnMeta column : columns) {
+            column.setSqlType(table.columns().get(column.getName()).sqlType());
+        }
+        staged.setTableName(target);
+        staged.setStaging(false);
+        return rows;
+    }
+
+    /**
+     * Удаление недогруженной staging-таблицы; ошибка только логируется, чтобы не скрыть причину сбоя импорта
+     */
+    public void dropTableQuietly(String tableName) {
+        try {
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + tableName);
+        } catch (Exception e) {
+            log.warn("Failed to drop table {}: {}", tableName, e.getMessage());
+        }
+    }
+
+    /**
+     * Имя staging-таблицы: префикс целевой (идентификатор в PostgreSQL – до 63 символов) и случайный суффикс
+     */
+    public static String stagingTableName(String tableName) {
+        String prefix = tableName.length() > 40 ? tableName.substring(0, 40) : tableName;
+        return prefix + "_stg_" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    private TargetTable describeTable(String target) {
+        Map<String, TargetColumn> columns = new LinkedHashMap<>();
+        jdbcTemplate.query(
+                "SELECT a.attname, format_type(a.atttypid, a.atttypmod) AS sql_type, "
+                        + "format_type(a.atttypid, NULL) AS base_type, t.typcategory "
+                        + "FROM pg_attribute a JOIN pg_type t ON t.oid = a.atttypid "
+                        + "WHERE a.attrelid = to_regclass(?) AND a.attnum > 0 AND NOT a.attisdropped "
+                        + "ORDER BY a.attnum",
+                rs -> {
+                    columns.put(rs.getString("attname"), new TargetColumn(rs.getString("sql_type"),
+                            rs.getString("base_type"), rs.getString("typcategory").charAt(0)));
+                },
+                target);
+        if (columns.isEmpty()) {
+            throw new BadRequestException("Target table " + target + " does not exist");
+        }
+
+        // уникальные индексы по колонкам (без выражений и условий) – только их принимает ON CONFLICT
+        List<String> uniqueKeys = jdbcTemplate.queryForList(
+                "SELECT array_to_string(ARRAY(SELECT a.attname FROM pg_attribute a "
+                        + "WHERE a.attrelid = i.indrelid AND a.attnum = ANY (i.indkey)), ',') "
+                        + "FROM pg_index i "
+                        + "WHERE i.indrelid = to_regclass(?) AND i.indisunique "
+                        + "AND i.indpred IS NULL AND i.indexprs IS NULL",
+                String.class, target);
+        Set<Set<String>> keys = new HashSet<>();
+        for (String key : uniqueKeys) {
+            keys.add(Set.of(key.split(",")));
+        }
+
+        log.info("Target table {}: {} columns, unique keys {}", target, columns.size(), keys);
+        return new TargetTable(columns, keys);
+    }
+
+    private void checkCompatible(String target, TargetTable table, List<ColumnMeta> columns, List<String> keys) {
+        List<String> problems = new ArrayList<>();
+        Set<String> fileColumns = new HashSet<>();
+        for (ColumnMeta column : columns) {
+            fileColumns.add(column.getName());
+            TargetColumn targetColumn = table.columns().get(column.getName());
+            if (targetColumn == null) {
+                problems.add("column " + column.getName() + " is missing");
+            } else if (!isAssignable(column.getJavaType(), targetColumn.category())) {
+                problems.add("column " + column.getName() + " holds " + column.getSqlType()
+                        + " values, target type is " + targetColumn.sqlType());
+            }
+        }
+        for (String key : keys) {
+            if (!fileColumns.contains(key)) {
+                problems.add("key column " + key + " is not in the file");
+            }
+        }
+        if (new HashSet<>(keys).size() != keys.size()) {
+            problems.add("key columns repeat");
+        }
+
+        if (!problems.isEmpty()) {
+            throw new BadRequestException("File does not fit table " + target + ": " + String.join("; ", problems));
+        }
+    }
+
+    /**
+     * Явные несовпадения категорий (дата в число, число в булево). В текст приводится всё; строковая колонка
+     * файла (в том числе полностью пустая) приводится к типу таблицы самой БД.
+     */
+    private static boolean isAssignable(Class<?> javaType, char category) {
+        if (category == 'S' || javaType == null || String.class.equals(javaType)) {
+            return true;
+        }
+        if (Long.class.equals(javaType) || Integer.class.equals(javaType) || BigDecimal.class.equals(javaType)
+                || Double.class.equals(javaType)) {
+            return category == 'N';
+        }
+        if (Boolean.class.equals(javaType)) {
+            return category == 'B';
+        }
+        if (LocalDate.class.equals(javaType) || LocalDateTime.class.equals(javaType)) {
+            return category == 'D';
+        }
+        return false;
+    }
+
+    private static String buildMergeSql(String stagingTable, String target, TargetTable table,
+                                        List<ColumnMeta> columns, List<String> keys) {
+        List<String> names = columns.stream().map(ColumnMeta::getName).toList();
+        String columnList = String.join(", ", names);
+
+        StringBuilder select = new StringBuilder("SELECT ");
+        if (!keys.isEmpty()) {
+            select.append("DISTINCT ON (")
+                    .append(keys.stream().map(key -> "st." + key).collect(Collectors.joining(", ")))
+                    .append(") ");
+        }
+        select.append(names.stream()
+                // к типу без модификатора: явный CAST в varchar(n) молча обрезал бы длинные строки,
+                // а так длину (и точность numeric) проверяет присваивание в колонку таблицы
+                .map(name -> "CAST(st." + name + " AS " + table.columns().get(name).baseType() + ") AS " + name)
+                .collect(Collectors.joining(", ")));
+        select.append(" FROM ").append(stagingTable).append(" st");
+        if (!keys.isEmpty()) {
+            // последняя строка файла – наибольший ctid: staging для merge пишется одним соединением по порядку
+            select.append(" ORDER BY ")
+                    .append(keys.stream().map(key -> "st." + key).collect(Collectors.joining(", ")))
+                    .append(", st.ctid DESC");
+        }
+
+        if (keys.isEmpty()) {
+            return "INSERT INTO " + target + " (" + columnList + ") " + select;
+        }
+
+        List<String> updated = names.stream().filter(name -> !keys.contains(name)).toList();
+        if (table.uniqueKeys().contains(Set.copyOf(keys))) {
+            return "INSERT INTO " + target + " (" + columnList + ") " + select
+                    + " ON CONFLICT (" + String.join(", ", keys) + ") "
+                    + (updated.isEmpty()
+                    ? "DO NOTHING"
+                    : "DO UPDATE SET " + updated.stream()
+                    .map(name -> name + " = EXCLUDED." + name)
+                    .collect(Collectors.joining(", ")));
+        }
+
+        // Без уникального индекса ON CONFLICT не работает – MERGE (PostgreSQL 15+)
+        return "MERGE INTO " + target + " t USING (" + select + ") s ON "
+                + keys.stream().map(key -> "t." + key + " = s." + key).collect(Collectors.joining(" AND "))
+                + (updated.isEmpty()
+                ? ""
+                : " WHEN MATCHED THEN UPDATE SET " + updated.stream()
+                .map(name -> name + " = s." + name)
+                .collect(Collectors.joining(", ")))
+                + " WHEN NOT MATCHED THEN INSERT (" + columnList + ") VALUES ("
+                + names.stream().map(name -> "s." + name).collect(Collectors.joining(", ")) + ")";
+    }
+
+    private String buildCreateTableSql(String tableName, List<ColumnMeta> columns, boolean unlogged) {
         String columnsSql = columns.stream()
                 .map(col -> col.getName() + " " + col.getSqlType())
                 .collect(Collectors.joining(", "));
 
-        return "CREATE TABLE IF NOT EXISTS " + tableName + " (" + columnsSql + ")";
+        return (unlogged ? "CREATE UNLOGGED TABLE IF NOT EXISTS " : "CREATE TABLE IF NOT EXISTS ")
+                + tableName + " (" + columnsSql + ")";
     }
 
     private String normalizeIdentifier(String rawName) {
@@ -94,4 +365,15 @@ public class TableSchemaService {
 
         return normalized;
     }
+
+    private record TargetTable(Map<String, TargetColumn> columns, Set<Set<String>> uniqueKeys) {
+    }
+
+    /**
+     * @param sqlType  тип с модификатором, например character varying(20)
+     * @param baseType тот же тип без модификатора – в нём значения приводятся в merge
+     * @param category pg_type.typcategory: N – числа, S – строки, D – дата/время, B – булево
+     */
+    private record TargetColumn(String sqlType, String baseType, char category) {
+    }
 }
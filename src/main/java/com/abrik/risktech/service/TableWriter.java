@@ -0,0 +1,43 @@
+package com.abrik.risktech.service;
+
+import com.abrik.risktech.model.ColumnarRows;
+import com.abrik.risktech.model.InsertResult;
+
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Потоковая запись типизированных строк в таблицу.
+ * Строки копятся в пачку и отправляются в БД по её заполнению, в памяти держится не больше одной пачки.
+ * Без вызова finish() незакоммиченные данные откатываются в close().
+ */
+public interface TableWriter extends AutoCloseable {
+
+    void write(List<Object> row);
+
+    /**
+     * Строка row из колонок. Writer-ы INSERT и COPY берут значения прямо из примитивных массивов,
+     * по умолчанию строка упаковывается в список.
+     */
+    default void write(ColumnarRows rows, int row) {
+        write(rows.row(row));
+    }
+
+    /**
+     * Отправить накопленную пачку, не дожидаясь её заполнения
+     */
+    void flush();
+
+    /**
+     * Отправить остаток, закоммитить и вернуть статистику
+     */
+    InsertResult finish();
+
+    /**
+     * Вызывается после каждой отправленной в БД пачки с числом её строк (прогресс импорта)
+     */
+    void setBatchListener(IntConsumer listener);
+
+    @Override
+    void close();
+}
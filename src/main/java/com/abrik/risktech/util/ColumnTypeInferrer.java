@@ -0,0 +1,249 @@
+package com.abrik.risktech.util;
+
+import com.abrik.risktech.model.ColumnStats;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Потоковый вывод типов колонок: строки подаются по одной через accept,
+ * хранится только маска возможных типов по каждой колонке, а не сами значения.
+ * Попутно собирается статистика для размера SQL-типа: длина значений, цифры целой и дробной части.
+ */
+public class ColumnTypeInferrer {
+    private final int columnCount;
+
+    private final int[] possibleKinds;   // ValueScanner.INTEGER | DECIMAL | DATE | TIMESTAMP | BOOLEAN
+    private final boolean[] hasNonEmpty;
+
+    private final int[] maxLength;
+    private final int[] integerDigits;
+    private final int[] scale;
+    private final boolean[] unsizedText;    // нативные ячейки: длина их текста заранее не известна
+    private final boolean[] unsizedNumber;  // число с экспонентой
+
+    private long rowCount;
+
+    public ColumnTypeInferrer(int columnCount) {
+        this.columnCount = columnCount;
+        this.possibleKinds = new int[columnCount];
+        this.hasNonEmpty = new boolean[columnCount];
+        this.maxLength = new int[columnCount];
+        this.integerDigits = new int[columnCount];
+        this.scale = new int[columnCount];
+        this.unsizedText = new boolean[columnCount];
+        this.unsizedNumber = new boolean[columnCount];
+        Arrays.fill(possibleKinds, ValueScanner.ANY);
+    }
+
+    /**
+     * @param row сырые значения: строки для текстовых форматов, для нативных ячеек XLSX –
+     *            уже типизированные Long / BigDecimal / Boolean / LocalDate / LocalDateTime
+     */
+    public void accept(List<?> row) {
+        rowCount++;
+
+        int limit = Math.min(columnCount, row.size());
+        for (int col = 0; col < limit; col++) {
+            Object value = row.get(col);
+            if (value == null) {
+                continue;
+            }
+
+            if (value instanceof String text) {
+                if (text.isBlank()) {
+                    continue;
+                }
+                String trimmed = text.trim();
+                acceptText(col, trimmed.length());
+
+                // колонка уже текстовая – дальше её значения можно не разбирать
+                if (possibleKinds[col] != 0) {
+                    acceptClassified(col, trimmed, ValueScanner.classify(trimmed));
+                }
+            } else {
+                // тип уже известен из файла – строку разбирать не нужно
+                hasNonEmpty[col] = true;
+                unsizedText[col] = true;
+                possibleKinds[col] &= ValueScanner.kindOf(value);
+                measureTyped(col, value);
+            }
+        }
+    }
+
+    /**
+     * Поштучный вариант accept для кода, который сам разбирает строку (например, по байтам файла):
+     * вызывается для каждого непустого значения, затем endRow() на строку
+     */
+    public void acceptKinds(int col, int kinds) {
+        hasNonEmpty[col] = true;
+        possibleKinds[col] &= kinds;
+    }
+
+    /**
+     * Непустое значение длиной length символов (верхняя оценка – например, байты UTF-8), без классификации.
+     * Для колонки, которой needsClassification вернул false, этого достаточно.
+     */
+    public void acceptText(int col, int length) {
+        hasNonEmpty[col] = true;
+        if (length > maxLength[col]) {
+            maxLength[col] = length;
+        }
+    }
+
+    /**
+     * Значение без пробелов по краям и его флаги ValueScanner.classify: для чисел запоминается размер.
+     * Длину передаёт acceptText.
+     */
+    public void acceptClassified(int col, CharSequence value, int kinds) {
+        acceptKinds(col, kinds);
+        if ((kinds & ValueScanner.DECIMAL) != 0) {
+            measureNumber(col, value);
+        }
+    }
+
+    /**
+     * false – колонка уже текстовая, значения можно не классифицировать
+     */
+    public boolean needsClassification(int col) {
+        return possibleKinds[col] != 0;
+    }
+
+    public void endRow() {
+        rowCount++;
+    }
+
+    /**
+     * Добавляет результат другого инферера по той же схеме (например, по другому куску файла).
+     * Итог не зависит от порядка слияния.
+     */
+    public void merge(ColumnTypeInferrer other) {
+        if (other.columnCount != columnCount) {
+            throw new IllegalArgumentException("Cannot merge inferrers with " + other.columnCount
+                    + " and " + columnCount + " columns");
+        }
+        for (int col = 0; col < columnCount; col++) {
+            possibleKinds[col] &= other.possibleKinds[col];
+            hasNonEmpty[col] |= other.hasNonEmpty[col];
+            maxLength[col] = Math.max(maxLength[col], other.maxLength[col]);
+            integerDigits[col] = Math.max(integerDigits[col], other.integerDigits[col]);
+            scale[col] = Math.max(scale[col], other.scale[col]);
+            unsizedText[col] |= other.unsizedText[col];
+            unsizedNumber[col] |= other.unsizedNumber[col];
+        }
+        rowCount += other.rowCount;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public List<Class<?>> getColumnTypes() {
+        List<Class<?>> result = new ArrayList<>(columnCount);
+        for (int col = 0; col < columnCount; col++) {
+            result.add(resolve(col));
+        }
+        return result;
+    }
+
+    /**
+     * Статистика по колонкам – имеет смысл, только если через инферер прошли все строки файла
+     */
+    public List<ColumnStats> getColumnStats() {
+        List<ColumnStats> result = new ArrayList<>(columnCount);
+        for (int col = 0; col < columnCount; col++) {
+            boolean empty = !hasNonEmpty[col];
+            result.add(new ColumnStats(
+                    empty || unsizedText[col] ? ColumnStats.UNKNOWN : maxLength[col],
+                    empty || unsizedNumber[col] ? ColumnStats.UNKNOWN : integerDigits[col],
+                    empty || unsizedNumber[col] ? ColumnStats.UNKNOWN : scale[col]));
+        }
+        return result;
+    }
+
+    /**
+     * [+-] цифры [. цифры]: ведущие нули не считаются, экспонента – размер неизвестен
+     */
+    private void measureNumber(int col, CharSequence v) {
+        int len = v.length();
+        int i = 0;
+        char c = v.charAt(0);
+        if (c == '+' || c == '-') {
+            i++;
+        }
+        while (i + 1 < len && v.charAt(i) == '0' && isDigit(v.charAt(i + 1))) {
+            i++;
+        }
+
+        int intStart = i;
+        while (i < len && isDigit(v.charAt(i))) {
+            i++;
+        }
+        int intDigits = i - intStart;
+
+        int fracDigits = 0;
+        if (i < len && v.charAt(i) == '.') {
+            int fracStart = ++i;
+            while (i < len && isDigit(v.charAt(i))) {
+                i++;
+            }
+            fracDigits = i - fracStart;
+        }
+        if (i < len) {
+            unsizedNumber[col] = true;
+            return;
+        }
+
+        integerDigits[col] = Math.max(integerDigits[col], intDigits);
+        scale[col] = Math.max(scale[col], fracDigits);
+    }
+
+    private void measureTyped(int col, Object value) {
+        if (value instanceof Long number) {
+            long abs = Math.abs(number);
+            int digits = abs < 0 ? 19 : Long.toString(abs).length(); // abs(Long.MIN_VALUE) < 0
+            integerDigits[col] = Math.max(integerDigits[col], digits);
+        } else if (value instanceof BigDecimal decimal) {
+            int fracDigits = Math.max(0, decimal.scale());
+            integerDigits[col] = Math.max(integerDigits[col], Math.max(0, decimal.precision() - decimal.scale()));
+            scale[col] = Math.max(scale[col], fracDigits);
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private Class<?> resolve(int col) {
+        if (!hasNonEmpty[col]) {
+            // all values in column are empty -> treat as String
+            return String.class;
+        }
+
+        int kinds = possibleKinds[col];
+
+        // любое целое – ещё и BigDecimal, поэтому Long проверяется раньше
+        if ((kinds & ValueScanner.INTEGER) != 0) {
+            return Long.class;
+        }
+        if ((kinds & ValueScanner.DECIMAL) != 0) {
+            return BigDecimal.class;
+        }
+        if ((kinds & ValueScanner.DATE) != 0) {
+            return LocalDate.class;
+        }
+        if ((kinds & ValueScanner.TIMESTAMP) != 0) {
+            return LocalDateTime.class;
+        }
+        if ((kinds & ValueScanner.BOOLEAN) != 0) {
+            return Boolean.class;
+        }
+
+        // Fallback: String
+        return String.class;
+    }
+}
@@ -0,0 +1,102 @@
+package com.abrik.risktech.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 содержимого файла, считается по ходу чтения потока – отдельного прохода не нужно.
+ * Хэш имеет смысл, только если поток дочитан до конца (isComplete).
+ */
+public class ContentHasher extends FilterInputStream {
+    private final MessageDigest digest;
+    private boolean complete;
+
+    public ContentHasher(InputStream in) {
+        super(in);
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Хэш потока целиком (поток закрывается)
+     */
+    public static String hash(InputStream in) throws IOException {
+        try (ContentHasher hasher = new ContentHasher(in)) {
+            hasher.transferTo(OutputStream.nullOutputStream());
+            return hasher.hex();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            complete = true;
+        } else {
+            digest.update((byte) b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = in.read(b, off, len);
+        if (n == -1) {
+            complete = true;
+        } else {
+            digest.update(b, off, n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // пропущенные байты тоже должны попасть в хэш
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read == -1) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public long transferTo(OutputStream out) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long transferred = 0;
+        int read;
+        while ((read = read(buffer, 0, buffer.length)) != -1) {
+            out.write(buffer, 0, read);
+            transferred += read;
+        }
+        return transferred;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Хэш в hex; вызывается один раз, после чтения
+     */
+    public String hex() {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -1,10 +1,23 @@
 package com.abrik.risktech.util;
 
+import com.abrik.risktech.model.ColumnMeta;
+import com.abrik.risktech.model.ColumnStats;
+import com.abrik.risktech.model.ColumnarRows;
+import com.abrik.risktech.model.ColumnarRows.BooleanColumn;
+import com.abrik.risktech.model.ColumnarRows.Column;
+import com.abrik.risktech.model.ColumnarRows.DateColumn;
+import com.abrik.risktech.model.ColumnarRows.DecimalColumn;
+import com.abrik.risktech.model.ColumnarRows.LongColumn;
+import com.abrik.risktech.model.ColumnarRows.ObjectColumn;
+import com.abrik.risktech.model.ColumnarRows.StringColumn;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 @Component
@@ -13,149 +26,395 @@ public class FileParserUtil {
      * Infers Java types for each column based on all non-empty values.
      * Same logic as in CsvFileParser.
      */
-    public List<Class<?>> inferColumnTypes(List<List<String>> rawRows, int columnCount) {
-        List<Class<?>> result = new ArrayList<>(columnCount);
+    public List<Class<?>> inferColumnTypes(List<? extends List<?>> rawRows, int columnCount) {
+        return inferColumns(rawRows, columnCount).getColumnTypes();
+    }
 
-        for (int col = 0; col < columnCount; col++) {
-            Class<?> inferred = inferSingleColumnType(rawRows, col);
-            result.add(inferred);
+    /**
+     * Типы и статистика размеров по всем строкам – для buildColumns(headers, inferrer)
+     */
+    public ColumnTypeInferrer inferColumns(List<? extends List<?>> rawRows, int columnCount) {
+        ColumnTypeInferrer inferrer = newTypeInferrer(columnCount);
+        for (List<?> row : rawRows) {
+            inferrer.accept(row);
         }
+        return inferrer;
+    }
 
-        return result;
+    /**
+     * Потоковый вариант inferColumnTypes – для чтения через RowCursor без накопления строк
+     */
+    public ColumnTypeInferrer newTypeInferrer(int columnCount) {
+        return new ColumnTypeInferrer(columnCount);
     }
 
-    private Class<?> inferSingleColumnType(List<List<String>> rawRows, int colIndex) {
-        boolean allLong = true;
-        boolean allBigDecimal = true;
-        boolean allBoolean = true;
-        boolean allLocalDate = true;
+    /**
+     * Строю ColumnMeta по заголовкам и выведенным типам, sqlType заполнит TableSchemaService
+     */
+    public List<ColumnMeta> buildColumns(List<String> headers, List<Class<?>> columnTypes) {
+        List<ColumnMeta> columns = new ArrayList<>(headers.size());
+        for (int i = 0; i < headers.size(); i++) {
+            columns.add(ColumnMeta.builder()
+                    .name(headers.get(i))
+                    .javaType(columnTypes.get(i))
+                    .sqlType(null)
+                    .build());
+        }
+        return columns;
+    }
 
-        boolean hasNonEmpty = false;
+    /**
+     * То же по инфереру, через который прошли все строки: статистика значений позволяет
+     * TableSchemaService выбрать самый узкий SQL-тип
+     */
+    public List<ColumnMeta> buildColumns(List<String> headers, ColumnTypeInferrer inferrer) {
+        List<Class<?>> columnTypes = inferrer.getColumnTypes();
+        List<ColumnStats> stats = inferrer.getColumnStats();
+        List<ColumnMeta> columns = buildColumns(headers, columnTypes);
+        for (int i = 0; i < columns.size(); i++) {
+            columns.get(i).setStats(stats.get(i));
+        }
+        return columns;
+    }
 
-        for (List<String> row : rawRows) {
-            if (colIndex >= row.size()) {
-                continue;
+    /**
+     * Строки курсора сразу раскладываются по колонкам, типы выводятся на том же проходе.
+     * Текст ложится в StringColumn со словарём по мере чтения: повторяющиеся значения хранятся одним
+     * экземпляром ещё до вывода типов, а не в виде списка строк на весь файл.
+     */
+    public ColumnarRows readColumns(Iterator<? extends List<?>> rows, ColumnTypeInferrer inferrer, int columnCount) {
+        ColumnarRows raw = newRawColumns(columnCount);
+        while (rows.hasNext()) {
+            List<?> row = rows.next();
+            inferrer.accept(row);
+            appendRaw(raw, row);
+        }
+        return raw;
+    }
+
+    /**
+     * Пустые сырые колонки для appendRaw: все текстовые, значение другого типа (ячейка XLSX)
+     * переводит колонку в объектную
+     */
+    public ColumnarRows newRawColumns(int columnCount) {
+        return new ColumnarRows(Collections.nCopies(columnCount, String.class), 1024);
+    }
+
+    /**
+     * Сырая строка в конец колонок. Текст хранится без пробелов по краям, пустой – как null:
+     * convertColumns всё равно разбирает его так.
+     */
+    public void appendRaw(ColumnarRows raw, List<?> rawRow) {
+        int row = raw.addRow();
+        int limit = Math.min(raw.columnCount(), rawRow.size());
+        for (int col = 0; col < limit; col++) {
+            Object value = rawRow.get(col);
+            if (value instanceof String text) {
+                if (!text.isBlank()) {
+                    raw.set(row, col, text.trim());
+                }
+            } else if (value != null) {
+                raw.set(row, col, value);
             }
-            String value = row.get(colIndex);
-            if (value == null || value.isBlank()) {
-                continue;
+        }
+    }
+
+    /**
+     * Преобразую необработанные строки строк в типизированные строки в соответствии с предполагаемыми типами столбцов
+     */
+    public List<List<Object>> convertRows(List<? extends List<?>> rawRows, List<Class<?>> columnTypes) {
+        List<List<Object>> typedRows = new ArrayList<>();
+
+        for (List<?> rawRow : rawRows) {
+            typedRows.add(convertRow(rawRow, columnTypes));
+        }
+
+        return typedRows;
+    }
+
+    /**
+     * То же, что convertRows, но сразу в колонки примитивных массивов: целые, десятичные,
+     * даты и булевы разбираются из текста прямо в long / int / биты, без промежуточных объектов
+     */
+    public ColumnarRows convertColumns(List<? extends List<?>> rawRows, List<Class<?>> columnTypes) {
+        ColumnarRows columnar = new ColumnarRows(columnTypes, rawRows.size());
+
+        for (List<?> rawRow : rawRows) {
+            int row = columnar.addRow();
+            for (int col = 0; col < columnTypes.size(); col++) {
+                Object value = col < rawRow.size() ? rawRow.get(col) : null;
+                convertInto(columnar, row, col, value, columnTypes.get(col));
             }
+        }
+
+        return columnar;
+    }
 
-            hasNonEmpty = true;
-            String v = value.trim();
+    /**
+     * То же по сырым колонкам из readColumns / appendRaw – колонка за колонкой
+     */
+    public ColumnarRows convertColumns(ColumnarRows raw, List<Class<?>> columnTypes) {
+        ColumnarRows columnar = new ColumnarRows(columnTypes, raw.size());
+        for (int row = 0; row < raw.size(); row++) {
+            columnar.addRow();
+        }
 
-            // check Long
-            if (allLong) {
-                try {
-                    Long.parseLong(v);
-                } catch (NumberFormatException e) {
-                    allLong = false;
+        for (int col = 0; col < columnTypes.size(); col++) {
+            Column source = raw.column(col);
+            Class<?> targetType = columnTypes.get(col);
+            for (int row = 0; row < raw.size(); row++) {
+                if (!source.isNull(row)) {
+                    convertInto(columnar, row, col, source.get(row), targetType);
                 }
             }
+        }
 
-            // check BigDecimal
-            if (allBigDecimal) {
-                try {
-                    new BigDecimal(v);
-                } catch (NumberFormatException e) {
-                    allBigDecimal = false;
-                }
+        return columnar;
+    }
+
+    private void convertInto(ColumnarRows columnar, int row, int col, Object value, Class<?> targetType) {
+        if (value instanceof String text) {
+            if (text.isBlank()) {
+                return; // новая строка уже null
             }
+            String trimmed = text.trim();
+            if (!parseInto(columnar.column(col), row, trimmed)) {
+                // объектная колонка или несовпадение типа – как в convertRow
+                columnar.set(row, col, convertText(trimmed, targetType));
+            }
+            return;
+        }
+        columnar.set(row, col, convertValue(value, targetType));
+    }
 
-            // check Boolean
-            if (allBoolean) {
-                if (!v.equalsIgnoreCase("true") && !v.equalsIgnoreCase("false")) {
-                    allBoolean = false;
+    /**
+     * @return false, если колонка объектная или текст не разбирается в её тип
+     */
+    private boolean parseInto(Column column, int row, String v) {
+        return switch (column) {
+            case LongColumn longs -> {
+                if ((ValueScanner.scanNumber(v) & ValueScanner.INTEGER) == 0) {
+                    yield false;
                 }
+                longs.setLong(row, ValueScanner.parseLong(v));
+                yield true;
             }
-
-            // check LocalDate (ISO-8601)
-            if (allLocalDate) {
-                try {
-                    LocalDate.parse(v);
-                } catch (Exception e) {
-                    allLocalDate = false;
+            case DecimalColumn decimals -> {
+                if (!ValueScanner.isDecimal(v)) {
+                    yield false;
                 }
+                if (!setPlainDecimal(decimals, row, v)) {
+                    decimals.setDecimal(row, new BigDecimal(v));
+                }
+                yield true;
             }
-        }
+            case DateColumn dates -> {
+                if (!ValueScanner.isIsoDate(v)) {
+                    yield false;
+                }
+                dates.setEpochDay(row, ValueScanner.toEpochDay(v));
+                yield true;
+            }
+            case BooleanColumn booleans -> {
+                Boolean parsed = ValueScanner.toBoolean(v);
+                if (parsed == null) {
+                    yield false;
+                }
+                booleans.setBoolean(row, parsed);
+                yield true;
+            }
+            case StringColumn strings -> {
+                strings.setString(row, v);
+                yield true;
+            }
+            case ObjectColumn objects -> false;
+        };
+    }
 
-        if (!hasNonEmpty) {
-            // all values in column are empty -> treat as String
-            return String.class;
+    /**
+     * [+-] цифры [. цифры] до 18 цифр – unscaled и scale, как у new BigDecimal(v), без создания BigDecimal
+     *
+     * @return false для экспоненты или слишком длинного числа
+     */
+    private static boolean setPlainDecimal(DecimalColumn column, int row, CharSequence v) {
+        int i = 0;
+        boolean negative = false;
+        char c = v.charAt(0);
+        if (c == '+' || c == '-') {
+            negative = c == '-';
+            i++;
         }
 
-        if (allBigDecimal) {
-            return BigDecimal.class;
-        }
-        if (allLong) {
-            return Long.class;
-        }
-        if (allLocalDate) {
-            return LocalDate.class;
-        }
-        if (allBoolean) {
-            return Boolean.class;
+        long unscaled = 0;
+        int digits = 0;
+        int scale = -1; // -1 – точки ещё не было
+        for (; i < v.length(); i++) {
+            c = v.charAt(i);
+            if (c == '.') {
+                scale = 0;
+                continue;
+            }
+            if (c < '0' || c > '9' || ++digits > 18) {
+                return false;
+            }
+            unscaled = unscaled * 10 + (c - '0');
+            if (scale >= 0) {
+                scale++;
+            }
         }
 
-        // Fallback: String
-        return String.class;
+        column.setDecimal(row, negative ? -unscaled : unscaled, Math.max(scale, 0));
+        return true;
     }
 
     /**
-     * Преобразую необработанные строки строк в типизированные строки в соответствии с предполагаемыми типами столбцов
+     * Одна строка – то же, что convertRows, для потоковой обработки
      */
-    public List<List<Object>> convertRows(List<List<String>> rawRows, List<Class<?>> columnTypes) {
-        List<List<Object>> typedRows = new ArrayList<>();
+    public List<Object> convertRow(List<?> rawRow, List<Class<?>> columnTypes) {
+        List<Object> typedRow = new ArrayList<>(columnTypes.size());
+        for (int col = 0; col < columnTypes.size(); col++) {
+            Object value = col < rawRow.size() ? rawRow.get(col) : null;
+            Class<?> targetType = columnTypes.get(col);
+            Object converted = convertValue(value, targetType);
+            typedRow.add(converted);
+        }
+        return typedRow;
+    }
 
-        for (List<String> rawRow : rawRows) {
-            List<Object> typedRow = new ArrayList<>();
-            for (int col = 0; col < columnTypes.size(); col++) {
-                String value = col < rawRow.size() ? rawRow.get(col) : null;
-                Class<?> targetType = columnTypes.get(col);
-                Object converted = convertValue(value, targetType);
-                typedRow.add(converted);
+    /**
+     * Тип, в который помещаются и уже выведенный тип колонки, и новое значение.
+     * Пустое значение подходит под любой тип; целое + дробное -> BigDecimal,
+     * дата + дата со временем -> LocalDateTime, любое другое несовпадение -> String.
+     */
+    public Class<?> widenType(Class<?> currentType, Object value) {
+        if (value == null || String.class.equals(currentType)) {
+            return currentType;
+        }
+        if (value instanceof String text) {
+            if (text.isBlank()) {
+                return currentType;
             }
-            typedRows.add(typedRow);
+            value = text.trim();
         }
 
-        return typedRows;
+        int kinds = ValueScanner.kindOf(value);
+        if ((kinds & kindOf(currentType)) != 0) {
+            return currentType;
+        }
+        if (Long.class.equals(currentType) && (kinds & ValueScanner.DECIMAL) != 0) {
+            return BigDecimal.class;
+        }
+        if (LocalDate.class.equals(currentType) && (kinds & ValueScanner.TIMESTAMP) != 0) {
+            return LocalDateTime.class;
+        }
+        return String.class;
     }
 
-    private Object convertValue(String value, Class<?> targetType) {
-        if (value == null || value.isBlank()) {
-            return null;
+    private int kindOf(Class<?> type) {
+        if (type.equals(Long.class)) {
+            return ValueScanner.INTEGER;
+        }
+        if (type.equals(BigDecimal.class)) {
+            return ValueScanner.DECIMAL;
+        }
+        if (type.equals(LocalDate.class)) {
+            return ValueScanner.DATE;
+        }
+        if (type.equals(LocalDateTime.class)) {
+            return ValueScanner.TIMESTAMP;
         }
-        String v = value.trim();
+        if (type.equals(Boolean.class)) {
+            return ValueScanner.BOOLEAN;
+        }
+        return 0;
+    }
 
-        if (targetType.equals(String.class)) {
-            return v;
+    /**
+     * Значение, которое не разбирается в целевой тип, возвращается как String –
+     * по этому признаку вызывающий код узнаёт о несовпадении без повторного разбора.
+     * Уже типизированные значения (нативные ячейки XLSX) не разбираются, а только приводятся.
+     */
+    private Object convertValue(Object value, Class<?> targetType) {
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof String text)) {
+            return convertTypedValue(value, targetType);
+        }
+        if (text.isBlank()) {
+            return null;
         }
+        return convertText(text.trim(), targetType);
+    }
+
+    /**
+     * Разбор непустого значения без пробелов по краям в тип колонки. Принимает CharSequence –
+     * например, ASCII-срез буфера файла: String создаётся только для текстовой колонки
+     * или при несовпадении типа (тогда, как и в convertRow, возвращается String).
+     */
+    public Object convertText(CharSequence v, Class<?> targetType) {
         if (targetType.equals(Long.class)) {
-            try {
-                return Long.valueOf(v);
-            } catch (NumberFormatException e) {
-                return v;
-            }
+            Long parsed = ValueScanner.toLong(v);
+            return parsed != null ? parsed : v.toString();
         }
         if (targetType.equals(BigDecimal.class)) {
-            try {
-                return new BigDecimal(v);
-            } catch (NumberFormatException e) {
-                return v;
-            }
+            return ValueScanner.isDecimal(v) ? toBigDecimal(v) : v.toString();
         }
         if (targetType.equals(Boolean.class)) {
-            return Boolean.parseBoolean(v);
+            Boolean parsed = ValueScanner.toBoolean(v);
+            return parsed != null ? parsed : v.toString();
         }
         if (targetType.equals(LocalDate.class)) {
-            try {
-                return LocalDate.parse(v);
-            } catch (Exception e) {
-                return v;
-            }
+            LocalDate parsed = ValueScanner.toLocalDate(v);
+            return parsed != null ? parsed : v.toString();
+        }
+        if (targetType.equals(LocalDateTime.class)) {
+            LocalDate parsed = ValueScanner.toLocalDate(v);
+            return parsed != null ? parsed.atStartOfDay() : v.toString();
         }
 
-        // unknown type -> keep as String
-        return v;
+        // String и неизвестные типы -> как текст
+        return v.toString();
+    }
+
+    private static BigDecimal toBigDecimal(CharSequence v) {
+        if (v instanceof String text) {
+            return new BigDecimal(text);
+        }
+        char[] chars = new char[v.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = v.charAt(i);
+        }
+        return new BigDecimal(chars);
+    }
+
+    private Object convertTypedValue(Object value, Class<?> targetType) {
+        if (targetType.isInstance(value)) {
+            return value;
+        }
+        if (targetType.equals(BigDecimal.class) && value instanceof Long longValue) {
+            return BigDecimal.valueOf(longValue);
+        }
+        if (targetType.equals(LocalDateTime.class) && value instanceof LocalDate date) {
+            return date.atStartOfDay();
+        }
+        // в текстовую колонку (или при несовпадении типа) – как текст
+        return formatValue(value);
+    }
+
+    /**
+     * Текстовое представление типизированного значения (результат convertValue) для COPY.
+     * null остаётся null – кодирование NULL делает вызывающий код.
+     */
+    public String formatValue(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof BigDecimal decimal) {
+            // без экспоненты: 1E+3 -> 1000
+            return decimal.toPlainString();
+        }
+        // Long, Boolean, LocalDate / LocalDateTime (ISO-8601) и String – toString совпадает с форматом, который понимает PostgreSQL
+        return value.toString();
     }
 }
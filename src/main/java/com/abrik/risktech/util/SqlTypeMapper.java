@@ -1,5 +1,6 @@
 package com.abrik.risktech.util;
 
+import com.abrik.risktech.model.ColumnStats;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
@@ -8,18 +9,35 @@ import java.time.LocalDateTime;
 
 @Component
 public class SqlTypeMapper {
+    /**
+     * Длиннее – TEXT: ограничение длины для свободного текста ничего не даёт
+     */
+    static final int MAX_VARCHAR_LENGTH = 4096;
+
+    /**
+     * Больше – NUMERIC без точности (предел PostgreSQL для NUMERIC(p,s) – 1000)
+     */
+    static final int MAX_NUMERIC_PRECISION = 1000;
 
     /**
-     * Маппинг Java-типа в SQL-тип для PostgreSQL
-     * В случае неизвестного типа возвращаю VARCHAR(255) как безопасный дефолт.
+     * Маппинг Java-типа в SQL-тип для PostgreSQL без статистики значений – с запасом по размеру.
+     * В случае неизвестного типа возвращаю TEXT как безопасный дефолт.
      */
     public String mapJavaTypeToSql(Class<?> javaType) {
+        return mapJavaTypeToSql(javaType, null);
+    }
+
+    /**
+     * @param stats статистика значений колонки по всему файлу; null – видны не все значения
+     *              (SAMPLE, кэш схем, расширение колонки), тогда BIGINT / NUMERIC / TEXT
+     */
+    public String mapJavaTypeToSql(Class<?> javaType, ColumnStats stats) {
         if (javaType == null) {
-            return "VARCHAR(255)";
+            return "TEXT";
         }
 
         if (String.class.equals(javaType)) {
-            return "VARCHAR(255)";
+            return textType(stats);
         }
 
         if (Integer.class.equals(javaType) || int.class.equals(javaType)) {
@@ -27,11 +45,11 @@ public class SqlTypeMapper {
         }
 
         if (Long.class.equals(javaType) || long.class.equals(javaType)) {
-            return "BIGINT";
+            return integerType(stats);
         }
 
         if (BigDecimal.class.equals(javaType)) {
-            return "NUMERIC";
+            return numericType(stats);
         }
 
         if (Double.class.equals(javaType) || double.class.equals(javaType)
@@ -52,6 +70,40 @@ public class SqlTypeMapper {
         }
 
         // Фоллбек – строка
-        return "VARCHAR(255)";
+        return "TEXT";
+    }
+
+    private static String textType(ColumnStats stats) {
+        if (stats == null || stats.maxLength() <= 0 || stats.maxLength() > MAX_VARCHAR_LENGTH) {
+            return "TEXT";
+        }
+        return "VARCHAR(" + stats.maxLength() + ")";
+    }
+
+    /**
+     * По числу цифр: до 4 – SMALLINT (до 32767), до 9 – INTEGER (до 2147483647)
+     */
+    private static String integerType(ColumnStats stats) {
+        if (stats == null || stats.integerDigits() == ColumnStats.UNKNOWN) {
+            return "BIGINT";
+        }
+        if (stats.integerDigits() <= 4) {
+            return "SMALLINT";
+        }
+        if (stats.integerDigits() <= 9) {
+            return "INTEGER";
+        }
+        return "BIGINT";
+    }
+
+    private static String numericType(ColumnStats stats) {
+        if (stats == null || stats.integerDigits() == ColumnStats.UNKNOWN || stats.scale() == ColumnStats.UNKNOWN) {
+            return "NUMERIC";
+        }
+        int precision = Math.max(1, stats.integerDigits() + stats.scale());
+        if (precision > MAX_NUMERIC_PRECISION) {
+            return "NUMERIC";
+        }
+        return "NUMERIC(" + precision + "," + stats.scale() + ")";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,313 @@
+package com.abrik.risktech.util;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Разбор значений ячеек без исключений и без аллокаций: один проход по символам строки.
+ * Заменяет try { Long.parseLong / new BigDecimal / LocalDate.parse } catch в горячем цикле вывода типов.
+ * Все методы ожидают непустую строку без пробелов по краям. Принимают CharSequence,
+ * чтобы разбирать поля прямо из буфера файла, не создавая String.
+ */
+public final class ValueScanner {
+    /** целое, помещается в long */
+    public static final int INTEGER = 1;
+    /** число в формате, который принимает new BigDecimal(String) */
+    public static final int DECIMAL = 1 << 1;
+    /** дата ISO-8601 yyyy-MM-dd */
+    public static final int DATE = 1 << 2;
+    /** true / false без учёта регистра */
+    public static final int BOOLEAN = 1 << 3;
+    /** дата со временем; любая дата – ещё и TIMESTAMP (полночь) */
+    public static final int TIMESTAMP = 1 << 4;
+
+    public static final int ANY = INTEGER | DECIMAL | DATE | BOOLEAN | TIMESTAMP;
+
+    private static final String LONG_MAX_DIGITS = "9223372036854775807";
+    private static final String LONG_MIN_DIGITS = "9223372036854775808";
+    private static final int MAX_EXPONENT_DIGITS = 9;
+    private static final long DAYS_0000_TO_1970 = 719_528;
+
+    private ValueScanner() {
+    }
+
+    /**
+     * Флаги для уже типизированного значения (нативные ячейки XLSX) – те же, что classify дал бы его тексту
+     */
+    public static int kindOf(Object value) {
+        if (value instanceof String text) {
+            return classify(text);
+        }
+        if (value instanceof Long) {
+            return INTEGER | DECIMAL;
+        }
+        if (value instanceof BigDecimal) {
+            return DECIMAL;
+        }
+        if (value instanceof Boolean) {
+            return BOOLEAN;
+        }
+        if (value instanceof LocalDate) {
+            return DATE | TIMESTAMP;
+        }
+        if (value instanceof LocalDateTime) {
+            return TIMESTAMP;
+        }
+        return 0;
+    }
+
+    /**
+     * Набор флагов INTEGER | DECIMAL | DATE | TIMESTAMP | BOOLEAN – во что значение может быть разобрано. 0 – только текст.
+     */
+    public static int classify(CharSequence v) {
+        if (v.isEmpty()) {
+            return 0;
+        }
+
+        char first = v.charAt(0);
+        if (first == 't' || first == 'T' || first == 'f' || first == 'F') {
+            return isBoolean(v) ? BOOLEAN : 0;
+        }
+
+        int kinds = scanNumber(v);
+        if (kinds == 0 && isIsoDate(v)) {
+            kinds = DATE | TIMESTAMP;
+        }
+        return kinds;
+    }
+
+    public static boolean isDecimal(CharSequence v) {
+        return (scanNumber(v) & DECIMAL) != 0;
+    }
+
+    public static boolean isBoolean(CharSequence v) {
+        return equalsIgnoreCase(v, "true") || equalsIgnoreCase(v, "false");
+    }
+
+    /**
+     * @return Boolean или null, если значение не true / false
+     */
+    public static Boolean toBoolean(CharSequence v) {
+        if (equalsIgnoreCase(v, "true")) {
+            return Boolean.TRUE;
+        }
+        if (equalsIgnoreCase(v, "false")) {
+            return Boolean.FALSE;
+        }
+        return null;
+    }
+
+    /**
+     * @return значение long или null, если это не целое или оно не помещается в long
+     */
+    public static Long toLong(CharSequence v) {
+        if ((scanNumber(v) & INTEGER) == 0) {
+            return null;
+        }
+        return parseLong(v);
+    }
+
+    /**
+     * long без упаковки; только для значений, у которых classify / scanNumber дал INTEGER
+     */
+    public static long parseLong(CharSequence v) {
+        int i = 0;
+        boolean negative = false;
+        char c = v.charAt(0);
+        if (c == '+' || c == '-') {
+            negative = c == '-';
+            i++;
+        }
+
+        // накапливаю в отрицательную сторону, чтобы Long.MIN_VALUE не переполнялся
+        long result = 0;
+        for (; i < v.length(); i++) {
+            result = result * 10 - (v.charAt(i) - '0');
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * @return LocalDate или null, если это не корректная дата yyyy-MM-dd
+     */
+    public static LocalDate toLocalDate(CharSequence v) {
+        if (!isIsoDate(v)) {
+            return null;
+        }
+        return LocalDate.of(digits(v, 0, 4), digits(v, 5, 7), digits(v, 8, 10));
+    }
+
+    /**
+     * Дни от 1970-01-01 без создания LocalDate; только для значений, прошедших isIsoDate / classify
+     */
+    public static int toEpochDay(CharSequence v) {
+        long year = digits(v, 0, 4);
+        int month = digits(v, 5, 7);
+        int day = digits(v, 8, 10);
+
+        // как LocalDate.toEpochDay для года >= 0
+        long total = 365 * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367L * month - 362) / 12 + day - 1;
+        if (month > 2) {
+            boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            total -= leap ? 1 : 2;
+        }
+        return (int) (total - DAYS_0000_TO_1970);
+    }
+
+    /**
+     * Число: [+-] цифры [. цифры] [e|E [+-] цифры], хотя бы одна цифра в мантиссе.
+     *
+     * @return INTEGER | DECIMAL для целого в пределах long, DECIMAL для остальных чисел, 0 – не число
+     */
+    static int scanNumber(CharSequence v) {
+        int len = v.length();
+        int i = 0;
+
+        boolean negative = false;
+        char c = v.charAt(0);
+        if (c == '+' || c == '-') {
+            negative = c == '-';
+            i++;
+        }
+
+        int intStart = i;
+        while (i < len && isDigit(v.charAt(i))) {
+            i++;
+        }
+        int intDigits = i - intStart;
+
+        if (i == len) {
+            if (intDigits == 0) {
+                return 0;
+            }
+            return fitsInLong(v, intStart, len, negative) ? INTEGER | DECIMAL : DECIMAL;
+        }
+
+        int fracDigits = 0;
+        if (v.charAt(i) == '.') {
+            i++;
+            int fracStart = i;
+            while (i < len && isDigit(v.charAt(i))) {
+                i++;
+            }
+            fracDigits = i - fracStart;
+        }
+        if (intDigits + fracDigits == 0) {
+            return 0;
+        }
+
+        if (i < len && (v.charAt(i) == 'e' || v.charAt(i) == 'E')) {
+            i++;
+            if (i < len && (v.charAt(i) == '+' || v.charAt(i) == '-')) {
+                i++;
+            }
+            int expStart = i;
+            while (i < len && isDigit(v.charAt(i))) {
+                i++;
+            }
+            int expDigits = i - expStart;
+            // экспонента BigDecimal должна помещаться в int
+            if (expDigits == 0 || expDigits > MAX_EXPONENT_DIGITS) {
+                return 0;
+            }
+        }
+
+        return i == len ? DECIMAL : 0;
+    }
+
+    /**
+     * yyyy-MM-dd с проверкой числа дней в месяце (включая високосный февраль)
+     */
+    static boolean isIsoDate(CharSequence v) {
+        if (v.length() != 10 || v.charAt(4) != '-' || v.charAt(7) != '-') {
+            return false;
+        }
+        for (int i = 0; i < 10; i++) {
+            if (i != 4 && i != 7 && !isDigit(v.charAt(i))) {
+                return false;
+            }
+        }
+
+        int year = digits(v, 0, 4);
+        int month = digits(v, 5, 7);
+        int day = digits(v, 8, 10);
+
+        if (month < 1 || month > 12 || day < 1) {
+            return false;
+        }
+        return day <= daysInMonth(year, month);
+    }
+
+    private static boolean fitsInLong(CharSequence v, int from, int to, boolean negative) {
+        // ведущие нули не влияют на значение
+        while (from < to - 1 && v.charAt(from) == '0') {
+            from++;
+        }
+
+        int length = to - from;
+        if (length < LONG_MAX_DIGITS.length()) {
+            return true;
+        }
+        if (length > LONG_MAX_DIGITS.length()) {
+            return false;
+        }
+
+        String limit = negative ? LONG_MIN_DIGITS : LONG_MAX_DIGITS;
+        for (int i = 0; i < length; i++) {
+            char c = v.charAt(from + i);
+            char l = limit.charAt(i);
+            if (c != l) {
+                return c < l;
+            }
+        }
+        return true;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static int digits(CharSequence v, int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            result = result * 10 + (v.charAt(i) - '0');
+        }
+        return result;
+    }
+
+    /**
+     * ASCII-сравнение без учёта регистра, expected – в нижнем регистре
+     */
+    private static boolean equalsIgnoreCase(CharSequence v, String expected) {
+        if (v.length() != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            char c = v.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + ('a' - 'A'));
+            }
+            if (c != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
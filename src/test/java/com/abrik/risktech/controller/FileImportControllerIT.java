@@ -1,6 +1,7 @@
 package com.abrik.risktech.controller;
 
 import com.abrik.risktech.RisktechApplication; // замени на свой главный класс
+import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,8 +17,16 @@ import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @ExtendWith(SpringExtension.class)
@@ -98,4 +107,179 @@ class FileImportControllerIT {
                 .andExpect(jsonPath("$.error").value("Bad Request"))
                 .andExpect(jsonPath("$.message").value("File is empty"));
     }
+
+    @Test
+    void importRawCsvBody_insertsRowsWithoutMultipart() throws Exception {
+        // given: CSV прямо в теле запроса
+        String csv = "client_id,client_income\n1,50000\n2,60000\n3,\n";
+
+        // when + then
+        String tableName = JsonPath.read(mockMvc.perform(post("/api/import")
+                        .param("filename", "clients")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowsInserted").value(3))
+                .andReturn()
+                .getResponse()
+                .getContentAsString(), "$.tableName");
+
+        assertThat(tableName).startsWith("clients_");
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM " + tableName, Integer.class)).isEqualTo(3);
+    }
+
+    @Test
+    void importRawOctetStream_withoutFormat_returnsBadRequest() throws Exception {
+        mockMvc.perform(post("/api/import")
+                        .contentType("application/octet-stream")
+                        .content("a,b\n1,2\n"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void importGzippedCsv_decompressesOnTheFly() throws Exception {
+        ByteArrayOutputStream gz = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(gz)) {
+            out.write("trade_id,amount\n1,10.5\n2,20\n".getBytes(StandardCharsets.UTF_8));
+        }
+        MockMultipartFile file = new MockMultipartFile("file", "trades.csv.gz", "application/gzip", gz.toByteArray());
+
+        String tableName = JsonPath.read(mockMvc.perform(multipart("/api/import").file(file))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowsInserted").value(2))
+                .andReturn()
+                .getResponse()
+                .getContentAsString(), "$.tableName");
+
+        assertThat(tableName).startsWith("trades_");
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM " + tableName, Integer.class)).isEqualTo(2);
+    }
+
+    @Test
+    void importZip_importsEachEntryIntoItsOwnTable() throws Exception {
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(zip)) {
+            out.putNextEntry(new ZipEntry("feeds/clients.csv"));
+            out.write("client_id,name\n1,John\n2,Jane\n".getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new ZipEntry("feeds/rates.csv"));
+            out.write("code,rate\nUSD,90.1\n".getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new ZipEntry("readme.txt"));
+            out.write("skipped".getBytes(StandardCharsets.UTF_8));
+        }
+        MockMultipartFile file = new MockMultipartFile("file", "bundle.zip", "application/zip", zip.toByteArray());
+
+        String response = mockMvc.perform(multipart("/api/import").file(file))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowsInserted").value(3))
+                .andExpect(jsonPath("$.entries.length()").value(2))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        List<String> tableNames = JsonPath.read(response, "$.entries[*].tableName");
+        assertThat(tableNames).anySatisfy(name -> assertThat(name).startsWith("bundle_clients_"))
+                .anySatisfy(name -> assertThat(name).startsWith("bundle_rates_"));
+    }
+
+    @Test
+    void importSameContentTwice_returnsPreviousResultUnlessForced() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "positions.csv", "text/csv",
+                "position_id,qty\n1,100\n2,200\n".getBytes(StandardCharsets.UTF_8));
+
+        String first = mockMvc.perform(multipart("/api/import").file(file))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.duplicate").value(false))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        String tableName = JsonPath.read(first, "$.tableName");
+
+        // повтор: та же таблица, ничего не записано
+        mockMvc.perform(multipart("/api/import").file(file))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.duplicate").value(true))
+                .andExpect(jsonPath("$.tableName").value(tableName))
+                .andExpect(jsonPath("$.contentHash").value(JsonPath.<String>read(first, "$.contentHash")));
+
+        mockMvc.perform(multipart("/api/import").file(file).param("force", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.duplicate").value(false))
+                .andExpect(jsonPath("$.rowsInserted").value(2));
+    }
+
+    @Test
+    void recurringFeed_usesCachedTypesAndWidensWhenValueDoesNotFit() throws Exception {
+        MockMultipartFile monday = new MockMultipartFile("file", "limits_20261019.csv", "text/csv",
+                "desk,limit_amount\nfx,100\nrates,200\n".getBytes(StandardCharsets.UTF_8));
+        MockMultipartFile tuesday = new MockMultipartFile("file", "limits_20261020.csv", "text/csv",
+                "desk,limit_amount\nfx,150\nrates,250.5\n".getBytes(StandardCharsets.UTF_8));
+
+        mockMvc.perform(multipart("/api/import").file(monday))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.columns[0].sqlType").value("VARCHAR(5)"))
+                .andExpect(jsonPath("$.columns[1].sqlType").value("SMALLINT"));
+
+        // типы из кэша – без размеров (BIGINT), дробное значение расширяет колонку
+        String tableName = JsonPath.read(mockMvc.perform(multipart("/api/import").file(tuesday))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowsInserted").value(2))
+                .andReturn()
+                .getResponse()
+                .getContentAsString(), "$.tableName");
+
+        assertThat(jdbcTemplate.queryForObject("SELECT sum(limit_amount) FROM " + tableName, String.class))
+                .isEqualTo("400.5");
+    }
+
+    @Test
+    void targetTable_appendsAndUpsertsByKey() throws Exception {
+        jdbcTemplate.execute("CREATE TABLE positions (desk TEXT PRIMARY KEY, amount NUMERIC(12,2), note TEXT)");
+        jdbcTemplate.execute("INSERT INTO positions VALUES ('fx', 1.00, 'kept')");
+
+        // upsert: fx обновляется, rates добавляется, повтор ключа в файле схлопывается
+        MockMultipartFile upsert = new MockMultipartFile("file", "positions_20261018.csv", "text/csv",
+                "desk,amount\nfx,10.5\nrates,20\nrates,25\n".getBytes(StandardCharsets.UTF_8));
+        mockMvc.perform(multipart("/api/import").file(upsert)
+                        .param("targetTable", "positions")
+                        .param("key", "desk"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tableName").value("positions"))
+                .andExpect(jsonPath("$.rowsInserted").value(3))
+                .andExpect(jsonPath("$.rowsMerged").value(2))
+                .andExpect(jsonPath("$.columns[1].sqlType").value("numeric(12,2)"));
+
+        // без ключа – только добавление
+        MockMultipartFile append = new MockMultipartFile("file", "positions_extra.csv", "text/csv",
+                "desk,note\ncredit,new\n".getBytes(StandardCharsets.UTF_8));
+        mockMvc.perform(multipart("/api/import").file(append).param("targetTable", "positions"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowsMerged").value(1));
+
+        assertThat(jdbcTemplate.queryForList("SELECT desk || ':' || coalesce(amount::text, '-') || ':' "
+                + "|| coalesce(note, '-') FROM positions ORDER BY desk", String.class))
+                .containsExactly("credit:-:new", "fx:10.50:kept", "rates:25.00:-");
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_class WHERE relname LIKE 'positions%stg%'", Integer.class)).isZero();
+
+        mockMvc.perform(multipart("/api/import").file(append).param("targetTable", "missing_table"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void targetTable_valueLongerThanVarchar_isRejectedNotTruncated() throws Exception {
+        jdbcTemplate.execute("CREATE TABLE counterparties (code VARCHAR(8) PRIMARY KEY, name VARCHAR(10))");
+
+        MockMultipartFile longer = new MockMultipartFile("file", "counterparties.csv", "text/csv",
+                "code,name\nbk1,Bank of Somewhere\n".getBytes(StandardCharsets.UTF_8));
+        // и добавление (INSERT ... SELECT), и upsert по ключу – длина проверяется, а не обрезается
+        mockMvc.perform(multipart("/api/import").file(longer).param("targetTable", "counterparties"))
+                .andExpect(status().is5xxServerError());
+        mockMvc.perform(multipart("/api/import").file(longer)
+                        .param("targetTable", "counterparties")
+                        .param("key", "code")
+                        .param("force", "true"))
+                .andExpect(status().is5xxServerError());
+
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM counterparties", Integer.class)).isZero();
+    }
 }
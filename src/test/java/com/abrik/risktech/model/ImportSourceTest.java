@@ -0,0 +1,77 @@
+package com.abrik.risktech.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImportSourceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void gunzip_stripsExtensionAndDecompressesOnEveryOpen() throws IOException {
+        Path file = dir.resolve("trades.csv.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write("a,b\n1,2\n".getBytes(StandardCharsets.UTF_8));
+        }
+
+        ImportSource source = ImportSource.gunzip(ImportSource.of(file, "trades.csv.gz"));
+
+        assertThat(source.getFilename()).isEqualTo("trades.csv");
+        assertThat(source.getSize()).isEqualTo(-1);
+        assertThat(source.isRepeatable()).isTrue();
+        // FULL читает файл дважды – второй проход распаковывает заново
+        for (int pass = 0; pass < 2; pass++) {
+            try (InputStream in = source.openStream()) {
+                assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("a,b\n1,2\n");
+            }
+        }
+    }
+
+    @Test
+    void gunzip_ofRequestBody_isReadOnce() {
+        ImportSource body = ImportSource.of(InputStream.nullInputStream(), "feed.csv.gz", -1);
+
+        assertThat(ImportSource.gunzip(body).isRepeatable()).isFalse();
+    }
+
+    @Test
+    void zipEntry_usesFileNameWithoutDirectories() throws IOException {
+        Path file = dir.resolve("bundle.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(file))) {
+            out.putNextEntry(new ZipEntry("2026/10/rates.csv"));
+            out.write("code,rate\nUSD,90.1\n".getBytes(StandardCharsets.UTF_8));
+        }
+
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            ImportSource entry = ImportSource.of(zip, zip.getEntry("2026/10/rates.csv"));
+
+            assertThat(entry.getFilename()).isEqualTo("rates.csv");
+            try (InputStream in = entry.openStream()) {
+                assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("code,rate\nUSD,90.1\n");
+            }
+        }
+    }
+
+    @Test
+    void file_missingOnDisk_failsInsteadOfReportingZeroSize() {
+        ImportSource source = ImportSource.of(dir.resolve("gone.csv"), "gone.csv");
+
+        assertThatThrownBy(source::getSize).isInstanceOf(UncheckedIOException.class);
+    }
+}
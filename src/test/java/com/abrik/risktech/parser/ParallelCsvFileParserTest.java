@@ -0,0 +1,204 @@
+package com.abrik.risktech.parser;
+
+import com.abrik.risktech.config.ImportProperties;
+import com.abrik.risktech.exception.BadRequestException;
+import com.abrik.risktech.model.TableData;
+import com.abrik.risktech.util.ColumnTypeInferrer;
+import com.abrik.risktech.util.FileParserUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ParallelCsvFileParserTest {
+
+    // переводы строк внутри кавычек, удвоенные кавычки, пустые строки, неполная последняя запись
+    private static final String CSV = """
+
+            id,comment,amount
+            1,"multi
+            line, with comma",10.5
+            2,"say ""hi""
+            ",20
+
+            3, Иван ,30
+            4,"",
+            5,"a""b",7""";
+
+    FileParserUtil fileParserUtil = new FileParserUtil();
+    ImportProperties importProperties = new ImportProperties();
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    ParallelCsvFileParser parallelParser = new ParallelCsvFileParser(fileParserUtil, importProperties, pool);
+    CsvFileParser csvParser = new CsvFileParser(fileParserUtil);
+
+    @AfterEach
+    void shutdownPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    void openCursor_tinyChunks_readsSameRowsAsSequentialParser() throws IOException {
+        for (int chunkBytes = 1; chunkBytes <= CSV.length(); chunkBytes++) {
+            // given: границы кусков попадают в любые места, в том числе внутрь кавычек
+            importProperties.setCsvChunkBytes(chunkBytes);
+
+            // when
+            List<List<Object>> parallel = readAll(parallelParser);
+            List<List<Object>> sequential = readAll(csvParser);
+
+            // then
+            assertThat(parallel).as("chunkBytes=%d", chunkBytes).isEqualTo(sequential);
+        }
+    }
+
+    @Test
+    void openCursor_unordered_returnsAllRows() throws IOException {
+        importProperties.setCsvChunkBytes(8);
+        importProperties.setCsvParallelOrdered(false);
+
+        List<List<Object>> parallel = readAll(parallelParser);
+        List<List<Object>> sequential = readAll(csvParser);
+
+        assertThat(parallel).containsExactlyInAnyOrderElementsOf(sequential);
+    }
+
+    @Test
+    void parseFile_infersAndConvertsChunksInParallel() throws IOException {
+        importProperties.setCsvChunkBytes(16);
+
+        TableData parallel = parallelParser.parseFile(stream(CSV));
+        TableData sequential = csvParser.parseFile(stream(CSV));
+
+        assertThat(parallel.getColumns()).isEqualTo(sequential.getColumns());
+        assertThat(parallel.getRows()).isEqualTo(sequential.getRows());
+    }
+
+    @Test
+    void inferTypesAndConvertTo_workOnMappedBytes() throws IOException {
+        importProperties.setCsvChunkBytes(16);
+
+        // given: эталон – вывод типов и конвертация по строкам последовательного парсера
+        ColumnTypeInferrer expectedInferrer = fileParserUtil.newTypeInferrer(3);
+        List<List<Object>> rawRows = readAll(csvParser);
+        rawRows.subList(1, rawRows.size()).forEach(expectedInferrer::accept);
+        List<Class<?>> expectedTypes = expectedInferrer.getColumnTypes();
+        List<List<Object>> expectedRows = fileParserUtil.convertRows(rawRows.subList(1, rawRows.size()), expectedTypes);
+
+        // when
+        ColumnTypeInferrer inferrer = fileParserUtil.newTypeInferrer(3);
+        try (RowCursor cursor = parallelParser.openCursor(stream(CSV))) {
+            cursor.inferTypes(inferrer);
+        }
+        List<List<Object>> rows = new ArrayList<>();
+        try (RowCursor cursor = parallelParser.openCursor(stream(CSV))) {
+            cursor.convertTo(inferrer.getColumnTypes());
+            cursor.forEachRemaining(rows::add);
+        }
+
+        // then
+        assertThat(inferrer.getColumnTypes()).isEqualTo(expectedTypes).containsExactly(Long.class, String.class, BigDecimal.class);
+        assertThat(inferrer.getRowCount()).isEqualTo(5);
+        assertThat(rows).isEqualTo(expectedRows);
+    }
+
+    @Test
+    void skip_countsWholeChunksAndResumesAtCheckpointRow() throws IOException {
+        List<List<Object>> sequential = readAll(csvParser);
+        List<List<Object>> dataRows = sequential.subList(1, sequential.size());
+
+        for (int chunkBytes = 1; chunkBytes <= CSV.length(); chunkBytes += 3) {
+            importProperties.setCsvChunkBytes(chunkBytes);
+            for (int skip = 0; skip <= dataRows.size() + 1; skip++) {
+                // when
+                List<List<Object>> rest = new ArrayList<>();
+                long skipped;
+                try (RowCursor cursor = parallelParser.openCursor(stream(CSV))) {
+                    skipped = cursor.skip(skip);
+                    cursor.forEachRemaining(rest::add);
+                }
+
+                // then
+                int expectedSkipped = Math.min(skip, dataRows.size());
+                assertThat(skipped).as("chunkBytes=%d, skip=%d", chunkBytes, skip).isEqualTo(expectedSkipped);
+                assertThat(rest).as("chunkBytes=%d, skip=%d", chunkBytes, skip)
+                        .isEqualTo(dataRows.subList(expectedSkipped, dataRows.size()));
+            }
+        }
+    }
+
+    @Test
+    void openCursor_fileOnDisk_readsItInPlaceAndKeepsIt(@TempDir Path dir) throws IOException {
+        importProperties.setCsvChunkBytes(16);
+        Path file = dir.resolve("upload.csv");
+        Files.writeString(file, CSV);
+
+        List<List<Object>> rows = new ArrayList<>();
+        try (RowCursor cursor = parallelParser.openCursor(file)) {
+            rows.add(new ArrayList<>(cursor.getHeaders()));
+            cursor.forEachRemaining(rows::add);
+        }
+        TableData parsed = parallelParser.parseFile(file);
+
+        // файл принадлежит вызывающему коду: не удалён и читается повторно
+        assertThat(rows).isEqualTo(readAll(csvParser));
+        assertThat(parsed.getRows()).isEqualTo(csvParser.parseFile(stream(CSV)).getRows());
+        assertThat(file).exists();
+    }
+    @Test
+    void inferTypes_nonAsciiText_measuresVarcharLengthInCharactersLikeSequentialParser() throws IOException {
+        // given: кириллица – по два байта UTF-8 на символ, "" внутри кавычек – один символ
+        String csv = "id,name\n1, Иванов Иван \n2,\"ООО \"\"Ромашка\"\"\"\n";
+        importProperties.setCsvChunkBytes(16);
+        ColumnTypeInferrer expectedInferrer = fileParserUtil.newTypeInferrer(2);
+        try (RowCursor cursor = csvParser.openCursor(stream(csv))) {
+            cursor.forEachRemaining(expectedInferrer::accept);
+        }
+
+        // when
+        ColumnTypeInferrer inferrer = fileParserUtil.newTypeInferrer(2);
+        try (RowCursor cursor = parallelParser.openCursor(stream(csv))) {
+            cursor.inferTypes(inferrer);
+        }
+
+        // then: VARCHAR(n) не раздувается вдвое по байтам
+        assertThat(inferrer.getColumnStats()).isEqualTo(expectedInferrer.getColumnStats());
+        assertThat(inferrer.getColumnStats().get(1).maxLength()).isEqualTo(13);
+    }
+
+
+    @Test
+    void parseFile_throwsWhenNoDataRows() {
+        BadRequestException ex = assertThrows(
+                BadRequestException.class,
+                () -> parallelParser.parseFile(stream("id,name\n"))
+        );
+
+        assertThat(ex.getMessage()).isEqualTo("CSV file does not contain any data rows");
+    }
+
+    private List<List<Object>> readAll(FileParser parser) throws IOException {
+        List<List<Object>> rows = new ArrayList<>();
+        try (RowCursor cursor = parser.openCursor(stream(CSV))) {
+            rows.add(new ArrayList<>(cursor.getHeaders()));
+            cursor.forEachRemaining(rows::add);
+        }
+        return rows;
+    }
+
+    private ByteArrayInputStream stream(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,164 @@
+package com.abrik.risktech.parser;
+
+import com.abrik.risktech.config.ImportProperties;
+import com.abrik.risktech.exception.BadRequestException;
+import com.abrik.risktech.util.FileParserUtil;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class XlsxStreamingFileParserTest {
+
+    FileParserUtil fileParserUtil = new FileParserUtil();
+    ImportProperties importProperties = new ImportProperties();
+    XlsxStreamingFileParser streamingParser = new XlsxStreamingFileParser(fileParserUtil, importProperties);
+    XlsxFileParser usermodelParser = new XlsxFileParser(fileParserUtil, importProperties);
+
+    @Test
+    void openCursor_readsSameRowsAsUsermodelParser() throws IOException {
+        // given
+        byte[] xlsx = sampleWorkbook();
+
+        // when
+        List<List<Object>> streamed = readAll(streamingParser, xlsx);
+        List<List<Object>> usermodel = readAll(usermodelParser, xlsx);
+
+        // then: значения по типу ячейки, без форматирования в текст
+        assertThat(streamed).isEqualTo(usermodel);
+        assertThat(streamed).containsExactly(
+                List.of("client_id", "client FIO", "column_3", "active", "rate"),
+                List.of(1L, "John Smith", LocalDate.of(2024, 3, 1), Boolean.TRUE, new BigDecimal("0.3")),
+                Arrays.asList(null, "Jane Doe", LocalDateTime.of(2024, 3, 2, 10, 30), null, null)
+        );
+    }
+
+    @Test
+    void openCursor_withoutNativeTypes_readsFormattedText() throws IOException {
+        // given
+        importProperties.setXlsxNativeTypes(false);
+        byte[] xlsx = sampleWorkbook();
+
+        // when
+        List<List<Object>> streamed = readAll(streamingParser, xlsx);
+        List<List<Object>> usermodel = readAll(usermodelParser, xlsx);
+
+        // then
+        assertThat(streamed).isEqualTo(usermodel);
+        assertThat(streamed.get(1)).containsExactly("1", "John Smith", "2024-03-01", "TRUE", "0.3");
+    }
+
+    @Test
+    void openCursor_throwsWhenSheetHasNoHeaderRow() throws IOException {
+        byte[] xlsx = workbook(wb -> wb.createSheet("empty"));
+
+        BadRequestException ex = assertThrows(
+                BadRequestException.class,
+                () -> streamingParser.openCursor(new ByteArrayInputStream(xlsx))
+        );
+
+        assertThat(ex.getMessage()).isEqualTo("XLSX file does not contain a header row");
+    }
+
+    @Test
+    void openCursor_readsSheetByName() throws IOException {
+        // given
+        byte[] xlsx = workbook(wb -> {
+            wb.createSheet("clients").createRow(0).createCell(0).setCellValue("client_id");
+            Sheet deals = wb.createSheet("deals");
+            deals.createRow(0).createCell(0).setCellValue("deal_id");
+            deals.createRow(1).createCell(0).setCellValue(42);
+        });
+        Path file = Files.createTempFile("sheets-", ".xlsx");
+        Files.write(file, xlsx);
+
+        try {
+            for (WorkbookParser parser : List.of(streamingParser, usermodelParser)) {
+                // when
+                List<String> sheetNames = parser.getSheetNames(file);
+                List<List<Object>> rows = new ArrayList<>();
+                try (RowCursor cursor = parser.openCursor(file, "deals")) {
+                    rows.add(new ArrayList<>(cursor.getHeaders()));
+                    cursor.forEachRemaining(rows::add);
+                }
+
+                // then: файл принадлежит вызывающему и после закрытия курсора остаётся на месте
+                assertThat(sheetNames).containsExactly("clients", "deals");
+                assertThat(rows).containsExactly(List.of("deal_id"), List.of(42L));
+                assertThat(file).exists();
+
+                BadRequestException ex = assertThrows(BadRequestException.class,
+                        () -> parser.openCursor(file, "missing"));
+                assertThat(ex.getMessage()).isEqualTo("Sheet 'missing' not found in XLSX file");
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Пустая первая строка, заголовок, данные разных типов и пустая строка между ними
+     */
+    private byte[] sampleWorkbook() throws IOException {
+        return workbook(wb -> {
+            Sheet sheet = wb.createSheet("data");
+            CellStyle dateStyle = wb.createCellStyle();
+            dateStyle.setDataFormat(wb.createDataFormat().getFormat("yyyy-mm-dd"));
+
+            sheet.createRow(0).createCell(0).setCellStyle(dateStyle); // только стиль, без значения
+
+            Row header = sheet.createRow(1);
+            header.createCell(0).setCellValue("client_id");
+            header.createCell(1).setCellValue("client FIO");
+            header.createCell(3).setCellValue("active");
+            header.createCell(4).setCellValue("rate");
+
+            Row first = sheet.createRow(2);
+            first.createCell(0).setCellValue(1);
+            first.createCell(1).setCellValue("  John Smith ");
+            first.createCell(2).setCellValue(LocalDate.of(2024, 3, 1));
+            first.getCell(2).setCellStyle(dateStyle);
+            first.createCell(3).setCellValue(true);
+            first.createCell(4).setCellValue(0.1 + 0.2);
+
+            Row second = sheet.createRow(4);
+            second.createCell(1).setCellValue("Jane Doe");
+            second.createCell(2).setCellValue(LocalDateTime.of(2024, 3, 2, 10, 30));
+            second.getCell(2).setCellStyle(dateStyle);
+        });
+    }
+
+    private List<List<Object>> readAll(FileParser parser, byte[] xlsx) throws IOException {
+        List<List<Object>> rows = new ArrayList<>();
+        try (RowCursor cursor = parser.openCursor(new ByteArrayInputStream(xlsx))) {
+            rows.add(new ArrayList<>(cursor.getHeaders()));
+            cursor.forEachRemaining(rows::add);
+        }
+        return rows;
+    }
+
+    private byte[] workbook(Consumer<XSSFWorkbook> filler) throws IOException {
+        try (XSSFWorkbook wb = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            filler.accept(wb);
+            wb.write(out);
+            return out.toByteArray();
+        }
+    }
+}
@@ -1,15 +1,37 @@
 package com.abrik.risktech.service;
 
+import com.abrik.risktech.config.ConnectionPoolLimit;
+import com.abrik.risktech.config.ImportProperties;
 import com.abrik.risktech.exception.BadRequestException;
 import com.abrik.risktech.model.ColumnMeta;
+import com.abrik.risktech.model.ColumnarRows;
+import com.abrik.risktech.model.InsertResult;
 import com.abrik.risktech.model.TableData;
+import com.abrik.risktech.model.WriteMode;
+import com.abrik.risktech.util.FileParserUtil;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertThrows;
@@ -21,6 +43,15 @@ class DataInsertServiceTest {
     @Mock
     JdbcTemplate jdbcTemplate;
 
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    @Spy
+    ImportProperties importProperties = new ImportProperties();
+
+    @Spy
+    FileParserUtil fileParserUtil = new FileParserUtil();
+
     @InjectMocks
     DataInsertService dataInsertService;
 
@@ -40,16 +71,268 @@ class DataInsertServiceTest {
                 ))
                 .build();
 
-        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenReturn(1);
+        // when
+        InsertResult result = dataInsertService.insertData(tableData);
+
+        // then
+        assertThat(result.getRowsInserted()).isEqualTo(2);
+        assertThat(result.getBatches()).hasSize(1);
+        verify(jdbcTemplate, times(1))
+                .batchUpdate(eq("INSERT INTO example_table (client_id, client_fio, client_income) VALUES (?, ?, ?)"),
+                        anyList());
+    }
+
+    @Test
+    void insertData_splitsRowsIntoBatchesOfConfiguredSize() {
+        // given
+        importProperties.setBatchSize(2);
+        TableData tableData = TableData.builder()
+                .tableName("example_table")
+                .columns(List.of(ColumnMeta.builder().name("client_id").build()))
+                .rows(List.of(List.of(1L), List.of(2L), List.of(3L), List.of(4L), List.of(5L)))
+                .build();
+
+        // when
+        InsertResult result = dataInsertService.insertData(tableData);
+
+        // then
+        assertThat(result.getRowsInserted()).isEqualTo(5);
+        assertThat(result.getBatches())
+                .extracting(InsertResult.BatchStats::getRows)
+                .containsExactly(2, 2, 1);
+        verify(jdbcTemplate, times(3)).batchUpdate(anyString(), anyList());
+        verify(transactionManager, times(3)).commit(any());
+    }
+
+    @Test
+    void openWriter_flushesFullBatchesWhileRowsAreStillArriving() {
+        // given
+        importProperties.setBatchSize(2);
+        TableData tableData = TableData.builder()
+                .tableName("example_table")
+                .columns(List.of(ColumnMeta.builder().name("client_id").build()))
+                .build();
+
+        // when + then
+        try (TableWriter writer = dataInsertService.openWriter(tableData, WriteMode.INSERT, 3)) {
+            writer.write(List.of(1L));
+            verifyNoInteractions(jdbcTemplate);
+
+            writer.write(List.of(2L));
+            verify(jdbcTemplate, times(1)).batchUpdate(anyString(), anyList());
+
+            writer.write(List.of(3L));
+            InsertResult result = writer.finish();
+
+            assertThat(result.getRowsInserted()).isEqualTo(3);
+            verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyList());
+        }
+    }
+
+    @Test
+    void openWriter_parallelWritersOfAllTablesShareConnectionPool() {
+        // given: пул на 4 соединения – writer-ам всех таблиц вместе достаётся 3
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        DataInsertService service = new DataInsertService(jdbcTemplate, transactionManager, importProperties,
+                fileParserUtil, new ConnectionPoolLimit(4), executor);
+        List<ColumnMeta> columns = List.of(ColumnMeta.builder().name("client_id").build());
+        TableData trades = TableData.builder().tableName("trades_stg_1").columns(columns).staging(true).build();
+        TableData clients = TableData.builder().tableName("clients_stg_1").columns(columns).staging(true).build();
+
+        try {
+            // when: первый лист занял два соединения
+            TableWriter first = service.openWriter(trades, WriteMode.INSERT, 10, 2);
+            // then: второму осталось одно – пишет одним соединением, без параллельного writer-а
+            try (TableWriter second = service.openWriter(clients, WriteMode.INSERT, 10, 3)) {
+                assertThat(second).isNotInstanceOf(ParallelTableWriter.class);
+            }
+            assertThat(first.finish().getWriters()).isEqualTo(2);
+            first.close();
+
+            // when: первый закончил и вернул соединения
+            try (TableWriter third = service.openWriter(clients, WriteMode.INSERT, 10, 3)) {
+                // then
+                assertThat(third.finish().getWriters()).isEqualTo(3);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void openWriter_checkpointCommitsTogetherWithEachBatch() {
+        // given
+        importProperties.setBatchSize(2);
+        TableData tableData = TableData.builder()
+                .tableName("example_table")
+                .columns(List.of(ColumnMeta.builder().name("client_id").build()))
+                .build();
+        List<String> events = new ArrayList<>();
+        doAnswer(invocation -> {
+            events.add("batch");
+            return new int[0];
+        }).when(jdbcTemplate).batchUpdate(anyString(), anyList());
+        doAnswer(invocation -> events.add("commit")).when(transactionManager).commit(any());
+
+        // when
+        try (CheckpointTableWriter writer = dataInsertService.openCheckpointWriter(tableData, WriteMode.INSERT, 3)) {
+            writer.setCheckpoint(rows -> events.add("checkpoint " + rows));
+            writer.write(List.of(1L));
+            writer.write(List.of(2L));
+            writer.write(List.of(3L));
+            writer.finish();
+        }
+
+        // then: чекпоинт пачки пишется до коммита её транзакции
+        assertThat(events).containsExactly(
+                "batch", "checkpoint 2", "commit",
+                "batch", "checkpoint 3", "commit");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void insertData_copyModeStreamsCsvIntoCopyIn() throws Exception {
+        // given
+        TableData tableData = TableData.builder()
+                .tableName("example_table")
+                .columns(List.of(
+                        ColumnMeta.builder().name("client_id").build(),
+                        ColumnMeta.builder().name("client_fio").build(),
+                        ColumnMeta.builder().name("client_income").build(),
+                        ColumnMeta.builder().name("birth_date").build()
+                ))
+                .rows(List.of(
+                        List.of(1L, "Smith, John", new BigDecimal("5E+4"), LocalDate.of(1990, 1, 31)),
+                        Arrays.asList(2L, "Jane \"JD\" Doe", null, null)
+                ))
+                .build();
+
+        Connection connection = mock(Connection.class);
+        PGConnection pgConnection = mock(PGConnection.class);
+        CopyManager copyManager = mock(CopyManager.class);
+        CopyIn copyIn = mock(CopyIn.class);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        when(pgConnection.getCopyAPI()).thenReturn(copyManager);
+        when(copyManager.copyIn(anyString())).thenReturn(copyIn);
+        when(copyIn.endCopy()).thenReturn(2L);
+        when(jdbcTemplate.execute(any(ConnectionCallback.class)))
+                .thenAnswer(inv -> inv.<ConnectionCallback<Long>>getArgument(0).doInConnection(connection));
+
+        // when
+        InsertResult result = dataInsertService.insertData(tableData, WriteMode.COPY);
+
+        // then
+        assertThat(result.getRowsInserted()).isEqualTo(2);
+        assertThat(result.getWriteMode()).isEqualTo(WriteMode.COPY);
+        verify(copyManager).copyIn(
+                "COPY example_table (client_id, client_fio, client_income, birth_date) FROM STDIN (FORMAT csv)");
+
+        ArgumentCaptor<byte[]> bytes = ArgumentCaptor.forClass(byte[].class);
+        verify(copyIn).writeToCopy(bytes.capture(), eq(0), anyInt());
+        assertThat(new String(bytes.getValue(), StandardCharsets.UTF_8)).isEqualTo(
+                "1,\"Smith, John\",50000,1990-01-31\n" +
+                "2,\"Jane \"\"JD\"\" Doe\",,\n");
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void insertData_columnarCopy_writesSameCsvAsRows() throws Exception {
+        // given
+        List<Class<?>> types = List.of(Long.class, String.class, BigDecimal.class, LocalDate.class, Boolean.class);
+        ColumnarRows columnar = fileParserUtil.convertColumns(List.of(
+                List.of("1", "Smith, John", "5E+4", "1990-01-31", "true"),
+                List.of("-2", "", "-0.50", "", "false")
+        ), types);
+        TableData tableData = TableData.builder()
+                .tableName("example_table")
+                .columns(List.of(
+                        ColumnMeta.builder().name("client_id").build(),
+                        ColumnMeta.builder().name("client_fio").build(),
+                        ColumnMeta.builder().name("client_income").build(),
+                        ColumnMeta.builder().name("birth_date").build(),
+                        ColumnMeta.builder().name("active").build()
+                ))
+                .columnar(columnar)
+                .build();
+
+        Connection connection = mock(Connection.class);
+        PGConnection pgConnection = mock(PGConnection.class);
+        CopyManager copyManager = mock(CopyManager.class);
+        CopyIn copyIn = mock(CopyIn.class);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        when(pgConnection.getCopyAPI()).thenReturn(copyManager);
+        when(copyManager.copyIn(anyString())).thenReturn(copyIn);
+        when(jdbcTemplate.execute(any(ConnectionCallback.class)))
+                .thenAnswer(inv -> inv.<ConnectionCallback<Long>>getArgument(0).doInConnection(connection));
+
+        // when
+        InsertResult result = dataInsertService.insertData(tableData, WriteMode.COPY);
+
+        // then
+        assertThat(result.getRowsInserted()).isEqualTo(2);
+        ArgumentCaptor<byte[]> bytes = ArgumentCaptor.forClass(byte[].class);
+        verify(copyIn).writeToCopy(bytes.capture(), eq(0), anyInt());
+        assertThat(new String(bytes.getValue(), StandardCharsets.UTF_8)).isEqualTo(
+                "1,\"Smith, John\",50000,1990-01-31,true\n" +
+                "-2,,-0.50,,false\n");
+    }
+
+    @Test
+    void insertData_columnarInsert_bindsPrimitivesFromColumns() throws Exception {
+        // given
+        ColumnarRows columnar = fileParserUtil.convertColumns(List.of(
+                List.of("42", "true", "2024-02-29"),
+                List.of("", "", "")
+        ), List.of(Long.class, Boolean.class, LocalDate.class));
+        TableData tableData = TableData.builder()
+                .tableName("example_table")
+                .columns(List.of(
+                        ColumnMeta.builder().name("client_id").build(),
+                        ColumnMeta.builder().name("active").build(),
+                        ColumnMeta.builder().name("birth_date").build()
+                ))
+                .columnar(columnar)
+                .build();
+
+        // when
+        InsertResult result = dataInsertService.insertData(tableData, WriteMode.INSERT);
+
+        // then
+        assertThat(result.getRowsInserted()).isEqualTo(2);
+        ArgumentCaptor<BatchPreparedStatementSetter> setter = ArgumentCaptor.forClass(BatchPreparedStatementSetter.class);
+        verify(jdbcTemplate).batchUpdate(eq("INSERT INTO example_table (client_id, active, birth_date) VALUES (?, ?, ?)"),
+                setter.capture());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+        assertThat(setter.getValue().getBatchSize()).isEqualTo(2);
+
+        PreparedStatement ps = mock(PreparedStatement.class);
+        setter.getValue().setValues(ps, 0);
+        setter.getValue().setValues(ps, 1);
+        verify(ps).setLong(1, 42L);
+        verify(ps).setBoolean(2, true);
+        verify(ps).setObject(3, LocalDate.of(2024, 2, 29));
+        verify(ps).setNull(1, Types.BIGINT);
+        verify(ps).setNull(2, Types.BOOLEAN);
+        verify(ps).setNull(3, Types.DATE);
+    }
+
+    @Test
+    void insertData_autoModeUsesCopyAboveThreshold() {
+        // given
+        importProperties.setCopyThresholdRows(2);
+        TableData tableData = TableData.builder()
+                .tableName("example_table")
+                .columns(List.of(ColumnMeta.builder().name("client_id").build()))
+                .rows(List.of(List.of(1L), List.of(2L)))
+                .build();
 
         // when
-        int inserted = dataInsertService.insertData(tableData);
+        dataInsertService.insertData(tableData, WriteMode.AUTO);
 
         // then
-        assertThat(inserted).isEqualTo(2);
-        verify(jdbcTemplate, times(2))
-                .update(eq("INSERT INTO example_table (client_id, client_fio, client_income) VALUES (?, ?, ?)"),
-                        any(Object[].class));
+        verify(jdbcTemplate).execute(any(ConnectionCallback.class));
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
     }
 
     @Test
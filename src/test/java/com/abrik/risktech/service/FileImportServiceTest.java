@@ -0,0 +1,265 @@
+package com.abrik.risktech.service;
+
+import com.abrik.risktech.config.ImportProperties;
+import com.abrik.risktech.dto.ImportResponseDto;
+import com.abrik.risktech.model.ColumnMeta;
+import com.abrik.risktech.model.ColumnarRows;
+import com.abrik.risktech.model.ImportCheckpoint;
+import com.abrik.risktech.model.ImportOptions;
+import com.abrik.risktech.model.ImportProgress;
+import com.abrik.risktech.model.ImportSource;
+import com.abrik.risktech.model.InsertResult;
+import com.abrik.risktech.parser.CsvFileParser;
+import com.abrik.risktech.parser.FileParser;
+import com.abrik.risktech.parser.ParallelCsvFileParser;
+import com.abrik.risktech.util.ContentHasher;
+import com.abrik.risktech.util.FileParserUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FileImportServiceTest {
+
+    @TempDir
+    Path dir;
+
+    FileParserUtil fileParserUtil = new FileParserUtil();
+    ImportProperties importProperties = new ImportProperties();
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    TableSchemaService tableSchemaService = mock(TableSchemaService.class);
+    DataInsertService dataInsertService = mock(DataInsertService.class);
+    ImportCheckpointService importCheckpointService = mock(ImportCheckpointService.class);
+    ImportRegistryService importRegistryService = mock(ImportRegistryService.class);
+    SchemaCacheService schemaCacheService = mock(SchemaCacheService.class);
+
+    FileImportService fileImportService = new FileImportService(
+            new CsvFileParser(fileParserUtil),
+            new ParallelCsvFileParser(fileParserUtil, importProperties, pool),
+            mock(FileParser.class),
+            mock(FileParser.class),
+            tableSchemaService,
+            dataInsertService,
+            importCheckpointService,
+            importRegistryService,
+            schemaCacheService,
+            fileParserUtil,
+            importProperties,
+            new ImportMetrics(new SimpleMeterRegistry()),
+            mock(ExecutorService.class),
+            pool);
+
+    @AfterEach
+    void shutdownPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    void jobRetry_resumesAfterCheckpointInFileOrder_evenWithUnorderedParallelCsv() throws IOException {
+        // given: 2000 строк мелкими кусками, куски разбираются параллельно и без порядка
+        importProperties.setDeduplicate(false);
+        importProperties.setSchemaCache(false);
+        importProperties.setPipeline(false);
+        importProperties.setCsvParallelThresholdBytes(0);
+        importProperties.setCsvChunkBytes(256);
+        importProperties.setCsvParallelOrdered(false);
+
+        StringBuilder csv = new StringBuilder("id,amount\n");
+        for (int i = 1; i <= 2000; i++) {
+            csv.append(i).append(',').append(i * 10).append('\n');
+        }
+        Path file = dir.resolve("trades.csv");
+        Files.writeString(file, csv, StandardCharsets.UTF_8);
+
+        // прошлая попытка закоммитила первые 1234 строки
+        UUID jobId = UUID.randomUUID();
+        List<ColumnMeta> columns = List.of(
+                ColumnMeta.builder().name("id").javaType(Long.class).sqlType("SMALLINT").build(),
+                ColumnMeta.builder().name("amount").javaType(Long.class).sqlType("INTEGER").build());
+        when(importCheckpointService.find(eq(jobId), any())).thenReturn(Optional.of(ImportCheckpoint.builder()
+                .jobId(jobId)
+                .tableName("trades_20261018_120000")
+                .columns(columns)
+                .rowsCommitted(1234)
+                .build()));
+        RecordingWriter writer = new RecordingWriter();
+        when(dataInsertService.openCheckpointWriter(any(), any(), anyLong())).thenReturn(writer);
+
+        // when
+        ImportResponseDto response = fileImportService.importFile(ImportSource.of(file, "trades.csv"),
+                ImportOptions.builder().jobId(jobId).build(), new ImportProgress());
+
+        // then: дописаны ровно строки 1235..2000 по порядку, таблица та же, типы не выводились заново
+        assertThat(writer.rows).hasSize(766);
+        for (int i = 0; i < writer.rows.size(); i++) {
+            assertThat(writer.rows.get(i)).isEqualTo(List.of(1235L + i, (1235L + i) * 10));
+        }
+        assertThat(response.getTableName()).isEqualTo("trades_20261018_120000");
+        assertThat(response.getResumedFromRow()).isEqualTo(1234);
+        assertThat(writer.checkpoint).isNotNull();
+        verify(importCheckpointService).complete(eq(jobId), any(), eq(2000L));
+        verify(tableSchemaService, never()).createTable(any());
+    }
+
+    @Test
+    void duplicateUpload_hashedWhileSpooled_returnsPreviousResultWithoutSecondRead() throws IOException {
+        // given: такой же файл уже импортирован
+        byte[] content = "id,amount\n1,10\n".getBytes(StandardCharsets.UTF_8);
+        ImportResponseDto previous = ImportResponseDto.builder().tableName("trades_20261017_090000").build();
+        when(importRegistryService.find(eq(ContentHasher.hash(new ByteArrayInputStream(content))), any()))
+                .thenReturn(Optional.of(previous));
+        AtomicInteger opened = new AtomicInteger();
+
+        // when
+        ImportResponseDto response = fileImportService.importFile(upload(content, opened),
+                ImportOptions.builder().build(), new ImportProgress());
+
+        // then: загрузка прочитана один раз – при сохранении на диск, там же посчитан хэш
+        assertThat(response).isSameAs(previous);
+        assertThat(opened).hasValue(1);
+        verify(tableSchemaService, never()).createTable(any());
+        verify(importRegistryService, never()).register(any(), any(), any(), any());
+    }
+
+    @Test
+    void streamingFull_cachedSchema_looksUpHeadersOnTheCursorItWrites() {
+        // given: типы выгрузки trades известны по прошлому импорту
+        importProperties.setDeduplicate(false);
+        importProperties.setPipeline(false);
+        byte[] content = "id,amount\n1,10\n2,20\n".getBytes(StandardCharsets.UTF_8);
+        when(schemaCacheService.find("trades", List.of("id", "amount")))
+                .thenReturn(Optional.of(List.of(Long.class, Long.class)));
+        RecordingWriter writer = new RecordingWriter();
+        when(dataInsertService.openWriter(any(), any(), anyLong())).thenReturn(writer);
+        AtomicInteger opened = new AtomicInteger();
+
+        // when
+        fileImportService.importFile(upload(content, opened), ImportOptions.builder().build(), new ImportProgress());
+
+        // then: один проход – файл не открывался отдельно ради заголовков и не читался для вывода типов
+        assertThat(opened).hasValue(1);
+        assertThat(writer.rows).containsExactly(List.of(1L, 10L), List.of(2L, 20L));
+        verify(tableSchemaService).createTable(any());
+    }
+
+    @Test
+    void keyedMerge_writesStagingOnOneConnectionInFileOrder_evenWithUnorderedParallelCsv() throws IOException {
+        // given: ключ повторяется, куски разбираются параллельно и без порядка, просили 4 writer-а
+        importProperties.setDeduplicate(false);
+        importProperties.setSchemaCache(false);
+        importProperties.setPipeline(false);
+        importProperties.setCsvParallelThresholdBytes(0);
+        importProperties.setCsvChunkBytes(256);
+        importProperties.setCsvParallelOrdered(false);
+
+        StringBuilder csv = new StringBuilder("id,amount\n");
+        for (int i = 1; i <= 2000; i++) {
+            csv.append(i % 100).append(',').append(i).append('\n');
+        }
+        Path file = dir.resolve("trades.csv");
+        Files.writeString(file, csv, StandardCharsets.UTF_8);
+        RecordingWriter writer = new RecordingWriter();
+        when(dataInsertService.openWriter(any(), any(), anyLong(), any())).thenReturn(writer);
+
+        // when
+        fileImportService.importFile(ImportSource.of(file, "trades.csv"), ImportOptions.builder()
+                .targetTable("trades")
+                .keyColumns(List.of("id"))
+                .writeParallelism(4)
+                .build(), new ImportProgress());
+
+        // then: последняя строка ключа в staging – последняя в файле
+        verify(dataInsertService).openWriter(any(), any(), anyLong(), eq(1));
+        assertThat(writer.rows).hasSize(2000);
+        for (int i = 0; i < writer.rows.size(); i++) {
+            assertThat(writer.rows.get(i).get(1)).isEqualTo(i + 1L);
+        }
+        verify(tableSchemaService).mergeInto(any(), eq("trades"), eq(List.of("id")));
+    }
+
+    /**
+     * multipart-загрузка: перечитывается, но файла на диске нет; считает открытия
+     */
+    private static ImportSource upload(byte[] content, AtomicInteger opened) {
+        return new ImportSource() {
+            @Override
+            public String getFilename() {
+                return "trades.csv";
+            }
+
+            @Override
+            public long getSize() {
+                return content.length;
+            }
+
+            @Override
+            public InputStream openStream() {
+                opened.incrementAndGet();
+                return new ByteArrayInputStream(content);
+            }
+        };
+    }
+
+    private static final class RecordingWriter implements CheckpointTableWriter {
+        final List<List<Object>> rows = new ArrayList<>();
+        LongConsumer checkpoint;
+
+        @Override
+        public void write(List<Object> row) {
+            rows.add(row);
+        }
+
+        @Override
+        public void write(ColumnarRows columnar, int row) {
+            write(columnar.row(row));
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public InsertResult finish() {
+            return InsertResult.builder().rowsInserted(rows.size()).batches(List.of()).build();
+        }
+
+        @Override
+        public void setBatchListener(IntConsumer listener) {
+        }
+
+        @Override
+        public void setCheckpoint(LongConsumer checkpoint) {
+            this.checkpoint = checkpoint;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.abrik.risktech.service;
+
+import com.abrik.risktech.model.ColumnMeta;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class ImportCheckpointServiceTest {
+
+    JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    ImportCheckpointService importCheckpointService = new ImportCheckpointService(jdbcTemplate);
+
+    @Test
+    void encodeColumns_roundTripsNamesAndTypes() {
+        // given: SQL-тип с запятой внутри
+        List<ColumnMeta> columns = List.of(
+                ColumnMeta.builder().name("client_id").javaType(Long.class).sqlType("BIGINT").build(),
+                ColumnMeta.builder().name("income").javaType(BigDecimal.class).sqlType("NUMERIC(18,2)").build(),
+                ColumnMeta.builder().name("birth_date").javaType(LocalDate.class).sqlType("DATE").build()
+        );
+
+        // when
+        List<ColumnMeta> decoded = ImportCheckpointService.decodeColumns(ImportCheckpointService.encodeColumns(columns));
+
+        // then
+        assertThat(decoded).isEqualTo(columns);
+    }
+
+    @Test
+    void commit_updatesRowsOfJobTable() {
+        UUID jobId = UUID.randomUUID();
+
+        importCheckpointService.commit(jobId, "CSV file", 400_000);
+
+        verify(jdbcTemplate).update(
+                "UPDATE import_checkpoint SET rows_committed = ?, updated_at = now() WHERE job_id = ? AND source = ?",
+                400_000L, jobId.toString(), "CSV file");
+    }
+}
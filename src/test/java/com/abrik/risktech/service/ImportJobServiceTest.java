@@ -0,0 +1,173 @@
+package com.abrik.risktech.service;
+
+import com.abrik.risktech.config.ImportProperties;
+import com.abrik.risktech.dto.ImportJobDto;
+import com.abrik.risktech.dto.ImportResponseDto;
+import com.abrik.risktech.exception.BadRequestException;
+import com.abrik.risktech.exception.NotFoundException;
+import com.abrik.risktech.model.ImportJobState;
+import com.abrik.risktech.model.ImportOptions;
+import com.abrik.risktech.model.ImportProgress;
+import com.abrik.risktech.model.ImportSource;
+import com.abrik.risktech.model.WriteMode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ImportJobServiceTest {
+
+    FileImportService fileImportService = mock(FileImportService.class);
+    ImportCheckpointService importCheckpointService = mock(ImportCheckpointService.class);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    ImportJobService importJobService = new ImportJobService(fileImportService, importCheckpointService,
+            new ImportProperties(), new ImportMetrics(new SimpleMeterRegistry()), executor);
+
+    @AfterEach
+    void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    MockMultipartFile file = new MockMultipartFile(
+            "file", "clients.csv", "text/csv", "id\n1\n2\n".getBytes(StandardCharsets.UTF_8));
+
+    @Test
+    void submit_runsImportInBackgroundAndReportsProgress() throws Exception {
+        // given: импорт читает сохранённую копию и двигает счётчики
+        AtomicReference<String> content = new AtomicReference<>();
+        when(fileImportService.importFile(any(ImportSource.class), any(ImportOptions.class), any(ImportProgress.class)))
+                .thenAnswer(invocation -> {
+                    ImportSource source = invocation.getArgument(0);
+                    try (InputStream in = source.openStream()) {
+                        content.set(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                    }
+                    ImportProgress progress = invocation.getArgument(2);
+                    progress.rowsParsed(2);
+                    progress.rowsInserted(2);
+                    return ImportResponseDto.builder().tableName("clients").rowsInserted(2).build();
+                });
+
+        // when
+        ImportJobDto submitted = importJobService.submit(file, ImportOptions.builder().build());
+        awaitJobs();
+        ImportJobDto job = importJobService.get(submitted.getId());
+
+        // then
+        assertThat(job.getState()).isEqualTo(ImportJobState.COMPLETED);
+        assertThat(job.getFilename()).isEqualTo("clients.csv");
+        assertThat(job.getRowsParsed()).isEqualTo(2);
+        assertThat(job.getRowsInserted()).isEqualTo(2);
+        assertThat(job.getStartedAt()).isNotNull();
+        assertThat(job.getFinishedAt()).isNotNull();
+        assertThat(job.getResult().getTableName()).isEqualTo("clients");
+        assertThat(content.get()).isEqualTo("id\n1\n2\n");
+        verify(importCheckpointService).delete(submitted.getId());
+    }
+
+    @Test
+    void submit_failedImport_keepsErrorAndSpooledFileForRetry() throws Exception {
+        AtomicReference<ImportSource> spooled = new AtomicReference<>();
+        when(fileImportService.importFile(any(ImportSource.class), any(ImportOptions.class), any(ImportProgress.class)))
+                .thenAnswer(invocation -> {
+                    spooled.set(invocation.getArgument(0));
+                    throw new BadRequestException("CSV file does not contain any data rows");
+                });
+
+        ImportJobDto submitted = importJobService.submit(file, ImportOptions.builder().build());
+        awaitJobs();
+        ImportJobDto job = importJobService.get(submitted.getId());
+
+        assertThat(job.getState()).isEqualTo(ImportJobState.FAILED);
+        assertThat(job.getError()).isEqualTo("CSV file does not contain any data rows");
+        assertThat(job.getResult()).isNull();
+        assertThat(job.getAttempts()).isEqualTo(1);
+        // копия остаётся для повтора
+        try (InputStream in = spooled.get().openStream()) {
+            assertThat(in.readAllBytes()).isEqualTo(file.getBytes());
+        }
+        verify(importCheckpointService, never()).delete(any());
+    }
+
+    @Test
+    void retry_failedJob_rerunsWithSameJobIdAndDeletesSpooledFileOnSuccess() throws Exception {
+        // given: первая попытка падает, вторая проходит
+        List<ImportOptions> attempts = new CopyOnWriteArrayList<>();
+        AtomicReference<ImportSource> spooled = new AtomicReference<>();
+        when(fileImportService.importFile(any(ImportSource.class), any(ImportOptions.class), any(ImportProgress.class)))
+                .thenAnswer(invocation -> {
+                    spooled.set(invocation.getArgument(0));
+                    attempts.add(invocation.getArgument(1));
+                    if (attempts.size() == 1) {
+                        throw new IllegalStateException("connection lost");
+                    }
+                    return ImportResponseDto.builder().tableName("clients").rowsInserted(1).resumedFromRow(1).build();
+                });
+        ImportJobDto submitted = importJobService.submit(file, ImportOptions.builder().writeMode(WriteMode.COPY).build());
+        awaitState(submitted.getId(), ImportJobState.FAILED);
+
+        // when
+        ImportJobDto retried = importJobService.retry(submitted.getId());
+        awaitState(submitted.getId(), ImportJobState.COMPLETED);
+
+        // then
+        assertThat(retried.getAttempts()).isEqualTo(2);
+        ImportJobDto job = importJobService.get(submitted.getId());
+        assertThat(job.getError()).isNull();
+        assertThat(job.getResult().getResumedFromRow()).isEqualTo(1);
+        // обе попытки – с id задачи (по нему ищутся чекпоинты) и исходными параметрами
+        assertThat(attempts).extracting(ImportOptions::getJobId).containsOnly(submitted.getId());
+        assertThat(attempts).extracting(ImportOptions::getWriteMode).containsOnly(WriteMode.COPY);
+        assertThrows(NoSuchFileException.class, () -> spooled.get().openStream());
+        verify(importCheckpointService).delete(submitted.getId());
+    }
+
+    @Test
+    void retry_jobNotFailed_throwsBadRequest() throws Exception {
+        when(fileImportService.importFile(any(ImportSource.class), any(ImportOptions.class), any(ImportProgress.class)))
+                .thenReturn(ImportResponseDto.builder().tableName("clients").build());
+        ImportJobDto submitted = importJobService.submit(file, ImportOptions.builder().build());
+        awaitState(submitted.getId(), ImportJobState.COMPLETED);
+
+        BadRequestException ex = assertThrows(BadRequestException.class,
+                () -> importJobService.retry(submitted.getId()));
+
+        assertThat(ex.getMessage()).isEqualTo("Import job " + submitted.getId() + " is COMPLETED and cannot be retried");
+    }
+
+    @Test
+    void get_unknownJob_throwsNotFound() {
+        assertThrows(NotFoundException.class, () -> importJobService.get(UUID.randomUUID()));
+    }
+
+    private void awaitState(UUID id, ImportJobState state) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (importJobService.get(id).getState() != state) {
+            assertThat(System.nanoTime()).as("job %s did not reach %s", id, state).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private void awaitJobs() throws InterruptedException {
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    }
+}
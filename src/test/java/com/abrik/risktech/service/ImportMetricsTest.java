@@ -0,0 +1,95 @@
+package com.abrik.risktech.service;
+
+import com.abrik.risktech.model.InsertResult;
+import com.abrik.risktech.model.InsertResult.BatchStats;
+import com.abrik.risktech.model.InsertResult.StageStats;
+import com.abrik.risktech.service.ImportMetrics.Stage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImportMetricsTest {
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    ImportMetrics importMetrics = new ImportMetrics(registry);
+
+    @Test
+    void success_recordsStagesRowsAndThroughputByFormatAndParser() {
+        // given
+        ImportMetrics.Recorder metrics = importMetrics.start("csv", "CsvFileParser", 4_000);
+        assertThat(registry.get(ImportMetrics.IN_FLIGHT).tag("format", "csv").gauge().value()).isEqualTo(1);
+
+        // when: конвейер отдаёт время стадий, пачки – время записи
+        metrics.record(Stage.INFER, TimeUnit.MILLISECONDS.toNanos(5));
+        metrics.written(InsertResult.builder()
+                .rowsInserted(300)
+                .batches(List.of(
+                        BatchStats.builder().index(0).rows(200).durationMs(20).durationNanos(20_000_000).build(),
+                        // пачка COPY короче миллисекунды: в мс это 0, в таймер она попадает как есть
+                        BatchStats.builder().index(1).rows(100).durationMs(0).durationNanos(400_000).build()))
+                .stages(List.of(
+                        StageStats.builder().stage("parse").busyMs(7).build(),
+                        StageStats.builder().stage("convert").busyMs(3).build(),
+                        StageStats.builder().stage("write").busyMs(31).build()))
+                .build());
+        metrics.success(300);
+
+        // then
+        assertThat(registry.get(ImportMetrics.STAGE).tags("stage", "insert_batch", "parser", "CsvFileParser")
+                .timer().count()).isEqualTo(2);
+        assertThat(registry.get(ImportMetrics.STAGE).tag("stage", "insert_batch").timer()
+                .totalTime(TimeUnit.NANOSECONDS)).isEqualTo(20_400_000);
+        assertThat(registry.get(ImportMetrics.STAGE).tag("stage", "parse").timer().totalTime(TimeUnit.MILLISECONDS))
+                .isEqualTo(7);
+        assertThat(registry.get(ImportMetrics.STAGE).tag("stage", "infer").timer().count()).isEqualTo(1);
+        assertThat(registry.find(ImportMetrics.STAGE).tag("stage", "write").timer()).isNull();
+        assertThat(registry.get(ImportMetrics.ROWS).counter().count()).isEqualTo(300);
+        assertThat(registry.get(ImportMetrics.BYTES).counter().count()).isEqualTo(4_000);
+        assertThat(registry.get(ImportMetrics.ROWS_PER_SECOND).gauge().value()).isPositive();
+        assertThat(registry.get(ImportMetrics.IN_FLIGHT).gauge().value()).isZero();
+        assertThat(registry.get(ImportMetrics.DURATION).tag("outcome", "success").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void interleaved_parseTimeExcludesSubMillisecondBatches() {
+        ImportMetrics.Recorder metrics = importMetrics.start("csv", "CsvFileParser", 100);
+
+        metrics.interleaved(5_000_000, 1_000_000, InsertResult.builder()
+                .batches(List.of(
+                        BatchStats.builder().index(0).rows(50).durationNanos(600_000).build(),
+                        BatchStats.builder().index(1).rows(50).durationNanos(900_000).build()))
+                .build());
+
+        assertThat(registry.get(ImportMetrics.STAGE).tag("stage", "parse").timer().totalTime(TimeUnit.NANOSECONDS))
+                .isEqualTo(2_500_000);
+        assertThat(registry.get(ImportMetrics.STAGE).tag("stage", "convert").timer().totalTime(TimeUnit.NANOSECONDS))
+                .isEqualTo(1_000_000);
+    }
+
+    @Test
+    void failure_countsByExceptionAndLeavesInFlight() {
+        ImportMetrics.Recorder metrics = importMetrics.start("xlsx", "XlsxStreamingFileParser", 100);
+
+        metrics.failure(new IllegalStateException("boom"));
+
+        assertThat(registry.get(ImportMetrics.FAILURES)
+                .tags("format", "xlsx", "exception", "IllegalStateException").counter().count()).isEqualTo(1);
+        assertThat(registry.get(ImportMetrics.IN_FLIGHT).tag("format", "xlsx").gauge().value()).isZero();
+        assertThat(registry.find(ImportMetrics.ROWS).counter()).isNull();
+    }
+
+    @Test
+    void spooled_tagsUnknownExtensionsAsOther() {
+        importMetrics.spooled("feed.CSV", 1_000);
+        importMetrics.spooled("feed.exe", 1_000);
+
+        assertThat(registry.get(ImportMetrics.STAGE).tags("stage", "spool", "format", "csv", "parser", "none")
+                .timer().count()).isEqualTo(1);
+        assertThat(registry.get(ImportMetrics.STAGE).tags("stage", "spool", "format", "other")
+                .timer().count()).isEqualTo(1);
+    }
+}
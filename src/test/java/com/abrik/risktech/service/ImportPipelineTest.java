@@ -0,0 +1,169 @@
+package com.abrik.risktech.service;
+
+import com.abrik.risktech.exception.BadRequestException;
+import com.abrik.risktech.model.ImportProgress;
+import com.abrik.risktech.model.InsertResult;
+import com.abrik.risktech.model.InsertResult.StageStats;
+import com.abrik.risktech.parser.RowCursor;
+import com.abrik.risktech.util.FileParserUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ImportPipelineTest {
+
+    FileParserUtil fileParserUtil = new FileParserUtil();
+    ForkJoinPool pool = new ForkJoinPool(3);
+
+    @AfterEach
+    void shutdownPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    void run_convertsAndWritesAllRowsInOrder() {
+        // given: блоки по 7 строк, очередь на 2 блока – разбор упирается в очередь
+        List<List<Object>> raw = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            raw.add(List.of(String.valueOf(i), "name " + i));
+        }
+        RecordingWriter writer = new RecordingWriter();
+        ImportProgress progress = new ImportProgress();
+        ImportPipeline pipeline = new ImportPipeline(fileParserUtil, pool, pool.getParallelism(), 7, 2);
+
+        // when
+        InsertResult result = pipeline.run(cursor(raw), List.of(Long.class, String.class), writer, progress);
+
+        // then
+        assertThat(writer.rows).hasSize(100);
+        for (int i = 0; i < 100; i++) {
+            assertThat(writer.rows.get(i)).containsExactly((long) i, "name " + i);
+        }
+        assertThat(progress.getRowsParsed()).isEqualTo(100);
+        assertThat(result.getStages()).extracting(StageStats::getStage).containsExactly("parse", "convert", "write");
+        assertThat(result.getStages()).allSatisfy(stage -> {
+            assertThat(stage.getRows()).isEqualTo(100);
+            assertThat(stage.getUtilisation()).isBetween(0.0, 1.0);
+            assertThat(stage.getMaxQueueDepth()).isLessThanOrEqualTo(stage.getQueueCapacity());
+        });
+        assertThat(progress.getPipelineStages()).isEqualTo(result.getStages());
+    }
+
+    @Test
+    void run_parserFailure_reachesWriterAfterPrecedingRows() {
+        List<List<Object>> raw = List.of(List.of("1"), List.of("2"), List.of("3"));
+        Iterator<List<Object>> rows = raw.iterator();
+        RowCursor failing = new ListCursor(new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public List<Object> next() {
+                if (!rows.hasNext()) {
+                    throw new BadRequestException("Invalid CSV: unterminated quoted field");
+                }
+                return rows.next();
+            }
+        });
+        RecordingWriter writer = new RecordingWriter();
+        ImportPipeline pipeline = new ImportPipeline(fileParserUtil, pool, pool.getParallelism(), 1, 1);
+
+        BadRequestException ex = assertThrows(BadRequestException.class,
+                () -> pipeline.run(failing, List.of(Long.class), writer, new ImportProgress()));
+
+        assertThat(ex.getMessage()).isEqualTo("Invalid CSV: unterminated quoted field");
+        assertThat(writer.rows).containsExactly(List.of(1L), List.of(2L), List.of(3L));
+        assertThat(writer.finished).isFalse();
+    }
+
+    @Test
+    void run_writerFailure_stopsParser() {
+        // given: бесконечный курсор – без остановки разбора run не вернулся бы
+        RowCursor endless = new ListCursor(new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public List<Object> next() {
+                return List.of("1");
+            }
+        });
+        RecordingWriter writer = new RecordingWriter();
+        writer.failAfter = 50;
+        ImportPipeline pipeline = new ImportPipeline(fileParserUtil, pool, pool.getParallelism(), 10, 2);
+
+        IllegalStateException ex = assertThrows(IllegalStateException.class,
+                () -> pipeline.run(endless, List.of(Long.class), writer, new ImportProgress()));
+
+        assertThat(ex.getMessage()).isEqualTo("connection lost");
+    }
+
+    private RowCursor cursor(List<List<Object>> rows) {
+        return new ListCursor(rows.iterator());
+    }
+
+    private record ListCursor(Iterator<List<Object>> rows) implements RowCursor {
+        @Override
+        public List<String> getHeaders() {
+            return List.of();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return rows.hasNext();
+        }
+
+        @Override
+        public List<Object> next() {
+            return rows.next();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class RecordingWriter implements TableWriter {
+        final List<List<Object>> rows = new ArrayList<>();
+        int failAfter = Integer.MAX_VALUE;
+        boolean finished;
+
+        @Override
+        public void write(List<Object> row) {
+            if (rows.size() == failAfter) {
+                throw new IllegalStateException("connection lost");
+            }
+            rows.add(row);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public InsertResult finish() {
+            finished = true;
+            return InsertResult.builder().rowsInserted(rows.size()).build();
+        }
+
+        @Override
+        public void setBatchListener(IntConsumer listener) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.abrik.risktech.service;
+
+import com.abrik.risktech.dto.ImportResponseDto;
+import com.abrik.risktech.dto.ImportResponseDto.SheetInfo;
+import com.abrik.risktech.model.ImportOptions;
+import com.abrik.risktech.model.WriteMode;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class ImportRegistryServiceTest {
+
+    JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    JsonMapper jsonMapper = JsonMapper.builder().build();
+    ImportRegistryService importRegistryService = new ImportRegistryService(jdbcTemplate, jsonMapper);
+
+    @Test
+    void variantOf_separatesSheetSelectionsAndTargetTables() {
+        assertThat(ImportRegistryService.variantOf(ImportOptions.builder().writeMode(WriteMode.COPY).build()))
+                .isEmpty();
+        assertThat(ImportRegistryService.variantOf(ImportOptions.builder().allSheets(true).build()))
+                .isEqualTo("allSheets");
+        assertThat(ImportRegistryService.variantOf(ImportOptions.builder().sheets(List.of("A", "B")).build()))
+                .isNotEqualTo(ImportRegistryService.variantOf(ImportOptions.builder().sheets(List.of("A")).build()));
+        assertThat(ImportRegistryService.variantOf(ImportOptions.builder().targetTable("trades").build()))
+                .isNotEmpty()
+                .isNotEqualTo(ImportRegistryService.variantOf(ImportOptions.builder().targetTable("trades")
+                        .keyColumns(List.of("trade_id")).build()));
+    }
+
+    @Test
+    void register_storesTablesAndResponse() {
+        // given: книга из двух листов
+        ImportResponseDto response = ImportResponseDto.builder()
+                .rowsInserted(5)
+                .sheets(List.of(
+                        SheetInfo.builder().sheetName("A").tableName("book_a_20261018_120000").rowsInserted(2).build(),
+                        SheetInfo.builder().sheetName("B").tableName("book_b_20261018_120000").rowsInserted(3).build()))
+                .build();
+
+        // when
+        importRegistryService.register("abc", ImportOptions.builder().allSheets(true).build(), "book.xlsx", response);
+
+        // then
+        verify(jdbcTemplate).update(anyString(), eq("abc"), eq("allSheets"), eq("book.xlsx"),
+                eq("book_a_20261018_120000,book_b_20261018_120000"), eq(5), eq(jsonMapper.writeValueAsString(response)));
+    }
+
+    @Test
+    void register_doesNotFailImportWhenRegistryIsUnavailable() {
+        doThrow(new IllegalStateException("no table")).when(jdbcTemplate).execute(anyString());
+
+        importRegistryService.register("abc", ImportOptions.builder().build(), "feed.csv",
+                ImportResponseDto.builder().tableName("feed_20261018_120000").build());
+    }
+}
@@ -0,0 +1,202 @@
+package com.abrik.risktech.service;
+
+import com.abrik.risktech.exception.BadRequestException;
+import com.abrik.risktech.model.InsertResult;
+import com.abrik.risktech.model.InsertResult.BatchStats;
+import com.abrik.risktech.model.WriteMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class ParallelTableWriterTest {
+
+    JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+
+    // строки, записанные writer-ами, и потоки, в которых они работали
+    List<List<Object>> written = Collections.synchronizedList(new ArrayList<>());
+    Set<String> writerThreads = ConcurrentHashMap.newKeySet();
+    Set<String> writerTables = ConcurrentHashMap.newKeySet();
+    // сколько раз writer вернул разрешения на соединения
+    AtomicInteger released = new AtomicInteger();
+
+    @AfterEach
+    void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void finish_writesAllRowsThroughStagingAndSwapsItIn() {
+        // given: целевую таблицу только что создал этот импорт
+        AtomicLong listened = new AtomicLong();
+        ParallelTableWriter writer = new ParallelTableWriter(jdbcTemplate, transactionManager, executor,
+                table -> new RecordingWriter(table, -1), "clients", "clients_stg_1", true, 3, 10,
+                released::incrementAndGet);
+        writer.setBatchListener(listened::addAndGet);
+
+        // when
+        for (long i = 0; i < 95; i++) {
+            writer.write(List.of(i));
+        }
+        InsertResult result = writer.finish();
+        writer.close();
+
+        // then
+        assertThat(written).hasSize(95);
+        assertThat(written).extracting(row -> (Long) row.get(0)).containsExactlyInAnyOrderElementsOf(
+                LongStream.range(0, 95).boxed().toList());
+        assertThat(writerTables).containsExactly("clients_stg_1");
+        assertThat(writerThreads).hasSize(3);
+        assertThat(result.getRowsInserted()).isEqualTo(95);
+        assertThat(result.getWriters()).isEqualTo(3);
+        assertThat(result.getBatches()).extracting(BatchStats::getIndex).containsExactly(0, 1, 2);
+        assertThat(listened.get()).isEqualTo(95);
+        assertThat(released).hasValue(1);
+
+        InOrder ddl = inOrder(jdbcTemplate);
+        ddl.verify(jdbcTemplate).execute("CREATE UNLOGGED TABLE clients_stg_1 (LIKE clients INCLUDING DEFAULTS)");
+        ddl.verify(jdbcTemplate).execute("LOCK TABLE clients IN ACCESS EXCLUSIVE MODE");
+        ddl.verify(jdbcTemplate).execute("ALTER TABLE clients_stg_1 SET LOGGED");
+        ddl.verify(jdbcTemplate).execute("DROP TABLE clients");
+        ddl.verify(jdbcTemplate).execute("ALTER TABLE clients_stg_1 RENAME TO clients");
+        verify(jdbcTemplate, never()).execute("INSERT INTO clients SELECT * FROM clients_stg_1");
+        verify(jdbcTemplate, never()).execute("DROP TABLE IF EXISTS clients_stg_1");
+    }
+
+    @Test
+    void finish_targetNotCreatedByImport_appendsStagingInsteadOfSwapping() {
+        // given: таблица уже была (CREATE TABLE IF NOT EXISTS) – даже пустую с её индексами и правами не удаляем
+        ParallelTableWriter writer = new ParallelTableWriter(jdbcTemplate, transactionManager, executor,
+                table -> new RecordingWriter(table, -1), "clients", "clients_stg_1", false, 2, 10,
+                released::incrementAndGet);
+
+        // when
+        for (long i = 0; i < 30; i++) {
+            writer.write(List.of(i));
+        }
+        writer.finish();
+        writer.close();
+
+        // then
+        InOrder ddl = inOrder(jdbcTemplate);
+        ddl.verify(jdbcTemplate).execute("INSERT INTO clients SELECT * FROM clients_stg_1");
+        ddl.verify(jdbcTemplate).execute("DROP TABLE clients_stg_1");
+        verify(jdbcTemplate, never()).execute("DROP TABLE clients");
+        verify(jdbcTemplate, never()).execute("ALTER TABLE clients_stg_1 RENAME TO clients");
+    }
+
+    @Test
+    void finish_writerFailure_dropsStagingWithoutPublishing() {
+        // given: второй блок падает в writer-е
+        ParallelTableWriter writer = new ParallelTableWriter(jdbcTemplate, transactionManager, executor,
+                table -> new RecordingWriter(table, 15), "clients", "clients_stg_1", false, 2, 10,
+                released::incrementAndGet);
+
+        // when
+        BadRequestException ex = assertThrows(BadRequestException.class, () -> {
+            for (long i = 0; i < 1000; i++) {
+                writer.write(List.of(i));
+            }
+            writer.finish();
+        });
+        writer.close();
+
+        // then
+        assertThat(ex.getMessage()).isEqualTo("Row 15 has 2 values, but 1 columns expected");
+        assertThat(released).hasValue(1);
+        verify(jdbcTemplate, never()).execute("INSERT INTO clients SELECT * FROM clients_stg_1");
+        verify(jdbcTemplate, never()).execute("ALTER TABLE clients_stg_1 RENAME TO clients");
+        verify(jdbcTemplate).execute("DROP TABLE IF EXISTS clients_stg_1");
+    }
+
+    @Test
+    void finish_tableAlreadyStaged_writesDirectlyWithoutSecondStaging() {
+        // given: load-mode STAGED – таблица сама staging, её публикует FileImportService
+        ParallelTableWriter writer = new ParallelTableWriter(jdbcTemplate, transactionManager, executor,
+                table -> new RecordingWriter(table, -1), "clients_stg_2", null, false, 2, 10,
+                released::incrementAndGet);
+
+        // when
+        for (long i = 0; i < 30; i++) {
+            writer.write(List.of(i));
+        }
+        InsertResult result = writer.finish();
+        writer.close();
+
+        // then
+        assertThat(result.getRowsInserted()).isEqualTo(30);
+        assertThat(writerTables).containsExactly("clients_stg_2");
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    /**
+     * Writer одного потока: одна пачка на весь finish, падает на строке со значением failOn
+     */
+    private class RecordingWriter implements TableWriter {
+        private final long failOn;
+        private final List<List<Object>> rows = new ArrayList<>();
+        private IntConsumer listener = r -> {
+        };
+
+        RecordingWriter(String table, long failOn) {
+            this.failOn = failOn;
+            writerTables.add(table);
+            writerThreads.add(Thread.currentThread().getName());
+        }
+
+        @Override
+        public void write(List<Object> row) {
+            if (row.get(0).equals(failOn)) {
+                throw new BadRequestException("Row " + failOn + " has 2 values, but 1 columns expected");
+            }
+            rows.add(row);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public InsertResult finish() {
+            written.addAll(rows);
+            listener.accept(rows.size());
+            return InsertResult.builder()
+                    .writeMode(WriteMode.INSERT)
+                    .rowsInserted(rows.size())
+                    .batches(List.of(BatchStats.builder().index(0).rows(rows.size()).build()))
+                    .build();
+        }
+
+        @Override
+        public void setBatchListener(IntConsumer listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
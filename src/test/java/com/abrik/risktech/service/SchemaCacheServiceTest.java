@@ -0,0 +1,69 @@
+package com.abrik.risktech.service;
+
+import com.abrik.risktech.config.ImportProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class SchemaCacheServiceTest {
+
+    JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    @Test
+    void key_ignoresDatesInSourceNameAndHeaderCase() {
+        List<String> headers = List.of("Trade_ID", " amount ");
+
+        assertThat(SchemaCacheService.key("trades_20261018", headers))
+                .isEqualTo(SchemaCacheService.key("trades_20261019", List.of("trade_id", "AMOUNT")))
+                .isNotEqualTo(SchemaCacheService.key("positions_20261018", headers))
+                .isNotEqualTo(SchemaCacheService.key("trades_20261018", List.of("trade_id", "amount", "desk")));
+    }
+
+    @Test
+    void encodeTypes_roundTrips() {
+        List<Class<?>> types = List.of(Long.class, BigDecimal.class, LocalDate.class, String.class);
+
+        String encoded = SchemaCacheService.encodeTypes(List.of("id", "amount\tusd", "date", "comment"), types);
+
+        assertThat(SchemaCacheService.decodeTypes(encoded)).isEqualTo(types);
+    }
+
+    @Test
+    void find_keepsRecentSchemasInMemoryAndEvictsLeastRecentlyUsed() {
+        // given: в памяти помещается одна схема, в БД ничего нет
+        ImportProperties properties = new ImportProperties();
+        properties.setSchemaCacheSize(1);
+        SchemaCacheService cache = new SchemaCacheService(jdbcTemplate, properties);
+        List<String> headers = List.of("id");
+
+        // when
+        cache.put("trades_20261019", headers, List.of(Long.class));
+
+        // then
+        assertThat(cache.find("trades_20261020", headers)).contains(List.of(Long.class));
+
+        cache.put("positions", headers, List.of(String.class));
+        assertThat(cache.find("trades_20261020", headers)).isEmpty();
+        assertThat(cache.find("positions", headers)).contains(List.of(String.class));
+    }
+
+    @Test
+    void put_keepsSchemaInMemoryWhenDatabaseIsUnavailable() {
+        doThrow(new IllegalStateException("no table")).when(jdbcTemplate).execute(anyString());
+        SchemaCacheService cache = new SchemaCacheService(jdbcTemplate, new ImportProperties());
+
+        cache.put("trades", List.of("id"), List.of(Long.class));
+
+        assertThat(cache.find("trades", List.of("id"))).contains(List.of(Long.class));
+        verify(jdbcTemplate).execute(anyString());
+    }
+}
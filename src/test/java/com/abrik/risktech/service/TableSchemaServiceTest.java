@@ -7,11 +7,19 @@ import com.abrik.risktech.util.SqlTypeMapper;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.time.LocalDate;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -27,6 +35,9 @@ class TableSchemaServiceTest {
     @Mock
     SqlTypeMapper sqlTypeMapper;
 
+    @Mock
+    PlatformTransactionManager transactionManager;
+
     @InjectMocks
     TableSchemaService tableSchemaService;
 
@@ -47,8 +58,10 @@ class TableSchemaServiceTest {
                 ))
                 .build();
 
-        when(sqlTypeMapper.mapJavaTypeToSql(Long.class)).thenReturn("BIGINT");
-        when(sqlTypeMapper.mapJavaTypeToSql(String.class)).thenReturn("VARCHAR(255)");
+        when(sqlTypeMapper.mapJavaTypeToSql(Long.class, null)).thenReturn("BIGINT");
+        when(sqlTypeMapper.mapJavaTypeToSql(String.class, null)).thenReturn("VARCHAR(255)");
+        when(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, "test_table"))
+                .thenReturn(false);
 
         // when
         tableSchemaService.createTable(tableData);
@@ -64,6 +77,26 @@ class TableSchemaServiceTest {
                 .contains("test_table") // имя нормализуется в нижний регистр
                 .contains("client_id BIGINT")
                 .contains("client_fio VARCHAR(255)");
+        assertThat(tableData.isCreated()).isTrue();
+    }
+
+    @Test
+    void createTable_existingTable_isNotMarkedCreated() {
+        // given: таблица уже есть в БД, CREATE TABLE IF NOT EXISTS её не трогает
+        TableData tableData = TableData.builder()
+                .tableName("clients")
+                .columns(List.of(ColumnMeta.builder().name("id").javaType(Long.class).build()))
+                .build();
+
+        when(sqlTypeMapper.mapJavaTypeToSql(Long.class, null)).thenReturn("BIGINT");
+        when(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, "clients"))
+                .thenReturn(true);
+
+        // when
+        tableSchemaService.createTable(tableData);
+
+        // then: параллельная запись не подменит её staging-таблицей
+        assertThat(tableData.isCreated()).isFalse();
     }
 
     @Test
@@ -84,4 +117,210 @@ class TableSchemaServiceTest {
         assertThat(ex.getMessage()).isEqualTo("List of columns is empty - nothing to create");
         verifyNoInteractions(jdbcTemplate);
     }
+
+    @Test
+    void alterColumnType_widensColumnAndUpdatesMeta() {
+        // given
+        ColumnMeta column = ColumnMeta.builder()
+                .name("amount")
+                .javaType(Long.class)
+                .sqlType("BIGINT")
+                .build();
+
+        when(sqlTypeMapper.mapJavaTypeToSql(BigDecimal.class)).thenReturn("NUMERIC");
+
+        // when
+        tableSchemaService.alterColumnType("test_table", column, BigDecimal.class);
+
+        // then
+        verify(jdbcTemplate).execute("ALTER TABLE test_table ALTER COLUMN amount TYPE NUMERIC USING amount::NUMERIC");
+        assertThat(column.getJavaType()).isEqualTo(BigDecimal.class);
+        assertThat(column.getSqlType()).isEqualTo("NUMERIC");
+    }
+
+    @Test
+    void createTable_stagingTableIsUnlogged() {
+        // given
+        TableData tableData = TableData.builder()
+                .tableName("clients_stg_1a2b3c4d")
+                .columns(List.of(ColumnMeta.builder().name("id").javaType(Long.class).build()))
+                .staging(true)
+                .build();
+
+        when(sqlTypeMapper.mapJavaTypeToSql(Long.class, null)).thenReturn("BIGINT");
+
+        // when
+        tableSchemaService.createTable(tableData);
+
+        // then
+        verify(jdbcTemplate).execute("CREATE UNLOGGED TABLE IF NOT EXISTS clients_stg_1a2b3c4d (id BIGINT)");
+    }
+
+    @Test
+    void publishTable_setsLoggedAndRenamesInOneTransaction() {
+        // given
+        TableData tableData = TableData.builder()
+                .tableName("clients_stg_1a2b3c4d")
+                .staging(true)
+                .build();
+
+        // when
+        tableSchemaService.publishTable(tableData, "clients");
+
+        // then
+        InOrder inOrder = inOrder(transactionManager, jdbcTemplate);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(jdbcTemplate).execute("ALTER TABLE clients_stg_1a2b3c4d SET LOGGED");
+        inOrder.verify(jdbcTemplate).execute("ALTER TABLE clients_stg_1a2b3c4d RENAME TO clients");
+        inOrder.verify(transactionManager).commit(any());
+        assertThat(tableData.getTableName()).isEqualTo("clients");
+        assertThat(tableData.isStaging()).isFalse();
+    }
+
+    @Test
+    void mergeInto_upsertsOnUniqueKeyAndReadsCatalogOnce() throws Exception {
+        // given: trades(trade_id BIGINT, amount NUMERIC(12,2)) с первичным ключом trade_id
+        stubTargetTable(List.of("trade_id"));
+        when(jdbcTemplate.update(anyString())).thenReturn(3);
+
+        // when: два файла в одну таблицу
+        TableData first = stagedTrades("trades_20261018_stg_1a2b3c4d");
+        int merged = tableSchemaService.mergeInto(first, "Trades", List.of("Trade_Id"));
+        tableSchemaService.mergeInto(stagedTrades("trades_20261019_stg_5e6f7a8b"), "trades", List.of("trade_id"));
+
+        // then
+        assertThat(merged).isEqualTo(3);
+        verify(jdbcTemplate).update("INSERT INTO trades (trade_id, amount) "
+                + "SELECT DISTINCT ON (st.trade_id) CAST(st.trade_id AS bigint) AS trade_id, "
+                + "CAST(st.amount AS numeric) AS amount "
+                + "FROM trades_20261018_stg_1a2b3c4d st ORDER BY st.trade_id, st.ctid DESC "
+                + "ON CONFLICT (trade_id) DO UPDATE SET amount = EXCLUDED.amount");
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class), eq("trades"));
+        assertThat(first.getTableName()).isEqualTo("trades");
+        assertThat(first.getColumns().get(1).getSqlType()).isEqualTo("numeric(12,2)");
+    }
+
+    @Test
+    void mergeInto_withoutUniqueIndex_usesMerge() throws Exception {
+        stubTargetTable(List.of());
+
+        tableSchemaService.mergeInto(stagedTrades("trades_stg_1a2b3c4d"), "trades", List.of("trade_id"));
+
+        verify(jdbcTemplate).update("MERGE INTO trades t USING (SELECT DISTINCT ON (st.trade_id) "
+                + "CAST(st.trade_id AS bigint) AS trade_id, CAST(st.amount AS numeric) AS amount "
+                + "FROM trades_stg_1a2b3c4d st ORDER BY st.trade_id, st.ctid DESC) s ON t.trade_id = s.trade_id "
+                + "WHEN MATCHED THEN UPDATE SET amount = s.amount "
+                + "WHEN NOT MATCHED THEN INSERT (trade_id, amount) VALUES (s.trade_id, s.amount)");
+    }
+
+    @Test
+    void mergeInto_rejectsFileThatDoesNotFitTable() throws Exception {
+        stubTargetTable(List.of("trade_id"));
+        TableData staged = stagedTrades("trades_stg_1a2b3c4d");
+        staged.getColumns().get(1).setJavaType(LocalDate.class);
+        staged.getColumns().get(1).setSqlType("DATE");
+
+        BadRequestException e = assertThrows(BadRequestException.class,
+                () -> tableSchemaService.mergeInto(staged, "trades", List.of("desk")));
+
+        assertThat(e.getMessage())
+                .contains("amount holds DATE values")
+                .contains("key column desk is not in the file");
+        // отказ – только после повторного чтения каталога
+        verify(jdbcTemplate, times(2)).query(anyString(), any(RowCallbackHandler.class), eq("trades"));
+        verify(jdbcTemplate, never()).update(anyString());
+    }
+
+    @Test
+    void mergeInto_varcharTarget_castsWithoutLengthSoLongValuesAreRejectedNotTruncated() throws Exception {
+        // given: clients(name VARCHAR(20)) – длина подобрана по первому файлу
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getString("attname")).thenReturn("name");
+            when(rs.getString("sql_type")).thenReturn("character varying(20)");
+            when(rs.getString("base_type")).thenReturn("character varying");
+            when(rs.getString("typcategory")).thenReturn("S");
+            handler.processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), eq("clients"));
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq("clients"))).thenReturn(List.of());
+        TableData staged = TableData.builder()
+                .tableName("clients_stg_1a2b3c4d")
+                .columns(List.of(ColumnMeta.builder().name("name").javaType(String.class).sqlType("VARCHAR(64)")
+                        .build()))
+                .staging(true)
+                .build();
+
+        // when: в новом файле имя длиннее 20 символов
+        tableSchemaService.mergeInto(staged, "clients", List.of());
+
+        // then: CAST в varchar(20) обрезал бы его молча, присваивание без модификатора в CAST – отклоняет
+        verify(jdbcTemplate).update("INSERT INTO clients (name) "
+                + "SELECT CAST(st.name AS character varying) AS name FROM clients_stg_1a2b3c4d st");
+        assertThat(staged.getColumns().getFirst().getSqlType()).isEqualTo("character varying(20)");
+    }
+
+    @Test
+    void mergeInto_staleCachedColumns_reReadsCatalogOnceBeforeRejecting() throws Exception {
+        // given: при первом импорте в trades была только trade_id, потом добавили amount
+        doAnswer(new Answer<Void>() {
+            int described;
+
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Exception {
+                RowCallbackHandler handler = invocation.getArgument(1);
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString("attname")).thenReturn("trade_id", "amount");
+                when(rs.getString("sql_type")).thenReturn("bigint", "numeric(12,2)");
+            when(rs.getString("base_type")).thenReturn("bigint", "numeric");
+                when(rs.getString("base_type")).thenReturn("bigint", "numeric");
+                when(rs.getString("typcategory")).thenReturn("N", "N");
+                handler.processRow(rs);
+                if (described++ > 0) {
+                    handler.processRow(rs);
+                }
+                return null;
+            }
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), eq("trades"));
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq("trades"))).thenReturn(List.of("trade_id"));
+        TableData idsOnly = stagedTrades("trades_stg_1a2b3c4d");
+        idsOnly.setColumns(List.of(idsOnly.getColumns().getFirst()));
+        tableSchemaService.mergeInto(idsOnly, "trades", List.of());
+
+        // when
+        TableData withAmount = stagedTrades("trades_stg_5e6f7a8b");
+        tableSchemaService.mergeInto(withAmount, "trades", List.of());
+
+        // then: файл принят по свежему каталогу, а не отклонён по закэшированному
+        verify(jdbcTemplate, times(2)).query(anyString(), any(RowCallbackHandler.class), eq("trades"));
+        assertThat(withAmount.getTableName()).isEqualTo("trades");
+        assertThat(withAmount.getColumns().get(1).getSqlType()).isEqualTo("numeric(12,2)");
+    }
+
+    private void stubTargetTable(List<String> uniqueKeys) throws Exception {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getString("attname")).thenReturn("trade_id", "amount");
+            when(rs.getString("sql_type")).thenReturn("bigint", "numeric(12,2)");
+            when(rs.getString("base_type")).thenReturn("bigint", "numeric");
+            when(rs.getString("typcategory")).thenReturn("N", "N");
+            handler.processRow(rs);
+            handler.processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), eq("trades"));
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq("trades"))).thenReturn(uniqueKeys);
+    }
+
+    private TableData stagedTrades(String stagingTable) {
+        return TableData.builder()
+                .tableName(stagingTable)
+                .columns(List.of(
+                        ColumnMeta.builder().name("trade_id").javaType(Long.class).sqlType("SMALLINT").build(),
+                        ColumnMeta.builder().name("amount").javaType(BigDecimal.class).sqlType("NUMERIC(5,2)")
+                                .build()))
+                .staging(true)
+                .build();
+    }
 }
@@ -0,0 +1,38 @@
+package com.abrik.risktech.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContentHasherTest {
+
+    static final String ABC_SHA256 = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+    @Test
+    void hash_isSha256OfWholeStream() throws IOException {
+        assertThat(ContentHasher.hash(stream("abc"))).isEqualTo(ABC_SHA256);
+    }
+
+    @Test
+    void readingThrough_hashesSkippedBytesAndReportsCompletion() throws IOException {
+        ContentHasher hasher = new ContentHasher(stream("abc"));
+
+        assertThat(hasher.read()).isEqualTo('a');
+        assertThat(hasher.skip(1)).isEqualTo(1);
+        assertThat(hasher.isComplete()).isFalse();
+        assertThat(hasher.read(new byte[8], 0, 8)).isEqualTo(1);
+        assertThat(hasher.read()).isEqualTo(-1);
+
+        assertThat(hasher.isComplete()).isTrue();
+        assertThat(hasher.hex()).isEqualTo(ABC_SHA256);
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,191 @@
+package com.abrik.risktech.util;
+
+import com.abrik.risktech.model.ColumnStats;
+import com.abrik.risktech.model.ColumnarRows;
+import com.abrik.risktech.model.ColumnarRows.DecimalColumn;
+import com.abrik.risktech.model.ColumnarRows.LongColumn;
+import com.abrik.risktech.model.ColumnarRows.ObjectColumn;
+import com.abrik.risktech.model.ColumnarRows.StringColumn;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileParserUtilTest {
+
+    FileParserUtil fileParserUtil = new FileParserUtil();
+
+    List<Class<?>> types = List.of(Long.class, BigDecimal.class, LocalDate.class, Boolean.class,
+            LocalDateTime.class, String.class);
+
+    @Test
+    void convertColumns_holdsSameValuesAsConvertRows() {
+        // given: пробелы, пустые, экспонента, длинные числа, нативные значения XLSX, короткая строка
+        List<List<Object>> raw = List.of(
+                List.of(" 42 ", "10.50", "2024-02-29", "TRUE", "2024-01-01", "text"),
+                Arrays.asList("-9223372036854775808", "-0.05", "1970-01-01", "false", null, ""),
+                Arrays.asList("", "1.5E+3", "1969-12-31", " ", "", null),
+                List.of(7L, "123456789012345678901234.5", LocalDate.of(2000, 1, 1), Boolean.TRUE,
+                        LocalDate.of(2000, 1, 1), 15L),
+                List.of("0", ".5")
+        );
+
+        // when
+        ColumnarRows columnar = fileParserUtil.convertColumns(raw, types);
+
+        // then
+        assertThat(columnar.asRows()).isEqualTo(fileParserUtil.convertRows(raw, types));
+        assertThat(columnar.column(0)).isInstanceOf(LongColumn.class);
+        assertThat(columnar.column(1)).isInstanceOf(DecimalColumn.class);
+        assertThat(((DecimalColumn) columnar.column(1)).getWide(3)).isEqualByComparingTo("123456789012345678901234.5");
+    }
+
+    @Test
+    void convertColumns_valueOfOtherType_turnsColumnIntoObjects() {
+        // convertRow отдаёт String, если значение не разбирается в тип колонки – columnar тоже
+        List<List<Object>> raw = List.of(List.of("1"), List.of("n/a"), List.of("3"));
+
+        ColumnarRows columnar = fileParserUtil.convertColumns(raw, List.of(Long.class));
+
+        assertThat(columnar.column(0)).isInstanceOf(ObjectColumn.class);
+        assertThat(columnar.asRows()).containsExactly(List.of(1L), List.of("n/a"), List.of(3L));
+    }
+
+    @Test
+    void concat_keepsRowOrderAcrossParts() {
+        ColumnarRows first = fileParserUtil.convertColumns(List.of(List.of("1", "true"), List.of("", "false")),
+                List.of(Long.class, Boolean.class));
+        ColumnarRows second = fileParserUtil.convertColumns(List.of(List.of("x", "true")),
+                List.of(Long.class, Boolean.class));
+
+        ColumnarRows merged = ColumnarRows.concat(List.of(Long.class, Boolean.class), List.of(first, second));
+
+        assertThat(merged.asRows()).containsExactly(
+                List.of(1L, true), Arrays.asList(null, false), List.of("x", true));
+    }
+
+    @Test
+    void appendPlain_matchesBigDecimalToPlainString() {
+        List<String> values = List.of("0", "-0.05", "10.50", "123.000", "-999999999999999999", "0.000000000000000001",
+                "1E+3", "-1.5E-20", "5.");
+        ColumnarRows columnar = fileParserUtil.convertColumns(values.stream().<List<Object>>map(List::of).toList(),
+                List.of(BigDecimal.class));
+        DecimalColumn decimals = (DecimalColumn) columnar.column(0);
+
+        for (int row = 0; row < values.size(); row++) {
+            StringBuilder sb = new StringBuilder();
+            decimals.appendPlain(sb, row);
+            assertThat(sb.toString()).as(values.get(row)).isEqualTo(new BigDecimal(values.get(row)).toPlainString());
+        }
+    }
+
+    @Test
+    void convertColumns_lowCardinalityText_sharesDictionaryValues() {
+        List<List<Object>> raw = IntStream.range(0, 10_000)
+                .<List<Object>>mapToObj(i -> Arrays.asList(i % 7 == 0 ? null : new String(i % 2 == 0 ? "USD" : "EUR")))
+                .toList();
+
+        ColumnarRows columnar = fileParserUtil.convertColumns(raw, List.of(String.class));
+
+        StringColumn strings = (StringColumn) columnar.column(0);
+        assertThat(strings.isDictionaryEncoded()).isTrue();
+        assertThat(strings.dictionarySize()).isEqualTo(2);
+        assertThat(strings.getString(2)).isSameAs(strings.getString(4));
+        assertThat(columnar.asRows()).isEqualTo(fileParserUtil.convertRows(raw, List.of(String.class)));
+    }
+
+    @Test
+    void convertColumns_highCardinalityText_fallsBackToPlainStrings() {
+        List<List<Object>> raw = IntStream.range(0, StringColumn.MIN_DICTIONARY_LIMIT * 2)
+                .<List<Object>>mapToObj(i -> Arrays.asList(i % 5 == 0 ? "" : "id-" + i))
+                .toList();
+
+        ColumnarRows columnar = fileParserUtil.convertColumns(raw, List.of(String.class));
+
+        StringColumn strings = (StringColumn) columnar.column(0);
+        assertThat(strings.isDictionaryEncoded()).isFalse();
+        assertThat(columnar.asRows()).isEqualTo(fileParserUtil.convertRows(raw, List.of(String.class)));
+    }
+
+    @Test
+    void convertColumns_repeatedTextBeyondMinLimit_keepsGrowingDictionary() {
+        // given: 6000 различных значений, каждое трижды подряд – больше MIN_DICTIONARY_LIMIT, но вдвое меньше строк
+        List<List<Object>> raw = IntStream.range(0, 18_000)
+                .<List<Object>>mapToObj(i -> List.of("desk-" + i / 3))
+                .toList();
+
+        ColumnarRows columnar = fileParserUtil.convertColumns(raw, List.of(String.class));
+
+        StringColumn strings = (StringColumn) columnar.column(0);
+        assertThat(strings.isDictionaryEncoded()).isTrue();
+        assertThat(strings.dictionarySize()).isEqualTo(6_000);
+        assertThat(columnar.asRows()).isEqualTo(fileParserUtil.convertRows(raw, List.of(String.class)));
+    }
+
+    @Test
+    void readColumns_encodesTextWhileReadingAndConvertsLikeConvertRows() {
+        // given: пробелы по краям, пустые значения, короткая строка и не-текстовое значение ячейки
+        List<List<Object>> raw = List.of(
+                Arrays.asList(" 1 ", "RUB", "2026-10-18", "x"),
+                Arrays.asList("2", " RUB", "", 5L),
+                Arrays.asList("", "USD", "2026-10-19"),
+                Arrays.asList("4", "RUB ", null, "y"));
+
+        // when
+        ColumnTypeInferrer inferrer = fileParserUtil.newTypeInferrer(4);
+        ColumnarRows rawColumns = fileParserUtil.readColumns(raw.iterator(), inferrer, 4);
+        List<Class<?>> types = inferrer.getColumnTypes();
+
+        // then: текст уже в словаре до вывода типов, результат – как у построчной конвертации
+        StringColumn currencies = (StringColumn) rawColumns.column(1);
+        assertThat(currencies.isDictionaryEncoded()).isTrue();
+        assertThat(currencies.dictionarySize()).isEqualTo(2);
+        assertThat(inferrer.getRowCount()).isEqualTo(4);
+        assertThat(fileParserUtil.convertColumns(rawColumns, types).asRows())
+                .isEqualTo(fileParserUtil.convertRows(raw, types));
+    }
+
+    @Test
+    void concat_remapsDictionaryCodesOfParts() {
+        ColumnarRows first = fileParserUtil.convertColumns(List.of(List.of("RUB"), List.of("USD")),
+                List.of(String.class));
+        ColumnarRows second = fileParserUtil.convertColumns(Arrays.asList(List.of("USD"), Arrays.asList((Object) null),
+                List.of("EUR")), List.of(String.class));
+
+        ColumnarRows merged = ColumnarRows.concat(List.of(String.class), List.of(first, second));
+
+        assertThat(merged.asRows()).containsExactly(
+                List.of("RUB"), List.of("USD"), List.of("USD"), Arrays.asList((Object) null), List.of("EUR"));
+        assertThat(((StringColumn) merged.column(0)).dictionarySize()).isEqualTo(3);
+    }
+
+    @Test
+    void inferColumns_collectsLengthDigitsAndScaleOfAllValues() {
+        // given: пробелы по краям и ведущие нули не считаются, экспонента – размер неизвестен
+        List<List<Object>> raw = List.of(
+                List.of(" 42 ", "10.50", "RUB", "1.5E+3", "", 7L),
+                List.of("-00123", "-0.005", "GBP+", "2", "", "12345"),
+                List.of("", "1234", "  ", "3", "", "")
+        );
+
+        // when
+        ColumnTypeInferrer inferrer = fileParserUtil.inferColumns(raw, 6);
+
+        // then
+        assertThat(inferrer.getColumnStats()).containsExactly(
+                new ColumnStats(6, 3, 0),
+                new ColumnStats(6, 4, 3),
+                new ColumnStats(4, 0, 0),
+                new ColumnStats(6, ColumnStats.UNKNOWN, ColumnStats.UNKNOWN),
+                new ColumnStats(ColumnStats.UNKNOWN, ColumnStats.UNKNOWN, ColumnStats.UNKNOWN),
+                new ColumnStats(ColumnStats.UNKNOWN, 5, 0));
+        assertThat(fileParserUtil.buildColumns(List.of("a", "b", "c", "d", "e", "f"), inferrer).get(1).getStats())
+                .isEqualTo(new ColumnStats(6, 4, 3));
+    }
+}
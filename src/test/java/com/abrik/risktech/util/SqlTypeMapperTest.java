@@ -0,0 +1,43 @@
+package com.abrik.risktech.util;
+
+import com.abrik.risktech.model.ColumnStats;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SqlTypeMapperTest {
+
+    SqlTypeMapper sqlTypeMapper = new SqlTypeMapper();
+
+    @Test
+    void mapJavaTypeToSql_picksNarrowestTypeThatHoldsAllValues() {
+        assertThat(sqlTypeMapper.mapJavaTypeToSql(Long.class, new ColumnStats(5, 4, 0))).isEqualTo("SMALLINT");
+        assertThat(sqlTypeMapper.mapJavaTypeToSql(Long.class, new ColumnStats(6, 5, 0))).isEqualTo("INTEGER");
+        assertThat(sqlTypeMapper.mapJavaTypeToSql(Long.class, new ColumnStats(10, 10, 0))).isEqualTo("BIGINT");
+        assertThat(sqlTypeMapper.mapJavaTypeToSql(BigDecimal.class, new ColumnStats(8, 4, 3)))
+                .isEqualTo("NUMERIC(7,3)");
+        assertThat(sqlTypeMapper.mapJavaTypeToSql(BigDecimal.class, new ColumnStats(2, 0, 1)))
+                .isEqualTo("NUMERIC(1,1)");
+        assertThat(sqlTypeMapper.mapJavaTypeToSql(String.class, new ColumnStats(4, ColumnStats.UNKNOWN, 0)))
+                .isEqualTo("VARCHAR(4)");
+    }
+
+    @Test
+    void mapJavaTypeToSql_withoutStatsOrOutOfRange_usesWideTypes() {
+        assertThat(sqlTypeMapper.mapJavaTypeToSql(Long.class)).isEqualTo("BIGINT");
+        assertThat(sqlTypeMapper.mapJavaTypeToSql(BigDecimal.class)).isEqualTo("NUMERIC");
+        assertThat(sqlTypeMapper.mapJavaTypeToSql(String.class)).isEqualTo("TEXT");
+        assertThat(sqlTypeMapper.mapJavaTypeToSql(null)).isEqualTo("TEXT");
+
+        ColumnStats unknown = new ColumnStats(ColumnStats.UNKNOWN, ColumnStats.UNKNOWN, ColumnStats.UNKNOWN);
+        assertThat(sqlTypeMapper.mapJavaTypeToSql(Long.class, unknown)).isEqualTo("BIGINT");
+        assertThat(sqlTypeMapper.mapJavaTypeToSql(BigDecimal.class, unknown)).isEqualTo("NUMERIC");
+        assertThat(sqlTypeMapper.mapJavaTypeToSql(String.class, unknown)).isEqualTo("TEXT");
+        assertThat(sqlTypeMapper.mapJavaTypeToSql(String.class, new ColumnStats(5_000, ColumnStats.UNKNOWN, 0)))
+                .isEqualTo("TEXT");
+        assertThat(sqlTypeMapper.mapJavaTypeToSql(BigDecimal.class, new ColumnStats(1_200, 1_100, 2)))
+                .isEqualTo("NUMERIC");
+    }
+}
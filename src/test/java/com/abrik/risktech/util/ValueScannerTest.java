@@ -0,0 +1,64 @@
+package com.abrik.risktech.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ValueScannerTest {
+
+    @Test
+    void classify_detectsIntegersWithinLongRange() {
+        assertThat(ValueScanner.classify("42")).isEqualTo(ValueScanner.INTEGER | ValueScanner.DECIMAL);
+        assertThat(ValueScanner.classify("-9223372036854775808")).isEqualTo(ValueScanner.INTEGER | ValueScanner.DECIMAL);
+        assertThat(ValueScanner.classify("9223372036854775807")).isEqualTo(ValueScanner.INTEGER | ValueScanner.DECIMAL);
+
+        // за пределами long – только BigDecimal
+        assertThat(ValueScanner.classify("9223372036854775808")).isEqualTo(ValueScanner.DECIMAL);
+    }
+
+    @Test
+    void classify_acceptsSameDecimalsAsBigDecimal() {
+        assertThat(ValueScanner.classify("12.5")).isEqualTo(ValueScanner.DECIMAL);
+        assertThat(ValueScanner.classify(".5")).isEqualTo(ValueScanner.DECIMAL);
+        assertThat(ValueScanner.classify("1.")).isEqualTo(ValueScanner.DECIMAL);
+        assertThat(ValueScanner.classify("-1.5E+3")).isEqualTo(ValueScanner.DECIMAL);
+
+        assertThat(ValueScanner.classify(".")).isZero();
+        assertThat(ValueScanner.classify("1e")).isZero();
+        assertThat(ValueScanner.classify("1,5")).isZero();
+        assertThat(ValueScanner.classify("-")).isZero();
+    }
+
+    @Test
+    void classify_detectsIsoDatesAndBooleans() {
+        assertThat(ValueScanner.classify("2024-02-29")).isEqualTo(ValueScanner.DATE | ValueScanner.TIMESTAMP);
+        assertThat(ValueScanner.classify("2023-02-29")).isZero();
+        assertThat(ValueScanner.classify("2024-13-01")).isZero();
+        assertThat(ValueScanner.classify("2024-1-01")).isZero();
+
+        assertThat(ValueScanner.classify("TRUE")).isEqualTo(ValueScanner.BOOLEAN);
+        assertThat(ValueScanner.classify("false")).isEqualTo(ValueScanner.BOOLEAN);
+        assertThat(ValueScanner.classify("John Smith")).isZero();
+    }
+
+    @Test
+    void toLongAndToLocalDate_parseWithoutExceptions() {
+        assertThat(ValueScanner.toLong("+50000")).isEqualTo(50000L);
+        assertThat(ValueScanner.toLong("-9223372036854775808")).isEqualTo(Long.MIN_VALUE);
+        assertThat(ValueScanner.toLong("12.5")).isNull();
+
+        assertThat(ValueScanner.toLocalDate("1990-01-31")).isEqualTo(LocalDate.of(1990, 1, 31));
+        assertThat(ValueScanner.toLocalDate("31.01.1990")).isNull();
+    }
+
+    @Test
+    void toEpochDay_matchesLocalDate() {
+        for (String date : List.of("0000-01-01", "1969-12-31", "1970-01-01", "2000-02-29", "2023-03-01", "2024-12-31",
+                "9999-12-31")) {
+            assertThat(ValueScanner.toEpochDay(date)).as(date).isEqualTo(LocalDate.parse(date).toEpochDay());
+        }
+    }
+}